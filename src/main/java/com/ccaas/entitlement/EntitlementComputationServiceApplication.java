@@ -1,8 +1,11 @@
 package com.ccaas.entitlement;
 
+import com.ccaas.entitlement.config.NativeRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
@@ -20,11 +23,19 @@ import org.springframework.scheduling.annotation.EnableScheduling;
  * - PostgreSQL with JSONB support
  * - In-memory Caffeine caching
  * - Spring Boot 3.x with Jakarta EE
+ *
+ * R2DBC auto-configuration is excluded: the optional reactive endpoints build their own pool
+ * (ReactiveEntitlementRepository), and a ConnectionFactory bean would add a second transaction
+ * manager next to JPA's.
+ *
+ * NativeRuntimeHints adds the reflection hints a GraalVM native image needs beyond what Spring AOT
+ * derives (build with {@code mvn -Pnative native:compile}).
  */
-@SpringBootApplication
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 @EnableJpaRepositories
 @EnableCaching
 @EnableScheduling
+@ImportRuntimeHints(NativeRuntimeHints.class)
 public class EntitlementComputationServiceApplication {
 
     public static void main(String[] args) {
@@ -1,70 +1,97 @@
 package com.ccaas.entitlement.config;
 
+import com.ccaas.entitlement.service.CompactUserLayoutCache;
+import com.ccaas.entitlement.service.EncodedLayoutCache;
+import com.ccaas.entitlement.service.LayoutDeltaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.time.Duration;
-
 /**
  * Cache configuration for the Entitlement Service.
- * 
- * Configures Caffeine in-memory cache optimized for:
- * - User layout preferences (4-hour TTL)
- * - Role templates (1-hour TTL)
- * - AD group overrides (30-minute TTL)
+ *
+ * Configures Caffeine in-memory caches for:
+ * - User layout preferences (compressed)
+ * - Role templates
+ * - AD group overrides
+ * - Encoded layout responses
+ * - Layout deltas (JSON Patch between versions)
+ * - Audit queries
+ *
+ * Each cache is bounded by estimated entry size ({@code maximumWeight} with {@link CacheWeigher})
+ * and has a TTL, both from {@code entitlement.cache.specs.<cacheName>}.
  */
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
 
+    public static final String ROLE_TEMPLATES = "roleTemplates";
+    public static final String AD_GROUP_OVERRIDES = "adGroupOverrides";
+    public static final String AUDIT = "audit";
+
     /**
      * Cache manager for entitlement operations.
-     * 
-     * Configured with different TTLs for different data types:
-     * - userPreferences: 4 hours (matches database cache expiry)
-     * - roleTemplates: 1 hour (relatively static data)
-     * - adGroupOverrides: 30 minutes (more dynamic data)
+     *
+     * - userPreferences: compressed layouts; short TTL since other instances may rewrite the row
+     * - roleTemplates: relatively static data
+     * - adGroupOverrides: more dynamic data
+     * - encodedLayouts: keyed by user, computation mode and content version, so stale versions
+     *   simply age out; also the version history that layout deltas are computed from
+     * - layoutDeltas: JSON Patch bytes per user, mode and (base version, version) pair
+     * - audit: short-lived query results
+     *
+     * Publishes {@code entitlement.cache.weighted_size} and {@code entitlement.cache.max_weight}
+     * (bytes) per cache.
      */
     @Bean
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(CacheProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        
-        // User preferences cache - 4 hour TTL, high capacity
-        cacheManager.registerCustomCache("userPreferences", 
-            Caffeine.newBuilder()
-                .maximumSize(10000)
-                .expireAfterWrite(Duration.ofHours(4))
-                .recordStats()
-                .build());
-        
-        // Role templates cache - 1 hour TTL, medium capacity
-        cacheManager.registerCustomCache("roleTemplates", 
-            Caffeine.newBuilder()
-                .maximumSize(1000)
-                .expireAfterWrite(Duration.ofHours(1))
-                .recordStats()
-                .build());
-        
-        // AD group overrides cache - 30 minute TTL, high capacity
-        cacheManager.registerCustomCache("adGroupOverrides", 
-            Caffeine.newBuilder()
-                .maximumSize(5000)
-                .expireAfterWrite(Duration.ofMinutes(30))
-                .recordStats()
-                .build());
-        
-        // Audit cache - 5 minute TTL, low capacity
-        cacheManager.registerCustomCache("audit", 
-            Caffeine.newBuilder()
-                .maximumSize(100)
-                .expireAfterWrite(Duration.ofMinutes(5))
+        CacheWeigher weigher = new CacheWeigher(objectMapper);
+
+        for (String name : new String[] {
+                CompactUserLayoutCache.CACHE_NAME, ROLE_TEMPLATES, AD_GROUP_OVERRIDES, EncodedLayoutCache.CACHE_NAME,
+                LayoutDeltaService.CACHE_NAME, AUDIT}) {
+            CacheProperties.CacheSpec spec = properties.spec(name);
+            long maxWeightBytes = spec.maxWeightBytes();
+            Cache<Object, Object> cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher(weigher)
+                .expireAfterWrite(spec.getTtl())
                 .recordStats()
-                .build());
-        
+                .build();
+            cacheManager.registerCustomCache(name, cache);
+
+            Gauge.builder("entitlement.cache.weighted_size", cache, CacheConfig::weightedSize)
+                .description("Estimated bytes held by the cache")
+                .baseUnit("bytes")
+                .tag("cache", name)
+                .register(meterRegistry);
+            // Held by the supplier: a defaulted spec is referenced nowhere else, so the gauge cannot hold it weakly
+            Gauge.builder("entitlement.cache.max_weight", () -> maxWeightBytes)
+                .description("Configured byte bound of the cache")
+                .baseUnit("bytes")
+                .tag("cache", name)
+                .register(meterRegistry);
+        }
+
         return cacheManager;
     }
+
+    /**
+     * Current weighted size of a size-bounded cache, in bytes.
+     */
+    public static long weightedSize(Cache<?, ?> cache) {
+        return cache.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L);
+    }
 }
@@ -0,0 +1,64 @@
+package com.ccaas.entitlement.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sizing of the in-process caches ({@code entitlement.cache.specs.<cacheName>}).
+ *
+ * Every cache is bounded by the estimated serialized size of its entries
+ * ({@code max-megabytes}) rather than by entry count, so heap use stays predictable
+ * when entry sizes vary widely.
+ */
+@ConfigurationProperties(prefix = "entitlement.cache")
+public class CacheProperties {
+
+    private Map<String, CacheSpec> specs = new LinkedHashMap<>();
+
+    public Map<String, CacheSpec> getSpecs() {
+        return specs;
+    }
+
+    public void setSpecs(Map<String, CacheSpec> specs) {
+        this.specs = specs;
+    }
+
+    /**
+     * Spec for a cache, or the defaults if it is not configured.
+     */
+    public CacheSpec spec(String cacheName) {
+        return specs.getOrDefault(cacheName, new CacheSpec());
+    }
+
+    /**
+     * Bounds for one cache.
+     */
+    public static class CacheSpec {
+
+        private long maxMegabytes = 16;
+        private Duration ttl = Duration.ofMinutes(30);
+
+        public long getMaxMegabytes() {
+            return maxMegabytes;
+        }
+
+        public void setMaxMegabytes(long maxMegabytes) {
+            this.maxMegabytes = maxMegabytes;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public long maxWeightBytes() {
+            return maxMegabytes * 1024 * 1024;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ccaas.entitlement.config;
+
+import com.ccaas.entitlement.service.CompactUserLayoutCache;
+import com.ccaas.entitlement.service.EncodedLayoutCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * Estimates the size in bytes of a cache entry for weight-based eviction.
+ *
+ * Pre-encoded values are weighed by their byte arrays. Anything else is weighed by its
+ * JSON size, which tracks retained size closely enough for bounding purposes. Keys are
+ * weighed the same way, plus a fixed overhead per entry for the cache node.
+ */
+public class CacheWeigher implements Weigher<Object, Object> {
+
+    /** Estimated per-entry overhead (entry record, cache node, references). */
+    public static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final ObjectMapper objectMapper;
+
+    public CacheWeigher(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long bytes = ENTRY_OVERHEAD_BYTES + estimate(key) + estimate(value);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CompactUserLayoutCache.CompactLayout layout) {
+            return layout.payload().length;
+        }
+        if (value instanceof EncodedLayoutCache.EncodedLayout encoded) {
+            // Object form is about the size of its JSON, held alongside the JSON and gzip bytes
+            return 2L * encoded.json().length + (encoded.hasGzip() ? encoded.gzipJson().length : 0);
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (value instanceof CharSequence text) {
+            return text.length();
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(value).length;
+        } catch (JsonProcessingException e) {
+            return 1024;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.ccaas.entitlement.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * HTTP message converter configuration for service-to-service calls.
+ * 
+ * Adds compact binary encodings alongside JSON:
+ * - application/x-jackson-smile (Smile)
+ * - application/cbor (CBOR)
+ * 
+ * The binary converters are appended after the JSON converter, so JSON remains
+ * the default for clients that send no Accept header or accept anything.
+ */
+@Configuration
+public class MessageConverterConfig implements WebMvcConfigurer {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    public MessageConverterConfig(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    /**
+     * Binary converters share the Spring Boot Jackson settings (non_null inclusion,
+     * ISO dates) so every encoding carries the same fields.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.smile().build()));
+        converters.add(new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.cbor().build()));
+    }
+}
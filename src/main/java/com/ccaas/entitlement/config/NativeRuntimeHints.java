@@ -0,0 +1,98 @@
+package com.ccaas.entitlement.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.ClassMetadata;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Reflection hints for a GraalVM native image ({@code mvn -Pnative native:compile}), on top of
+ * the ones Spring AOT derives from the bean definitions and handler method signatures.
+ *
+ * <ul>
+ *   <li>JPA entities and DTOs, including the {@code @JdbcTypeCode(SqlTypes.JSON)} columns: Hibernate
+ *       reads and writes their fields, and Jackson binds them when a handler returns
+ *       {@code ResponseEntity<?>} or selects fields from them</li>
+ *   <li>records and anonymous classes of this application: response payloads such as the
+ *       {@code {error}} bodies and event payloads, and Jackson {@code TypeReference} subclasses</li>
+ *   <li>Caffeine's generated cache and node classes, which it loads by name for each combination
+ *       of cache settings</li>
+ * </ul>
+ *
+ * Runs at build time only, so classpath scanning here costs nothing at startup.
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final String APPLICATION_CLASSES = "classpath*:com/ccaas/entitlement/**/*.class";
+    private static final String CAFFEINE_CLASSES = "classpath*:com/github/benmanes/caffeine/cache/*.class";
+
+    // Generated cache (e.g. SSSMW) and node (e.g. PSWMW) classes are named by their feature letters
+    private static final Pattern CAFFEINE_GENERATED = Pattern.compile("com\\.github\\.benmanes\\.caffeine\\.cache\\.[A-Z]+");
+    private static final Pattern ANONYMOUS = Pattern.compile(".*\\$\\d+");
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (ClassMetadata type : scan(APPLICATION_CLASSES, classLoader)) {
+            if (ANONYMOUS.matcher(type.getClassName()).matches()) {
+                // No canonical name, so the binding registrar skips them; Jackson only reads their public fields
+                hints.reflection().registerType(TypeReference.of(type.getClassName()),
+                    MemberCategory.DECLARED_FIELDS, MemberCategory.INTROSPECT_PUBLIC_METHODS);
+            } else if (isBound(type)) {
+                bindingRegistrar.registerReflectionHints(hints.reflection(), load(type.getClassName(), classLoader));
+            }
+        }
+        for (ClassMetadata type : scan(CAFFEINE_CLASSES, classLoader)) {
+            if (CAFFEINE_GENERATED.matcher(type.getClassName()).matches()) {
+                hints.reflection().registerType(TypeReference.of(type.getClassName()),
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS);
+            }
+        }
+    }
+
+    /**
+     * Classes whose fields or accessors are read by Hibernate or Jackson.
+     */
+    private static boolean isBound(ClassMetadata type) {
+        String className = type.getClassName();
+        return className.startsWith("com.ccaas.entitlement.entity.")
+            || className.startsWith("com.ccaas.entitlement.dto.")
+            || "java.lang.Record".equals(type.getSuperClassName());
+    }
+
+    private static List<ClassMetadata> scan(String pattern, ClassLoader classLoader) {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        MetadataReaderFactory readerFactory = new CachingMetadataReaderFactory(resolver);
+        List<ClassMetadata> types = new ArrayList<>();
+        try {
+            for (Resource resource : resolver.getResources(pattern)) {
+                types.add(readerFactory.getMetadataReader(resource).getClassMetadata());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan " + pattern, e);
+        }
+        return types;
+    }
+
+    private static Class<?> load(String className, ClassLoader classLoader) {
+        try {
+            return ClassUtils.forName(className, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Scanned class not loadable: " + className, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ccaas.entitlement.config;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Startup tuning for the {@code fast-start} profile.
+ *
+ * With {@code entitlement.startup.lazy-admin-beans}, the springdoc beans and {@link OpenApiConfig}
+ * are created on the first request to {@code /v3/api-docs} or Swagger UI instead of during startup.
+ * Their controllers are still mapped at startup (by type, without instantiating them). Beans that
+ * an eagerly created bean depends on, such as the Swagger UI {@code WebMvcConfigurer}, are still
+ * created at startup.
+ *
+ * The AOT build ({@code mvn -Pfast-start package}) runs this with the {@code fast-start} profile,
+ * so the lazy flags are part of the generated bean definitions.
+ */
+@Configuration
+public class StartupConfig {
+
+    private static final String SPRINGDOC_PACKAGE = "org.springdoc.";
+
+    // Resolves the Swagger UI webjar version at startup; Swagger UI is not served without it
+    private static final String SPRINGDOC_UI_CONFIGURATION = "org.springdoc.core.configuration.SpringDocUIConfiguration";
+
+    @Bean
+    public static BeanFactoryPostProcessor lazyAdminBeans(Environment environment) {
+        return beanFactory -> {
+            if (!environment.getProperty("entitlement.startup.lazy-admin-beans", Boolean.class, false)) {
+                return;
+            }
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+                if (isAdminBean(beanFactory, definition)) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    /**
+     * Declared by springdoc or {@link OpenApiConfig}, directly or through a {@code @Bean} method.
+     */
+    private static boolean isAdminBean(ConfigurableListableBeanFactory beanFactory, BeanDefinition definition) {
+        String className = definition.getBeanClassName();
+        if (className == null && definition.getFactoryBeanName() != null
+                && beanFactory.containsBeanDefinition(definition.getFactoryBeanName())) {
+            className = beanFactory.getBeanDefinition(definition.getFactoryBeanName()).getBeanClassName();
+        }
+        if (className == null || className.equals(SPRINGDOC_UI_CONFIGURATION)) {
+            return false;
+        }
+        return className.startsWith(SPRINGDOC_PACKAGE) || className.startsWith(OpenApiConfig.class.getName());
+    }
+}
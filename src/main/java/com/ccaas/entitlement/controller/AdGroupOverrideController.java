@@ -1,57 +1,117 @@
 package com.ccaas.entitlement.controller;
 
 import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
 import com.ccaas.entitlement.repository.AdGroupOverrideRepository;
+import com.ccaas.entitlement.service.AdGroupDns;
+import com.ccaas.entitlement.service.AdGroupOverrideLookupService;
+import com.ccaas.entitlement.service.AdGroupOverrideTransferService;
+import com.ccaas.entitlement.service.EntitlementSnapshotService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * REST Controller for AD Group Override operations (Layer 2).
  * 
- * Provides endpoints for managing AD group-specific layout overrides.
+ * Provides endpoints for managing AD group-specific layout overrides, and inherited overrides
+ * stored under scope DNs ({@code SCOPE=EMEA/SALES}, see {@link AdGroupDns}).
  */
 @RestController
 @RequestMapping("/api/v1/data/ad-group-overrides")
 public class AdGroupOverrideController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
+    static final Set<String> SUMMARY_FIELDS = Set.of(
+        "adGroupHash", "adGroupDn", "parsedMarket", "parsedFunction", "parsedEnvironment", "priority",
+        "isActive", "updatedAt");
+
     @Autowired
     private AdGroupOverrideRepository repository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    @Autowired
+    private ConditionalResponseSupport conditionalResponses;
+
+    @Autowired
+    private AdGroupOverrideLookupService lookupService;
+
+    @Autowired
+    private AdGroupOverrideTransferService transferService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Get all active AD group overrides.
+     * 
+     * List endpoints return summaries without the JSONB override columns unless {@code fields}
+     * asks for them ({@code fields=layoutOverrides,dataRestrictions} or {@code fields=all}).
      */
     @GetMapping
-    public ResponseEntity<List<AdGroupLayoutOverride>> getAllAdGroupOverrides() {
-        List<AdGroupLayoutOverride> overrides = repository.findByIsActiveTrueOrderByPriorityAsc();
-        return ResponseEntity.ok(overrides);
+    public ResponseEntity<List<?>> getAllAdGroupOverrides(
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String version = ConditionalResponseSupport.version(snapshotService.currentOverrideVersion(), fields);
+        return conditionalResponses.respond("ad-group-overrides", ifNoneMatch, version, () -> {
+            if (FieldSelection.isSummary(fields)) {
+                return ResponseEntity.ok(repository.findActiveSummaries());
+            }
+            List<AdGroupLayoutOverride> overrides = repository.findByIsActiveTrueOrderByPriorityAsc();
+            return ResponseEntity.ok(FieldSelection.select(objectMapper, overrides, SUMMARY_FIELDS, fields));
+        });
     }
 
     /**
      * Get AD group override by hash.
      */
     @GetMapping("/{groupHash}")
-    public ResponseEntity<AdGroupLayoutOverride> getAdGroupOverride(@PathVariable String groupHash) {
-        AdGroupLayoutOverride override = repository.findByAdGroupHashAndIsActiveTrue(groupHash);
-        
-        if (override != null) {
-            return ResponseEntity.ok(override);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+    public ResponseEntity<AdGroupLayoutOverride> getAdGroupOverride(@PathVariable String groupHash,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String version = ConditionalResponseSupport.version(snapshotService.currentOverrideVersion(), groupHash);
+        return conditionalResponses.respond("ad-group-overrides/hash", ifNoneMatch, version, () -> {
+            AdGroupLayoutOverride override = repository.findByAdGroupHashAndIsActiveTrue(groupHash);
+
+            if (override != null) {
+                return ResponseEntity.ok(override);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        });
     }
 
     /**
      * Create new AD group override.
      */
     @PostMapping
-    public ResponseEntity<AdGroupLayoutOverride> createAdGroupOverride(@RequestBody AdGroupLayoutOverride override) {
+    public ResponseEntity<?> createAdGroupOverride(@RequestBody AdGroupLayoutOverride override) {
         override.setIsActive(true);
-        
+        try {
+            normalizeScope(override);
+        } catch (IllegalArgumentException e) {
+            return error(e);
+        }
+
         AdGroupLayoutOverride saved = repository.save(override);
+        eventPublisher.publishEvent(EntitlementChangeEvent.overridesChanged(saved.getAdGroupDn()));
         return ResponseEntity.ok(saved);
     }
 
@@ -59,14 +119,20 @@ public class AdGroupOverrideController {
      * Update AD group override.
      */
     @PutMapping("/{groupHash}")
-    public ResponseEntity<AdGroupLayoutOverride> updateAdGroupOverride(@PathVariable String groupHash, 
-                                                                      @RequestBody AdGroupLayoutOverride override) {
+    public ResponseEntity<?> updateAdGroupOverride(@PathVariable String groupHash,
+                                                   @RequestBody AdGroupLayoutOverride override) {
         AdGroupLayoutOverride existing = repository.findByAdGroupHashAndIsActiveTrue(groupHash);
         
         if (existing != null) {
             override.setAdGroupHash(groupHash);
             override.setIsActive(true);
+            try {
+                normalizeScope(override);
+            } catch (IllegalArgumentException e) {
+                return error(e);
+            }
             AdGroupLayoutOverride saved = repository.save(override);
+            eventPublisher.publishEvent(EntitlementChangeEvent.overridesChanged(existing.getAdGroupDn(), saved.getAdGroupDn()));
             return ResponseEntity.ok(saved);
         } else {
             return ResponseEntity.notFound().build();
@@ -83,6 +149,7 @@ public class AdGroupOverrideController {
         if (override != null) {
             override.setIsActive(false);
             repository.save(override);
+            eventPublisher.publishEvent(EntitlementChangeEvent.overridesChanged(override.getAdGroupDn()));
             return ResponseEntity.noContent().build();
         } else {
             return ResponseEntity.notFound().build();
@@ -93,43 +160,152 @@ public class AdGroupOverrideController {
      * Get overrides by market.
      */
     @GetMapping("/market/{market}")
-    public ResponseEntity<List<AdGroupLayoutOverride>> getOverridesByMarket(@PathVariable String market) {
-        List<AdGroupLayoutOverride> overrides = repository.findByParsedMarketAndIsActiveTrueOrderByPriorityAsc(market);
-        return ResponseEntity.ok(overrides);
+    public ResponseEntity<List<?>> getOverridesByMarket(@PathVariable String market,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String version = ConditionalResponseSupport.version(snapshotService.currentOverrideVersion(), market, fields);
+        return conditionalResponses.respond("ad-group-overrides/market", ifNoneMatch, version, () -> {
+            if (FieldSelection.isSummary(fields)) {
+                return ResponseEntity.ok(repository.findActiveSummariesByMarket(market));
+            }
+            List<AdGroupLayoutOverride> overrides = repository.findByParsedMarketAndIsActiveTrueOrderByPriorityAsc(market);
+            return ResponseEntity.ok(FieldSelection.select(objectMapper, overrides, SUMMARY_FIELDS, fields));
+        });
     }
 
     /**
      * Get overrides by function.
      */
     @GetMapping("/function/{function}")
-    public ResponseEntity<List<AdGroupLayoutOverride>> getOverridesByFunction(@PathVariable String function) {
-        List<AdGroupLayoutOverride> overrides = repository.findByParsedFunctionAndIsActiveTrueOrderByPriorityAsc(function);
-        return ResponseEntity.ok(overrides);
+    public ResponseEntity<List<?>> getOverridesByFunction(@PathVariable String function,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String version = ConditionalResponseSupport.version(snapshotService.currentOverrideVersion(), function, fields);
+        return conditionalResponses.respond("ad-group-overrides/function", ifNoneMatch, version, () -> {
+            if (FieldSelection.isSummary(fields)) {
+                return ResponseEntity.ok(repository.findActiveSummariesByFunction(function));
+            }
+            List<AdGroupLayoutOverride> overrides = repository.findByParsedFunctionAndIsActiveTrueOrderByPriorityAsc(function);
+            return ResponseEntity.ok(FieldSelection.select(objectMapper, overrides, SUMMARY_FIELDS, fields));
+        });
     }
 
     /**
      * Get overrides by environment.
      */
     @GetMapping("/environment/{environment}")
-    public ResponseEntity<List<AdGroupLayoutOverride>> getOverridesByEnvironment(@PathVariable String environment) {
-        List<AdGroupLayoutOverride> overrides = repository.findByParsedEnvironmentAndIsActiveTrueOrderByPriorityAsc(environment);
-        return ResponseEntity.ok(overrides);
+    public ResponseEntity<List<?>> getOverridesByEnvironment(@PathVariable String environment,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String version = ConditionalResponseSupport.version(snapshotService.currentOverrideVersion(), environment, fields);
+        return conditionalResponses.respond("ad-group-overrides/environment", ifNoneMatch, version, () -> {
+            if (FieldSelection.isSummary(fields)) {
+                return ResponseEntity.ok(repository.findActiveSummariesByEnvironment(environment));
+            }
+            List<AdGroupLayoutOverride> overrides = repository.findByParsedEnvironmentAndIsActiveTrueOrderByPriorityAsc(environment);
+            return ResponseEntity.ok(FieldSelection.select(objectMapper, overrides, SUMMARY_FIELDS, fields));
+        });
     }
 
     /**
      * Bulk lookup by AD group DNs.
+     * 
+     * Serves from the in-process snapshot first, then by ad_group_hash primary key in chunks.
+     * The lookup, database chunks included, finishes before the response is committed, so a
+     * failed query is an error status rather than a truncated 200. Only references to the found
+     * overrides are held (snapshot hits are the snapshot's own objects); the JSON is written
+     * straight to the response, with counts and missing DNs after the list.
      */
     @PostMapping("/bulk-lookup")
-    public ResponseEntity<Object> bulkLookup(@RequestBody List<String> adGroupDns) {
-        List<AdGroupLayoutOverride> overrides = repository.findByAdGroupDnInAndIsActiveTrue(adGroupDns);
-        
-        return ResponseEntity.ok(new Object() {
-            public final List<AdGroupLayoutOverride> overridesList = overrides;
-            public final int foundCount = overrides.size();
-            public final int requestedCount = adGroupDns.size();
+    public ResponseEntity<StreamingResponseBody> bulkLookup(@RequestBody List<String> adGroupDns) {
+        List<AdGroupLayoutOverride> found = new ArrayList<>();
+        AdGroupOverrideLookupService.BulkLookupSummary summary = lookupService.lookup(adGroupDns, found::add);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("overridesList");
+                for (AdGroupLayoutOverride override : found) {
+                    generator.writeObject(override);
+                }
+                generator.writeEndArray();
+                generator.writeNumberField("requestedCount", summary.requestedCount());
+                generator.writeNumberField("foundCount", summary.foundCount());
+                generator.writeNumberField("missingCount", summary.missingCount());
+                generator.writeNumberField("cacheHitCount", summary.cacheHitCount());
+                generator.writeObjectField("missingDns", summary.missingDns());
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Export all overrides (active and inactive) as NDJSON (default) or CSV, streamed with COPY.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOverrides(@RequestParam(defaultValue = "ndjson") String format) {
+        String resolved = resolveTransferFormat(format);
+        if (resolved == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = outputStream -> transferService.export(resolved, outputStream);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(AdGroupOverrideTransferService.FORMAT_CSV.equals(resolved) ? "text/csv" : NDJSON))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=ad-group-overrides." + resolved)
+            .body(body);
+    }
+
+    /**
+     * Import overrides from NDJSON or CSV (as produced by export), upserting by adGroupHash.
+     * All rows are applied in one transaction, or none if any row is invalid.
+     */
+    @PostMapping(value = "/import", consumes = {NDJSON, "text/csv"})
+    public ResponseEntity<AdGroupOverrideTransferService.ImportSummary> importOverrides(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        String format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("text/csv"))
+            ? AdGroupOverrideTransferService.FORMAT_CSV
+            : AdGroupOverrideTransferService.FORMAT_NDJSON;
+        AdGroupOverrideTransferService.ImportSummary summary = transferService.importOverrides(format, body);
+        if (!summary.applied()) {
+            return ResponseEntity.badRequest().body(summary);
+        }
+        if (!summary.changedDns().isEmpty()) {
+            eventPublisher.publishEvent(EntitlementChangeEvent.overridesChanged(summary.changedDns()));
+        }
+        return ResponseEntity.ok(summary);
+    }
+
+    /**
+     * Store scope DNs in canonical form, with the parsed fields taken from the scope.
+     */
+    private static void normalizeScope(AdGroupLayoutOverride override) {
+        if (!AdGroupDns.isScope(override.getAdGroupDn())) {
+            return;
+        }
+        String[] scope = AdGroupDns.parseScope(override.getAdGroupDn());
+        override.setAdGroupDn(AdGroupDns.canonicalScopeDn(override.getAdGroupDn()));
+        override.setParsedMarket(scope[0]);
+        override.setParsedFunction(scope.length > 1 ? scope[1] : null);
+        override.setParsedEnvironment(scope.length > 2 ? scope[2] : null);
+    }
+
+    private static ResponseEntity<Object> error(IllegalArgumentException e) {
+        String message = e.getMessage();
+        return ResponseEntity.badRequest().body(new Object() {
+            public final String error = message;
         });
     }
 
+    private static String resolveTransferFormat(String format) {
+        String normalized = format.toLowerCase();
+        if (AdGroupOverrideTransferService.FORMAT_CSV.equals(normalized)
+                || AdGroupOverrideTransferService.FORMAT_NDJSON.equals(normalized)) {
+            return normalized;
+        }
+        return null;
+    }
+
     /**
      * Get override count by market.
      */
@@ -0,0 +1,162 @@
+package com.ccaas.entitlement.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ETag / If-None-Match handling for polled endpoints.
+ *
+ * The caller supplies a content version that is cheap to compute. When it matches
+ * the client's If-None-Match the body supplier is never invoked, so neither the
+ * computation nor serialisation runs. Counts per endpoint are published as
+ * {@code entitlement.http.conditional} and the overall 304 ratio as
+ * {@code entitlement.http.not_modified.ratio}.
+ */
+@Component
+public class ConditionalResponseSupport {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> notModifiedCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> modifiedCounters = new ConcurrentHashMap<>();
+    private final LongAdder totalResponses = new LongAdder();
+    private final LongAdder notModifiedResponses = new LongAdder();
+
+    public ConditionalResponseSupport(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("entitlement.http.not_modified.ratio", this, ConditionalResponseSupport::getNotModifiedRatio)
+            .description("Share of versioned responses answered with 304 Not Modified")
+            .register(meterRegistry);
+        FunctionCounter.builder("entitlement.http.versioned.responses", totalResponses, LongAdder::sum)
+            .description("Responses served with a content version")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Return 304 if the client already holds {@code version}, otherwise build the
+     * response and tag it with the version as a weak ETag.
+     */
+    public <T> ResponseEntity<T> respond(String endpoint, String ifNoneMatch, String version,
+                                         Supplier<ResponseEntity<T>> responseSupplier) {
+        ResponseEntity<T> notModified = notModified(endpoint, ifNoneMatch, version);
+        return notModified != null ? notModified : withEtag(responseSupplier.get(), version);
+    }
+
+    /**
+     * {@link #respond} for a response built asynchronously; {@code responseSupplier} is only
+     * called if the client does not already hold {@code version}.
+     */
+    public <T> Mono<ResponseEntity<T>> respondReactive(String endpoint, String ifNoneMatch, String version,
+                                                       Supplier<Mono<ResponseEntity<T>>> responseSupplier) {
+        ResponseEntity<T> notModified = notModified(endpoint, ifNoneMatch, version);
+        return notModified != null
+            ? Mono.just(notModified)
+            : responseSupplier.get().map(response -> withEtag(response, version));
+    }
+
+    private <T> ResponseEntity<T> notModified(String endpoint, String ifNoneMatch, String version) {
+        String etag = toEtag(version);
+        totalResponses.increment();
+
+        if (matches(ifNoneMatch, etag)) {
+            notModifiedResponses.increment();
+            counter(notModifiedCounters, endpoint, "not_modified").increment();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        counter(modifiedCounters, endpoint, "modified").increment();
+        return null;
+    }
+
+    private static <T> ResponseEntity<T> withEtag(ResponseEntity<T> response, String version) {
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            return response;
+        }
+        return ResponseEntity.status(response.getStatusCode())
+            .headers(response.getHeaders())
+            .eTag(toEtag(version))
+            .body(response.getBody());
+    }
+
+    /**
+     * Compact version string from the parts a response is derived from.
+     */
+    public static String version(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '|');
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public double getNotModifiedRatio() {
+        long total = totalResponses.sum();
+        return total > 0 ? (double) notModifiedResponses.sum() / total : 0.0;
+    }
+
+    /**
+     * Version inside an entity tag ({@code W/"v"}, {@code "v"} or bare {@code v}); null if blank.
+     */
+    static String fromEtag(String etag) {
+        if (etag == null || etag.isBlank()) {
+            return null;
+        }
+        String opaque = stripWeak(etag.trim());
+        if (opaque.length() >= 2 && opaque.startsWith("\"") && opaque.endsWith("\"")) {
+            opaque = opaque.substring(1, opaque.length() - 1);
+        }
+        return opaque.isEmpty() ? null : opaque;
+    }
+
+    static String toEtag(String version) {
+        return "W/\"" + version + "\"";
+    }
+
+    /**
+     * Weak comparison as defined for If-None-Match (RFC 9110 section 13.1.2).
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || stripWeak(trimmed).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private Counter counter(Map<String, Counter> counters, String endpoint, String result) {
+        return counters.computeIfAbsent(endpoint, e -> Counter.builder("entitlement.http.conditional")
+            .description("Versioned responses by endpoint and result")
+            .tag("endpoint", e)
+            .tag("result", result)
+            .register(meterRegistry));
+    }
+}
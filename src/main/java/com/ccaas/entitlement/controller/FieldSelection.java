@@ -0,0 +1,50 @@
+package com.ccaas.entitlement.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+
+/**
+ * Opt-in field expansion for list endpoints.
+ * 
+ * List endpoints return summary projections by default. {@code ?fields=a,b} adds the
+ * named entity fields to each summary, and {@code ?fields=all} returns the full entities.
+ */
+final class FieldSelection {
+
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private FieldSelection() {
+    }
+
+    static boolean isSummary(String fields) {
+        return fields == null || fields.isBlank();
+    }
+
+    static boolean isAll(String fields) {
+        return fields != null && (fields.trim().equals("all") || fields.trim().equals("*"));
+    }
+
+    /**
+     * Reduce full entities to the summary fields plus the requested ones.
+     */
+    static List<?> select(ObjectMapper objectMapper, List<?> entities, Set<String> summaryFields, String fields) {
+        if (isAll(fields)) {
+            return entities;
+        }
+
+        Set<String> selected = new HashSet<>(summaryFields);
+        for (String field : fields.split(",")) {
+            selected.add(field.trim());
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(entities.size());
+        for (Object entity : entities) {
+            Map<String, Object> values = objectMapper.convertValue(entity, MAP_TYPE);
+            values.keySet().retainAll(selected);
+            result.add(values);
+        }
+        return result;
+    }
+}
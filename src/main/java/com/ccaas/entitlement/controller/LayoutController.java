@@ -1,8 +1,12 @@
 package com.ccaas.entitlement.controller;
 
+import com.ccaas.entitlement.config.MessageConverterConfig;
 import com.ccaas.entitlement.dto.LayoutComputationRequest;
 import com.ccaas.entitlement.dto.LayoutComputationResponse;
+import com.ccaas.entitlement.service.EncodedLayoutCache;
 import com.ccaas.entitlement.service.LayoutComputationService;
+import com.ccaas.entitlement.service.LayoutDeltaService;
+import com.ccaas.entitlement.service.LayoutRecomputationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -12,10 +16,17 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/api/v1/layout")
 @Tag(name = "Internal Layout Computation", description = "Data access layer for layout computation - called by PAPI service")
@@ -23,12 +34,30 @@ public class LayoutController {
 
     private static final Logger logger = LoggerFactory.getLogger(LayoutController.class);
 
+    private static final MediaType APPLICATION_JSON_PATCH = MediaType.parseMediaType("application/json-patch+json");
+
     @Autowired
     private LayoutComputationService layoutComputationService;
 
+    @Autowired
+    private LayoutRecomputationService layoutRecomputationService;
+
+    @Autowired
+    private ConditionalResponseSupport conditionalResponses;
+
+    @Autowired
+    private EncodedLayoutCache encodedLayoutCache;
+
+    @Autowired
+    private LayoutDeltaService layoutDeltaService;
+
     @PostMapping(value = "/compute-internal",
-                 consumes = MediaType.APPLICATION_JSON_VALUE,
-                 produces = MediaType.APPLICATION_JSON_VALUE)
+                 consumes = {MediaType.APPLICATION_JSON_VALUE,
+                             MessageConverterConfig.APPLICATION_SMILE_VALUE,
+                             MediaType.APPLICATION_CBOR_VALUE},
+                 produces = {MediaType.APPLICATION_JSON_VALUE,
+                             MessageConverterConfig.APPLICATION_SMILE_VALUE,
+                             MediaType.APPLICATION_CBOR_VALUE})
     @Operation(
         summary = "Internal layout computation",
         description = """
@@ -55,16 +84,62 @@ public class LayoutController {
             - Response time: < 100ms
             - Database queries optimized with proper indexing
             - Caffeine cache for frequently accessed data
+            
+            **Computation mode:**
+            `service_logic` (default) computes in the service from the entitlement snapshot.
+            `database_function` gathers preferences, overrides and templates in a single SQL
+            round trip (`compute_user_layout`). Set per request with `computationMode` or via
+            `entitlement.computation.mode`.
+            
+            **Encodings:**
+            JSON by default. JVM callers can send `Accept: application/x-jackson-smile` or
+            `Accept: application/cbor` for a compact binary body (and use the same types for
+            the request body). The field set is identical in every encoding.
+            
+            **Conditional requests:**
+            Responses carry an ETag derived from the entitlement snapshot version, the user's
+            preference `lastComputedAt` and the AD groups. Sending it back as `If-None-Match`
+            returns 304 without running the computation.
+            
+            **Response caching:**
+            Computed layouts are cached per content version as pre-serialised JSON and, above a
+            size threshold, pre-gzipped JSON. JSON cache hits are written from those bytes
+            (with `Content-Encoding: gzip` when `Accept-Encoding` allows it).
+            
+            **Deltas:**
+            Callers holding a layout can send its ETag as `baseVersion`. If the base version is
+            still cached, a changed layout is returned as `226 IM Used` with an RFC 6902 JSON Patch
+            (`application/json-patch+json`) against it; otherwise the full layout is returned.
+            An unchanged layout is a 304.
             """
     )
     @ApiResponses(value = {
         @ApiResponse(
             responseCode = "200", 
             description = "Layout computation successful",
-            content = @Content(
-                mediaType = "application/json",
-                schema = @Schema(implementation = LayoutComputationResponse.class)
-            )
+            content = {
+                @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = LayoutComputationResponse.class)
+                ),
+                @Content(
+                    mediaType = MessageConverterConfig.APPLICATION_SMILE_VALUE,
+                    schema = @Schema(implementation = LayoutComputationResponse.class)
+                ),
+                @Content(
+                    mediaType = "application/cbor",
+                    schema = @Schema(implementation = LayoutComputationResponse.class)
+                )
+            }
+        ),
+        @ApiResponse(
+            responseCode = "226",
+            description = "JSON Patch from the layout at baseVersion to the current layout",
+            content = @Content(mediaType = "application/json-patch+json")
+        ),
+        @ApiResponse(
+            responseCode = "304", 
+            description = "Layout unchanged since the version given in If-None-Match"
         ),
         @ApiResponse(
             responseCode = "400", 
@@ -77,15 +152,39 @@ public class LayoutController {
             content = @Content(mediaType = "application/json")
         )
     })
-    public ResponseEntity<LayoutComputationResponse> computeLayoutInternal(
-            @RequestBody LayoutComputationRequest request) {
+    public ResponseEntity<?> computeLayoutInternal(
+            @RequestBody LayoutComputationRequest request,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 
         logger.info("Received internal layout computation request for user: {}", request.getUserId());
 
         try {
-            LayoutComputationResponse response = layoutComputationService.computeLayout(request);
-            logger.info("Internal layout computation completed successfully for user: {}", request.getUserId());
-            return ResponseEntity.ok(response);
+            String mode = layoutComputationService.computationMode(request);
+            String version = ConditionalResponseSupport.version(layoutComputationService.contentVersion(request));
+            // A caller holding baseVersion already has the current layout if the versions match
+            String baseVersion = ConditionalResponseSupport.fromEtag(request.getBaseVersion());
+            String conditional = ifNoneMatch == null && baseVersion != null
+                ? ConditionalResponseSupport.toEtag(baseVersion) : ifNoneMatch;
+            return conditionalResponses.respond("compute-internal", conditional, version, () -> {
+                EncodedLayoutCache.EncodedLayout encoded = encodedLayoutCache.get(request.getUserId(), mode, version).orElseGet(() -> {
+                    LayoutComputationResponse response = layoutComputationService.computeLayout(request);
+                    logger.info("Internal layout computation completed successfully for user: {}", request.getUserId());
+                    return encodedLayoutCache.put(request.getUserId(), mode, version, response);
+                });
+                if (baseVersion != null && prefersJson(accept)) {
+                    Optional<byte[]> patch = layoutDeltaService.delta(request.getUserId(), mode, baseVersion, version, encoded);
+                    if (patch.isPresent()) {
+                        return ResponseEntity.status(HttpStatus.IM_USED)
+                            .contentType(APPLICATION_JSON_PATCH)
+                            .header("IM", "json-patch")
+                            .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                            .body(patch.get());
+                    }
+                }
+                return encodedResponse(encoded, accept, acceptEncoding);
+            });
         } catch (Exception error) {
             logger.error("Internal layout computation failed: {}", error.getMessage());
 
@@ -101,6 +200,88 @@ public class LayoutController {
         }
     }
     
+    /**
+     * Write JSON from the pre-encoded bytes; other encodings go through the message converters.
+     */
+    static ResponseEntity<Object> encodedResponse(EncodedLayoutCache.EncodedLayout encoded,
+                                                  String accept, String acceptEncoding) {
+        if (!prefersJson(accept)) {
+            return ResponseEntity.ok(encoded.response());
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (encoded.hasGzip() && acceptsGzip(acceptEncoding)) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.gzipJson());
+        }
+        return builder.body(encoded.json());
+    }
+
+    static boolean prefersJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+        // Most specific first, then (stable) highest quality first
+        MimeTypeUtils.sortBySpecificity(mediaTypes);
+        mediaTypes.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return true;
+            }
+            if (mediaType.isCompatibleWith(MessageConverterConfig.APPLICATION_SMILE)
+                    || mediaType.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    @PostMapping("/structured")
+    @Operation(summary = "Structured layout",
+               description = """
+                   Columns, widgets, data access flags and effective permissions for a user, evaluated
+                   against the permission rules in layout_permission_rules / layout_permission_elements.
+                   The rules are compiled into a bitset plan and hot-reloaded when they change.
+                   """)
+    @ApiResponse(responseCode = "200", description = "Structured layout evaluated")
+    @ApiResponse(responseCode = "400", description = "userId or adGroups missing")
+    public ResponseEntity<?> structuredLayout(@RequestBody LayoutComputationRequest request) {
+        try {
+            return ResponseEntity.ok(layoutComputationService.computeStructuredLayout(request));
+        } catch (IllegalArgumentException e) {
+            String message = e.getMessage();
+            return ResponseEntity.badRequest().body(new Object() {
+                public final String error = message;
+            });
+        }
+    }
+
+    @GetMapping("/recompute/status")
+    @Operation(summary = "Recomputation progress",
+               description = "Returns progress of background layout recomputation triggered by template and override changes")
+    @ApiResponse(responseCode = "200", description = "Current recomputation progress")
+    public ResponseEntity<LayoutRecomputationService.RecomputationProgress> recomputeStatus() {
+        return ResponseEntity.ok(layoutRecomputationService.getProgress());
+    }
+
     @GetMapping("/health")
     @Operation(summary = "Health check", description = "Returns SAPI service health status")
     @ApiResponse(responseCode = "200", description = "SAPI service is healthy")
@@ -0,0 +1,68 @@
+package com.ccaas.entitlement.controller;
+
+import com.ccaas.entitlement.service.LayoutEventBroadcaster;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * Push channel for layout changes (Server-Sent Events).
+ */
+@RestController
+@RequestMapping("/api/v1/layout")
+@Tag(name = "Layout Events", description = "Server-Sent Events stream of layout changes")
+public class LayoutEventController {
+
+    @Autowired
+    private LayoutEventBroadcaster broadcaster;
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Subscribe to layout changes",
+               description = """
+                   Opens a `text/event-stream` for one `userId` or one `market`. A `layout-changed` event
+                   is sent when an override, template, preference or permission rule write changes the
+                   subscriber's effective layout; fetch it again (with `baseVersion` for a delta).
+                   Queued events are coalesced to the latest per stream. A `:heartbeat` comment is sent
+                   while idle.
+                   """)
+    @ApiResponse(responseCode = "200", description = "Event stream opened")
+    @ApiResponse(responseCode = "400", description = "Neither or both of userId and market given (one `error` event)")
+    @ApiResponse(responseCode = "503", description = "Subscription limit reached")
+    public ResponseEntity<SseEmitter> subscribe(@RequestParam(required = false) String userId,
+                                                @RequestParam(required = false) String market) {
+        if ((userId == null || userId.isBlank()) == (market == null || market.isBlank())) {
+            return error(HttpStatus.BAD_REQUEST, "Exactly one of userId or market is required");
+        }
+        return broadcaster.subscribe(blankToNull(userId), blankToNull(market))
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> error(HttpStatus.SERVICE_UNAVAILABLE, "Subscription limit reached"));
+    }
+
+    /**
+     * Rejection as a single {@code error} event, since the response is an event stream.
+     */
+    private static ResponseEntity<SseEmitter> error(HttpStatus status, String message) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEmitter.event().name("error").data(new Object() {
+                public final String error = message;
+            }, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return ResponseEntity.status(status).body(emitter);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
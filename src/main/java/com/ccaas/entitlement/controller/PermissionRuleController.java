@@ -0,0 +1,193 @@
+package com.ccaas.entitlement.controller;
+
+import com.ccaas.entitlement.entity.LayoutPermissionElement;
+import com.ccaas.entitlement.entity.LayoutPermissionRule;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import com.ccaas.entitlement.repository.LayoutPermissionElementRepository;
+import com.ccaas.entitlement.repository.LayoutPermissionRuleRepository;
+import com.ccaas.entitlement.service.PermissionPlan;
+import com.ccaas.entitlement.service.PermissionPlanService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * REST Controller for structured-layout permission rules and layout elements.
+ *
+ * Writes are validated before they are stored and trigger a recompile of the permission plan.
+ */
+@RestController
+@RequestMapping("/api/v1/data/permission-rules")
+public class PermissionRuleController {
+
+    @Autowired
+    private LayoutPermissionRuleRepository ruleRepository;
+
+    @Autowired
+    private LayoutPermissionElementRepository elementRepository;
+
+    @Autowired
+    private PermissionPlanService planService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Get all active rules.
+     */
+    @GetMapping
+    public ResponseEntity<List<LayoutPermissionRule>> getAllRules() {
+        return ResponseEntity.ok(ruleRepository.findByIsActiveTrueOrderByIdAsc());
+    }
+
+    /**
+     * Create new rule.
+     */
+    @PostMapping
+    public ResponseEntity<?> createRule(@RequestBody LayoutPermissionRule rule) {
+        rule.setId(null);
+        rule.setIsActive(true);
+        return saveRule(rule, null);
+    }
+
+    /**
+     * Update rule by ID.
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<?> updateRule(@PathVariable Long id, @RequestBody LayoutPermissionRule rule) {
+        Optional<LayoutPermissionRule> existing = ruleRepository.findByIdAndIsActiveTrue(id);
+        if (existing.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        rule.setId(id);
+        rule.setIsActive(true);
+        rule.setCreatedAt(existing.get().getCreatedAt());
+        return saveRule(rule, existing.get().getPermissionKey());
+    }
+
+    /**
+     * Delete rule by ID (soft delete).
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteRule(@PathVariable Long id) {
+        Optional<LayoutPermissionRule> rule = ruleRepository.findByIdAndIsActiveTrue(id);
+        if (rule.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        rule.get().setIsActive(false);
+        ruleRepository.save(rule.get());
+        eventPublisher.publishEvent(EntitlementChangeEvent.permissionRulesChanged(rule.get().getPermissionKey()));
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Get all active layout elements.
+     */
+    @GetMapping("/elements")
+    public ResponseEntity<List<LayoutPermissionElement>> getAllElements() {
+        return ResponseEntity.ok(elementRepository.findByIsActiveTrueOrderByIdAsc());
+    }
+
+    /**
+     * Create new layout element.
+     */
+    @PostMapping("/elements")
+    public ResponseEntity<?> createElement(@RequestBody LayoutPermissionElement element) {
+        element.setId(null);
+        element.setIsActive(true);
+        return saveElement(element);
+    }
+
+    /**
+     * Update layout element by ID.
+     */
+    @PutMapping("/elements/{id}")
+    public ResponseEntity<?> updateElement(@PathVariable Long id, @RequestBody LayoutPermissionElement element) {
+        Optional<LayoutPermissionElement> existing = elementRepository.findByIdAndIsActiveTrue(id);
+        if (existing.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        element.setId(id);
+        element.setIsActive(true);
+        element.setCreatedAt(existing.get().getCreatedAt());
+        return saveElement(element);
+    }
+
+    /**
+     * Delete layout element by ID (soft delete).
+     */
+    @DeleteMapping("/elements/{id}")
+    public ResponseEntity<Void> deleteElement(@PathVariable Long id) {
+        Optional<LayoutPermissionElement> element = elementRepository.findByIdAndIsActiveTrue(id);
+        if (element.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        element.get().setIsActive(false);
+        elementRepository.save(element.get());
+        eventPublisher.publishEvent(EntitlementChangeEvent.permissionRulesChanged(element.get().getPermissionKey()));
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Summary of the compiled plan currently in use.
+     */
+    @GetMapping("/plan")
+    public ResponseEntity<Object> getPlan() {
+        PermissionPlan plan = planService.getPlan();
+        return ResponseEntity.ok(planSummary(plan));
+    }
+
+    /**
+     * Recompile the plan from the stored rules now instead of waiting for the next poll.
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<Object> reload() {
+        try {
+            return ResponseEntity.ok(planSummary(planService.reload()));
+        } catch (IllegalArgumentException e) {
+            return error(e);
+        }
+    }
+
+    private ResponseEntity<?> saveRule(LayoutPermissionRule rule, String previousPermissionKey) {
+        try {
+            planService.toRule(rule);
+        } catch (IllegalArgumentException e) {
+            return error(e);
+        }
+        LayoutPermissionRule saved = ruleRepository.save(rule);
+        eventPublisher.publishEvent(EntitlementChangeEvent.permissionRulesChanged(previousPermissionKey, saved.getPermissionKey()));
+        return ResponseEntity.ok(saved);
+    }
+
+    private ResponseEntity<?> saveElement(LayoutPermissionElement element) {
+        try {
+            planService.validateElement(element);
+        } catch (IllegalArgumentException e) {
+            return error(e);
+        }
+        LayoutPermissionElement saved = elementRepository.save(element);
+        eventPublisher.publishEvent(EntitlementChangeEvent.permissionRulesChanged(saved.getPermissionKey()));
+        return ResponseEntity.ok(saved);
+    }
+
+    private static Object planSummary(PermissionPlan plan) {
+        return new Object() {
+            public final String version = plan.getVersion();
+            public final int rules = plan.rules().size();
+            public final int permissions = plan.permissions().size();
+            public final int layoutElements = plan.elements().size();
+        };
+    }
+
+    private static ResponseEntity<Object> error(IllegalArgumentException e) {
+        String message = e.getMessage();
+        return ResponseEntity.badRequest().body(new Object() {
+            public final String error = message;
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package com.ccaas.entitlement.controller;
+
+import com.ccaas.entitlement.config.MessageConverterConfig;
+import com.ccaas.entitlement.dto.LayoutComputationRequest;
+import com.ccaas.entitlement.dto.LayoutComputationResponse;
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.repository.ReactiveEntitlementRepository;
+import com.ccaas.entitlement.service.EncodedLayoutCache;
+import com.ccaas.entitlement.service.LayoutComputationService;
+import com.ccaas.entitlement.service.LayoutDeltaService;
+import com.ccaas.entitlement.service.UserLayoutCacheService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Non-blocking variants of {@code compute-internal} and the read-only data endpoints, backed by
+ * R2DBC ({@code entitlement.reactive.enabled}).
+ *
+ * Handlers return {@link Mono}s, so a request waiting on the database holds an R2DBC connection
+ * only for the query itself and no servlet thread. The admin and write endpoints stay on the
+ * blocking stack.
+ */
+@RestController
+@RequestMapping("/api/v1/reactive")
+@ConditionalOnProperty(name = "entitlement.reactive.enabled", havingValue = "true")
+@Tag(name = "Reactive Layout", description = "Non-blocking layout computation and data reads over R2DBC")
+public class ReactiveLayoutController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveLayoutController.class);
+
+    private static final MediaType APPLICATION_JSON_PATCH = MediaType.parseMediaType("application/json-patch+json");
+
+    @Autowired
+    private LayoutComputationService layoutComputationService;
+
+    @Autowired
+    private ReactiveEntitlementRepository repository;
+
+    @Autowired
+    private ConditionalResponseSupport conditionalResponses;
+
+    @Autowired
+    private EncodedLayoutCache encodedLayoutCache;
+
+    @Autowired
+    private LayoutDeltaService layoutDeltaService;
+
+    @Autowired
+    private UserLayoutCacheService userLayoutCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PostMapping(value = "/layout/compute-internal",
+                 consumes = {MediaType.APPLICATION_JSON_VALUE,
+                             MessageConverterConfig.APPLICATION_SMILE_VALUE,
+                             MediaType.APPLICATION_CBOR_VALUE},
+                 produces = {MediaType.APPLICATION_JSON_VALUE,
+                             MessageConverterConfig.APPLICATION_SMILE_VALUE,
+                             MediaType.APPLICATION_CBOR_VALUE})
+    @Operation(summary = "Internal layout computation (non-blocking)",
+               description = """
+                   Same request, response, encodings, ETags and deltas as `/api/v1/layout/compute-internal`.
+                   Stored layouts, `lastComputedAt` and the `database_function` call are read over R2DBC.
+                   """)
+    @ApiResponse(responseCode = "200", description = "Layout computation successful")
+    @ApiResponse(responseCode = "226", description = "JSON Patch from the layout at baseVersion to the current layout")
+    @ApiResponse(responseCode = "304", description = "Layout unchanged since the version given in If-None-Match")
+    @ApiResponse(responseCode = "400", description = "Invalid request parameters")
+    public Mono<ResponseEntity<Object>> computeLayoutInternal(
+            @RequestBody LayoutComputationRequest request,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+        String baseVersion = ConditionalResponseSupport.fromEtag(request.getBaseVersion());
+        String conditional = ifNoneMatch == null && baseVersion != null
+            ? ConditionalResponseSupport.toEtag(baseVersion) : ifNoneMatch;
+
+        return Mono.defer(() -> {
+            String mode = layoutComputationService.computationMode(request);
+            return layoutComputationService.contentVersionReactive(request)
+                .map(ConditionalResponseSupport::version)
+                .flatMap(version -> conditionalResponses.respondReactive("reactive/compute-internal", conditional, version, () ->
+                    Mono.justOrEmpty(encodedLayoutCache.get(request.getUserId(), mode, version))
+                        .switchIfEmpty(Mono.defer(() -> layoutComputationService.computeLayoutReactive(request)
+                            .map(response -> encodedLayoutCache.put(request.getUserId(), mode, version, response))))
+                        .map(encoded -> {
+                            if (baseVersion != null && LayoutController.prefersJson(accept)) {
+                                var patch = layoutDeltaService.delta(request.getUserId(), mode, baseVersion, version, encoded);
+                                if (patch.isPresent()) {
+                                    return ResponseEntity.status(HttpStatus.IM_USED)
+                                        .contentType(APPLICATION_JSON_PATCH)
+                                        .header("IM", "json-patch")
+                                        .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                                        .<Object>body(patch.get());
+                                }
+                            }
+                            return LayoutController.encodedResponse(encoded, accept, acceptEncoding);
+                        })));
+        }).onErrorResume(error -> {
+            logger.error("Reactive layout computation failed: {}", error.getMessage());
+
+            LayoutComputationResponse errorResponse = new LayoutComputationResponse();
+            errorResponse.setComputationSource("error");
+            errorResponse.setComputationTimeMs(0L);
+            return Mono.just(error instanceof IllegalArgumentException
+                ? ResponseEntity.badRequest().body(errorResponse)
+                : ResponseEntity.internalServerError().body(errorResponse));
+        });
+    }
+
+    /**
+     * Active role templates, as summaries unless {@code fields} asks for more.
+     */
+    @GetMapping("/data/role-templates")
+    @Operation(summary = "Active role templates (non-blocking)")
+    public Mono<List<?>> getAllRoleTemplates(@RequestParam(required = false) String fields) {
+        return repository.findActiveTemplates().collectList()
+            .map(templates -> select(templates, RoleTemplateController.SUMMARY_FIELDS, fields));
+    }
+
+    /**
+     * Active AD group overrides by priority, as summaries unless {@code fields} asks for more.
+     */
+    @GetMapping("/data/ad-group-overrides")
+    @Operation(summary = "Active AD group overrides (non-blocking)")
+    public Mono<List<?>> getAllAdGroupOverrides(@RequestParam(required = false) String fields) {
+        return repository.findActiveOverrides().collectList()
+            .map(overrides -> select(overrides, AdGroupOverrideController.SUMMARY_FIELDS, fields));
+    }
+
+    /**
+     * Stored layout for a user: a pending write, the layout cache, then the database. Between soft
+     * and hard expiry the layout is returned with {@code computationSource=stale} and refreshed in
+     * the background, as on the blocking endpoint.
+     */
+    @GetMapping("/data/user-preferences/{userId}")
+    @Operation(summary = "User layout preferences (non-blocking)")
+    @ApiResponse(responseCode = "404", description = "No stored layout within its hard expiry")
+    public Mono<ResponseEntity<UserLayoutPreferences>> getUserPreferences(@PathVariable String userId) {
+        return userLayoutCache.findServableReactive(userId)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    private List<?> select(List<?> entities, Set<String> summaryFields, String fields) {
+        // The summary is the selection with no extra fields
+        return FieldSelection.select(objectMapper, entities, summaryFields, FieldSelection.isSummary(fields) ? "" : fields);
+    }
+}
@@ -1,13 +1,19 @@
 package com.ccaas.entitlement.controller;
 
 import com.ccaas.entitlement.entity.RoleLayoutTemplate;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
 import com.ccaas.entitlement.repository.RoleLayoutTemplateRepository;
+import com.ccaas.entitlement.service.EntitlementSnapshotService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * REST Controller for Role Layout Template operations (Layer 1).
@@ -18,30 +24,61 @@ import java.util.Optional;
 @RequestMapping("/api/v1/data/role-templates")
 public class RoleTemplateController {
 
+    static final Set<String> SUMMARY_FIELDS = Set.of(
+        "id", "roleName", "roleDisplayName", "layoutPriority", "marketApplicable", "environmentTypes",
+        "isActive", "updatedAt");
+
     @Autowired
     private RoleLayoutTemplateRepository repository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    @Autowired
+    private ConditionalResponseSupport conditionalResponses;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Get all active role templates.
+     * 
+     * Returns summaries without the JSONB layout columns unless {@code fields} asks for them
+     * ({@code fields=defaultColumns,availableWidgets} or {@code fields=all}).
      */
     @GetMapping
-    public ResponseEntity<List<RoleLayoutTemplate>> getAllRoleTemplates() {
-        List<RoleLayoutTemplate> templates = repository.findByIsActiveTrue();
-        return ResponseEntity.ok(templates);
+    public ResponseEntity<List<?>> getAllRoleTemplates(
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String version = ConditionalResponseSupport.version(snapshotService.currentTemplateVersion(), fields);
+        return conditionalResponses.respond("role-templates", ifNoneMatch, version, () -> {
+            if (FieldSelection.isSummary(fields)) {
+                return ResponseEntity.ok(repository.findActiveSummaries());
+            }
+            List<RoleLayoutTemplate> templates = repository.findByIsActiveTrue();
+            return ResponseEntity.ok(FieldSelection.select(objectMapper, templates, SUMMARY_FIELDS, fields));
+        });
     }
 
     /**
      * Get role template by name.
      */
     @GetMapping("/name/{roleName}")
-    public ResponseEntity<RoleLayoutTemplate> getRoleTemplateByName(@PathVariable String roleName) {
-        Optional<RoleLayoutTemplate> template = repository.findByRoleNameAndIsActiveTrue(roleName);
-        
-        if (template.isPresent()) {
-            return ResponseEntity.ok(template.get());
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+    public ResponseEntity<RoleLayoutTemplate> getRoleTemplateByName(@PathVariable String roleName,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String version = ConditionalResponseSupport.version(snapshotService.currentTemplateVersion(), roleName);
+        return conditionalResponses.respond("role-templates/name", ifNoneMatch, version, () -> {
+            Optional<RoleLayoutTemplate> template = repository.findByRoleNameAndIsActiveTrue(roleName);
+
+            if (template.isPresent()) {
+                return ResponseEntity.ok(template.get());
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        });
     }
 
     /**
@@ -52,6 +89,7 @@ public class RoleTemplateController {
         template.setIsActive(true);
         
         RoleLayoutTemplate saved = repository.save(template);
+        eventPublisher.publishEvent(EntitlementChangeEvent.templatesChanged(saved.getRoleName()));
         return ResponseEntity.ok(saved);
     }
 
@@ -68,6 +106,7 @@ public class RoleTemplateController {
             template.setRoleName(roleName);
             template.setIsActive(true);
             RoleLayoutTemplate saved = repository.save(template);
+            eventPublisher.publishEvent(EntitlementChangeEvent.templatesChanged(roleName));
             return ResponseEntity.ok(saved);
         } else {
             return ResponseEntity.notFound().build();
@@ -84,6 +123,7 @@ public class RoleTemplateController {
         if (template.isPresent()) {
             template.get().setIsActive(false);
             repository.save(template.get());
+            eventPublisher.publishEvent(EntitlementChangeEvent.templatesChanged(roleName));
             return ResponseEntity.noContent().build();
         } else {
             return ResponseEntity.notFound().build();
@@ -1,8 +1,15 @@
 package com.ccaas.entitlement.controller;
 
 import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
 import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import com.ccaas.entitlement.service.CompactUserLayoutCache;
+import com.ccaas.entitlement.service.UserLayoutCacheService;
+import com.ccaas.entitlement.service.UserLayoutExpiryPolicy;
+import com.ccaas.entitlement.service.UserPreferenceWriteBuffer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,33 +29,70 @@ public class UserPreferenceController {
     @Autowired
     private UserPreferenceCacheRepository repository;
 
+    @Autowired
+    private UserLayoutCacheService userLayoutCache;
+
+    @Autowired
+    private UserLayoutExpiryPolicy expiryPolicy;
+
+    @Autowired
+    private UserPreferenceWriteBuffer writeBuffer;
+
+    @Autowired
+    private CompactUserLayoutCache compactLayoutCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ConditionalResponseSupport conditionalResponses;
+
     /**
      * Get user layout preferences (cached).
      * 
      * This is the primary endpoint for fast user layout retrieval.
-     * Returns cached layout if available and not expired.
+     * Returns cached layout if available and not expired. Between soft and hard expiry the
+     * stored layout is returned with {@code computationSource=stale} and refreshed in the background.
+     * Honours If-None-Match against the entry's {@code lastComputedAt}.
      */
     @GetMapping("/{userId}")
-    public ResponseEntity<UserLayoutPreferences> getUserPreferences(@PathVariable String userId) {
-        Optional<UserLayoutPreferences> preferences = repository.findValidCacheByUserId(userId);
-        
-        if (preferences.isPresent()) {
-            return ResponseEntity.ok(preferences.get());
-        } else {
+    public ResponseEntity<UserLayoutPreferences> getUserPreferences(@PathVariable String userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<LocalDateTime> lastComputedAt = userLayoutCache.findServableLastComputedAt(userId);
+        if (lastComputedAt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+
+        String version = ConditionalResponseSupport.version(userId, lastComputedAt.get());
+        return conditionalResponses.respond("user-preferences", ifNoneMatch, version, () -> {
+            Optional<UserLayoutPreferences> preferences = userLayoutCache.findServable(userId);
+
+            if (preferences.isPresent()) {
+                return ResponseEntity.ok(preferences.get());
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        });
     }
 
     /**
      * Create or update user layout preferences.
+     * The write is buffered and upserted in the next write-behind batch, so it is validated here:
+     * 400 if {@code userId} or {@code computedLayout} is missing, or a JSON column is not valid JSON.
      */
     @PostMapping
-    public ResponseEntity<UserLayoutPreferences> createUserPreferences(@RequestBody UserLayoutPreferences preferences) {
-        // Set cache expiry to 4 hours from now
-        preferences.setCacheExpiry(LocalDateTime.now().plusHours(4));
+    public ResponseEntity<?> createUserPreferences(@RequestBody UserLayoutPreferences preferences) {
+        // Set cache expiry to the TTL (4 hours) from now, jittered to spread expiries
+        preferences.setCacheExpiry(expiryPolicy.nextExpiry());
         preferences.setComputationSource("api");
-        
-        UserLayoutPreferences saved = repository.save(preferences);
+
+        UserLayoutPreferences saved;
+        try {
+            saved = writeBuffer.submit(preferences);
+        } catch (IllegalArgumentException e) {
+            return error(e);
+        }
+        eventPublisher.publishEvent(EntitlementChangeEvent.preferencesChanged(saved.getUserId()));
         return ResponseEntity.ok(saved);
     }
 
@@ -57,16 +101,19 @@ public class UserPreferenceController {
      */
     @DeleteMapping("/{userId}")
     public ResponseEntity<Void> deleteUserPreferences(@PathVariable String userId) {
+        writeBuffer.discard(userId);
         repository.deleteById(userId);
+        eventPublisher.publishEvent(EntitlementChangeEvent.preferencesChanged(userId));
         return ResponseEntity.noContent().build();
     }
 
     /**
-     * Delete expired preferences (cleanup endpoint).
+     * Delete preferences past their hard expiry (cleanup endpoint).
+     * Entries that are only stale are kept so they can still be served while refreshing.
      */
     @DeleteMapping("/expired")
     public ResponseEntity<String> deleteExpiredPreferences() {
-        int deletedCount = repository.deleteExpiredPreferences();
+        int deletedCount = repository.deleteByCacheExpiryBefore(userLayoutCache.hardExpiryCutoff());
         return ResponseEntity.ok("Deleted " + deletedCount + " expired preferences");
     }
 
@@ -83,6 +130,8 @@ public class UserPreferenceController {
             public final long expiredEntries = expiredCount;
             public final long totalEntries = validCount + expiredCount;
             public final double hitRatio = validCount > 0 ? (double) validCount / (validCount + expiredCount) * 100 : 0;
+            public final UserPreferenceWriteBuffer.WriteBehindStats writeBehind = writeBuffer.getStats();
+            public final CompactUserLayoutCache.CompactCacheStats layoutCache = compactLayoutCache.getStats();
         });
     }
 
@@ -107,4 +156,11 @@ public class UserPreferenceController {
             public final LocalDateTime timestamp = LocalDateTime.now();
         });
     }
+
+    private static ResponseEntity<Object> error(IllegalArgumentException e) {
+        String message = e.getMessage();
+        return ResponseEntity.badRequest().body(new Object() {
+            public final String error = message;
+        });
+    }
 }
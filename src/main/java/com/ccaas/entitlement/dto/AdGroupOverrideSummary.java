@@ -0,0 +1,62 @@
+package com.ccaas.entitlement.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only summary of an AD group override, without the JSONB override columns.
+ */
+public class AdGroupOverrideSummary {
+    private final String adGroupHash;
+    private final String adGroupDn;
+    private final String parsedMarket;
+    private final String parsedFunction;
+    private final String parsedEnvironment;
+    private final Integer priority;
+    private final Boolean isActive;
+    private final LocalDateTime updatedAt;
+
+    public AdGroupOverrideSummary(String adGroupHash, String adGroupDn, String parsedMarket,
+                                  String parsedFunction, String parsedEnvironment, Integer priority,
+                                  Boolean isActive, LocalDateTime updatedAt) {
+        this.adGroupHash = adGroupHash;
+        this.adGroupDn = adGroupDn;
+        this.parsedMarket = parsedMarket;
+        this.parsedFunction = parsedFunction;
+        this.parsedEnvironment = parsedEnvironment;
+        this.priority = priority;
+        this.isActive = isActive;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getAdGroupHash() {
+        return adGroupHash;
+    }
+
+    public String getAdGroupDn() {
+        return adGroupDn;
+    }
+
+    public String getParsedMarket() {
+        return parsedMarket;
+    }
+
+    public String getParsedFunction() {
+        return parsedFunction;
+    }
+
+    public String getParsedEnvironment() {
+        return parsedEnvironment;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public Boolean getIsActive() {
+        return isActive;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
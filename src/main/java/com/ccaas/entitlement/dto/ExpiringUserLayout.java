@@ -0,0 +1,23 @@
+package com.ccaas.entitlement.dto;
+
+/**
+ * A user layout due for refresh-ahead: the user and the AD groups stored with the layout,
+ * without the layout columns.
+ */
+public class ExpiringUserLayout {
+    private final String userId;
+    private final String[] adGroups;
+
+    public ExpiringUserLayout(String userId, String[] adGroups) {
+        this.userId = userId;
+        this.adGroups = adGroups;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String[] getAdGroups() {
+        return adGroups;
+    }
+}
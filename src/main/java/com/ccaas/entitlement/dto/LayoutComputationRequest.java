@@ -7,6 +7,8 @@ import java.util.Map;
 public class LayoutComputationRequest {
     private String userId;
     private List<String> adGroups;
+    private String computationMode;
+    private String baseVersion;
 
     public LayoutComputationRequest() {}
 
@@ -30,4 +32,20 @@ public class LayoutComputationRequest {
     public void setAdGroups(List<String> adGroups) {
         this.adGroups = adGroups;
     }
+
+    public String getComputationMode() {
+        return computationMode;
+    }
+
+    public void setComputationMode(String computationMode) {
+        this.computationMode = computationMode;
+    }
+
+    public String getBaseVersion() {
+        return baseVersion;
+    }
+
+    public void setBaseVersion(String baseVersion) {
+        this.baseVersion = baseVersion;
+    }
 }
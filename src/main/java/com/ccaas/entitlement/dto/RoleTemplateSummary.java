@@ -0,0 +1,63 @@
+package com.ccaas.entitlement.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only summary of a role layout template, without the JSONB layout columns.
+ */
+public class RoleTemplateSummary {
+    private final UUID id;
+    private final String roleName;
+    private final String roleDisplayName;
+    private final Integer layoutPriority;
+    private final String[] marketApplicable;
+    private final String[] environmentTypes;
+    private final Boolean isActive;
+    private final LocalDateTime updatedAt;
+
+    public RoleTemplateSummary(UUID id, String roleName, String roleDisplayName, Integer layoutPriority,
+                               String[] marketApplicable, String[] environmentTypes,
+                               Boolean isActive, LocalDateTime updatedAt) {
+        this.id = id;
+        this.roleName = roleName;
+        this.roleDisplayName = roleDisplayName;
+        this.layoutPriority = layoutPriority;
+        this.marketApplicable = marketApplicable;
+        this.environmentTypes = environmentTypes;
+        this.isActive = isActive;
+        this.updatedAt = updatedAt;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getRoleName() {
+        return roleName;
+    }
+
+    public String getRoleDisplayName() {
+        return roleDisplayName;
+    }
+
+    public Integer getLayoutPriority() {
+        return layoutPriority;
+    }
+
+    public String[] getMarketApplicable() {
+        return marketApplicable;
+    }
+
+    public String[] getEnvironmentTypes() {
+        return environmentTypes;
+    }
+
+    public Boolean getIsActive() {
+        return isActive;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
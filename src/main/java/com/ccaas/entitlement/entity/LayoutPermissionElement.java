@@ -0,0 +1,131 @@
+package com.ccaas.entitlement.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity placing a permission decision into the structured layout.
+ *
+ * {@code layoutPath} is dot-separated. With a {@code valueProperty} the node is an object
+ * holding the decision under that name plus {@code attributes}; without one the node itself
+ * is the boolean decision.
+ */
+@Entity
+@Table(name = "layout_permission_elements")
+public class LayoutPermissionElement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "permission_key", length = 200, nullable = false)
+    private String permissionKey;
+
+    @Column(name = "layout_path", length = 200, nullable = false)
+    private String layoutPath;
+
+    @Column(name = "value_property", length = 100)
+    private String valueProperty;
+
+    @Column(name = "attributes", columnDefinition = "jsonb")
+    @JdbcTypeCode(SqlTypes.JSON)
+    private String attributes;
+
+    @Column(name = "is_active", nullable = false)
+    private Boolean isActive = true;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public LayoutPermissionElement() {}
+
+    public LayoutPermissionElement(String permissionKey, String layoutPath, String valueProperty) {
+        this.permissionKey = permissionKey;
+        this.layoutPath = layoutPath;
+        this.valueProperty = valueProperty;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getPermissionKey() {
+        return permissionKey;
+    }
+
+    public void setPermissionKey(String permissionKey) {
+        this.permissionKey = permissionKey;
+    }
+
+    public String getLayoutPath() {
+        return layoutPath;
+    }
+
+    public void setLayoutPath(String layoutPath) {
+        this.layoutPath = layoutPath;
+    }
+
+    public String getValueProperty() {
+        return valueProperty;
+    }
+
+    public void setValueProperty(String valueProperty) {
+        this.valueProperty = valueProperty;
+    }
+
+    public String getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(String attributes) {
+        this.attributes = attributes;
+    }
+
+    public Boolean getIsActive() {
+        return isActive;
+    }
+
+    public void setIsActive(Boolean isActive) {
+        this.isActive = isActive;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,173 @@
+package com.ccaas.entitlement.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a declarative permission rule for the structured layout.
+ *
+ * Grants (or denies) {@code permissionKey} to users whose roles or AD group DNs match,
+ * optionally restricted to one market and/or AD group function. Compiled into a
+ * {@link com.ccaas.entitlement.service.PermissionPlan} at load time.
+ */
+@Entity
+@Table(name = "layout_permission_rules")
+public class LayoutPermissionRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "permission_key", length = 200, nullable = false)
+    private String permissionKey;
+
+    @Column(name = "effect", length = 10, nullable = false)
+    private String effect = "GRANT";
+
+    @Column(name = "subject_type", length = 20, nullable = false)
+    private String subjectType;
+
+    @Column(name = "match_type", length = 20, nullable = false)
+    private String matchType = "EQUALS";
+
+    @Column(name = "match_value", length = 500)
+    private String matchValue;
+
+    @Column(name = "market", length = 10)
+    private String market;
+
+    @Column(name = "function_name", length = 50)
+    private String functionName;
+
+    @Column(name = "description", columnDefinition = "text")
+    private String description;
+
+    @Column(name = "is_active", nullable = false)
+    private Boolean isActive = true;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public LayoutPermissionRule() {}
+
+    public LayoutPermissionRule(String permissionKey, String subjectType, String matchType, String matchValue) {
+        this.permissionKey = permissionKey;
+        this.subjectType = subjectType;
+        this.matchType = matchType;
+        this.matchValue = matchValue;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getPermissionKey() {
+        return permissionKey;
+    }
+
+    public void setPermissionKey(String permissionKey) {
+        this.permissionKey = permissionKey;
+    }
+
+    public String getEffect() {
+        return effect;
+    }
+
+    public void setEffect(String effect) {
+        this.effect = effect;
+    }
+
+    public String getSubjectType() {
+        return subjectType;
+    }
+
+    public void setSubjectType(String subjectType) {
+        this.subjectType = subjectType;
+    }
+
+    public String getMatchType() {
+        return matchType;
+    }
+
+    public void setMatchType(String matchType) {
+        this.matchType = matchType;
+    }
+
+    public String getMatchValue() {
+        return matchValue;
+    }
+
+    public void setMatchValue(String matchValue) {
+        this.matchValue = matchValue;
+    }
+
+    public String getMarket() {
+        return market;
+    }
+
+    public void setMarket(String market) {
+        this.market = market;
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    public void setFunctionName(String functionName) {
+        this.functionName = functionName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Boolean getIsActive() {
+        return isActive;
+    }
+
+    public void setIsActive(Boolean isActive) {
+        this.isActive = isActive;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -41,6 +41,9 @@ public class UserLayoutPreferences {
     @Column(name = "base_roles", columnDefinition = "text[]")
     private String[] baseRoles;
 
+    @Column(name = "ad_groups", columnDefinition = "text[]")
+    private String[] adGroups; // AD groups the layout was computed from
+
     @Column(name = "cache_expiry", nullable = false)
     private LocalDateTime cacheExpiry;
 
@@ -128,6 +131,14 @@ public class UserLayoutPreferences {
         this.baseRoles = baseRoles;
     }
 
+    public String[] getAdGroups() {
+        return adGroups;
+    }
+
+    public void setAdGroups(String[] adGroups) {
+        this.adGroups = adGroups;
+    }
+
     public LocalDateTime getCacheExpiry() {
         return cacheExpiry;
     }
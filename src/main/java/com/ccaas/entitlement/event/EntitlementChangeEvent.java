@@ -0,0 +1,89 @@
+package com.ccaas.entitlement.event;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Application event published whenever entitlement data is written.
+ * 
+ * Carries the natural keys that changed so listeners can work out which
+ * layouts depend on them:
+ * - AD_GROUP_OVERRIDE: AD group DNs, or scope DNs for inherited overrides
+ * - ROLE_TEMPLATE: role names
+ * - USER_PREFERENCE: user IDs
+ * - PERMISSION_RULE: permission keys
+ */
+public class EntitlementChangeEvent {
+
+    public enum ChangeType {
+        AD_GROUP_OVERRIDE,
+        ROLE_TEMPLATE,
+        USER_PREFERENCE,
+        PERMISSION_RULE
+    }
+
+    private final ChangeType changeType;
+    private final Set<String> keys;
+
+    public EntitlementChangeEvent(ChangeType changeType, Collection<String> keys) {
+        this.changeType = changeType;
+        Set<String> nonNullKeys = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (key != null) {
+                nonNullKeys.add(key);
+            }
+        }
+        this.keys = Set.copyOf(nonNullKeys);
+    }
+
+    public static EntitlementChangeEvent overridesChanged(String... adGroupDns) {
+        return new EntitlementChangeEvent(ChangeType.AD_GROUP_OVERRIDE, Arrays.asList(adGroupDns));
+    }
+
+    public static EntitlementChangeEvent overridesChanged(Collection<String> adGroupDns) {
+        return new EntitlementChangeEvent(ChangeType.AD_GROUP_OVERRIDE, adGroupDns);
+    }
+
+    public static EntitlementChangeEvent templatesChanged(String... roleNames) {
+        return new EntitlementChangeEvent(ChangeType.ROLE_TEMPLATE, Arrays.asList(roleNames));
+    }
+
+    public static EntitlementChangeEvent preferencesChanged(String... userIds) {
+        return new EntitlementChangeEvent(ChangeType.USER_PREFERENCE, Arrays.asList(userIds));
+    }
+
+    public static EntitlementChangeEvent permissionRulesChanged(String... permissionKeys) {
+        return new EntitlementChangeEvent(ChangeType.PERMISSION_RULE, Arrays.asList(permissionKeys));
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public Set<String> getKeys() {
+        return keys;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EntitlementChangeEvent that)) return false;
+        return changeType == that.changeType && keys.equals(that.keys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(changeType, keys);
+    }
+
+    @Override
+    public String toString() {
+        return "EntitlementChangeEvent{" +
+                "changeType=" + changeType +
+                ", keys=" + keys +
+                '}';
+    }
+}
@@ -1,5 +1,6 @@
 package com.ccaas.entitlement.repository;
 
+import com.ccaas.entitlement.dto.AdGroupOverrideSummary;
 import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -42,16 +43,19 @@ public interface AdGroupOverrideRepository extends JpaRepository<AdGroupLayoutOv
     /**
      * Find overrides by parsed market.
      */
+    @ReadOnlyQuery
     List<AdGroupLayoutOverride> findByParsedMarketAndIsActiveTrueOrderByPriorityAsc(String parsedMarket);
 
     /**
      * Find overrides by parsed function.
      */
+    @ReadOnlyQuery
     List<AdGroupLayoutOverride> findByParsedFunctionAndIsActiveTrueOrderByPriorityAsc(String parsedFunction);
 
     /**
      * Find overrides by parsed environment.
      */
+    @ReadOnlyQuery
     List<AdGroupLayoutOverride> findByParsedEnvironmentAndIsActiveTrueOrderByPriorityAsc(String parsedEnvironment);
 
     /**
@@ -69,8 +73,37 @@ public interface AdGroupOverrideRepository extends JpaRepository<AdGroupLayoutOv
     /**
      * Find all active overrides ordered by priority.
      */
+    @ReadOnlyQuery
     List<AdGroupLayoutOverride> findByIsActiveTrueOrderByPriorityAsc();
 
+    /**
+     * Summaries of all active overrides ordered by priority (no JSONB columns).
+     */
+    @ReadOnlyQuery
+    @Query("SELECT new com.ccaas.entitlement.dto.AdGroupOverrideSummary(ago.adGroupHash, ago.adGroupDn, ago.parsedMarket, ago.parsedFunction, ago.parsedEnvironment, ago.priority, ago.isActive, ago.updatedAt) FROM AdGroupLayoutOverride ago WHERE ago.isActive = true ORDER BY ago.priority ASC")
+    List<AdGroupOverrideSummary> findActiveSummaries();
+
+    /**
+     * Summaries of active overrides by parsed market (no JSONB columns).
+     */
+    @ReadOnlyQuery
+    @Query("SELECT new com.ccaas.entitlement.dto.AdGroupOverrideSummary(ago.adGroupHash, ago.adGroupDn, ago.parsedMarket, ago.parsedFunction, ago.parsedEnvironment, ago.priority, ago.isActive, ago.updatedAt) FROM AdGroupLayoutOverride ago WHERE ago.parsedMarket = :market AND ago.isActive = true ORDER BY ago.priority ASC")
+    List<AdGroupOverrideSummary> findActiveSummariesByMarket(@Param("market") String market);
+
+    /**
+     * Summaries of active overrides by parsed function (no JSONB columns).
+     */
+    @ReadOnlyQuery
+    @Query("SELECT new com.ccaas.entitlement.dto.AdGroupOverrideSummary(ago.adGroupHash, ago.adGroupDn, ago.parsedMarket, ago.parsedFunction, ago.parsedEnvironment, ago.priority, ago.isActive, ago.updatedAt) FROM AdGroupLayoutOverride ago WHERE ago.parsedFunction = :function AND ago.isActive = true ORDER BY ago.priority ASC")
+    List<AdGroupOverrideSummary> findActiveSummariesByFunction(@Param("function") String function);
+
+    /**
+     * Summaries of active overrides by parsed environment (no JSONB columns).
+     */
+    @ReadOnlyQuery
+    @Query("SELECT new com.ccaas.entitlement.dto.AdGroupOverrideSummary(ago.adGroupHash, ago.adGroupDn, ago.parsedMarket, ago.parsedFunction, ago.parsedEnvironment, ago.priority, ago.isActive, ago.updatedAt) FROM AdGroupLayoutOverride ago WHERE ago.parsedEnvironment = :environment AND ago.isActive = true ORDER BY ago.priority ASC")
+    List<AdGroupOverrideSummary> findActiveSummariesByEnvironment(@Param("environment") String environment);
+
     /**
      * Count active overrides by market.
      */
@@ -80,4 +113,12 @@ public interface AdGroupOverrideRepository extends JpaRepository<AdGroupLayoutOv
      * Find overrides with priority less than specified value.
      */
     List<AdGroupLayoutOverride> findByPriorityLessThanAndIsActiveTrueOrderByPriorityAsc(Integer priority);
+
+    /**
+     * Version stamp of the table: row count and latest update time.
+     * Changes whenever an override is created, updated or soft-deleted. Every writer (entity
+     * callbacks and bulk import) stamps {@code updatedAt} from the application clock.
+     */
+    @Query("SELECT CONCAT(CAST(COUNT(ago) AS String), ':', COALESCE(CAST(MAX(ago.updatedAt) AS String), '')) FROM AdGroupLayoutOverride ago")
+    String getVersionStamp();
 }
@@ -110,4 +110,18 @@ public interface LayoutComputationRepository extends JpaRepository<LayoutComputa
                    "FROM layout_computation_audit " +
                    "WHERE created_at > :since", nativeQuery = true)
     Object[] getComputationTimePercentiles(@Param("since") LocalDateTime since);
+
+    /**
+     * Compute a user's layout in a single round trip using the {@code compute_user_layout}
+     * database function. Returns a JSON object whose values are the JSON text of each layout part.
+     * {@code roleMarkets} and {@code roleEnvironments} give the market and environment each role
+     * is held in (null if unknown) and select the template that applies there.
+     */
+    @Query(value = "SELECT CAST(compute_user_layout(:userId, :adGroups, :roles, :roleMarkets, :roleEnvironments) AS text)",
+           nativeQuery = true)
+    String computeUserLayout(@Param("userId") String userId,
+                             @Param("adGroups") String[] adGroups,
+                             @Param("roles") String[] roles,
+                             @Param("roleMarkets") String[] roleMarkets,
+                             @Param("roleEnvironments") String[] roleEnvironments);
 }
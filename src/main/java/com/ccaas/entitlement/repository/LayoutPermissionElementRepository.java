@@ -0,0 +1,30 @@
+package com.ccaas.entitlement.repository;
+
+import com.ccaas.entitlement.entity.LayoutPermissionElement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for LayoutPermissionElement entity operations.
+ */
+@Repository
+public interface LayoutPermissionElementRepository extends JpaRepository<LayoutPermissionElement, Long> {
+
+    /**
+     * Find all active layout permission elements in creation order.
+     */
+    @ReadOnlyQuery
+    List<LayoutPermissionElement> findByIsActiveTrueOrderByIdAsc();
+
+    Optional<LayoutPermissionElement> findByIdAndIsActiveTrue(Long id);
+
+    /**
+     * Version stamp of the table: row count and latest update time.
+     */
+    @Query("SELECT CONCAT(CAST(COUNT(lpe) AS String), ':', COALESCE(CAST(MAX(lpe.updatedAt) AS String), '')) FROM LayoutPermissionElement lpe")
+    String getVersionStamp();
+}
@@ -0,0 +1,30 @@
+package com.ccaas.entitlement.repository;
+
+import com.ccaas.entitlement.entity.LayoutPermissionRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for LayoutPermissionRule entity operations.
+ */
+@Repository
+public interface LayoutPermissionRuleRepository extends JpaRepository<LayoutPermissionRule, Long> {
+
+    /**
+     * Find all active permission rules in creation order.
+     */
+    @ReadOnlyQuery
+    List<LayoutPermissionRule> findByIsActiveTrueOrderByIdAsc();
+
+    Optional<LayoutPermissionRule> findByIdAndIsActiveTrue(Long id);
+
+    /**
+     * Version stamp of the table: row count and latest update time.
+     */
+    @Query("SELECT CONCAT(CAST(COUNT(lpr) AS String), ':', COALESCE(CAST(MAX(lpr.updatedAt) AS String), '')) FROM LayoutPermissionRule lpr")
+    String getVersionStamp();
+}
@@ -0,0 +1,194 @@
+package com.ccaas.entitlement.repository;
+
+import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.entity.RoleLayoutTemplate;
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Non-blocking reads of the three entitlement tables over R2DBC, for the reactive endpoints
+ * ({@code entitlement.reactive.enabled}).
+ *
+ * Uses its own connection pool next to Hikari. The pool is deliberately not a
+ * {@code ConnectionFactory} bean, so the JDBC/JPA auto-configuration and the single
+ * transaction manager are unaffected. Rows map onto the JPA entity classes (detached).
+ * Connects to {@code spring.datasource} unless {@code entitlement.reactive.url} is set.
+ */
+@Repository
+@ConditionalOnProperty(name = "entitlement.reactive.enabled", havingValue = "true")
+public class ReactiveEntitlementRepository {
+
+    private static final String PREFERENCE_COLUMNS = "user_id, user_email, computed_layout, market_theme, "
+        + "effective_permissions, primary_market, base_roles, ad_groups, cache_expiry, last_computed_at, computation_source";
+
+    private final ConnectionPool pool;
+    private final DatabaseClient client;
+
+    public ReactiveEntitlementRepository(@Value("${entitlement.reactive.url:}") String url,
+                                         @Value("${spring.datasource.url}") String jdbcUrl,
+                                         @Value("${entitlement.reactive.username:${spring.datasource.username}}") String username,
+                                         @Value("${entitlement.reactive.password:${spring.datasource.password}}") String password,
+                                         @Value("${entitlement.reactive.pool.initial-size:5}") int initialSize,
+                                         @Value("${entitlement.reactive.pool.max-size:20}") int maxSize,
+                                         @Value("${entitlement.reactive.pool.max-acquire-time-ms:2000}") long maxAcquireTimeMs,
+                                         MeterRegistry meterRegistry) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url.isBlank() ? r2dbcUrl(jdbcUrl) : url).mutate()
+            .option(ConnectionFactoryOptions.USER, username)
+            .option(ConnectionFactoryOptions.PASSWORD, password)
+            .build();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+            .name("EntitlementR2dbcPool")
+            .initialSize(initialSize)
+            .maxSize(maxSize)
+            .maxAcquireTime(Duration.ofMillis(maxAcquireTimeMs))
+            .maxIdleTime(Duration.ofSeconds(30))
+            .build());
+        this.client = DatabaseClient.create(pool);
+
+        pool.getMetrics().ifPresent(metrics -> {
+            Gauge.builder("entitlement.reactive.pool.acquired", metrics, m -> m.acquiredSize())
+                .description("R2DBC connections in use")
+                .register(meterRegistry);
+            Gauge.builder("entitlement.reactive.pool.pending", metrics, m -> m.pendingAcquireSize())
+                .description("Requests waiting for an R2DBC connection")
+                .register(meterRegistry);
+        });
+    }
+
+    /**
+     * Stored layout for a user regardless of expiry, like {@code findByUserId}; callers apply the
+     * soft and hard expiry.
+     */
+    public Mono<UserLayoutPreferences> findPreferences(String userId) {
+        return client.sql("SELECT " + PREFERENCE_COLUMNS + " FROM user_layout_preferences WHERE user_id = $1")
+            .bind(0, userId)
+            .map(ReactiveEntitlementRepository::toPreferences)
+            .one();
+    }
+
+    /**
+     * Last computation time regardless of expiry, without loading the layout columns.
+     */
+    public Mono<LocalDateTime> findLastComputedAt(String userId) {
+        return client.sql("SELECT last_computed_at FROM user_layout_preferences WHERE user_id = $1")
+            .bind(0, userId)
+            .map(row -> row.get(0, LocalDateTime.class))
+            .one();
+    }
+
+    public Flux<RoleLayoutTemplate> findActiveTemplates() {
+        return client.sql("SELECT id, role_name, role_display_name, role_description, default_columns, available_widgets, "
+                + "default_actions, settings_access, default_theme, layout_priority, market_applicable, environment_types, "
+                + "is_active, created_at, updated_at FROM role_layout_templates WHERE is_active = true")
+            .map(ReactiveEntitlementRepository::toTemplate)
+            .all();
+    }
+
+    public Flux<AdGroupLayoutOverride> findActiveOverrides() {
+        return client.sql("SELECT ad_group_hash, ad_group_dn, parsed_market, parsed_function, parsed_environment, "
+                + "layout_overrides, data_restrictions, visual_customizations, priority, is_active, created_at, updated_at "
+                + "FROM ad_group_layout_overrides WHERE is_active = true ORDER BY priority ASC")
+            .map(ReactiveEntitlementRepository::toOverride)
+            .all();
+    }
+
+    /**
+     * Same database function as the JDBC {@code database_function} mode.
+     */
+    public Mono<String> computeUserLayout(String userId, String[] adGroups, String[] roles,
+                                          String[] roleMarkets, String[] roleEnvironments) {
+        return client.sql("SELECT compute_user_layout($1, $2, $3, $4, $5)::text")
+            .bind(0, userId)
+            .bind(1, adGroups)
+            .bind(2, roles)
+            .bind(3, roleMarkets)
+            .bind(4, roleEnvironments)
+            .map(row -> row.get(0, String.class))
+            .one();
+    }
+
+    /**
+     * The R2DBC form of a {@code jdbc:postgresql://} URL: same host, port, database and options.
+     */
+    static String r2dbcUrl(String jdbcUrl) {
+        if (!jdbcUrl.startsWith("jdbc:")) {
+            throw new IllegalArgumentException("Not a JDBC URL: " + jdbcUrl);
+        }
+        return "r2dbc:" + jdbcUrl.substring("jdbc:".length());
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.dispose();
+    }
+
+    private static UserLayoutPreferences toPreferences(Readable row) {
+        UserLayoutPreferences preferences = new UserLayoutPreferences();
+        preferences.setUserId(row.get("user_id", String.class));
+        preferences.setUserEmail(row.get("user_email", String.class));
+        preferences.setComputedLayout(row.get("computed_layout", String.class));
+        preferences.setMarketTheme(row.get("market_theme", String.class));
+        preferences.setEffectivePermissions(row.get("effective_permissions", String.class));
+        preferences.setPrimaryMarket(row.get("primary_market", String.class));
+        preferences.setBaseRoles(row.get("base_roles", String[].class));
+        preferences.setAdGroups(row.get("ad_groups", String[].class));
+        preferences.setCacheExpiry(row.get("cache_expiry", LocalDateTime.class));
+        preferences.setLastComputedAt(row.get("last_computed_at", LocalDateTime.class));
+        preferences.setComputationSource(row.get("computation_source", String.class));
+        return preferences;
+    }
+
+    private static RoleLayoutTemplate toTemplate(Readable row) {
+        RoleLayoutTemplate template = new RoleLayoutTemplate();
+        template.setId(row.get("id", UUID.class));
+        template.setRoleName(row.get("role_name", String.class));
+        template.setRoleDisplayName(row.get("role_display_name", String.class));
+        template.setRoleDescription(row.get("role_description", String.class));
+        template.setDefaultColumns(row.get("default_columns", String.class));
+        template.setAvailableWidgets(row.get("available_widgets", String.class));
+        template.setDefaultActions(row.get("default_actions", String.class));
+        template.setSettingsAccess(row.get("settings_access", String.class));
+        template.setDefaultTheme(row.get("default_theme", String.class));
+        template.setLayoutPriority(row.get("layout_priority", Integer.class));
+        template.setMarketApplicable(row.get("market_applicable", String[].class));
+        template.setEnvironmentTypes(row.get("environment_types", String[].class));
+        template.setIsActive(row.get("is_active", Boolean.class));
+        template.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        template.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        return template;
+    }
+
+    private static AdGroupLayoutOverride toOverride(Readable row) {
+        AdGroupLayoutOverride override = new AdGroupLayoutOverride();
+        override.setAdGroupHash(row.get("ad_group_hash", String.class));
+        override.setAdGroupDn(row.get("ad_group_dn", String.class));
+        override.setParsedMarket(row.get("parsed_market", String.class));
+        override.setParsedFunction(row.get("parsed_function", String.class));
+        override.setParsedEnvironment(row.get("parsed_environment", String.class));
+        override.setLayoutOverrides(row.get("layout_overrides", String.class));
+        override.setDataRestrictions(row.get("data_restrictions", String.class));
+        override.setVisualCustomizations(row.get("visual_customizations", String.class));
+        override.setPriority(row.get("priority", Integer.class));
+        override.setIsActive(row.get("is_active", Boolean.class));
+        override.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        override.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        return override;
+    }
+}
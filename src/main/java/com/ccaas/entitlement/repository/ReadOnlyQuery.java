@@ -0,0 +1,25 @@
+package com.ccaas.entitlement.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Query hints for bulk reads of reference data: entities are loaded read-only (no snapshot kept
+ * for dirty checking) and rows are fetched from the driver 500 at a time.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@QueryHints({
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500")
+})
+public @interface ReadOnlyQuery {
+}
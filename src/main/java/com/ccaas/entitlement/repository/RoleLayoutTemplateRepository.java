@@ -1,5 +1,6 @@
 package com.ccaas.entitlement.repository;
 
+import com.ccaas.entitlement.dto.RoleTemplateSummary;
 import com.ccaas.entitlement.entity.RoleLayoutTemplate;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -20,8 +21,16 @@ public interface RoleLayoutTemplateRepository extends JpaRepository<RoleLayoutTe
     /**
      * Find all active role templates.
      */
+    @ReadOnlyQuery
     List<RoleLayoutTemplate> findByIsActiveTrue();
 
+    /**
+     * Summaries of all active role templates (no JSONB columns).
+     */
+    @ReadOnlyQuery
+    @Query("SELECT new com.ccaas.entitlement.dto.RoleTemplateSummary(rlt.id, rlt.roleName, rlt.roleDisplayName, rlt.layoutPriority, rlt.marketApplicable, rlt.environmentTypes, rlt.isActive, rlt.updatedAt) FROM RoleLayoutTemplate rlt WHERE rlt.isActive = true")
+    List<RoleTemplateSummary> findActiveSummaries();
+
     /**
      * Find role template by name (case-insensitive).
      */
@@ -37,4 +46,11 @@ public interface RoleLayoutTemplateRepository extends JpaRepository<RoleLayoutTe
      * Count active role templates.
      */
     long countByIsActiveTrue();
+
+    /**
+     * Version stamp of the table: row count and latest update time.
+     * Changes whenever a template is created, updated or soft-deleted.
+     */
+    @Query("SELECT CONCAT(CAST(COUNT(rlt) AS String), ':', COALESCE(CAST(MAX(rlt.updatedAt) AS String), '')) FROM RoleLayoutTemplate rlt")
+    String getVersionStamp();
 }
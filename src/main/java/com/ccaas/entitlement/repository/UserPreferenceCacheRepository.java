@@ -1,11 +1,15 @@
 package com.ccaas.entitlement.repository;
 
+import com.ccaas.entitlement.dto.ExpiringUserLayout;
 import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -27,6 +31,26 @@ public interface UserPreferenceCacheRepository extends JpaRepository<UserLayoutP
     @Query("SELECT ulp FROM UserLayoutPreferences ulp WHERE ulp.userId = :userId AND ulp.cacheExpiry > CURRENT_TIMESTAMP ORDER BY ulp.lastComputedAt DESC")
     Optional<UserLayoutPreferences> findValidCacheByUserId(@Param("userId") String userId);
 
+    /**
+     * Find last computation time for a valid cache entry without loading the layout columns.
+     */
+    @Query("SELECT ulp.lastComputedAt FROM UserLayoutPreferences ulp WHERE ulp.userId = :userId AND ulp.cacheExpiry > CURRENT_TIMESTAMP")
+    Optional<LocalDateTime> findValidLastComputedAtByUserId(@Param("userId") String userId);
+
+    /**
+     * Find last computation time regardless of expiry without loading the layout columns.
+     */
+    @Query("SELECT ulp.lastComputedAt FROM UserLayoutPreferences ulp WHERE ulp.userId = :userId")
+    Optional<LocalDateTime> findLastComputedAtByUserId(@Param("userId") String userId);
+
+    /**
+     * Find last computation time for an entry whose soft expiry is after the given instant.
+     * Used with the hard-expiry cutoff so stale entries still carry a version.
+     */
+    @Query("SELECT ulp.lastComputedAt FROM UserLayoutPreferences ulp WHERE ulp.userId = :userId AND ulp.cacheExpiry > :cutoff")
+    Optional<LocalDateTime> findLastComputedAtByUserIdAndCacheExpiryAfter(@Param("userId") String userId,
+                                                                          @Param("cutoff") LocalDateTime cutoff);
+
     /**
      * Find cache by user ID regardless of expiry.
      */
@@ -45,6 +69,14 @@ public interface UserPreferenceCacheRepository extends JpaRepository<UserLayoutP
     @Query("DELETE FROM UserLayoutPreferences ulp WHERE ulp.cacheExpiry < CURRENT_TIMESTAMP")
     int deleteExpiredPreferences();
 
+    /**
+     * Delete cache entries whose soft expiry is before the given instant.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM UserLayoutPreferences ulp WHERE ulp.cacheExpiry < :cutoff")
+    int deleteByCacheExpiryBefore(@Param("cutoff") LocalDateTime cutoff);
+
     /**
      * Find cache entries by computation source.
      */
@@ -82,6 +114,13 @@ public interface UserPreferenceCacheRepository extends JpaRepository<UserLayoutP
      */
     Optional<UserLayoutPreferences> findByUserEmail(String userEmail);
 
+    /**
+     * Entries whose soft expiry is after the cutoff, most recently computed first.
+     * Used to warm the layout cache on startup.
+     */
+    @Query("SELECT ulp FROM UserLayoutPreferences ulp WHERE ulp.cacheExpiry > :cutoff ORDER BY ulp.lastComputedAt DESC, ulp.userId")
+    Slice<UserLayoutPreferences> findRecentlyComputed(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
     /**
      * Find cache entries by multiple user IDs.
      */
@@ -100,4 +139,22 @@ public interface UserPreferenceCacheRepository extends JpaRepository<UserLayoutP
      */
     @Query("SELECT ulp FROM UserLayoutPreferences ulp WHERE ulp.cacheExpiry BETWEEN CURRENT_TIMESTAMP AND :expiryThreshold")
     List<UserLayoutPreferences> findCacheExpiringWithin(@Param("expiryThreshold") LocalDateTime expiryThreshold);
+
+    /**
+     * One page of user IDs and stored AD groups of entries expiring between now and the threshold,
+     * soonest first, without loading the layout columns. The page size is the query's LIMIT.
+     */
+    @Query("SELECT new com.ccaas.entitlement.dto.ExpiringUserLayout(ulp.userId, ulp.adGroups) FROM UserLayoutPreferences ulp WHERE ulp.cacheExpiry BETWEEN CURRENT_TIMESTAMP AND :expiryThreshold ORDER BY ulp.cacheExpiry, ulp.userId")
+    Slice<ExpiringUserLayout> findUsersExpiringWithin(@Param("expiryThreshold") LocalDateTime expiryThreshold, Pageable pageable);
+
+    /**
+     * Count unexpired entries per expiry bucket, bucket 0 starting now.
+     * Returns rows of (bucket index, entry count).
+     */
+    @Query(value = "SELECT CAST(FLOOR(EXTRACT(EPOCH FROM (cache_expiry - LOCALTIMESTAMP)) / :bucketSeconds) AS integer) AS bucket, " +
+                   "COUNT(*) AS entries " +
+                   "FROM user_layout_preferences " +
+                   "WHERE cache_expiry > LOCALTIMESTAMP " +
+                   "GROUP BY 1 ORDER BY 1", nativeQuery = true)
+    List<Object[]> countByExpiryBucket(@Param("bucketSeconds") long bucketSeconds);
 }
@@ -0,0 +1,160 @@
+package com.ccaas.entitlement.service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Market, function and environment encoded in an AD group DN's common name, and the scope DNs
+ * that inherited overrides are stored under.
+ *
+ * The CN is split on {@code -}, {@code _} and spaces, e.g.
+ * {@code CN=Voice-Manager-US-PROD,OU=Voice,...} has market {@code US}, function {@code VOICE}
+ * (the first token that is neither a market nor an environment) and environment
+ * {@code PRODUCTION}. Environment aliases are normalised to the names used in
+ * {@code role_layout_templates.environment_types} and {@code parsed_environment}.
+ *
+ * A scope DN names a level of the override hierarchy rather than an AD group:
+ * {@code SCOPE=EMEA} (market-wide), {@code SCOPE=EMEA/SALES} (market and function) and
+ * {@code SCOPE=EMEA/SALES/PRODUCTION} (market, function and environment).
+ */
+public final class AdGroupDns {
+
+    public static final String SCOPE_PREFIX = "SCOPE=";
+
+    private static final Set<String> MARKETS = Set.of("EMEA", "UK", "US", "APAC");
+
+    private static final Map<String, String> ENVIRONMENTS = Map.ofEntries(
+        Map.entry("PROD", "PRODUCTION"),
+        Map.entry("PRD", "PRODUCTION"),
+        Map.entry("PRODUCTION", "PRODUCTION"),
+        Map.entry("STG", "STAGING"),
+        Map.entry("STAGE", "STAGING"),
+        Map.entry("STAGING", "STAGING"),
+        Map.entry("UAT", "UAT"),
+        Map.entry("SIT", "SIT"),
+        Map.entry("DEV", "DEVELOPMENT"),
+        Map.entry("DEVELOPMENT", "DEVELOPMENT"),
+        Map.entry("TST", "TEST"),
+        Map.entry("TEST", "TEST"));
+
+    private AdGroupDns() {
+    }
+
+    /**
+     * Market token in the DN's CN, or null if there is none.
+     */
+    public static String market(String adGroupDn) {
+        for (String token : cnTokens(adGroupDn)) {
+            if (MARKETS.contains(token)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Function token in the DN's CN: the first token that is neither a market nor an
+     * environment, or null if there is none.
+     */
+    public static String function(String adGroupDn) {
+        for (String token : cnTokens(adGroupDn)) {
+            if (!token.isEmpty() && !MARKETS.contains(token) && !ENVIRONMENTS.containsKey(token)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Normalised environment token in the DN's CN, or null if there is none.
+     */
+    public static String environment(String adGroupDn) {
+        for (String token : cnTokens(adGroupDn)) {
+            String environment = ENVIRONMENTS.get(token);
+            if (environment != null) {
+                return environment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Canonical form of an environment name ({@code PROD} to {@code PRODUCTION}); unknown names
+     * are upper-cased and kept.
+     */
+    public static String normalizeEnvironment(String environment) {
+        if (environment == null || environment.isBlank()) {
+            return null;
+        }
+        String upper = environment.trim().toUpperCase(Locale.ROOT);
+        return ENVIRONMENTS.getOrDefault(upper, upper);
+    }
+
+    /**
+     * Whether a DN is a scope DN ({@code SCOPE=...}).
+     */
+    public static boolean isScope(String dn) {
+        return dn != null && dn.regionMatches(true, 0, SCOPE_PREFIX, 0, SCOPE_PREFIX.length());
+    }
+
+    /**
+     * Scope DN for a market, optionally narrowed to a function and then an environment.
+     * Null if there is no market, or an environment without a function.
+     */
+    public static String scopeDn(String market, String function, String environment) {
+        if (market == null || (function == null && environment != null)) {
+            return null;
+        }
+        StringBuilder dn = new StringBuilder(SCOPE_PREFIX).append(market.trim().toUpperCase(Locale.ROOT));
+        if (function != null) {
+            dn.append('/').append(function.trim().toUpperCase(Locale.ROOT));
+            if (environment != null) {
+                dn.append('/').append(normalizeEnvironment(environment));
+            }
+        }
+        return dn.toString();
+    }
+
+    /**
+     * Canonical form of a scope DN: upper case, environment normalised.
+     *
+     * @return the parts of the canonical scope: market, then function and environment if present
+     * @throws IllegalArgumentException if it is not of the form {@code SCOPE=MARKET[/FUNCTION[/ENVIRONMENT]]}
+     */
+    public static String[] parseScope(String scopeDn) {
+        String[] parts = isScope(scopeDn) ? scopeDn.substring(SCOPE_PREFIX.length()).split("/", -1) : new String[0];
+        if (parts.length == 0 || parts.length > 3) {
+            throw new IllegalArgumentException("Scope DN must be SCOPE=MARKET[/FUNCTION[/ENVIRONMENT]]: " + scopeDn);
+        }
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].isBlank()) {
+                throw new IllegalArgumentException("Scope DN has an empty part: " + scopeDn);
+            }
+            parts[i] = i == 2 ? normalizeEnvironment(parts[i]) : parts[i].trim().toUpperCase(Locale.ROOT);
+        }
+        return parts;
+    }
+
+    /**
+     * Canonical form of a scope DN.
+     *
+     * @throws IllegalArgumentException if it is not a valid scope DN
+     */
+    public static String canonicalScopeDn(String scopeDn) {
+        String[] parts = parseScope(scopeDn);
+        return scopeDn(parts[0], parts.length > 1 ? parts[1] : null, parts.length > 2 ? parts[2] : null);
+    }
+
+    private static String[] cnTokens(String adGroupDn) {
+        String cn = adGroupDn;
+        int comma = cn.indexOf(',');
+        if (comma >= 0) {
+            cn = cn.substring(0, comma);
+        }
+        if (cn.regionMatches(true, 0, "CN=", 0, 3)) {
+            cn = cn.substring(3);
+        }
+        return cn.toUpperCase(Locale.ROOT).split("[-_ ]+");
+    }
+}
@@ -0,0 +1,26 @@
+package com.ccaas.entitlement.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Derivation of {@code ad_group_hash}, the primary key of ad_group_layout_overrides.
+ *
+ * The hash is the lowercase hex SHA-256 of the AD group DN's UTF-8 bytes (64 characters).
+ */
+public final class AdGroupHashes {
+
+    private AdGroupHashes() {
+    }
+
+    public static String hash(String adGroupDn) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(adGroupDn.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
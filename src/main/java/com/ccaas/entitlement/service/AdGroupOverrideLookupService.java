@@ -0,0 +1,113 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.repository.AdGroupOverrideRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Bulk AD group override lookup by DN.
+ *
+ * DNs are served from the in-process {@link EntitlementSnapshot} first. Remaining DNs are
+ * hashed to {@code ad_group_hash} and fetched by primary key in chunked IN lists,
+ * keeping each statement small enough for the Postgres planner to use the PK index.
+ * {@code ad_group_hash} is only conventionally the SHA-256 of the DN (clients may choose
+ * their own), so DNs the hashes miss are then fetched by DN through the active-DN index.
+ * Results are handed to a {@link BulkLookupListener} as they are found, so callers decide
+ * whether to collect or forward them.
+ */
+@Service
+public class AdGroupOverrideLookupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdGroupOverrideLookupService.class);
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    @Autowired
+    private AdGroupOverrideRepository repository;
+
+    @Value("${entitlement.bulk-lookup.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Look up active overrides for the given DNs, reporting each match to the listener.
+     */
+    public BulkLookupSummary lookup(List<String> adGroupDns, BulkLookupListener listener) {
+        long startTime = System.currentTimeMillis();
+        Set<String> requested = new LinkedHashSet<>(adGroupDns);
+
+        // Step 1: Serve from the in-process snapshot
+        EntitlementSnapshot snapshot = snapshotService.getSnapshot();
+        Map<String, String> pendingDnsByHash = new LinkedHashMap<>();
+        int cacheHits = 0;
+        for (String adGroupDn : requested) {
+            Optional<AdGroupLayoutOverride> override = snapshot.findOverrideByDn(adGroupDn);
+            if (override.isPresent()) {
+                listener.onFound(override.get());
+                cacheHits++;
+            } else {
+                pendingDnsByHash.put(AdGroupHashes.hash(adGroupDn), adGroupDn);
+            }
+        }
+
+        // Step 2: Fetch the rest by primary key in chunks
+        List<String> hashes = new ArrayList<>(pendingDnsByHash.keySet());
+        int databaseHits = 0;
+        for (int from = 0; from < hashes.size(); from += chunkSize) {
+            List<String> chunk = hashes.subList(from, Math.min(from + chunkSize, hashes.size()));
+            for (AdGroupLayoutOverride override : repository.findByAdGroupHashInAndIsActiveTrue(chunk)) {
+                pendingDnsByHash.remove(override.getAdGroupHash());
+                listener.onFound(override);
+                databaseHits++;
+            }
+        }
+
+        // Step 3: Rows keyed by a hash that is not sha256(dn), e.g. the seed data, by DN in chunks
+        List<String> unmatchedDns = new ArrayList<>(pendingDnsByHash.values());
+        Set<String> missingDns = new LinkedHashSet<>(unmatchedDns);
+        for (int from = 0; from < unmatchedDns.size(); from += chunkSize) {
+            List<String> chunk = unmatchedDns.subList(from, Math.min(from + chunkSize, unmatchedDns.size()));
+            for (AdGroupLayoutOverride override : repository.findByAdGroupDnInAndIsActiveTrue(chunk)) {
+                missingDns.remove(override.getAdGroupDn());
+                listener.onFound(override);
+                databaseHits++;
+            }
+        }
+
+        BulkLookupSummary summary = new BulkLookupSummary(
+            requested.size(), cacheHits, databaseHits, List.copyOf(missingDns));
+        logger.debug("Bulk lookup of {} DNs: {} from cache, {} from database, {} missing in {}ms",
+                    summary.requestedCount(), cacheHits, databaseHits, summary.missingCount(),
+                    System.currentTimeMillis() - startTime);
+        return summary;
+    }
+
+    /**
+     * Receives overrides as a bulk lookup finds them.
+     */
+    @FunctionalInterface
+    public interface BulkLookupListener {
+        void onFound(AdGroupLayoutOverride override);
+    }
+
+    /**
+     * Counts for a completed bulk lookup. {@code requestedCount} counts distinct DNs.
+     */
+    public record BulkLookupSummary(int requestedCount, int cacheHitCount, int databaseHitCount,
+                                    List<String> missingDns) {
+
+        public int foundCount() {
+            return cacheHitCount + databaseHitCount;
+        }
+
+        public int missingCount() {
+            return missingDns.size();
+        }
+    }
+}
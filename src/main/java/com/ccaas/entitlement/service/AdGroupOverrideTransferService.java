@@ -0,0 +1,587 @@
+package com.ccaas.entitlement.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Bulk import and export of AD group overrides (Layer 2) as NDJSON or CSV.
+ *
+ * Export streams straight from Postgres {@code COPY ... TO STDOUT}. Import validates each
+ * row, streams valid rows into a temporary staging table with {@code COPY ... FROM STDIN},
+ * then upserts by {@code ad_group_hash} in one statement, all in a single transaction.
+ * If a row is invalid nothing is written. When the connection is not a Postgres connection
+ * (a local stand-in database) batched statements replace COPY.
+ *
+ * Both formats use the entity's JSON field names. JSONB columns are JSON text in CSV; in
+ * NDJSON they may be embedded JSON or JSON text.
+ */
+@Service
+public class AdGroupOverrideTransferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdGroupOverrideTransferService.class);
+
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final String FORMAT_CSV = "csv";
+
+    static final List<String> COLUMNS = List.of(
+        "adGroupHash", "adGroupDn", "parsedMarket", "parsedFunction", "parsedEnvironment",
+        "layoutOverrides", "dataRestrictions", "visualCustomizations", "priority", "isActive");
+
+    private static final List<String> JSON_COLUMNS = List.of("layoutOverrides", "dataRestrictions", "visualCustomizations");
+
+    private static final String EXPORT_CSV_SQL =
+        "SELECT ad_group_hash AS \"adGroupHash\", ad_group_dn AS \"adGroupDn\", parsed_market AS \"parsedMarket\", " +
+        "parsed_function AS \"parsedFunction\", parsed_environment AS \"parsedEnvironment\", " +
+        "layout_overrides AS \"layoutOverrides\", data_restrictions AS \"dataRestrictions\", " +
+        "visual_customizations AS \"visualCustomizations\", priority AS \"priority\", is_active AS \"isActive\" " +
+        "FROM ad_group_layout_overrides ORDER BY ad_group_hash";
+
+    private static final String EXPORT_NDJSON_SQL =
+        "SELECT CAST(json_build_object('adGroupHash', ad_group_hash, 'adGroupDn', ad_group_dn, " +
+        "'parsedMarket', parsed_market, 'parsedFunction', parsed_function, 'parsedEnvironment', parsed_environment, " +
+        "'layoutOverrides', layout_overrides, 'dataRestrictions', data_restrictions, " +
+        "'visualCustomizations', visual_customizations, 'priority', priority, 'isActive', is_active) AS text) " +
+        "FROM ad_group_layout_overrides ORDER BY ad_group_hash";
+
+    private static final String CREATE_STAGING_SQL =
+        "CREATE TEMPORARY TABLE ad_group_override_import (" +
+        "line_number BIGINT NOT NULL, ad_group_hash VARCHAR(64) NOT NULL, ad_group_dn VARCHAR(500) NOT NULL, " +
+        "parsed_market VARCHAR(10) NOT NULL, parsed_function VARCHAR(50), parsed_environment VARCHAR(20), " +
+        "layout_overrides TEXT, data_restrictions TEXT, visual_customizations TEXT, " +
+        "priority INTEGER NOT NULL, is_active BOOLEAN NOT NULL) ON COMMIT DROP";
+
+    private static final String STAGING_COLUMNS =
+        "line_number, ad_group_hash, ad_group_dn, parsed_market, parsed_function, parsed_environment, " +
+        "layout_overrides, data_restrictions, visual_customizations, priority, is_active";
+
+    private static final String CHANGED_DNS_SQL =
+        "SELECT o.ad_group_dn FROM ad_group_layout_overrides o " +
+        "JOIN ad_group_override_import i ON i.ad_group_hash = o.ad_group_hash " +
+        "WHERE o.ad_group_dn <> i.ad_group_dn";
+
+    // Last row for a hash wins; RETURNING xmax = 0 tells inserts from updates. Timestamps are bound
+    // from the application clock, like the entity callbacks, so the version stamp's MAX(updated_at)
+    // is comparable across import and API writes
+    private static final String UPSERT_SQL =
+        "INSERT INTO ad_group_layout_overrides (ad_group_hash, ad_group_dn, parsed_market, parsed_function, " +
+        "parsed_environment, layout_overrides, data_restrictions, visual_customizations, priority, is_active, " +
+        "created_at, updated_at) " +
+        "SELECT DISTINCT ON (ad_group_hash) ad_group_hash, ad_group_dn, parsed_market, parsed_function, " +
+        "parsed_environment, CAST(layout_overrides AS jsonb), CAST(data_restrictions AS jsonb), " +
+        "CAST(visual_customizations AS jsonb), priority, is_active, ?, ? " +
+        "FROM ad_group_override_import ORDER BY ad_group_hash, line_number DESC " +
+        "ON CONFLICT (ad_group_hash) DO UPDATE SET " +
+        "ad_group_dn = EXCLUDED.ad_group_dn, parsed_market = EXCLUDED.parsed_market, " +
+        "parsed_function = EXCLUDED.parsed_function, parsed_environment = EXCLUDED.parsed_environment, " +
+        "layout_overrides = EXCLUDED.layout_overrides, data_restrictions = EXCLUDED.data_restrictions, " +
+        "visual_customizations = EXCLUDED.visual_customizations, priority = EXCLUDED.priority, " +
+        "is_active = EXCLUDED.is_active, updated_at = EXCLUDED.updated_at " +
+        "RETURNING (xmax = 0) AS inserted, ad_group_dn";
+
+    private static final int COPY_CHUNK_BYTES = 64 * 1024;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${entitlement.bulk-import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${entitlement.bulk-import.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    /**
+     * Stream every override (active and inactive) in the given format.
+     */
+    public void export(String format, OutputStream out) {
+        String sql = FORMAT_CSV.equals(format) ? EXPORT_CSV_SQL : EXPORT_NDJSON_SQL;
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try {
+                if (connection.isWrapperFor(PGConnection.class)) {
+                    String options = FORMAT_CSV.equals(format)
+                        ? "FORMAT csv, HEADER"
+                        // One JSON document per line: JSON never contains these control characters unescaped
+                        : "FORMAT csv, DELIMITER E'\\x02', QUOTE E'\\x01'";
+                    connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyOut("COPY (" + sql + ") TO STDOUT WITH (" + options + ")", out);
+                } else {
+                    exportWithQuery(connection, sql, format, out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Validate and upsert overrides read from {@code in}. Nothing is written if any row is invalid.
+     */
+    public ImportSummary importOverrides(String format, InputStream in) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ImportSummary summary = transaction.execute(status -> jdbcTemplate.execute((ConnectionCallback<ImportSummary>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING_SQL);
+            }
+
+            StagingWriter writer = connection.isWrapperFor(PGConnection.class)
+                ? new CopyStagingWriter(connection.unwrap(PGConnection.class))
+                : new BatchStagingWriter(connection);
+            ImportErrors errors = new ImportErrors(maxReportedErrors);
+            int received = 0;
+            int rejected = 0;
+            try {
+                Iterator<RowSource> rows = readRows(format, in, errors);
+                while (rows.hasNext()) {
+                    RowSource row = rows.next();
+                    received++;
+                    if (row == null) {
+                        rejected++;
+                        continue;
+                    }
+                    Object[] values = toStagingValues(row, errors);
+                    if (values == null) {
+                        rejected++;
+                    } else if (errors.isEmpty()) {
+                        writer.write(values);
+                    }
+                }
+            } catch (RuntimeException e) {
+                writer.cancel();
+                throw e;
+            }
+
+            if (!errors.isEmpty()) {
+                writer.cancel();
+                status.setRollbackOnly();
+                return ImportSummary.rejected(format, received, rejected, errors);
+            }
+            writer.finish();
+
+            Set<String> changedDns = new LinkedHashSet<>(jdbcTemplate.queryForList(CHANGED_DNS_SQL, String.class));
+            int[] counts = new int[2];
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.query(UPSERT_SQL, (ResultSet rs) -> {
+                counts[rs.getBoolean(1) ? 0 : 1]++;
+                changedDns.add(rs.getString(2));
+            }, now, now);
+            int written = counts[0] + counts[1];
+            return new ImportSummary(format, true, received, counts[0], counts[1], received - written,
+                                     0, List.of(), List.copyOf(changedDns));
+        }));
+
+        logger.info("Override import ({}): applied={}, received={}, inserted={}, updated={}, rejected={}",
+                   format, summary.applied(), summary.received(), summary.inserted(), summary.updated(), summary.rejected());
+        return summary;
+    }
+
+    private Iterator<RowSource> readRows(String format, InputStream in, ImportErrors errors) {
+        try {
+            if (FORMAT_CSV.equals(format)) {
+                MappingIterator<Map<String, String>> csv = csvMapper.readerForMapOf(String.class)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(in);
+                return new ParsingIterator<>(csv, errors, (map, line) -> new RowSource(line, map::get, true));
+            }
+            MappingIterator<JsonNode> ndjson = objectMapper.readerFor(JsonNode.class).readValues(in);
+            return new ParsingIterator<>(ndjson, errors, (node, line) -> new RowSource(line, field -> {
+                JsonNode value = node.get(field);
+                if (value == null || value.isNull()) {
+                    return null;
+                }
+                // Embedded JSON for JSONB columns, plain text otherwise
+                return value.isContainerNode() ? value.toString() : value.asText();
+            }, node.isObject()));
+        } catch (IOException e) {
+            // e.g. a missing or unreadable CSV header
+            errors.add(1, "unreadable input: " + (e instanceof JsonProcessingException j ? j.getOriginalMessage() : e.getMessage()));
+            return Collections.emptyIterator();
+        }
+    }
+
+    private Object[] toStagingValues(RowSource row, ImportErrors errors) {
+        long line = row.lineNumber();
+        if (!row.object()) {
+            errors.add(line, "expected an object");
+            return null;
+        }
+
+        String dn = blankToNull(row.field().apply("adGroupDn"));
+        String market = blankToNull(row.field().apply("parsedMarket"));
+        String hash = blankToNull(row.field().apply("adGroupHash"));
+        String function = blankToNull(row.field().apply("parsedFunction"));
+        String environment = blankToNull(row.field().apply("parsedEnvironment"));
+        int errorCount = errors.count();
+
+        // Scope DNs are stored in canonical form, with the parsed fields taken from the scope
+        if (AdGroupDns.isScope(dn)) {
+            try {
+                String[] scope = AdGroupDns.parseScope(dn);
+                dn = AdGroupDns.canonicalScopeDn(dn);
+                market = scope[0];
+                function = scope.length > 1 ? scope[1] : null;
+                environment = scope.length > 2 ? scope[2] : null;
+            } catch (IllegalArgumentException e) {
+                errors.add(line, e.getMessage());
+            }
+        }
+
+        if (dn == null) {
+            errors.add(line, "adGroupDn is required");
+        } else if (dn.length() > 500) {
+            errors.add(line, "adGroupDn longer than 500 characters");
+        }
+        if (market == null) {
+            errors.add(line, "parsedMarket is required");
+        } else if (market.length() > 10) {
+            errors.add(line, "parsedMarket longer than 10 characters");
+        }
+        if (hash != null && hash.length() > 64) {
+            errors.add(line, "adGroupHash longer than 64 characters");
+        }
+        if (function != null && function.length() > 50) {
+            errors.add(line, "parsedFunction longer than 50 characters");
+        }
+        if (environment != null && environment.length() > 20) {
+            errors.add(line, "parsedEnvironment longer than 20 characters");
+        }
+
+        String[] json = new String[3];
+        int i = 0;
+        for (String column : JSON_COLUMNS) {
+            String value = blankToNull(row.field().apply(column));
+            if (value != null) {
+                try {
+                    objectMapper.readTree(value);
+                } catch (JsonProcessingException e) {
+                    errors.add(line, column + " is not valid JSON");
+                }
+            }
+            json[i++] = value;
+        }
+
+        Integer priority = 100;
+        String priorityValue = blankToNull(row.field().apply("priority"));
+        if (priorityValue != null) {
+            try {
+                priority = Integer.valueOf(priorityValue);
+            } catch (NumberFormatException e) {
+                errors.add(line, "priority is not an integer");
+            }
+        }
+
+        Boolean active = true;
+        String activeValue = blankToNull(row.field().apply("isActive"));
+        if (activeValue != null) {
+            if (activeValue.equalsIgnoreCase("true") || activeValue.equals("t")) {
+                active = true;
+            } else if (activeValue.equalsIgnoreCase("false") || activeValue.equals("f")) {
+                active = false;
+            } else {
+                errors.add(line, "isActive is not a boolean");
+            }
+        }
+
+        if (errors.count() > errorCount) {
+            return null;
+        }
+        return new Object[] {
+            line, hash != null ? hash : AdGroupHashes.hash(dn), dn, market, function, environment,
+            json[0], json[1], json[2], priority, active
+        };
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private void exportWithQuery(Connection connection, String sql, String format, OutputStream out) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setFetchSize(batchSize);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (FORMAT_CSV.equals(format)) {
+                    out.write(csvLine(COLUMNS.toArray()).getBytes(StandardCharsets.UTF_8));
+                }
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    String line;
+                    if (FORMAT_CSV.equals(format)) {
+                        Object[] values = new Object[columns];
+                        for (int c = 0; c < columns; c++) {
+                            values[c] = rs.getString(c + 1);
+                        }
+                        line = csvLine(values);
+                    } else {
+                        line = rs.getString(1) + "\n";
+                    }
+                    out.write(line.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Override export failed", e);
+        }
+    }
+
+    /**
+     * One CSV record in the form COPY expects: NULL unquoted and empty, everything else quoted.
+     */
+    static String csvLine(Object[] values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (values[i] != null) {
+                line.append('"').append(values[i].toString().replace("\"", "\"\"")).append('"');
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    /**
+     * One input row: its line number and field accessor.
+     */
+    private record RowSource(long lineNumber, Function<String, String> field, boolean object) {
+    }
+
+    /**
+     * Iterates parsed rows. A parse failure is recorded as an error for its line, yields
+     * {@code null} and ends the iteration, since the reader cannot resync after it.
+     */
+    private static final class ParsingIterator<T> implements Iterator<RowSource> {
+
+        private final MappingIterator<T> delegate;
+        private final ImportErrors errors;
+        private final BiFunction<T, Long, RowSource> mapper;
+        private boolean failed;
+
+        ParsingIterator(MappingIterator<T> delegate, ImportErrors errors,
+                        BiFunction<T, Long, RowSource> mapper) {
+            this.delegate = delegate;
+            this.errors = errors;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (failed) {
+                return false;
+            }
+            try {
+                return delegate.hasNextValue();
+            } catch (IOException e) {
+                fail(e);
+                return false;
+            }
+        }
+
+        @Override
+        public RowSource next() {
+            try {
+                long line = delegate.getCurrentLocation().getLineNr();
+                return mapper.apply(delegate.nextValue(), line);
+            } catch (IOException e) {
+                fail(e);
+                return null;
+            }
+        }
+
+        private void fail(IOException e) {
+            failed = true;
+            errors.add(delegate.getCurrentLocation().getLineNr(), "unreadable input: " + (e instanceof JsonProcessingException j ? j.getOriginalMessage() : e.getMessage()));
+        }
+    }
+
+    /**
+     * Validation errors, counting all but keeping only the first {@code limit} messages.
+     */
+    private static final class ImportErrors {
+
+        private final int limit;
+        private final List<String> messages = new ArrayList<>();
+        private int count;
+
+        ImportErrors(int limit) {
+            this.limit = limit;
+        }
+
+        void add(long line, String message) {
+            count++;
+            if (messages.size() < limit) {
+                messages.add("line " + line + ": " + message);
+            }
+        }
+
+        int count() {
+            return count;
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+    }
+
+    private interface StagingWriter {
+
+        void write(Object[] values) throws SQLException;
+
+        void finish() throws SQLException;
+
+        void cancel() throws SQLException;
+    }
+
+    /**
+     * Streams CSV records into the staging table with COPY, in chunks.
+     */
+    private static final class CopyStagingWriter implements StagingWriter {
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_CHUNK_BYTES);
+
+        CopyStagingWriter(PGConnection connection) throws SQLException {
+            this.copyIn = connection.getCopyAPI().copyIn(
+                "COPY ad_group_override_import (" + STAGING_COLUMNS + ") FROM STDIN WITH (FORMAT csv)");
+        }
+
+        @Override
+        public void write(Object[] values) throws SQLException {
+            buffer.append(csvLine(values));
+            if (buffer.length() >= COPY_CHUNK_BYTES) {
+                flush();
+            }
+        }
+
+        @Override
+        public void finish() throws SQLException {
+            flush();
+            copyIn.endCopy();
+        }
+
+        @Override
+        public void cancel() throws SQLException {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * Batched INSERTs into the staging table, for databases without COPY.
+     */
+    private final class BatchStagingWriter implements StagingWriter {
+
+        private final PreparedStatement statement;
+        private int batched;
+
+        BatchStagingWriter(Connection connection) throws SQLException {
+            this.statement = connection.prepareStatement(
+                "INSERT INTO ad_group_override_import (" + STAGING_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+
+        @Override
+        public void write(Object[] values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    statement.setNull(i + 1, Types.VARCHAR);
+                } else {
+                    statement.setObject(i + 1, values[i]);
+                }
+            }
+            statement.addBatch();
+            if (++batched >= batchSize) {
+                statement.executeBatch();
+                batched = 0;
+            }
+        }
+
+        @Override
+        public void finish() throws SQLException {
+            if (batched > 0) {
+                statement.executeBatch();
+            }
+            statement.close();
+        }
+
+        @Override
+        public void cancel() throws SQLException {
+            statement.close();
+        }
+    }
+
+    /**
+     * Outcome of an import. {@code duplicatesCollapsed} counts rows superseded by a later row with
+     * the same {@code adGroupHash}; {@code changedDns} (reported as a count) are the AD groups whose
+     * layouts may change, including DNs replaced under an existing hash.
+     */
+    public record ImportSummary(String format,
+                                boolean applied,
+                                int received,
+                                int inserted,
+                                int updated,
+                                int duplicatesCollapsed,
+                                int rejected,
+                                List<String> errors,
+                                @JsonIgnore List<String> changedDns) {
+
+        @JsonProperty
+        public int changedGroups() {
+            return changedDns.size();
+        }
+
+        static ImportSummary rejected(String format, int received, int rejected, ImportErrors errors) {
+            return new ImportSummary(format, false, received, 0, 0, 0, rejected, List.copyOf(errors.messages), List.of());
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * In-process tier for stored user layouts (Layer 3) in front of {@code user_layout_preferences}.
+ *
+ * Each entry is one deflate-compressed {@code byte[]} plus its two timestamps as longs, instead
+ * of an entity holding several large JSON strings. The GC has one primitive array per user to
+ * move and no object graph to trace. The {@code userPreferences} cache evicts by encoded size
+ * ({@code specs.userPreferences.max-megabytes}), not entry count. Timestamp lookups (ETags, expiry
+ * checks) do not decompress. Reads return a new detached entity.
+ *
+ * Submitted writes evict the user's entry and flushed writes store the layout they wrote.
+ * An entry is only ever replaced by a layout with the same or a later {@code lastComputedAt},
+ * so a database read that started before a write cannot put the older row back afterwards.
+ * {@code specs.userPreferences.ttl} bounds how long an entry written by another
+ * instance can be served.
+ */
+@Component
+public class CompactUserLayoutCache {
+
+    public static final String CACHE_NAME = "userPreferences";
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int MAX_POOLED_CODECS = 16;
+
+    // Pooled rather than thread-local: request threads may be virtual
+    private static final Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Cached layout for a user, loading and caching it through {@code loader} on a miss.
+     */
+    public Optional<UserLayoutPreferences> get(String userId,
+                                               Function<String, Optional<UserLayoutPreferences>> loader) {
+        CompactLayout cached = cache().get(userId, CompactLayout.class);
+        if (cached != null) {
+            return Optional.of(decode(userId, cached));
+        }
+        Optional<UserLayoutPreferences> loaded = loader.apply(userId);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    /**
+     * Cached layout for a user, without loading it on a miss.
+     */
+    public Optional<UserLayoutPreferences> getIfPresent(String userId) {
+        return Optional.ofNullable(cache().get(userId, CompactLayout.class))
+            .map(cached -> decode(userId, cached));
+    }
+
+    /**
+     * {@code lastComputedAt} of the cached layout, without decompressing it.
+     */
+    public Optional<LocalDateTime> getLastComputedAt(String userId) {
+        return Optional.ofNullable(cache().get(userId, CompactLayout.class))
+            .map(cached -> toDateTime(cached.lastComputedAt()));
+    }
+
+    /**
+     * {@code cacheExpiry} of the cached layout, without decompressing it.
+     */
+    public Optional<LocalDateTime> getCacheExpiry(String userId) {
+        return Optional.ofNullable(cache().get(userId, CompactLayout.class))
+            .map(cached -> toDateTime(cached.cacheExpiry()));
+    }
+
+    /**
+     * Cache a layout unless a newer one (later {@code lastComputedAt}) is already cached for the user.
+     */
+    public void put(UserLayoutPreferences preferences) {
+        nativeCache().asMap().merge(preferences.getUserId(), encode(preferences), CompactUserLayoutCache::newer);
+    }
+
+    public void evict(String userId) {
+        cache().evict(userId);
+    }
+
+    public CompactCacheStats getStats() {
+        var nativeCache = nativeCache();
+        var stats = nativeCache.stats();
+        long weightedBytes = nativeCache.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(-1L))
+            .orElse(-1L);
+        long entries = nativeCache.estimatedSize();
+        return new CompactCacheStats(entries, weightedBytes,
+                                     entries > 0 ? weightedBytes / entries : 0, stats.hitRate(), stats.evictionCount());
+    }
+
+    static CompactLayout encode(UserLayoutPreferences preferences) {
+        byte[][] fields = {
+            utf8(preferences.getUserEmail()),
+            utf8(preferences.getComputedLayout()),
+            utf8(preferences.getMarketTheme()),
+            utf8(preferences.getEffectivePermissions()),
+            utf8(preferences.getPrimaryMarket()),
+            utf8(preferences.getComputationSource())
+        };
+        byte[][] roles = utf8(preferences.getBaseRoles());
+        byte[][] adGroups = utf8(preferences.getAdGroups());
+
+        int rawLength = 1 + length(roles) + length(adGroups);
+        for (byte[] field : fields) {
+            rawLength += 4 + (field != null ? field.length : 0);
+        }
+        ByteBuffer raw = ByteBuffer.allocate(rawLength);
+        raw.put((byte) FORMAT_VERSION);
+        for (byte[] field : fields) {
+            putBytes(raw, field);
+        }
+        putArray(raw, roles);
+        putArray(raw, adGroups);
+
+        Deflater deflater = Objects.requireNonNullElseGet(DEFLATERS.poll(), () -> new Deflater(Deflater.BEST_SPEED));
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+            // Deflate output is at most a few bytes per 16 KB larger than its input
+            byte[] buffer = new byte[rawLength + rawLength / 1000 + 64];
+            int length = deflater.deflate(buffer);
+            if (!deflater.finished()) {
+                throw new IllegalStateException("Compact layout buffer too small for user " + preferences.getUserId());
+            }
+            return new CompactLayout(toLong(preferences.getLastComputedAt()), toLong(preferences.getCacheExpiry()),
+                                     rawLength, Arrays.copyOf(buffer, length));
+        } finally {
+            release(DEFLATERS, deflater);
+        }
+    }
+
+    static UserLayoutPreferences decode(String userId, CompactLayout compact) {
+        byte[] bytes = new byte[compact.rawLength()];
+        Inflater inflater = Objects.requireNonNullElseGet(INFLATERS.poll(), Inflater::new);
+        try {
+            inflater.setInput(compact.payload());
+            if (inflater.inflate(bytes) != bytes.length) {
+                throw new IllegalStateException("Truncated compact layout for user " + userId);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compact layout for user " + userId, e);
+        } finally {
+            release(INFLATERS, inflater);
+        }
+
+        ByteBuffer raw = ByteBuffer.wrap(bytes);
+        int version = raw.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unknown compact layout format " + version);
+        }
+        UserLayoutPreferences preferences = new UserLayoutPreferences();
+        preferences.setUserId(userId);
+        preferences.setLastComputedAt(toDateTime(compact.lastComputedAt()));
+        preferences.setCacheExpiry(toDateTime(compact.cacheExpiry()));
+        preferences.setUserEmail(getString(raw));
+        preferences.setComputedLayout(getString(raw));
+        preferences.setMarketTheme(getString(raw));
+        preferences.setEffectivePermissions(getString(raw));
+        preferences.setPrimaryMarket(getString(raw));
+        preferences.setComputationSource(getString(raw));
+        preferences.setBaseRoles(getStrings(raw));
+        preferences.setAdGroups(getStrings(raw));
+        return preferences;
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[][] utf8(String[] values) {
+        if (values == null) {
+            return null;
+        }
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = utf8(values[i]);
+        }
+        return encoded;
+    }
+
+    /**
+     * Bytes {@link #putArray} writes for an array.
+     */
+    private static int length(byte[][] values) {
+        if (values == null) {
+            return 4;
+        }
+        int length = 4 + 4 * values.length;
+        for (byte[] value : values) {
+            length += value != null ? value.length : 0;
+        }
+        return length;
+    }
+
+    private static void putBytes(ByteBuffer raw, byte[] value) {
+        if (value == null) {
+            raw.putInt(-1);
+            return;
+        }
+        raw.putInt(value.length);
+        raw.put(value);
+    }
+
+    private static void putArray(ByteBuffer raw, byte[][] values) {
+        raw.putInt(values != null ? values.length : -1);
+        if (values != null) {
+            for (byte[] value : values) {
+                putBytes(raw, value);
+            }
+        }
+    }
+
+    private static String[] getStrings(ByteBuffer raw) {
+        int count = raw.getInt();
+        if (count < 0) {
+            return null;
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = getString(raw);
+        }
+        return values;
+    }
+
+    private static String getString(ByteBuffer raw) {
+        int length = raw.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(raw.array(), raw.position(), length, StandardCharsets.UTF_8);
+        raw.position(raw.position() + length);
+        return value;
+    }
+
+    /**
+     * Return a codec to its pool. Each holds native zlib state that is costly to allocate per call.
+     */
+    private static <T> void release(Queue<T> pool, T codec) {
+        if (codec instanceof Deflater deflater) {
+            deflater.reset();
+        } else if (codec instanceof Inflater inflater) {
+            inflater.reset();
+        }
+        if (pool.size() < MAX_POOLED_CODECS) {
+            pool.offer(codec);
+        } else if (codec instanceof Deflater deflater) {
+            deflater.end();
+        } else if (codec instanceof Inflater inflater) {
+            inflater.end();
+        }
+    }
+
+    private static Object newer(Object cached, Object incoming) {
+        return ((CompactLayout) incoming).lastComputedAt() >= ((CompactLayout) cached).lastComputedAt() ? incoming : cached;
+    }
+
+    private static long toLong(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return Long.MIN_VALUE;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+
+    private static LocalDateTime toDateTime(long value) {
+        if (value == Long.MIN_VALUE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1_000_000_000L),
+                                           (int) Math.floorMod(value, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private Cache cache() {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache == null) {
+            throw new IllegalStateException("Cache not configured: " + CACHE_NAME);
+        }
+        return cache;
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache() {
+        return ((CaffeineCache) cache()).getNativeCache();
+    }
+
+    /**
+     * A user layout as stored in the cache: timestamps as epoch nanoseconds (UTC wall clock,
+     * matching the entity's {@code LocalDateTime}) and the remaining fields length-prefixed
+     * UTF-8, deflated. {@code rawLength} is the inflated size.
+     */
+    public record CompactLayout(long lastComputedAt, long cacheExpiry, int rawLength, byte[] payload) {
+    }
+
+    /**
+     * Size and effectiveness of the compact tier. {@code weightedBytes} is the encoded size
+     * eviction is based on.
+     */
+    public record CompactCacheStats(long entries,
+                                    long weightedBytes,
+                                    long averageEntryBytes,
+                                    double hitRatio,
+                                    long evictions) {
+    }
+}
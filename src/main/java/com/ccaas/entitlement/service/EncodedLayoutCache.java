@@ -0,0 +1,132 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.dto.LayoutComputationResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of computed layouts keyed by user, computation mode and content version, holding the
+ * object form together with its pre-serialised JSON and (optionally) pre-gzipped bytes.
+ *
+ * Cache hits for JSON callers are written straight from the stored bytes, so
+ * neither Jackson nor compression runs on the hit path.
+ */
+@Component
+public class EncodedLayoutCache {
+
+    public static final String CACHE_NAME = "encodedLayouts";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${entitlement.layout-cache.precompress:true}")
+    private boolean precompress;
+
+    @Value("${entitlement.layout-cache.precompress-min-bytes:1024}")
+    private int precompressMinBytes;
+
+    public Optional<EncodedLayout> get(String userId, String computationMode, String version) {
+        return Optional.ofNullable(cache().get(key(userId, computationMode, version), EncodedLayout.class));
+    }
+
+    /**
+     * Serialise (and compress) a computed layout once and store it under its user, mode and version.
+     */
+    public EncodedLayout put(String userId, String computationMode, String version, LayoutComputationResponse response) {
+        byte[] json = toJson(response);
+        byte[] gzip = precompress && json.length >= precompressMinBytes ? gzip(json) : null;
+        EncodedLayout encoded = new EncodedLayout(response, json, gzip);
+        cache().put(key(userId, computationMode, version), encoded);
+        return encoded;
+    }
+
+    /**
+     * Drop every cached layout of the given users, whatever the mode and version.
+     * One pass over the cache per call, so callers evict a batch of users at a time.
+     */
+    public void evictUsers(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Set<String> users = Set.copyOf(userIds);
+        nativeCache().asMap().keySet().removeIf(key -> ownedByAny(key.toString(), users));
+    }
+
+    /**
+     * Whether a cache key belongs to one of the users. User IDs may themselves contain the
+     * separator, so every separator position is tried as the end of the user part.
+     */
+    private static boolean ownedByAny(String key, Set<String> users) {
+        for (int end = key.indexOf('|'); end >= 0; end = key.indexOf('|', end + 1)) {
+            if (users.contains(key.substring(0, end))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cache key: a layout is only ever served to the user and mode it was computed for.
+     */
+    static String key(String userId, String computationMode, String version) {
+        return userId + "|" + computationMode + "|" + version;
+    }
+
+    private Cache cache() {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache == null) {
+            throw new IllegalStateException("Cache not configured: " + CACHE_NAME);
+        }
+        return cache;
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache() {
+        return ((CaffeineCache) cache()).getNativeCache();
+    }
+
+    private byte[] toJson(LayoutComputationResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialise layout response", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A computed layout in object, JSON and gzipped-JSON form.
+     * {@code gzipJson} is null when the layout is below the pre-compression threshold.
+     */
+    public record EncodedLayout(LayoutComputationResponse response, byte[] json, byte[] gzipJson) {
+
+        public boolean hasGzip() {
+            return gzipJson != null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.ccaas.entitlement.service;
+
+import java.util.Arrays;
+
+/**
+ * Set operations over {@code long[]} bitsets of dense integer IDs (symbol IDs from
+ * {@link EntitlementSymbols}, permission IDs from {@link PermissionPlan}).
+ *
+ * Bit {@code id} lives in word {@code id >>> 6}. Arrays may differ in length; missing
+ * words are treated as zero, so a bitset never has to be sized for the whole ID space.
+ */
+public final class EntitlementBits {
+
+    private EntitlementBits() {
+    }
+
+    /**
+     * Bitset with exactly the given IDs set.
+     */
+    public static long[] of(int... ids) {
+        int max = -1;
+        for (int id : ids) {
+            max = Math.max(max, id);
+        }
+        long[] bits = new long[words(max + 1)];
+        for (int id : ids) {
+            bits[id >>> 6] |= 1L << id;
+        }
+        return bits;
+    }
+
+    /**
+     * Number of words needed to hold IDs {@code 0 .. size - 1}.
+     */
+    public static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Copy of {@code bits} with {@code id} set, grown if needed.
+     */
+    public static long[] with(long[] bits, int id) {
+        long[] result = Arrays.copyOf(bits, Math.max(bits.length, (id >>> 6) + 1));
+        result[id >>> 6] |= 1L << id;
+        return result;
+    }
+
+    public static boolean contains(long[] bits, int id) {
+        int word = id >>> 6;
+        return id >= 0 && word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * True if the two bitsets share at least one ID.
+     */
+    public static boolean intersects(long[] a, long[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            if ((a[i] & b[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if every ID in {@code required} is also in {@code bits}.
+     */
+    public static boolean containsAll(long[] bits, long[] required) {
+        for (int i = 0; i < required.length; i++) {
+            long have = i < bits.length ? bits[i] : 0L;
+            if ((required[i] & ~have) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long[] or(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a.length >= b.length ? a : b, Math.max(a.length, b.length));
+        orInto(result, a.length >= b.length ? b : a);
+        return result;
+    }
+
+    /**
+     * OR {@code source} into {@code target}; {@code target} must be at least as long.
+     */
+    public static void orInto(long[] target, long[] source) {
+        for (int i = 0; i < source.length; i++) {
+            target[i] |= source[i];
+        }
+    }
+
+    public static long[] and(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = a[i] & b[i];
+        }
+        return result;
+    }
+
+    public static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * IDs set in {@code bits}, ascending.
+     */
+    public static int[] ids(long[] bits) {
+        int[] ids = new int[cardinality(bits)];
+        int n = 0;
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                ids[n++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ccaas.entitlement.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the entitlement snapshot and the permission plan on a background thread as soon as their
+ * services exist ({@code entitlement.startup.preload}), so the rest of the context and the web
+ * server start in parallel and the first request does not pay for the load.
+ *
+ * A failed preload is only logged; the services load on first use as before.
+ */
+@Component
+public class EntitlementPreloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntitlementPreloader.class);
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    @Autowired
+    private PermissionPlanService permissionPlanService;
+
+    @Value("${entitlement.startup.preload:false}")
+    private boolean preload;
+
+    @PostConstruct
+    public void start() {
+        if (!preload) {
+            return;
+        }
+        Thread.ofVirtual().name("entitlement-preload").start(() -> {
+            long startTime = System.nanoTime();
+            try {
+                snapshotService.getSnapshot();
+                permissionPlanService.getPlan();
+                logger.info("Preloaded entitlement snapshot and permission plan in {}ms",
+                           (System.nanoTime() - startTime) / 1_000_000);
+            } catch (Exception e) {
+                logger.warn("Entitlement preload failed, loading on first use: {}", e.getMessage());
+            }
+        });
+    }
+}
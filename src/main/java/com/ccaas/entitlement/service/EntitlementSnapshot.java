@@ -0,0 +1,287 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.entity.RoleLayoutTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable in-memory snapshot of the active role templates (Layer 1) and
+ * AD group overrides (Layer 2).
+ *
+ * The version is derived from the row counts and latest update timestamps of
+ * both tables, so every instance loading the same data reports the same version.
+ *
+ * Role names and override DNs are interned in {@link EntitlementSymbols}, and the templates
+ * and overrides are also indexed by symbol ID for the computation path.
+ *
+ * Templates are additionally indexed by (role, market, environment) from their
+ * {@code marketApplicable} and {@code environmentTypes}, so resolving the template that
+ * applies to a role in a market and environment is at most four hash lookups.
+ *
+ * Overrides stored under scope DNs ({@link AdGroupDns#scopeDn}) are inherited by every AD group
+ * in that market, market and function, or market, function and environment. Each AD group's
+ * scope is worked out once per snapshot and memoised by symbol ID, so resolving a request's
+ * overrides is a fixed number of array lookups per AD group.
+ */
+public final class EntitlementSnapshot {
+
+    /** Index entry for a template not restricted on that dimension. */
+    private static final String ANY = "*";
+    /** Index entry used when the caller does not know that dimension. */
+    private static final String UNSPECIFIED = "?";
+
+    private final String version;
+    private final LocalDateTime loadedAt;
+    private final List<RoleLayoutTemplate> templates;
+    private final List<AdGroupLayoutOverride> overrides;
+    private final Map<String, RoleLayoutTemplate> templatesByRole;
+    private final Map<String, AdGroupLayoutOverride> overridesByDn;
+    private final Map<String, AdGroupLayoutOverride> overridesByHash;
+    private final Map<TemplateKey, RoleLayoutTemplate> templatesByScope;
+    private final AdGroupLayoutOverride[] overridesByDnId;
+    private final EntitlementSymbols symbols;
+    private final Map<Integer, GroupScope> scopesByDnId = new ConcurrentHashMap<>();
+
+    public EntitlementSnapshot(String version,
+                               List<RoleLayoutTemplate> templates,
+                               List<AdGroupLayoutOverride> overrides,
+                               EntitlementSymbols symbols) {
+        this.version = version;
+        this.loadedAt = LocalDateTime.now();
+        this.templates = List.copyOf(templates);
+        this.overrides = List.copyOf(overrides);
+
+        Map<String, RoleLayoutTemplate> byRole = new HashMap<>();
+        for (RoleLayoutTemplate template : templates) {
+            byRole.putIfAbsent(template.getRoleName(), template);
+        }
+        this.templatesByRole = Map.copyOf(byRole);
+
+        // Overrides arrive ordered by priority, so the first one seen for a DN wins
+        Map<String, AdGroupLayoutOverride> byDn = new HashMap<>();
+        Map<String, AdGroupLayoutOverride> byHash = new HashMap<>();
+        for (AdGroupLayoutOverride override : overrides) {
+            byDn.putIfAbsent(indexDn(override.getAdGroupDn()), override);
+            byHash.put(override.getAdGroupHash(), override);
+        }
+        this.overridesByDn = Map.copyOf(byDn);
+        this.overridesByHash = Map.copyOf(byHash);
+
+        Map<TemplateKey, RoleLayoutTemplate> byScope = new HashMap<>();
+        byRole.forEach((roleName, template) -> {
+            int roleId = symbols.intern(roleName);
+            for (String market : scopeKeys(template.getMarketApplicable(), false)) {
+                for (String environment : scopeKeys(template.getEnvironmentTypes(), true)) {
+                    byScope.putIfAbsent(new TemplateKey(roleId, market, environment), template);
+                }
+            }
+        });
+        this.templatesByScope = Map.copyOf(byScope);
+
+        Map<Integer, AdGroupLayoutOverride> byDnId = new HashMap<>();
+        byDn.forEach((dn, override) -> byDnId.put(symbols.intern(dn), override));
+        this.overridesByDnId = toArray(byDnId, new AdGroupLayoutOverride[0]);
+        this.symbols = symbols;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+
+    public List<RoleLayoutTemplate> getTemplates() {
+        return templates;
+    }
+
+    public List<AdGroupLayoutOverride> getOverrides() {
+        return overrides;
+    }
+
+    public Optional<RoleLayoutTemplate> findTemplateByRole(String roleName) {
+        return Optional.ofNullable(templatesByRole.get(roleName));
+    }
+
+    public Optional<AdGroupLayoutOverride> findOverrideByDn(String adGroupDn) {
+        return Optional.ofNullable(overridesByDn.get(adGroupDn));
+    }
+
+    public Optional<AdGroupLayoutOverride> findOverrideByHash(String adGroupHash) {
+        return Optional.ofNullable(overridesByHash.get(adGroupHash));
+    }
+
+    /**
+     * Template for a role symbol ID that applies in a market and environment, or null.
+     *
+     * A template applies if its {@code marketApplicable} is empty or contains the market, and
+     * likewise for {@code environmentTypes}. A null market or environment matches any.
+     */
+    public RoleLayoutTemplate findTemplate(int roleId, String market, String environment) {
+        String marketKey = market != null ? market.toUpperCase(Locale.ROOT) : UNSPECIFIED;
+        String environmentKey = environment != null ? AdGroupDns.normalizeEnvironment(environment) : UNSPECIFIED;
+        RoleLayoutTemplate template = templatesByScope.get(new TemplateKey(roleId, marketKey, environmentKey));
+        if (template == null && environment != null) {
+            template = templatesByScope.get(new TemplateKey(roleId, marketKey, ANY));
+        }
+        if (template == null && market != null) {
+            template = templatesByScope.get(new TemplateKey(roleId, ANY, environmentKey));
+            if (template == null && environment != null) {
+                template = templatesByScope.get(new TemplateKey(roleId, ANY, ANY));
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Highest-priority override for an AD group DN symbol ID, or null.
+     */
+    public AdGroupLayoutOverride findOverrideByDnId(int adGroupId) {
+        return adGroupId >= 0 && adGroupId < overridesByDnId.length ? overridesByDnId[adGroupId] : null;
+    }
+
+    /**
+     * Market, function and environment of an AD group symbol ID: its override's parsed values
+     * where set, else the tokens of its DN.
+     */
+    public GroupScope scopeOf(int adGroupId) {
+        return scopesByDnId.computeIfAbsent(adGroupId, id -> resolveScope(id, symbols.name(id)));
+    }
+
+    /**
+     * {@link #scopeOf(int)} for an AD group that may have no symbol ID ({@link EntitlementSymbols#UNKNOWN}).
+     * Such a group has no override and is resolved from its DN on every call, not memoised.
+     */
+    public GroupScope scopeOf(int adGroupId, String adGroupDn) {
+        return adGroupId == EntitlementSymbols.UNKNOWN ? resolveScope(adGroupId, adGroupDn) : scopeOf(adGroupId);
+    }
+
+    /**
+     * Symbol IDs of the scope DNs the AD groups inherit from, most general level first
+     * (every market, then every market and function, then every market, function and
+     * environment), each level in AD group order and without duplicates.
+     */
+    public int[] inheritedScopeIds(int[] adGroupIds) {
+        return inheritedScopeIds(adGroupIds, null);
+    }
+
+    /**
+     * {@link #inheritedScopeIds(int[])} for AD groups that may include {@link EntitlementSymbols#UNKNOWN}
+     * IDs, resolved through their DNs ({@code adGroupDns}, same order).
+     */
+    public int[] inheritedScopeIds(int[] adGroupIds, List<String> adGroupDns) {
+        GroupScope[] scopes = new GroupScope[adGroupIds.length];
+        for (int i = 0; i < adGroupIds.length; i++) {
+            scopes[i] = adGroupDns != null ? scopeOf(adGroupIds[i], adGroupDns.get(i)) : scopeOf(adGroupIds[i]);
+        }
+        int[] ids = new int[adGroupIds.length * 3];
+        int count = 0;
+        for (int level = 0; level < 3; level++) {
+            for (GroupScope scope : scopes) {
+                if (level < scope.scopeIds().length) {
+                    int id = scope.scopeIds()[level];
+                    boolean seen = false;
+                    for (int j = 0; j < count && !seen; j++) {
+                        seen = ids[j] == id;
+                    }
+                    if (!seen) {
+                        ids[count++] = id;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private GroupScope resolveScope(int adGroupId, String adGroupDn) {
+        AdGroupLayoutOverride override = findOverrideByDnId(adGroupId);
+        String market = override != null && override.getParsedMarket() != null && !override.getParsedMarket().isBlank()
+            ? override.getParsedMarket().trim().toUpperCase(Locale.ROOT) : AdGroupDns.market(adGroupDn);
+        String function = override != null && override.getParsedFunction() != null && !override.getParsedFunction().isBlank()
+            ? override.getParsedFunction().trim().toUpperCase(Locale.ROOT) : AdGroupDns.function(adGroupDn);
+        String environment = override != null && AdGroupDns.normalizeEnvironment(override.getParsedEnvironment()) != null
+            ? AdGroupDns.normalizeEnvironment(override.getParsedEnvironment()) : AdGroupDns.environment(adGroupDn);
+
+        if (AdGroupDns.isScope(adGroupDn) || market == null) {
+            return new GroupScope(market, function, environment, new int[0]);
+        }
+        List<String> scopeDns = new ArrayList<>(3);
+        scopeDns.add(AdGroupDns.scopeDn(market, null, null));
+        if (function != null) {
+            scopeDns.add(AdGroupDns.scopeDn(market, function, null));
+            if (environment != null) {
+                scopeDns.add(AdGroupDns.scopeDn(market, function, environment));
+            }
+        }
+        // Scope DNs come from request DNs too; one the table has no room for has no override either
+        int[] scopeIds = Arrays.stream(symbols.tryInternAll(scopeDns))
+            .filter(id -> id != EntitlementSymbols.UNKNOWN)
+            .toArray();
+        return new GroupScope(market, function, environment, scopeIds);
+    }
+
+    /**
+     * Key an override is indexed under: its DN, or the canonical form of a scope DN.
+     */
+    private static String indexDn(String adGroupDn) {
+        if (!AdGroupDns.isScope(adGroupDn)) {
+            return adGroupDn;
+        }
+        try {
+            return AdGroupDns.canonicalScopeDn(adGroupDn);
+        } catch (IllegalArgumentException e) {
+            return adGroupDn;
+        }
+    }
+
+    /**
+     * Index keys for one dimension of a template: its values (or {@link #ANY} if unrestricted),
+     * plus {@link #UNSPECIFIED}.
+     */
+    private static List<String> scopeKeys(String[] values, boolean environment) {
+        List<String> keys = new ArrayList<>();
+        if (values != null) {
+            for (String value : values) {
+                if (value != null && !value.isBlank()) {
+                    keys.add(environment ? AdGroupDns.normalizeEnvironment(value) : value.trim().toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        if (keys.isEmpty()) {
+            keys.add(ANY);
+        }
+        keys.add(UNSPECIFIED);
+        return keys;
+    }
+
+    private static <T> T[] toArray(Map<Integer, T> byId, T[] empty) {
+        int length = byId.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        T[] array = Arrays.copyOf(empty, length);
+        byId.forEach((id, value) -> array[id] = value);
+        return array;
+    }
+
+    private record TemplateKey(int roleId, String market, String environment) {
+    }
+
+    /**
+     * Market, function and environment of an AD group (null where unknown), and the symbol IDs
+     * of the scope DNs it inherits overrides from, most general first.
+     */
+    public record GroupScope(String market, String function, String environment, int[] scopeIds) {
+    }
+
+    @Override
+    public String toString() {
+        return "EntitlementSnapshot{" +
+                "version='" + version + '\'' +
+                ", templates=" + templates.size() +
+                ", overrides=" + overrides.size() +
+                ", loadedAt=" + loadedAt +
+                '}';
+    }
+}
@@ -0,0 +1,131 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.entity.RoleLayoutTemplate;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import com.ccaas.entitlement.repository.AdGroupOverrideRepository;
+import com.ccaas.entitlement.repository.RoleLayoutTemplateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Holds the current {@link EntitlementSnapshot} used by layout computation.
+ *
+ * The snapshot is reloaded immediately after local template/override writes and
+ * polled on a fixed interval to pick up writes made by other instances. Polling only
+ * compares version stamps; the full reload happens when the stamp changes.
+ */
+@Service
+public class EntitlementSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntitlementSnapshotService.class);
+
+    @Autowired
+    private RoleLayoutTemplateRepository roleTemplateRepository;
+
+    @Autowired
+    private AdGroupOverrideRepository adGroupOverrideRepository;
+
+    @Autowired
+    private EntitlementSymbols symbols;
+
+    private volatile EntitlementSnapshot snapshot;
+
+    /**
+     * Current snapshot, loading it on first use.
+     */
+    public EntitlementSnapshot getSnapshot() {
+        EntitlementSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load(currentVersion());
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Version of the role template table as currently stored.
+     */
+    public String currentTemplateVersion() {
+        return roleTemplateRepository.getVersionStamp();
+    }
+
+    /**
+     * Version of the AD group override table as currently stored.
+     */
+    public String currentOverrideVersion() {
+        return adGroupOverrideRepository.getVersionStamp();
+    }
+
+    /**
+     * Reload the snapshot if the stored data has changed since it was taken.
+     */
+    @Scheduled(fixedDelayString = "${entitlement.snapshot.refresh-interval-ms:30000}")
+    public void refreshIfChanged() {
+        EntitlementSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        try {
+            String version = currentVersion();
+            if (!version.equals(current.getVersion())) {
+                synchronized (this) {
+                    load(version);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Snapshot refresh failed, keeping version {}: {}", current.getVersion(), e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onEntitlementChange(EntitlementChangeEvent event) {
+        if (event.getChangeType() != EntitlementChangeEvent.ChangeType.AD_GROUP_OVERRIDE
+                && event.getChangeType() != EntitlementChangeEvent.ChangeType.ROLE_TEMPLATE) {
+            return;
+        }
+        synchronized (this) {
+            load(currentVersion());
+        }
+    }
+
+    private EntitlementSnapshot load(String version) {
+        long startTime = System.currentTimeMillis();
+        List<RoleLayoutTemplate> templates = roleTemplateRepository.findByIsActiveTrue();
+        List<AdGroupLayoutOverride> overrides = adGroupOverrideRepository.findByIsActiveTrueOrderByPriorityAsc();
+
+        EntitlementSnapshot loaded = new EntitlementSnapshot(version, templates, overrides, symbols);
+        snapshot = loaded;
+
+        logger.info("Loaded entitlement snapshot {} with {} templates and {} overrides in {}ms",
+                   version, templates.size(), overrides.size(), System.currentTimeMillis() - startTime);
+        return loaded;
+    }
+
+    private String currentVersion() {
+        return digest(currentTemplateVersion() + "|" + currentOverrideVersion());
+    }
+
+    private static String digest(String stamp) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(stamp.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
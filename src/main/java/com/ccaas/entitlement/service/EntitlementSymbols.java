@@ -0,0 +1,169 @@
+package com.ccaas.entitlement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symbol table mapping AD group DNs and role names to compact integer IDs.
+ *
+ * The same few thousand DNs arrive in every layout computation request. Interning them at
+ * the request boundary lets internal structures (group-set keys, reverse index, snapshot
+ * lookups) hold primitive IDs and one canonical {@code String} per name instead of a copy
+ * per request.
+ *
+ * IDs are dense, start at 0 and are never reused, so arrays indexed by ID stay valid across
+ * snapshot reloads. They are local to this instance. Anything shared with other instances or
+ * clients (ETags, group-set hashes) is still derived from the names.
+ *
+ * Names from the entitlement tables are always interned ({@link #intern}). Names from
+ * computation requests are client input, so they are interned with {@link #tryIntern} only
+ * while the table holds fewer than {@code entitlement.symbols.max-size} names; after that an
+ * unseen request name maps to {@link #UNKNOWN} and callers fall back to the name itself.
+ * Bulk lookups and admin input use {@link #find} and never grow the table.
+ */
+@Component
+public class EntitlementSymbols {
+
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private int size;
+
+    @Value("${entitlement.symbols.max-size:100000}")
+    private int maxSize = 100_000;
+
+    private final Counter rejectedCounter;
+
+    public EntitlementSymbols(MeterRegistry meterRegistry) {
+        Gauge.builder("entitlement.symbols.size", this, EntitlementSymbols::size)
+            .description("Distinct AD group DNs and role names interned")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("entitlement.symbols.rejected")
+            .description("Request names not interned because the symbol table is full")
+            .register(meterRegistry);
+    }
+
+    /**
+     * ID for a name, assigning the next ID if it has not been seen.
+     */
+    public int intern(String name) {
+        Integer id = idsByName.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = idsByName.get(name);
+            if (id != null) {
+                return id;
+            }
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = name;
+            // Publish the name before the ID so readers resolving the ID always find it
+            names = current;
+            idsByName.put(name, size);
+            return size++;
+        }
+    }
+
+    /**
+     * ID for a name from client input: assigns the next ID only while the table holds fewer than
+     * {@code max-size} names, otherwise returns {@link #UNKNOWN} for a name not seen before.
+     */
+    public int tryIntern(String name) {
+        int id = find(name);
+        if (id != UNKNOWN) {
+            return id;
+        }
+        if (size() >= maxSize) {
+            rejectedCounter.increment();
+            return UNKNOWN;
+        }
+        return intern(name);
+    }
+
+    /**
+     * {@link #tryIntern} for several names, in the given order (duplicates kept).
+     */
+    public int[] tryInternAll(Collection<String> names) {
+        int[] ids = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            ids[i++] = tryIntern(name);
+        }
+        return ids;
+    }
+
+    /**
+     * ID of a name already interned, or {@link #UNKNOWN}. Never assigns an ID.
+     */
+    public int find(String name) {
+        Integer id = idsByName.get(name);
+        return id != null ? id : UNKNOWN;
+    }
+
+    /**
+     * {@link #find} for several names, in the given order (duplicates kept).
+     */
+    public int[] findAll(Collection<String> names) {
+        int[] ids = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            ids[i++] = find(name);
+        }
+        return ids;
+    }
+
+    /**
+     * Canonical name for an ID.
+     */
+    public String name(int id) {
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown symbol id: " + id);
+        }
+        return current[id];
+    }
+
+    /**
+     * True if none of the IDs is {@link #UNKNOWN}.
+     */
+    public static boolean allKnown(int[] ids) {
+        for (int id : ids) {
+            if (id == UNKNOWN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorted IDs with duplicates removed: the identity of a set of names.
+     */
+    public static int[] sortedDistinct(int[] ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int length = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[length++] = sorted[i];
+            }
+        }
+        return length == sorted.length ? sorted : Arrays.copyOf(sorted, length);
+    }
+
+    public int size() {
+        return idsByName.size();
+    }
+}
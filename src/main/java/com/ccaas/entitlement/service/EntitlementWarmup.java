@@ -0,0 +1,190 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms the in-process state before the instance reports ready ({@code entitlement.warmup}).
+ *
+ * Application runners complete before readiness switches to {@code ACCEPTING_TRAFFIC}, so
+ * {@code /actuator/health/readiness} stays down while this runs. It loads the entitlement
+ * snapshot (all active templates and overrides) and the permission plan on a virtual thread
+ * and, meanwhile, the most recently computed servable user layouts into the layout cache.
+ *
+ * Each phase has a time budget. When it runs out the instance becomes ready anyway: the snapshot
+ * keeps loading in the background and the remaining layouts load on first use, as without warm-up.
+ */
+@Component
+public class EntitlementWarmup implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntitlementWarmup.class);
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    @Autowired
+    private PermissionPlanService permissionPlanService;
+
+    @Autowired
+    private UserPreferenceCacheRepository userPreferenceRepository;
+
+    @Autowired
+    private CompactUserLayoutCache layoutCache;
+
+    @Autowired
+    private UserLayoutCacheService userLayoutCacheService;
+
+    @Value("${entitlement.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${entitlement.warmup.snapshot-budget-ms:20000}")
+    private long snapshotBudgetMs;
+
+    @Value("${entitlement.warmup.user-layouts:10000}")
+    private int userLayoutLimit;
+
+    @Value("${entitlement.warmup.user-layouts-budget-ms:10000}")
+    private long userLayoutsBudgetMs;
+
+    @Value("${entitlement.warmup.page-size:500}")
+    private int pageSize;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter userLayoutsCounter;
+
+    // Ordered by severity
+    private enum Outcome { COMPLETE, BUDGET_EXCEEDED, FAILED }
+
+    public EntitlementWarmup(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.userLayoutsCounter = Counter.builder("entitlement.warmup.user_layouts")
+            .description("User layouts loaded into the layout cache by the startup warm-up")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long startTime = System.nanoTime();
+
+        CompletableFuture<Void> snapshotLoad = CompletableFuture.runAsync(() -> {
+            snapshotService.getSnapshot();
+            permissionPlanService.getPlan();
+        }, task -> Thread.ofVirtual().name("entitlement-warmup").start(task));
+        snapshotLoad.whenComplete((result, error) -> {
+            if (error == null) {
+                record("snapshot", Outcome.COMPLETE, System.nanoTime() - startTime);
+            }
+        });
+
+        Outcome layouts = warmUserLayouts();
+        Outcome snapshot = awaitSnapshot(snapshotLoad, startTime);
+
+        // Worst of the two phases
+        Outcome total = layouts.compareTo(snapshot) >= 0 ? layouts : snapshot;
+        long elapsed = System.nanoTime() - startTime;
+        record("total", total, elapsed);
+        logger.info("Warm-up {} in {}ms: snapshot {}, {} user layouts {}",
+                   tag(total), TimeUnit.NANOSECONDS.toMillis(elapsed), tag(snapshot),
+                   (long) userLayoutsCounter.count(), tag(layouts));
+    }
+
+    /**
+     * Wait for the snapshot and plan for the rest of their budget. A completed load is recorded
+     * by the future itself; a load that overruns keeps going and is recorded when it finishes.
+     */
+    private Outcome awaitSnapshot(CompletableFuture<Void> snapshotLoad, long startTime) {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(snapshotBudgetMs) - (System.nanoTime() - startTime);
+        try {
+            snapshotLoad.get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+            return Outcome.COMPLETE;
+        } catch (TimeoutException e) {
+            record("snapshot", Outcome.BUDGET_EXCEEDED, System.nanoTime() - startTime);
+            logger.warn("Snapshot warm-up exceeded its {}ms budget, continuing in the background", snapshotBudgetMs);
+            return Outcome.BUDGET_EXCEEDED;
+        } catch (ExecutionException e) {
+            record("snapshot", Outcome.FAILED, System.nanoTime() - startTime);
+            logger.warn("Snapshot warm-up failed, loading on first use: {}", e.getCause().getMessage());
+            return Outcome.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.FAILED;
+        }
+    }
+
+    /**
+     * Load up to {@code user-layouts} servable layouts, newest {@code lastComputedAt} first, page
+     * by page until the budget runs out. A layout written since startup is newer than the row read
+     * here, so {@link CompactUserLayoutCache#put} keeps it, even if its write is flushed mid-page.
+     */
+    private Outcome warmUserLayouts() {
+        if (userLayoutLimit <= 0) {
+            return Outcome.COMPLETE;
+        }
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(userLayoutsBudgetMs);
+        LocalDateTime cutoff = userLayoutCacheService.hardExpiryCutoff();
+        Outcome outcome = Outcome.COMPLETE;
+        int loaded = 0;
+        try {
+            for (int page = 0; loaded < userLayoutLimit; page++) {
+                if (System.nanoTime() - deadline > 0) {
+                    outcome = Outcome.BUDGET_EXCEEDED;
+                    logger.warn("User layout warm-up exceeded its {}ms budget after {} layouts", userLayoutsBudgetMs, loaded);
+                    break;
+                }
+                Slice<UserLayoutPreferences> slice = userPreferenceRepository.findRecentlyComputed(cutoff, PageRequest.of(page, pageSize));
+                for (UserLayoutPreferences preferences : slice) {
+                    if (loaded == userLayoutLimit) {
+                        break;
+                    }
+                    layoutCache.put(preferences);
+                    loaded++;
+                }
+                if (!slice.hasNext()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            outcome = Outcome.FAILED;
+            logger.warn("User layout warm-up failed after {} layouts: {}", loaded, e.getMessage());
+        }
+        userLayoutsCounter.increment(loaded);
+        record("user_layouts", outcome, System.nanoTime() - startTime);
+        return outcome;
+    }
+
+    private void record(String phase, Outcome outcome, long elapsedNanos) {
+        Timer.builder("entitlement.warmup.duration")
+            .description("Time spent warming up before readiness, per phase")
+            .tag("phase", phase)
+            .tag("outcome", tag(outcome))
+            .register(meterRegistry)
+            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String tag(Outcome outcome) {
+        return outcome.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,76 @@
+package com.ccaas.entitlement.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JSON Patch (RFC 6902) documents describing the difference between two JSON documents.
+ *
+ * Objects are compared member by member ({@code add}, {@code remove}, {@code replace});
+ * arrays of equal length element by element. Any other change, including an array changing
+ * length, is a {@code replace} of the whole value.
+ */
+public final class JsonPatches {
+
+    private JsonPatches() {
+    }
+
+    /**
+     * Operations that turn {@code source} into {@code target}; empty if they are equal.
+     */
+    public static ArrayNode diff(JsonNode source, JsonNode target) {
+        ArrayNode operations = JsonNodeFactory.instance.arrayNode();
+        diff("", source, target, operations);
+        return operations;
+    }
+
+    private static void diff(String path, JsonNode source, JsonNode target, ArrayNode operations) {
+        if (source.equals(target)) {
+            return;
+        }
+        if (source.isObject() && target.isObject()) {
+            Iterator<String> sourceNames = source.fieldNames();
+            while (sourceNames.hasNext()) {
+                String name = sourceNames.next();
+                if (!target.has(name)) {
+                    operation(operations, "remove", path + "/" + escape(name));
+                }
+            }
+            Iterator<Map.Entry<String, JsonNode>> targetFields = target.fields();
+            while (targetFields.hasNext()) {
+                Map.Entry<String, JsonNode> field = targetFields.next();
+                String fieldPath = path + "/" + escape(field.getKey());
+                JsonNode sourceValue = source.get(field.getKey());
+                if (sourceValue == null) {
+                    operation(operations, "add", fieldPath).set("value", field.getValue());
+                } else {
+                    diff(fieldPath, sourceValue, field.getValue(), operations);
+                }
+            }
+            return;
+        }
+        if (source.isArray() && target.isArray() && source.size() == target.size()) {
+            for (int i = 0; i < source.size(); i++) {
+                diff(path + "/" + i, source.get(i), target.get(i), operations);
+            }
+            return;
+        }
+        operation(operations, "replace", path).set("value", target);
+    }
+
+    private static ObjectNode operation(ArrayNode operations, String op, String path) {
+        return operations.addObject().put("op", op).put("path", path);
+    }
+
+    /**
+     * JSON Pointer (RFC 6901) escaping of one reference token.
+     */
+    private static String escape(String token) {
+        return token.replace("~", "~0").replace("/", "~1");
+    }
+}
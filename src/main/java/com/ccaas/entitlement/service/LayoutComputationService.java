@@ -5,13 +5,19 @@ import com.ccaas.entitlement.dto.LayoutComputationResponse;
 import com.ccaas.entitlement.entity.RoleLayoutTemplate;
 import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
 import com.ccaas.entitlement.entity.UserLayoutPreferences;
-import com.ccaas.entitlement.repository.RoleLayoutTemplateRepository;
-import com.ccaas.entitlement.repository.AdGroupOverrideRepository;
+import com.ccaas.entitlement.repository.LayoutComputationRepository;
+import com.ccaas.entitlement.repository.ReactiveEntitlementRepository;
 import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -21,73 +27,423 @@ public class LayoutComputationService {
 
     private static final Logger logger = LoggerFactory.getLogger(LayoutComputationService.class);
 
-    @Autowired
-    private RoleLayoutTemplateRepository roleTemplateRepository;
+    /** Java engine over the in-memory entitlement snapshot. */
+    public static final String MODE_SERVICE_LOGIC = "service_logic";
+
+    /** Single SQL round trip through the {@code compute_user_layout} database function. */
+    public static final String MODE_DATABASE_FUNCTION = "database_function";
+
+    private static final TypeReference<Map<String, Object>> LAYOUT_TYPE = new TypeReference<>() {};
 
     @Autowired
-    private AdGroupOverrideRepository adGroupOverrideRepository;
+    private EntitlementSnapshotService snapshotService;
 
     @Autowired
     private UserPreferenceCacheRepository userPreferenceRepository;
 
+    @Autowired
+    private LayoutDependencyIndex dependencyIndex;
+
+    @Autowired
+    private EntitlementSymbols symbols;
+
+    @Autowired
+    private PermissionPlanService permissionPlanService;
+
+    @Autowired
+    private LayoutComputationRepository layoutComputationRepository;
+
+    @Autowired
+    private UserLayoutExpiryPolicy expiryPolicy;
+
+    @Autowired
+    private UserPreferenceWriteBuffer writeBuffer;
+
+    @Autowired
+    private CompactUserLayoutCache layoutCache;
+
+    @Autowired
+    private EncodedLayoutCache encodedLayoutCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private ReactiveEntitlementRepository reactiveRepository;
+
+    @Value("${entitlement.computation.mode:service_logic}")
+    private String defaultComputationMode;
+
     public LayoutComputationResponse computeLayout(LayoutComputationRequest request) {
         long startTime = System.currentTimeMillis();
+        String mode = computationMode(request);
         
-        logger.info("Starting layout computation for user: {} with {} AD groups", 
-                   request.getUserId(), request.getAdGroups().size());
+        logger.info("Starting layout computation for user: {} with {} AD groups ({})", 
+                   request.getUserId(), request.getAdGroups().size(), mode);
 
         try {
-            // Step 1: Get user preferences (if any)
-            UserLayoutPreferences userPreferences = userPreferenceRepository
-                .findByUserId(request.getUserId())
-                .orElse(null);
-
-            // Step 2: Check for AD group overrides
-            List<AdGroupLayoutOverride> adGroupOverrides = new ArrayList<>();
-            for (String adGroup : request.getAdGroups()) {
-                AdGroupLayoutOverride override = adGroupOverrideRepository.findByAdGroupDnAndIsActiveTrue(adGroup);
-                if (override != null) {
-                    adGroupOverrides.add(override);
-                }
+            Resolution resolution = resolve(request);
+
+            // Step 3: Compute final layout, in the database if requested
+            String computationSource = "sapi";
+            Map<String, Object> computedLayout = null;
+            if (MODE_DATABASE_FUNCTION.equals(mode)) {
+                computedLayout = computeLayoutInDatabase(request, resolution).orElse(null);
+                computationSource = computedLayout != null ? MODE_DATABASE_FUNCTION : "fallback";
+            }
+            if (computedLayout == null) {
+                UserLayoutPreferences userPreferences = writeBuffer.getPending(request.getUserId())
+                    .or(() -> layoutCache.get(request.getUserId(), userPreferenceRepository::findByUserId))
+                    .orElse(null);
+                computedLayout = computeLayoutInService(resolution, userPreferences);
             }
 
-            // Step 3: Get role templates based on AD groups
-            List<RoleLayoutTemplate> roleTemplates = new ArrayList<>();
-            for (String adGroup : request.getAdGroups()) {
-                // Extract role from AD group (simplified logic)
-                String role = extractRoleFromAdGroup(adGroup);
-                if (role != null) {
-                    roleTemplateRepository.findByRoleNameAndIsActiveTrue(role)
-                        .ifPresent(roleTemplates::add);
-                }
+            return complete(request, resolution, computedLayout, computationSource, startTime);
+
+        } catch (Exception e) {
+            logger.error("Error computing layout for user: {}", request.getUserId(), e);
+            throw new RuntimeException("Layout computation failed", e);
+        }
+    }
+
+    /**
+     * Non-blocking {@link #computeLayout} for the reactive endpoints: the user's stored layout and
+     * the {@code database_function} call go through R2DBC, the rest is the same in-memory
+     * computation. Requires {@code entitlement.reactive.enabled}.
+     */
+    public Mono<LayoutComputationResponse> computeLayoutReactive(LayoutComputationRequest request) {
+        if (reactiveRepository == null) {
+            return Mono.error(new IllegalStateException("Reactive data access is disabled"));
+        }
+        return Mono.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            String mode = computationMode(request);
+            logger.debug("Starting reactive layout computation for user: {} ({})", request.getUserId(), mode);
+            Resolution resolution = resolve(request);
+
+            Mono<Map<String, Object>> inDatabase = Mono.empty();
+            if (MODE_DATABASE_FUNCTION.equals(mode)) {
+                FunctionArguments arguments = functionArguments(request, resolution);
+                inDatabase = reactiveRepository.computeUserLayout(request.getUserId(), arguments.adGroups(),
+                        arguments.roles(), arguments.markets(), arguments.environments())
+                    .<Map<String, Object>>handle((layoutJson, sink) -> {
+                        try {
+                            sink.next(objectMapper.readValue(layoutJson, LAYOUT_TYPE));
+                        } catch (JsonProcessingException e) {
+                            sink.error(e);
+                        }
+                    })
+                    .onErrorResume(e -> {
+                        logger.warn("Database layout computation failed for user: {}, falling back to service logic",
+                                   request.getUserId(), e);
+                        return Mono.empty();
+                    });
             }
+            Mono<LayoutComputationResponse> inService = Mono.justOrEmpty(writeBuffer.getPending(request.getUserId())
+                    .or(() -> layoutCache.getIfPresent(request.getUserId())))
+                .switchIfEmpty(Mono.defer(() -> reactiveRepository.findPreferences(request.getUserId())
+                    .doOnNext(layoutCache::put)))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .map(userPreferences -> complete(request, resolution,
+                    computeLayoutInService(resolution, userPreferences.orElse(null)),
+                    MODE_DATABASE_FUNCTION.equals(mode) ? "fallback" : "sapi", startTime));
+
+            return inDatabase
+                .map(layout -> complete(request, resolution, layout, MODE_DATABASE_FUNCTION, startTime))
+                .switchIfEmpty(inService);
+        }).onErrorMap(e -> !(e instanceof IllegalArgumentException), e -> {
+            logger.error("Error computing layout for user: {}", request.getUserId(), e);
+            return new RuntimeException("Layout computation failed", e);
+        });
+    }
 
-            // Step 4: Extract market from AD groups
-            String market = extractMarketFromAdGroups(request.getAdGroups());
+    /**
+     * Steps 1 and 2: inherited override scopes, roles with the market and environment of the AD
+     * group each comes from, and the request's market.
+     */
+    private Resolution resolve(LayoutComputationRequest request) {
+        int[] adGroupIds = symbols.tryInternAll(request.getAdGroups());
+        EntitlementSnapshot snapshot = snapshotService.getSnapshot();
+        int[] scopeIds = snapshot.inheritedScopeIds(adGroupIds, request.getAdGroups());
+        List<RoleScope> roleScopes = resolveRoleScopes(snapshot, request.getAdGroups(), adGroupIds);
+        String market = extractMarketFromAdGroups(request.getAdGroups());
+        return new Resolution(snapshot, adGroupIds, scopeIds, roleScopes, market);
+    }
+
+    /**
+     * Steps 4 and 5: build the response and remember which groups, scopes and roles it depends on.
+     */
+    private LayoutComputationResponse complete(LayoutComputationRequest request, Resolution resolution,
+                                               Map<String, Object> computedLayout, String computationSource,
+                                               long startTime) {
+        LayoutComputationResponse response = new LayoutComputationResponse();
+        response.setUserId(request.getUserId());
+        response.setLayout(computedLayout);
+        // UI handles market badge styling via useMarketIndicator hook
+        response.setMarket(resolution.market());
+        response.setComputationSource(computationSource);
+        response.setComputationTimeMs(System.currentTimeMillis() - startTime);
+        response.setTimestamp(LocalDateTime.now());
 
-            // Step 5: Compute final layout
-            Map<String, Object> computedLayout = computeFinalLayout(
-                userPreferences, adGroupOverrides, roleTemplates);
+        if (record(request.getUserId(), resolution)) {
+            // Stored with the user's row so another instance can resolve the group set again
+            writeBuffer.submitAdGroups(request.getUserId(), request.getAdGroups().toArray(String[]::new));
+        }
 
-            // Step 6: Build response
-            LayoutComputationResponse response = new LayoutComputationResponse();
-            response.setUserId(request.getUserId());
-            response.setLayout(computedLayout);
-            // UI handles market badge styling via useMarketIndicator hook
-            response.setMarket(market);
-            response.setComputationSource("sapi");
-            response.setComputationTimeMs(System.currentTimeMillis() - startTime);
-            response.setTimestamp(LocalDateTime.now());
+        logger.info("Layout computation completed for user: {} in {}ms", 
+                   request.getUserId(), response.getComputationTimeMs());
+        return response;
+    }
+
+    /**
+     * Index a user under the AD groups stored with the user's layout, without computing it, so a
+     * layout last computed on another instance can be refreshed here.
+     *
+     * @return the user's group set, empty if it cannot be indexed (see {@link LayoutDependencyIndex#record})
+     */
+    public Optional<LayoutDependencyIndex.GroupSet> indexUser(String userId, List<String> adGroups) {
+        record(userId, resolve(new LayoutComputationRequest(userId, adGroups)));
+        return dependencyIndex.findGroupSetHashByUser(userId).flatMap(dependencyIndex::getGroupSet);
+    }
 
-            logger.info("Layout computation completed for user: {} in {}ms", 
-                       request.getUserId(), response.getComputationTimeMs());
+    private boolean record(String userId, Resolution resolution) {
+        int[] roleIds = resolution.roleScopes().stream().mapToInt(RoleScope::roleId).toArray();
+        return dependencyIndex.record(userId, resolution.adGroupIds(), roleIds, resolution.scopeIds());
+    }
 
-            return response;
+    /**
+     * Computation mode for a request: the request's own {@code computationMode}, else the configured default.
+     */
+    public String computationMode(LayoutComputationRequest request) {
+        String mode = request.getComputationMode() != null && !request.getComputationMode().isBlank()
+            ? request.getComputationMode()
+            : defaultComputationMode;
+        if (!MODE_SERVICE_LOGIC.equals(mode) && !MODE_DATABASE_FUNCTION.equals(mode)) {
+            throw new IllegalArgumentException("Unknown computation mode: " + mode);
+        }
+        return mode;
+    }
 
-        } catch (Exception e) {
-            logger.error("Error computing layout for user: {}", request.getUserId(), e);
-            throw new RuntimeException("Layout computation failed", e);
+    /**
+     * Layout from preferences (database) plus overrides and templates (snapshot).
+     */
+    private Map<String, Object> computeLayoutInService(Resolution resolution, UserLayoutPreferences userPreferences) {
+        EntitlementSnapshot snapshot = resolution.snapshot();
+        List<AdGroupLayoutOverride> adGroupOverrides = findOverrides(snapshot, resolution.scopeIds(), resolution.adGroupIds());
+        List<RoleLayoutTemplate> roleTemplates = findTemplates(snapshot, resolution.roleScopes());
+
+        return computeFinalLayout(userPreferences, adGroupOverrides, roleTemplates);
+    }
+
+    /**
+     * Same layout as {@link #computeLayoutInService}, built by one SQL statement.
+     * Empty if the database function is unavailable or fails, so the caller can fall back.
+     */
+    private Optional<Map<String, Object>> computeLayoutInDatabase(LayoutComputationRequest request, Resolution resolution) {
+        try {
+            FunctionArguments arguments = functionArguments(request, resolution);
+            String layoutJson = layoutComputationRepository.computeUserLayout(
+                request.getUserId(), arguments.adGroups(), arguments.roles(), arguments.markets(), arguments.environments());
+            return Optional.of(objectMapper.readValue(layoutJson, LAYOUT_TYPE));
+        } catch (DataAccessException | JsonProcessingException e) {
+            logger.warn("Database layout computation failed for user: {}, falling back to service logic",
+                       request.getUserId(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Array arguments of {@code compute_user_layout}. Scope DNs come first, so the function applies
+     * them before the request's own AD groups.
+     */
+    private FunctionArguments functionArguments(LayoutComputationRequest request, Resolution resolution) {
+        List<String> adGroups = new ArrayList<>(resolution.scopeIds().length + request.getAdGroups().size());
+        for (int scopeId : resolution.scopeIds()) {
+            adGroups.add(symbols.name(scopeId));
+        }
+        adGroups.addAll(request.getAdGroups());
+        List<RoleScope> roleScopes = resolution.roleScopes();
+        String[] roles = new String[roleScopes.size()];
+        String[] markets = new String[roleScopes.size()];
+        String[] environments = new String[roleScopes.size()];
+        for (int i = 0; i < roles.length; i++) {
+            roles[i] = roleScopes.get(i).role();
+            markets[i] = roleScopes.get(i).market();
+            environments[i] = roleScopes.get(i).environment();
+        }
+        return new FunctionArguments(adGroups.toArray(new String[0]), roles, markets, environments);
+    }
+
+    /**
+     * Content version of the layout {@link #computeLayout} would return for this request.
+     *
+     * Derived from the user, the computation mode, the snapshot version, the user's preference
+     * {@code lastComputedAt} and the requested AD groups, without loading any layout data.
+     * Two users with the same groups therefore never share a version.
+     */
+    public String contentVersion(LayoutComputationRequest request) {
+        Optional<LocalDateTime> lastComputedAt = knownLastComputedAt(request.getUserId())
+            .or(() -> userPreferenceRepository.findLastComputedAtByUserId(request.getUserId()));
+        return contentVersion(request, lastComputedAt);
+    }
+
+    /**
+     * Non-blocking {@link #contentVersion}, reading {@code lastComputedAt} through R2DBC on a miss.
+     */
+    public Mono<String> contentVersionReactive(LayoutComputationRequest request) {
+        if (reactiveRepository == null) {
+            return Mono.error(new IllegalStateException("Reactive data access is disabled"));
+        }
+        Optional<LocalDateTime> known = knownLastComputedAt(request.getUserId());
+        Mono<Optional<LocalDateTime>> lastComputedAt = known.isPresent()
+            ? Mono.just(known)
+            : reactiveRepository.findLastComputedAt(request.getUserId()).map(Optional::of).defaultIfEmpty(Optional.empty());
+        return lastComputedAt.map(at -> contentVersion(request, at));
+    }
+
+    /**
+     * {@code lastComputedAt} from a pending write or the layout cache, without a database read.
+     */
+    private Optional<LocalDateTime> knownLastComputedAt(String userId) {
+        return writeBuffer.getPending(userId)
+            .map(UserLayoutPreferences::getLastComputedAt)
+            .or(() -> layoutCache.getLastComputedAt(userId));
+    }
+
+    private String contentVersion(LayoutComputationRequest request, Optional<LocalDateTime> lastComputedAt) {
+        return request.getUserId() + ":" + computationMode(request) + ":"
+            + snapshotService.getSnapshot().getVersion() + ":" + lastComputedAt.map(LocalDateTime::toString).orElse("none") + ":"
+            + dependencyIndex.groupSetHashOf(request.getAdGroups());
+    }
+
+    /**
+     * Invalidate the layouts of every user sharing a group set after one of its templates or
+     * overrides changed.
+     *
+     * The snapshot reload behind the change has already moved each user's content version on; this
+     * drops the encoded layouts of the old versions. Preference rows are left alone: the next request
+     * rebuilds the layout from the new snapshot, the user's own preferences and the user's own AD
+     * group order, none of which a layout shared by the whole group set could carry.
+     *
+     * @return number of users invalidated
+     */
+    public int invalidateGroupSet(LayoutDependencyIndex.GroupSet groupSet) {
+        List<String> userIds = List.copyOf(groupSet.users());
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        encodedLayoutCache.evictUsers(userIds);
+
+        logger.debug("Invalidated layouts for group set {} ({} users)", groupSet.hash(), userIds.size());
+        return userIds.size();
+    }
+
+    /**
+     * Refresh the stored layouts of a group set's users after a stale serve or ahead of expiry:
+     * rows that exist get a new expiry and {@code lastComputedAt}, with layout, theme and
+     * permissions kept as stored, and the users' encoded layouts are invalidated. Users without a
+     * stored row get none.
+     *
+     * @return number of users refreshed
+     */
+    public int refreshGroupSet(LayoutDependencyIndex.GroupSet groupSet) {
+        List<String> userIds = List.copyOf(groupSet.users());
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, UserLayoutPreferences> existing = new HashMap<>();
+        for (UserLayoutPreferences preferences : userPreferenceRepository.findAllById(userIds)) {
+            existing.put(preferences.getUserId(), preferences);
+        }
+        for (String userId : userIds) {
+            writeBuffer.getPending(userId).ifPresent(preferences -> existing.put(userId, preferences));
+        }
+
+        List<UserLayoutPreferences> refreshed = new ArrayList<>(existing.values());
+        for (UserLayoutPreferences preferences : refreshed) {
+            preferences.setCacheExpiry(expiryPolicy.nextExpiry());
+        }
+        if (!refreshed.isEmpty()) {
+            writeBuffer.submitAll(refreshed);
+        }
+        encodedLayoutCache.evictUsers(userIds);
+
+        logger.debug("Refreshed layouts for group set {} ({} of {} users stored)",
+                    groupSet.hash(), refreshed.size(), userIds.size());
+        return userIds.size();
+    }
+
+    /**
+     * Overrides in the order they are applied: inherited scope overrides (market, then market and
+     * function, then market, function and environment), then the AD groups' own overrides.
+     */
+    private List<AdGroupLayoutOverride> findOverrides(EntitlementSnapshot snapshot, int[] scopeIds, int[] adGroupIds) {
+        List<AdGroupLayoutOverride> adGroupOverrides = new ArrayList<>();
+        for (int scopeId : scopeIds) {
+            AdGroupLayoutOverride override = snapshot.findOverrideByDnId(scopeId);
+            if (override != null) {
+                adGroupOverrides.add(override);
+            }
+        }
+        for (int adGroupId : adGroupIds) {
+            AdGroupLayoutOverride override = snapshot.findOverrideByDnId(adGroupId);
+            if (override != null) {
+                adGroupOverrides.add(override);
+            }
+        }
+        return adGroupOverrides;
+    }
+
+    /**
+     * Templates applying to each role in the market and environment it is held in, in role order.
+     */
+    private List<RoleLayoutTemplate> findTemplates(EntitlementSnapshot snapshot, List<RoleScope> roleScopes) {
+        List<RoleLayoutTemplate> roleTemplates = new ArrayList<>();
+        for (RoleScope scope : roleScopes) {
+            RoleLayoutTemplate template = snapshot.findTemplate(scope.roleId(), scope.market(), scope.environment());
+            if (template != null) {
+                roleTemplates.add(template);
+            }
+        }
+        return roleTemplates;
+    }
+
+    /**
+     * Roles granted by the AD groups, in request order. Each role carries the market and environment
+     * of the AD group it comes from ({@link EntitlementSnapshot#scopeOf}).
+     */
+    private List<RoleScope> resolveRoleScopes(EntitlementSnapshot snapshot, List<String> adGroups, int[] adGroupIds) {
+        List<RoleScope> roleScopes = new ArrayList<>();
+        for (int i = 0; i < adGroupIds.length; i++) {
+            String adGroup = adGroups.get(i);
+            // Extract role from AD group (simplified logic)
+            String role = extractRoleFromAdGroup(adGroup);
+            if (role == null) {
+                continue;
+            }
+            EntitlementSnapshot.GroupScope scope = snapshot.scopeOf(adGroupIds[i], adGroup);
+            // A role the symbol table has no room for has no template either
+            roleScopes.add(new RoleScope(role, symbols.tryIntern(role), scope.market(), scope.environment()));
         }
+        return roleScopes;
+    }
+
+    /**
+     * A role held through an AD group, with that group's market and environment (null if unknown).
+     */
+    private record RoleScope(String role, int roleId, String market, String environment) {
+    }
+
+    /**
+     * What a request resolves to against one snapshot, before any layout data is loaded.
+     */
+    private record Resolution(EntitlementSnapshot snapshot, int[] adGroupIds, int[] scopeIds,
+                              List<RoleScope> roleScopes, String market) {
+    }
+
+    private record FunctionArguments(String[] adGroups, String[] roles, String[] markets, String[] environments) {
     }
 
     private String extractRoleFromAdGroup(String adGroupDn) {
@@ -169,52 +525,38 @@ public class LayoutComputationService {
 
 
     /**
-     * Build structured layout with columns, widgets, and permissions
+     * Structured layout (columns, widgets, data access, effective permissions) for a request,
+     * evaluated against the current {@link PermissionPlan}.
+     *
+     * Market comes from the AD group DNs; functions from the matching AD group overrides.
      */
-    private Map<String, Object> buildStructuredLayout(List<String> roles, String market) {
-        Map<String, Object> layout = new HashMap<>();
-        
-        // Define column visibility based on roles
-        Map<String, Object> columns = new HashMap<>();
-        columns.put("customer", Map.of("visible", true, "size", 300));
-        columns.put("transcript", Map.of("visible", true, "size", 400));
-        
-        // Embedded apps visibility depends on role
-        boolean canViewEmbedded = roles.stream().anyMatch(role -> 
-            role.contains("senior") || role.contains("supervisor") || role.contains("manager"));
-        columns.put("embedded", Map.of("visible", canViewEmbedded, "size", 300));
-        
-        layout.put("columns", columns);
-        
-        // Define widget configurations
-        Map<String, Object> widgets = new HashMap<>();
-        widgets.put("sentiment_widget", Map.of("visible", true, "editable", false));
-        widgets.put("priority_widget", Map.of("visible", roles.contains("supervisor"), "editable", false));
-        layout.put("widgets", widgets);
-        
-        // Define data access permissions
-        Map<String, Object> dataAccess = new HashMap<>();
-        Map<String, Object> customerData = new HashMap<>();
-        customerData.put("personalInfo", true);
-        customerData.put("contactDetails", true);
-        customerData.put("accountInfo", roles.stream().anyMatch(role -> 
-            role.contains("senior") || role.contains("supervisor") || role.contains("manager")));
-        
-        dataAccess.put("customerData", customerData);
-        dataAccess.put("interactionHistory", Map.of("full", 
-            roles.stream().anyMatch(role -> role.contains("supervisor") || role.contains("manager"))));
-        
-        layout.put("dataAccess", dataAccess);
-        
-        // Define effective permissions
-        Map<String, Object> permissions = new HashMap<>();
-        permissions.put("data.customer.read", "granted");
-        permissions.put("ui.customer_column.view", "granted");
-        permissions.put("ui.transcript_column.view", "granted");
-        permissions.put("ui.embedded_apps.view", canViewEmbedded ? "granted" : "denied");
-        
-        layout.put("effectivePermissions", permissions);
-        
-        return layout;
+    public StructuredLayout computeStructuredLayout(LayoutComputationRequest request) {
+        if (request.getUserId() == null || request.getAdGroups() == null) {
+            throw new IllegalArgumentException("userId and adGroups are required");
+        }
+        int[] adGroupIds = symbols.tryInternAll(request.getAdGroups());
+        EntitlementSnapshot snapshot = snapshotService.getSnapshot();
+        List<RoleScope> roleScopes = resolveRoleScopes(snapshot, request.getAdGroups(), adGroupIds);
+        int[] roleIds = roleScopes.stream().mapToInt(RoleScope::roleId).toArray();
+        List<String> roles = roleScopes.stream().map(RoleScope::role).toList();
+        String market = extractMarketFromAdGroups(request.getAdGroups());
+        Set<String> functions = new TreeSet<>();
+        int[] scopeIds = snapshot.inheritedScopeIds(adGroupIds, request.getAdGroups());
+        for (AdGroupLayoutOverride override : findOverrides(snapshot, scopeIds, adGroupIds)) {
+            if (override.getParsedFunction() != null) {
+                functions.add(override.getParsedFunction());
+            }
+        }
+
+        PermissionPlan plan = permissionPlanService.getPlan();
+        long[] granted = plan.evaluate(roleIds, roles, adGroupIds, request.getAdGroups(), market, functions);
+        return new StructuredLayout(request.getUserId(), market, functions, plan.getVersion(), plan.render(granted));
+    }
+
+    /**
+     * Structured layout for one user and the inputs it was evaluated with.
+     */
+    public record StructuredLayout(String userId, String market, Set<String> functions,
+                                   String planVersion, Map<String, Object> layout) {
     }
 }
@@ -0,0 +1,95 @@
+package com.ccaas.entitlement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+
+/**
+ * JSON Patch deltas between computed layout versions, for callers that already hold a version.
+ *
+ * The version history is the {@link EncodedLayoutCache}: a base version can be diffed against
+ * for as long as the same user's encoded layout in the same mode is still cached. Patches are
+ * cached per user, mode and (base, target) pair,
+ * so a refresh storm after an admin change diffs each pair once. When the base is unknown, or
+ * the patch would not be smaller than the full layout, callers fall back to the full layout.
+ */
+@Service
+public class LayoutDeltaService {
+
+    public static final String CACHE_NAME = "layoutDeltas";
+
+    @Autowired
+    private EncodedLayoutCache encodedLayoutCache;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Counter patchCounter;
+    private final Counter unknownBaseCounter;
+    private final Counter notSmallerCounter;
+
+    public LayoutDeltaService(MeterRegistry meterRegistry) {
+        this.patchCounter = counter(meterRegistry, "patch");
+        this.unknownBaseCounter = counter(meterRegistry, "unknown_base");
+        this.notSmallerCounter = counter(meterRegistry, "not_smaller");
+    }
+
+    /**
+     * JSON Patch bytes turning the layout at {@code baseVersion} into {@code target}, or empty
+     * if the full layout should be sent instead.
+     */
+    public Optional<byte[]> delta(String userId, String computationMode, String baseVersion, String version,
+                                  EncodedLayoutCache.EncodedLayout target) {
+        String key = EncodedLayoutCache.key(userId, computationMode, baseVersion + ">" + version);
+        byte[] patch = cache().get(key, byte[].class);
+        if (patch == null) {
+            Optional<EncodedLayoutCache.EncodedLayout> base = encodedLayoutCache.get(userId, computationMode, baseVersion);
+            if (base.isEmpty()) {
+                unknownBaseCounter.increment();
+                return Optional.empty();
+            }
+            patch = diff(base.get().json(), target.json());
+            cache().put(key, patch);
+        }
+        if (patch.length >= target.json().length) {
+            notSmallerCounter.increment();
+            return Optional.empty();
+        }
+        patchCounter.increment();
+        return Optional.of(patch);
+    }
+
+    private byte[] diff(byte[] base, byte[] target) {
+        try {
+            return objectMapper.writeValueAsBytes(JsonPatches.diff(objectMapper.readTree(base), objectMapper.readTree(target)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Cache cache() {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache == null) {
+            throw new IllegalStateException("Cache not configured: " + CACHE_NAME);
+        }
+        return cache;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("entitlement.layout.delta")
+            .description("compute-internal requests with a base version, by outcome")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
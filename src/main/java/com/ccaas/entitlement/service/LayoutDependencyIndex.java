@@ -0,0 +1,205 @@
+package com.ccaas.entitlement.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reverse index from AD group DNs, scope DNs and role names to the layouts that depend on them.
+ *
+ * Layouts are grouped by group-set hash: users holding exactly the same AD groups
+ * share the same base layout, so a change only needs one computation per group set.
+ * The index is populated from observed layout computations.
+ *
+ * Group sets are keyed internally by their sorted symbol IDs ({@link EntitlementSymbols}),
+ * so recording a computation does not re-hash the DNs. The SHA-256 group-set hash is
+ * computed once per group set and is what leaves this class.
+ */
+@Component
+public class LayoutDependencyIndex {
+
+    @Autowired
+    private EntitlementSymbols symbols;
+
+    private final Map<GroupSetKey, GroupSet> groupSetsByKey = new ConcurrentHashMap<>();
+    private final Map<String, GroupSet> groupSetsByHash = new ConcurrentHashMap<>();
+    private final Map<String, GroupSet> groupSetByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<String>> groupSetHashesByAdGroup = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<String>> groupSetHashesByRole = new ConcurrentHashMap<>();
+
+    /**
+     * Record that a user's layout was computed from the given AD groups, roles and inherited
+     * scope DNs (symbol IDs). Scope DNs are indexed like AD groups, so a change to an inherited
+     * override finds every group set in its scope.
+     *
+     * Group sets with an AD group or role the symbol table had no room for are not indexed; those
+     * layouts are refreshed when they expire instead of on entitlement changes.
+     *
+     * @return true if the user is now indexed under a different group set than before
+     */
+    public boolean record(String userId, int[] adGroupIds, int[] roleIds, int[] scopeIds) {
+        if (!EntitlementSymbols.allKnown(adGroupIds) || !EntitlementSymbols.allKnown(roleIds)) {
+            // Recomputing the user's previous group set must not overwrite this layout
+            GroupSet previous = groupSetByUser.remove(userId);
+            if (previous != null) {
+                previous.users().remove(userId);
+            }
+            return false;
+        }
+        GroupSet groupSet = groupSetsByKey.computeIfAbsent(GroupSetKey.of(adGroupIds), key -> {
+            List<String> adGroups = new ArrayList<>(key.ids().length);
+            for (int id : key.ids()) {
+                adGroups.add(symbols.name(id));
+            }
+            List<String> roles = new ArrayList<>(roleIds.length);
+            for (int id : roleIds) {
+                roles.add(symbols.name(id));
+            }
+            GroupSet created = new GroupSet(groupSetHash(adGroups), key, roleIds.clone(),
+                                            List.copyOf(adGroups), List.copyOf(roles));
+            for (int id : key.ids()) {
+                groupSetHashesByAdGroup.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(created.hash());
+            }
+            for (int id : scopeIds) {
+                groupSetHashesByAdGroup.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(created.hash());
+            }
+            for (int id : roleIds) {
+                groupSetHashesByRole.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(created.hash());
+            }
+            groupSetsByHash.put(created.hash(), created);
+            return created;
+        });
+        groupSet.users().add(userId);
+
+        GroupSet previous = groupSetByUser.put(userId, groupSet);
+        if (previous != null && previous != groupSet) {
+            previous.users().remove(userId);
+        }
+        return previous != groupSet;
+    }
+
+    /**
+     * Group-set hash for AD groups given as symbol IDs, reusing the stored hash for known group sets.
+     */
+    public String groupSetHash(int[] adGroupIds) {
+        GroupSet known = groupSetsByKey.get(GroupSetKey.of(adGroupIds));
+        if (known != null) {
+            return known.hash();
+        }
+        List<String> adGroups = new ArrayList<>(adGroupIds.length);
+        for (int id : adGroupIds) {
+            adGroups.add(symbols.name(id));
+        }
+        return groupSetHash(adGroups);
+    }
+
+    /**
+     * Group-set hash for AD groups given by name, without interning them.
+     */
+    public String groupSetHashOf(List<String> adGroups) {
+        int[] adGroupIds = symbols.findAll(adGroups);
+        return EntitlementSymbols.allKnown(adGroupIds) ? groupSetHash(adGroupIds) : groupSetHash(adGroups);
+    }
+
+    /**
+     * Group-set hashes whose layouts include the given AD group or inherit from the given scope DN.
+     */
+    public Set<String> findGroupSetsByAdGroup(String adGroupDn) {
+        return Set.copyOf(groupSetHashesByAdGroup.getOrDefault(symbols.find(adGroupDn), Set.of()));
+    }
+
+    /**
+     * Group-set hashes whose layouts include the given role.
+     */
+    public Set<String> findGroupSetsByRole(String roleName) {
+        return Set.copyOf(groupSetHashesByRole.getOrDefault(symbols.find(roleName), Set.of()));
+    }
+
+    public Optional<GroupSet> getGroupSet(String groupSetHash) {
+        return Optional.ofNullable(groupSetsByHash.get(groupSetHash));
+    }
+
+    /**
+     * AD groups last seen for a user, if the user has been computed or indexed on this instance.
+     */
+    public Optional<List<String>> findAdGroupsByUser(String userId) {
+        return Optional.ofNullable(groupSetByUser.get(userId)).map(GroupSet::adGroups);
+    }
+
+    /**
+     * Group-set hash last seen for a user, if the user has been computed or indexed on this instance.
+     */
+    public Optional<String> findGroupSetHashByUser(String userId) {
+        return Optional.ofNullable(groupSetByUser.get(userId)).map(GroupSet::hash);
+    }
+
+    public int getIndexedUserCount() {
+        return groupSetByUser.size();
+    }
+
+    public int getGroupSetCount() {
+        return groupSetsByKey.size();
+    }
+
+    /**
+     * Stable SHA-256 hash of a set of AD group DNs (order and duplicates ignored).
+     */
+    public static String groupSetHash(Collection<String> adGroups) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String adGroup : new TreeSet<>(adGroups)) {
+                digest.update(adGroup.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Identity of a set of AD groups on this instance: sorted, distinct symbol IDs.
+     */
+    public record GroupSetKey(int[] ids) {
+
+        public static GroupSetKey of(int[] adGroupIds) {
+            return new GroupSetKey(EntitlementSymbols.sortedDistinct(adGroupIds));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GroupSetKey other && Arrays.equals(ids, other.ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(ids);
+        }
+
+        @Override
+        public String toString() {
+            return "GroupSetKey" + Arrays.toString(ids);
+        }
+    }
+
+    /**
+     * Users sharing an identical set of AD groups. {@code adGroups} and {@code roles} hold the
+     * canonical names for {@code key} and {@code roleIds}.
+     */
+    public record GroupSet(String hash,
+                           GroupSetKey key,
+                           int[] roleIds,
+                           List<String> adGroups,
+                           List<String> roles,
+                           Set<String> users) {
+
+        GroupSet(String hash, GroupSetKey key, int[] roleIds, List<String> adGroups, List<String> roles) {
+            this(hash, key, roleIds, adGroups, roles, ConcurrentHashMap.newKeySet());
+        }
+    }
+}
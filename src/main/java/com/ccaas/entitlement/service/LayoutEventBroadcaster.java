@@ -0,0 +1,326 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.entity.RoleLayoutTemplate;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Server-Sent Events push of layout changes to subscribers by user ID or market.
+ *
+ * Events are driven by {@link EntitlementChangeEvent}s from this service's own writes:
+ * - USER_PREFERENCE: the users whose preferences changed
+ * - AD_GROUP_OVERRIDE / ROLE_TEMPLATE: users whose group set depends on the changed DNs or
+ *   roles ({@link LayoutDependencyIndex}), and subscribers of the affected markets
+ * - PERMISSION_RULE: every subscriber
+ *
+ * The dependency index is local to this instance, so a user subscriber only receives override and
+ * template events if the user's layout was computed here.
+ *
+ * An idle subscription holds no thread, only its async request. Resolving recipients and
+ * writing events run on virtual threads, off the publishing request thread. Each subscription
+ * has a single pending slot: a change arriving while the previous one is still queued replaces
+ * it, so a slow client gets the latest change rather than a growing backlog. A heartbeat comment
+ * keeps connections open through proxies and detects dead clients.
+ */
+@Service
+public class LayoutEventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(LayoutEventBroadcaster.class);
+
+    public static final String EVENT_NAME = "layout-changed";
+
+    /** Pending marker for a heartbeat; never replaces a real change. */
+    private static final LayoutChange HEARTBEAT = new LayoutChange(null, null, null, Set.of());
+
+    @Autowired
+    private LayoutDependencyIndex dependencyIndex;
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    @Value("${entitlement.events.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${entitlement.events.max-subscriptions:50000}")
+    private int maxSubscriptions;
+
+    private final Map<String, Set<Subscription>> subscriptionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscription>> subscriptionsByMarket = new ConcurrentHashMap<>();
+    private final AtomicLong subscriptionCount = new AtomicLong();
+    private final AtomicLong eventIds = new AtomicLong();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter sentCounter;
+    private final Counter coalescedCounter;
+    private final Counter failedCounter;
+
+    public LayoutEventBroadcaster(MeterRegistry meterRegistry) {
+        Gauge.builder("entitlement.events.subscriptions", subscriptionCount, AtomicLong::get)
+            .description("Open layout change event streams")
+            .register(meterRegistry);
+        this.sentCounter = eventCounter(meterRegistry, "sent");
+        this.coalescedCounter = eventCounter(meterRegistry, "coalesced");
+        this.failedCounter = eventCounter(meterRegistry, "failed");
+    }
+
+    /**
+     * Open an event stream for a user or a market.
+     *
+     * @return empty if the subscription limit is reached
+     */
+    public Optional<SseEmitter> subscribe(String userId, String market) {
+        if (subscriptionCount.incrementAndGet() > maxSubscriptions) {
+            subscriptionCount.decrementAndGet();
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscription subscription = new Subscription(emitter);
+        Map<String, Set<Subscription>> index = userId != null ? subscriptionsByUser : subscriptionsByMarket;
+        String key = userId != null ? userId : market.toUpperCase(Locale.ROOT);
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscription);
+
+        Runnable remove = () -> {
+            if (subscription.close()) {
+                index.computeIfPresent(key, (k, subscriptions) -> {
+                    subscriptions.remove(subscription);
+                    return subscriptions.isEmpty() ? null : subscriptions;
+                });
+                subscriptionCount.decrementAndGet();
+            }
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        subscription.remove = remove;
+        return Optional.of(emitter);
+    }
+
+    @EventListener
+    public void onEntitlementChange(EntitlementChangeEvent event) {
+        if (subscriptionCount.get() == 0) {
+            return;
+        }
+        try {
+            executor.execute(() -> dispatch(event));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Layout event dropped during shutdown: {}", event);
+        }
+    }
+
+    /**
+     * Send a heartbeat comment to every subscription that has nothing queued.
+     */
+    @Scheduled(fixedDelayString = "${entitlement.events.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        forEachSubscription(subscription -> subscription.offerHeartbeat());
+    }
+
+    public long getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        forEachSubscription(subscription -> subscription.emitter.complete());
+    }
+
+    private void dispatch(EntitlementChangeEvent event) {
+        String changeType = event.getChangeType().name();
+        switch (event.getChangeType()) {
+            case USER_PREFERENCE -> {
+                for (String userId : event.getKeys()) {
+                    offerToUser(userId, changeType, Set.of(userId));
+                }
+            }
+            case PERMISSION_RULE -> {
+                subscriptionsByUser.forEach((userId, subscriptions) -> offer(subscriptions, new LayoutChange(changeType, userId, null, event.getKeys())));
+                subscriptionsByMarket.forEach((market, subscriptions) -> offer(subscriptions, new LayoutChange(changeType, null, market, event.getKeys())));
+            }
+            case AD_GROUP_OVERRIDE, ROLE_TEMPLATE -> {
+                Set<String> groupSets = new HashSet<>();
+                for (String key : event.getKeys()) {
+                    groupSets.addAll(event.getChangeType() == EntitlementChangeEvent.ChangeType.AD_GROUP_OVERRIDE
+                        ? dependencyIndex.findGroupSetsByAdGroup(key)
+                        : dependencyIndex.findGroupSetsByRole(key));
+                }
+                if (!groupSets.isEmpty()) {
+                    for (String userId : subscriptionsByUser.keySet()) {
+                        dependencyIndex.findGroupSetHashByUser(userId)
+                            .filter(groupSets::contains)
+                            .ifPresent(hash -> offerToUser(userId, changeType, event.getKeys()));
+                    }
+                }
+                Set<String> markets = affectedMarkets(event);
+                subscriptionsByMarket.forEach((market, subscriptions) -> {
+                    if (markets == null || markets.contains(market)) {
+                        offer(subscriptions, new LayoutChange(changeType, null, market, event.getKeys()));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Markets an override or template change applies to, or null if it may apply to any market.
+     */
+    private Set<String> affectedMarkets(EntitlementChangeEvent event) {
+        EntitlementSnapshot snapshot = snapshotService.getSnapshot();
+        Set<String> markets = new HashSet<>();
+        for (String key : event.getKeys()) {
+            String[] applicable;
+            if (event.getChangeType() == EntitlementChangeEvent.ChangeType.AD_GROUP_OVERRIDE) {
+                String market = AdGroupDns.isScope(key)
+                    ? AdGroupDns.parseScope(key)[0]
+                    : snapshot.findOverrideByDn(key).map(AdGroupLayoutOverride::getParsedMarket).orElse(AdGroupDns.market(key));
+                applicable = market != null ? new String[] {market} : null;
+            } else {
+                applicable = snapshot.findTemplateByRole(key).map(RoleLayoutTemplate::getMarketApplicable).orElse(null);
+            }
+            if (applicable == null || applicable.length == 0) {
+                return null;
+            }
+            for (String market : applicable) {
+                markets.add(market.trim().toUpperCase(Locale.ROOT));
+            }
+        }
+        return markets;
+    }
+
+    private void offerToUser(String userId, String changeType, Set<String> keys) {
+        Set<Subscription> subscriptions = subscriptionsByUser.get(userId);
+        if (subscriptions != null) {
+            offer(subscriptions, new LayoutChange(changeType, userId, null, keys));
+        }
+    }
+
+    private void offer(Set<Subscription> subscriptions, LayoutChange change) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(change);
+        }
+    }
+
+    private void forEachSubscription(java.util.function.Consumer<Subscription> action) {
+        subscriptionsByUser.values().forEach(subscriptions -> subscriptions.forEach(action));
+        subscriptionsByMarket.values().forEach(subscriptions -> subscriptions.forEach(action));
+    }
+
+    private static Counter eventCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("entitlement.events.delivered")
+            .description("Layout change events by delivery outcome")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * One open stream with a single pending event slot, drained by one virtual thread at a time.
+     */
+    private final class Subscription {
+
+        private final SseEmitter emitter;
+        private final AtomicReference<LayoutChange> pending = new AtomicReference<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Runnable remove;
+
+        Subscription(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(LayoutChange change) {
+            LayoutChange replaced = pending.getAndSet(change);
+            if (replaced != null && replaced != HEARTBEAT) {
+                coalescedCounter.increment();
+            }
+            schedule();
+        }
+
+        void offerHeartbeat() {
+            if (pending.compareAndSet(null, HEARTBEAT)) {
+                schedule();
+            }
+        }
+
+        /**
+         * Mark closed; true only for the first call.
+         */
+        boolean close() {
+            return closed.compareAndSet(false, true);
+        }
+
+        private void schedule() {
+            if (!closed.get() && draining.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                LayoutChange change = pending.getAndSet(null);
+                if (change == null) {
+                    draining.set(false);
+                    // A change offered after the slot was emptied but before draining was cleared
+                    if (pending.get() == null || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (closed.get()) {
+                    continue;
+                }
+                try {
+                    if (change == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event()
+                            .id(Long.toString(eventIds.incrementAndGet()))
+                            .name(EVENT_NAME)
+                            .data(change, MediaType.APPLICATION_JSON));
+                        sentCounter.increment();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client gone or stream already completed
+                    failedCounter.increment();
+                    emitter.completeWithError(e);
+                    if (remove != null) {
+                        remove.run();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Payload of a layout change event: what changed and for whom. Clients refetch the layout
+     * (with {@code baseVersion} to get a delta).
+     */
+    public record LayoutChange(String changeType, String userId, String market, Set<String> keys) {
+    }
+}
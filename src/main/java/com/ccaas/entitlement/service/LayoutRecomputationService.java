@@ -0,0 +1,244 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incremental recomputation of user layouts affected by template or override changes.
+ *
+ * Changes are resolved through the {@link LayoutDependencyIndex} to the group sets
+ * that depend on them and queued. A scheduled worker drains the queue in the
+ * background, limited to a fixed number of user layouts per second, and invalidates
+ * the cached layouts of each group set's users.
+ *
+ * The same queue serves stale-while-revalidate and refresh-ahead requests for individual users;
+ * their group sets are refreshed, which also renews the users' stored expiry. A user this
+ * instance has not computed is first indexed from the AD groups stored with the layout.
+ */
+@Service
+public class LayoutRecomputationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LayoutRecomputationService.class);
+
+    @Autowired
+    private LayoutDependencyIndex dependencyIndex;
+
+    @Autowired
+    private LayoutComputationService layoutComputationService;
+
+    @Value("${entitlement.recompute.enabled:true}")
+    private boolean enabled;
+
+    @Value("${entitlement.recompute.max-users-per-second:200}")
+    private int maxUsersPerSecond;
+
+    private final Set<String> pendingGroupSets = new LinkedHashSet<>();
+    private final AtomicLong queuedGroupSets = new AtomicLong();
+    private final AtomicLong recomputedGroupSets = new AtomicLong();
+    private final AtomicLong failedGroupSets = new AtomicLong();
+    private final Map<String, Long> refreshRequestedAt = new ConcurrentHashMap<>();
+    private final Set<String> refreshGroupSets = ConcurrentHashMap.newKeySet();
+    private volatile LocalDateTime lastRunAt;
+
+    private final Counter recomputedUsersCounter;
+    private final Timer staleRefreshTimer;
+
+    public LayoutRecomputationService(MeterRegistry meterRegistry) {
+        this.recomputedUsersCounter = Counter.builder("entitlement.recompute.users")
+            .description("User layouts invalidated or refreshed by the recomputation worker")
+            .register(meterRegistry);
+        this.staleRefreshTimer = Timer.builder("entitlement.cache.stale.refresh")
+            .description("Time from serving a stale layout to its refreshed layout being stored")
+            .register(meterRegistry);
+        Gauge.builder("entitlement.recompute.pending", this, LayoutRecomputationService::getPendingGroupSetCount)
+            .description("Group sets waiting for recomputation")
+            .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onEntitlementChange(EntitlementChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        Set<String> affected = new LinkedHashSet<>();
+        for (String key : event.getKeys()) {
+            switch (event.getChangeType()) {
+                case AD_GROUP_OVERRIDE -> affected.addAll(dependencyIndex.findGroupSetsByAdGroup(key));
+                case ROLE_TEMPLATE -> affected.addAll(dependencyIndex.findGroupSetsByRole(key));
+                case USER_PREFERENCE, PERMISSION_RULE -> { }
+            }
+        }
+
+        if (!affected.isEmpty()) {
+            int added = enqueue(affected);
+            logger.info("{} change to {} affects {} group sets ({} newly queued)",
+                       event.getChangeType(), event.getKeys(), affected.size(), added);
+        }
+    }
+
+    /**
+     * Queue a background refresh of a user's layout after a stale serve.
+     *
+     * @param storedAdGroups the AD groups stored with the layout, used if the user is not indexed here
+     * @return false if the user's group set is neither indexed here nor resolvable from {@code storedAdGroups}
+     */
+    public boolean requestRefresh(String userId, String[] storedAdGroups) {
+        if (!enabled) {
+            return false;
+        }
+        Optional<String> groupSetHash = findGroupSet(userId, storedAdGroups).map(LayoutDependencyIndex.GroupSet::hash);
+        if (groupSetHash.isEmpty()) {
+            return false;
+        }
+        refreshRequestedAt.putIfAbsent(groupSetHash.get(), System.nanoTime());
+        refreshGroupSets.add(groupSetHash.get());
+        enqueue(List.of(groupSetHash.get()));
+        return true;
+    }
+
+    /**
+     * Queue a refresh of a user's group set ahead of its layouts expiring.
+     *
+     * @param storedAdGroups the AD groups stored with the layout, used if the user is not indexed here
+     * @return the queued group set, empty if it is neither indexed here nor resolvable from {@code storedAdGroups}
+     */
+    public Optional<LayoutDependencyIndex.GroupSet> requestRefreshAhead(String userId, String[] storedAdGroups) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<LayoutDependencyIndex.GroupSet> groupSet = findGroupSet(userId, storedAdGroups);
+        groupSet.ifPresent(set -> {
+            refreshGroupSets.add(set.hash());
+            enqueue(List.of(set.hash()));
+        });
+        return groupSet;
+    }
+
+    /**
+     * Drain queued group sets, handling at most {@code max-users-per-second} user layouts per run.
+     *
+     * A group set is never split: one that does not fit in what is left of the budget waits for the
+     * next run, and only a group set larger than the whole budget is handled in a run of its own.
+     */
+    @Scheduled(fixedDelayString = "${entitlement.recompute.interval-ms:1000}")
+    public void processPending() {
+        int budget = maxUsersPerSecond;
+        boolean first = true;
+        while (budget > 0) {
+            Optional<String> next = peek();
+            if (next.isEmpty()) {
+                break;
+            }
+            Optional<LayoutDependencyIndex.GroupSet> groupSet = dependencyIndex.getGroupSet(next.get());
+            int cost = groupSet.map(set -> Math.max(set.users().size(), 1)).orElse(0);
+            if (!first && cost > budget) {
+                break;
+            }
+            remove(next.get());
+            lastRunAt = LocalDateTime.now();
+
+            Long refreshRequested = refreshRequestedAt.remove(next.get());
+            boolean refresh = refreshGroupSets.remove(next.get());
+            if (groupSet.isEmpty()) {
+                continue;
+            }
+            first = false;
+
+            try {
+                int users = refresh
+                    ? layoutComputationService.refreshGroupSet(groupSet.get())
+                    : layoutComputationService.invalidateGroupSet(groupSet.get());
+                recomputedGroupSets.incrementAndGet();
+                recomputedUsersCounter.increment(users);
+                if (refreshRequested != null) {
+                    staleRefreshTimer.record(System.nanoTime() - refreshRequested, TimeUnit.NANOSECONDS);
+                }
+            } catch (Exception e) {
+                failedGroupSets.incrementAndGet();
+                logger.error("Recomputation failed for group set {}", next.get(), e);
+            }
+            budget -= cost;
+        }
+    }
+
+    /**
+     * The user's indexed group set, else the one indexed from the AD groups stored with the layout.
+     */
+    private Optional<LayoutDependencyIndex.GroupSet> findGroupSet(String userId, String[] storedAdGroups) {
+        Optional<LayoutDependencyIndex.GroupSet> indexed = dependencyIndex.findGroupSetHashByUser(userId)
+            .flatMap(dependencyIndex::getGroupSet);
+        if (indexed.isPresent() || storedAdGroups == null) {
+            return indexed;
+        }
+        return layoutComputationService.indexUser(userId, List.of(storedAdGroups));
+    }
+
+    public RecomputationProgress getProgress() {
+        return new RecomputationProgress(
+            getPendingGroupSetCount(),
+            queuedGroupSets.get(),
+            recomputedGroupSets.get(),
+            (long) recomputedUsersCounter.count(),
+            failedGroupSets.get(),
+            dependencyIndex.getIndexedUserCount(),
+            lastRunAt);
+    }
+
+    private synchronized int enqueue(Collection<String> groupSetHashes) {
+        int added = 0;
+        for (String hash : groupSetHashes) {
+            if (pendingGroupSets.add(hash)) {
+                added++;
+            }
+        }
+        queuedGroupSets.addAndGet(added);
+        return added;
+    }
+
+    private synchronized Optional<String> peek() {
+        var iterator = pendingGroupSets.iterator();
+        return iterator.hasNext() ? Optional.of(iterator.next()) : Optional.empty();
+    }
+
+    private synchronized void remove(String groupSetHash) {
+        pendingGroupSets.remove(groupSetHash);
+    }
+
+    private synchronized int getPendingGroupSetCount() {
+        return pendingGroupSets.size();
+    }
+
+    /**
+     * Snapshot of recomputation progress.
+     */
+    public record RecomputationProgress(int pendingGroupSets,
+                                        long queuedGroupSets,
+                                        long recomputedGroupSets,
+                                        long recomputedUsers,
+                                        long failedGroupSets,
+                                        int indexedUsers,
+                                        LocalDateTime lastRunAt) {
+    }
+}
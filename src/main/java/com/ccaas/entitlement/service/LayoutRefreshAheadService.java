@@ -0,0 +1,177 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.dto.ExpiringUserLayout;
+import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Refresh-ahead of user layouts shortly before they expire.
+ *
+ * Each run picks entries expiring within the look-ahead window, soonest first, and
+ * queues at most {@code max-users-per-run} of them on the recomputation worker (the cap is
+ * also the query's page size, so a run reads no more of the window than it needs), so
+ * refreshes happen at a steady rate instead of as a stampede when a shift's layouts
+ * expire together. Refreshed layouts get a jittered expiry from
+ * {@link UserLayoutExpiryPolicy}; how flat the resulting expiry distribution is gets
+ * logged and published as {@code entitlement.cache.expiry.*} gauges.
+ */
+@Service
+public class LayoutRefreshAheadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LayoutRefreshAheadService.class);
+
+    @Autowired
+    private UserPreferenceCacheRepository userPreferenceRepository;
+
+    @Autowired
+    private LayoutRecomputationService layoutRecomputationService;
+
+    @Autowired
+    private UserLayoutExpiryPolicy expiryPolicy;
+
+    @Value("${entitlement.refresh-ahead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${entitlement.refresh-ahead.window-minutes:15}")
+    private long windowMinutes;
+
+    @Value("${entitlement.refresh-ahead.max-users-per-run:100}")
+    private int maxUsersPerRun;
+
+    @Value("${entitlement.refresh-ahead.distribution-bucket-minutes:15}")
+    private long distributionBucketMinutes;
+
+    private final Counter queuedUsersCounter;
+    private final Counter skippedUsersCounter;
+    private volatile ExpiryDistribution lastDistribution = ExpiryDistribution.EMPTY;
+
+    public LayoutRefreshAheadService(MeterRegistry meterRegistry) {
+        this.queuedUsersCounter = Counter.builder("entitlement.refresh_ahead.queued")
+            .description("User layouts queued for refresh before expiry")
+            .register(meterRegistry);
+        this.skippedUsersCounter = Counter.builder("entitlement.refresh_ahead.skipped")
+            .description("Expiring user layouts not refreshable (AD groups neither indexed nor stored)")
+            .register(meterRegistry);
+        Gauge.builder("entitlement.cache.expiry.peak_to_mean", this, s -> s.lastDistribution.peakToMean())
+            .description("Largest expiry bucket relative to the mean bucket (1.0 = perfectly flat)")
+            .register(meterRegistry);
+        Gauge.builder("entitlement.cache.expiry.cv", this, s -> s.lastDistribution.coefficientOfVariation())
+            .description("Coefficient of variation of entries per expiry bucket (0 = perfectly flat)")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queue layouts expiring within the look-ahead window, up to {@code max-users-per-run}.
+     */
+    @Scheduled(fixedDelayString = "${entitlement.refresh-ahead.interval-ms:10000}")
+    public void refreshExpiring() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime expiryThreshold = LocalDateTime.now().plusMinutes(windowMinutes);
+        Set<String> queuedGroupSets = new HashSet<>();
+        int examinedUsers = 0;
+        int queuedUsers = 0;
+        int skippedUsers = 0;
+        // Read only as many soonest-expiring rows as can be queued; read on only if some were
+        // skipped or already covered by a queued group set
+        Pageable page = PageRequest.of(0, maxUsersPerRun);
+        Slice<ExpiringUserLayout> expiringUsers;
+        do {
+            expiringUsers = userPreferenceRepository.findUsersExpiringWithin(expiryThreshold, page);
+            for (ExpiringUserLayout expiring : expiringUsers) {
+                if (queuedUsers >= maxUsersPerRun) {
+                    break;
+                }
+                examinedUsers++;
+                Optional<LayoutDependencyIndex.GroupSet> groupSet =
+                    layoutRecomputationService.requestRefreshAhead(expiring.getUserId(), expiring.getAdGroups());
+                if (groupSet.isEmpty()) {
+                    skippedUsers++;
+                } else if (queuedGroupSets.add(groupSet.get().hash())) {
+                    queuedUsers += groupSet.get().users().size();
+                }
+            }
+            page = expiringUsers.nextPageable();
+        } while (queuedUsers < maxUsersPerRun && expiringUsers.hasNext());
+
+        if (examinedUsers == 0) {
+            return;
+        }
+        queuedUsersCounter.increment(queuedUsers);
+        skippedUsersCounter.increment(skippedUsers);
+        logger.debug("Refresh-ahead: examined {} layouts expiring within {} min, queued {} users in {} group sets, skipped {}",
+                    examinedUsers, windowMinutes, queuedUsers, queuedGroupSets.size(), skippedUsers);
+    }
+
+    /**
+     * Measure how evenly upcoming expiries are spread over the TTL horizon.
+     */
+    @Scheduled(fixedDelayString = "${entitlement.refresh-ahead.distribution-interval-ms:300000}")
+    public void measureExpiryDistribution() {
+        long bucketSeconds = distributionBucketMinutes * 60;
+        int bucketCount = (int) Math.max(1, (expiryPolicy.maxTtlMinutes() + distributionBucketMinutes - 1) / distributionBucketMinutes);
+        long[] counts = new long[bucketCount];
+        for (Object[] row : userPreferenceRepository.countByExpiryBucket(bucketSeconds)) {
+            int bucket = ((Number) row[0]).intValue();
+            counts[Math.min(bucket, bucketCount - 1)] += ((Number) row[1]).longValue();
+        }
+
+        ExpiryDistribution distribution = ExpiryDistribution.of(counts);
+        lastDistribution = distribution;
+        if (distribution.entries() > 0) {
+            logger.info("Expiry distribution: {} entries over {} x {} min buckets, peak {}, peak/mean {}, cv {}",
+                       distribution.entries(), bucketCount, distributionBucketMinutes, distribution.peak(),
+                       String.format("%.2f", distribution.peakToMean()),
+                       String.format("%.2f", distribution.coefficientOfVariation()));
+        }
+    }
+
+    public ExpiryDistribution getExpiryDistribution() {
+        return lastDistribution;
+    }
+
+    /**
+     * Entries per expiry bucket summarised as peak-to-mean ratio and coefficient of variation.
+     */
+    public record ExpiryDistribution(long entries, long peak, double peakToMean, double coefficientOfVariation) {
+
+        static final ExpiryDistribution EMPTY = new ExpiryDistribution(0, 0, 0.0, 0.0);
+
+        static ExpiryDistribution of(long[] counts) {
+            long entries = 0;
+            long peak = 0;
+            for (long count : counts) {
+                entries += count;
+                peak = Math.max(peak, count);
+            }
+            if (entries == 0) {
+                return EMPTY;
+            }
+            double mean = (double) entries / counts.length;
+            double variance = 0.0;
+            for (long count : counts) {
+                variance += (count - mean) * (count - mean);
+            }
+            double stdDev = Math.sqrt(variance / counts.length);
+            return new ExpiryDistribution(entries, peak, peak / mean, stdDev / mean);
+        }
+    }
+}
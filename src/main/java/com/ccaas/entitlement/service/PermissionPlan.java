@@ -0,0 +1,357 @@
+package com.ccaas.entitlement.service;
+
+import java.util.*;
+
+/**
+ * Permission rules and layout elements compiled for bitset evaluation.
+ *
+ * Rules and permission keys each get dense IDs. At compile time the plan builds, over rule IDs:
+ * the rules that apply to everyone, the rules in scope per market and per AD group function,
+ * and (memoised on first use) the rules matching each role or AD group symbol from
+ * {@link EntitlementSymbols}. Evaluating a user is then
+ *
+ * <pre>
+ *   matched = (always | OR rulesBySymbol[held]) &amp; marketScope &amp; functionScope
+ *   granted = permissions(matched GRANT rules) &amp; ~permissions(matched DENY rules)
+ * </pre>
+ *
+ * all word-wise over {@code long[]}; a permission check is a single bit test.
+ */
+public final class PermissionPlan {
+
+    private final String version;
+    private final EntitlementSymbols symbols;
+    private final List<PermissionRule> rules;
+    private final List<LayoutElement> elements;
+    private final List<String> permissions;
+    private final Map<String, Integer> idsByPermission;
+    private final int[] rulePermissionIds;
+    private final int[] elementPermissionIds;
+    private final String[][] elementPaths;
+    private final long[] grantRules;
+    private final long[] alwaysRules;
+    private final long[] anyMarketRules;
+    private final Map<String, long[]> rulesByMarket;
+    private final long[] anyFunctionRules;
+    private final Map<String, long[]> rulesByFunction;
+    private final GrantTable roleRules = new GrantTable(Subject.ROLE);
+    private final GrantTable adGroupRules = new GrantTable(Subject.AD_GROUP);
+
+    private PermissionPlan(String version, List<PermissionRule> rules, List<LayoutElement> elements,
+                           EntitlementSymbols symbols) {
+        this.version = version;
+        this.symbols = symbols;
+        this.rules = List.copyOf(rules);
+        this.elements = List.copyOf(elements);
+
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (PermissionRule rule : rules) {
+            ids.putIfAbsent(rule.permission(), ids.size());
+        }
+        for (LayoutElement element : elements) {
+            ids.putIfAbsent(element.permission(), ids.size());
+        }
+        this.idsByPermission = Map.copyOf(ids);
+        this.permissions = List.copyOf(ids.keySet());
+
+        int ruleWords = EntitlementBits.words(rules.size());
+        this.rulePermissionIds = new int[rules.size()];
+        this.grantRules = new long[ruleWords];
+        this.alwaysRules = new long[ruleWords];
+        this.anyMarketRules = new long[ruleWords];
+        this.anyFunctionRules = new long[ruleWords];
+        Map<String, long[]> byMarket = new HashMap<>();
+        Map<String, long[]> byFunction = new HashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            PermissionRule rule = rules.get(i);
+            rulePermissionIds[i] = ids.get(rule.permission());
+            long bit = 1L << i;
+            if (rule.effect() == Effect.GRANT) {
+                grantRules[i >>> 6] |= bit;
+            }
+            if (rule.subject() == Subject.ALL) {
+                alwaysRules[i >>> 6] |= bit;
+            }
+            if (rule.market() == null) {
+                anyMarketRules[i >>> 6] |= bit;
+            } else {
+                byMarket.computeIfAbsent(rule.market(), k -> new long[ruleWords])[i >>> 6] |= bit;
+            }
+            if (rule.function() == null) {
+                anyFunctionRules[i >>> 6] |= bit;
+            } else {
+                byFunction.computeIfAbsent(rule.function(), k -> new long[ruleWords])[i >>> 6] |= bit;
+            }
+        }
+        // A market's scope is its own rules plus the market-independent ones
+        byMarket.replaceAll((market, scoped) -> EntitlementBits.or(scoped, anyMarketRules));
+        this.rulesByMarket = Map.copyOf(byMarket);
+        this.rulesByFunction = Map.copyOf(byFunction);
+
+        this.elementPermissionIds = new int[elements.size()];
+        this.elementPaths = new String[elements.size()][];
+        for (int i = 0; i < elements.size(); i++) {
+            elementPermissionIds[i] = ids.get(elements.get(i).permission());
+            elementPaths[i] = elements.get(i).path().split("\\.");
+        }
+        // Fail on conflicting layout paths now rather than on the first request
+        render(new long[0]);
+    }
+
+    /**
+     * Compile a plan.
+     *
+     * @throws IllegalArgumentException if layout element paths conflict
+     */
+    public static PermissionPlan compile(String version, List<PermissionRule> rules, List<LayoutElement> elements,
+                                         EntitlementSymbols symbols) {
+        return new PermissionPlan(version, rules, elements, symbols);
+    }
+
+    /**
+     * Permissions granted to a user holding the given roles and AD groups in a market and set of
+     * AD group functions. Roles and AD groups are given as symbol IDs and, in the same order,
+     * names; names are only read for IDs that are {@link EntitlementSymbols#UNKNOWN}.
+     */
+    public long[] evaluate(int[] roleIds, List<String> roles, int[] adGroupIds, List<String> adGroups,
+                           String market, Collection<String> functions) {
+        long[] matched = alwaysRules.clone();
+        for (int i = 0; i < roleIds.length; i++) {
+            EntitlementBits.orInto(matched, roleRules.get(roleIds[i], roles.get(i)));
+        }
+        for (int i = 0; i < adGroupIds.length; i++) {
+            EntitlementBits.orInto(matched, adGroupRules.get(adGroupIds[i], adGroups.get(i)));
+        }
+
+        long[] marketScope = market != null
+            ? rulesByMarket.getOrDefault(market.toUpperCase(Locale.ROOT), anyMarketRules)
+            : anyMarketRules;
+        long[] functionScope = anyFunctionRules;
+        for (String function : functions) {
+            long[] scoped = function != null ? rulesByFunction.get(function.toUpperCase(Locale.ROOT)) : null;
+            if (scoped != null) {
+                functionScope = EntitlementBits.or(functionScope, scoped);
+            }
+        }
+        for (int i = 0; i < matched.length; i++) {
+            matched[i] &= marketScope[i] & functionScope[i];
+        }
+
+        long[] granted = new long[EntitlementBits.words(permissions.size())];
+        long[] denied = new long[granted.length];
+        for (int i = 0; i < matched.length; i++) {
+            long word = matched[i];
+            while (word != 0) {
+                int rule = (i << 6) + Long.numberOfTrailingZeros(word);
+                int permission = rulePermissionIds[rule];
+                long[] target = (grantRules[i] & (1L << rule)) != 0 ? granted : denied;
+                target[permission >>> 6] |= 1L << permission;
+                word &= word - 1;
+            }
+        }
+        for (int i = 0; i < granted.length; i++) {
+            granted[i] &= ~denied[i];
+        }
+        return granted;
+    }
+
+    /**
+     * Structured layout for a set of granted permissions: every layout element placed at its
+     * path, plus {@code effectivePermissions} listing every permission key as granted/denied.
+     */
+    public Map<String, Object> render(long[] granted) {
+        Map<String, Object> layout = new LinkedHashMap<>();
+        for (int i = 0; i < elementPaths.length; i++) {
+            LayoutElement element = elements.get(i);
+            String[] path = elementPaths[i];
+            boolean value = EntitlementBits.contains(granted, elementPermissionIds[i]);
+
+            Map<String, Object> parent = layout;
+            for (int depth = 0; depth < path.length - 1; depth++) {
+                parent = child(parent, path[depth], element);
+            }
+            String leaf = path[path.length - 1];
+            if (element.valueProperty() == null) {
+                if (parent.containsKey(leaf)) {
+                    throw new IllegalArgumentException("Layout path " + element.path() + " is used by more than one element");
+                }
+                parent.put(leaf, value);
+            } else {
+                Map<String, Object> node = child(parent, leaf, element);
+                node.putAll(element.attributes());
+                node.put(element.valueProperty(), value);
+            }
+        }
+
+        Map<String, Object> effectivePermissions = new LinkedHashMap<>();
+        for (int id = 0; id < permissions.size(); id++) {
+            effectivePermissions.put(permissions.get(id), EntitlementBits.contains(granted, id) ? "granted" : "denied");
+        }
+        layout.put("effectivePermissions", effectivePermissions);
+        return layout;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> child(Map<String, Object> parent, String key, LayoutElement element) {
+        Object node = parent.computeIfAbsent(key, k -> new LinkedHashMap<String, Object>());
+        if (!(node instanceof Map)) {
+            throw new IllegalArgumentException("Layout path " + element.path() + " conflicts with another element");
+        }
+        return (Map<String, Object>) node;
+    }
+
+    public boolean isGranted(long[] granted, String permission) {
+        return EntitlementBits.contains(granted, permissionId(permission));
+    }
+
+    /**
+     * Bitset of several permissions, for all-of checks with {@link EntitlementBits#containsAll}.
+     */
+    public long[] mask(String... permissions) {
+        long[] mask = new long[EntitlementBits.words(this.permissions.size())];
+        for (String permission : permissions) {
+            int id = permissionId(permission);
+            if (id == EntitlementSymbols.UNKNOWN) {
+                throw new IllegalArgumentException("Unknown permission: " + permission);
+            }
+            mask[id >>> 6] |= 1L << id;
+        }
+        return mask;
+    }
+
+    /**
+     * Dense ID of a permission key, or {@link EntitlementSymbols#UNKNOWN}.
+     */
+    public int permissionId(String permission) {
+        Integer id = idsByPermission.get(permission);
+        return id != null ? id : EntitlementSymbols.UNKNOWN;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<String> permissions() {
+        return permissions;
+    }
+
+    public List<PermissionRule> rules() {
+        return rules;
+    }
+
+    public List<LayoutElement> elements() {
+        return elements;
+    }
+
+    private long[] compileRules(Subject subject, String name) {
+        long[] matching = new long[alwaysRules.length];
+        for (int i = 0; i < rules.size(); i++) {
+            PermissionRule rule = rules.get(i);
+            if (rule.subject() == subject && rule.matches(name)) {
+                matching[i >>> 6] |= 1L << i;
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Matching-rule bitsets memoised by symbol ID. Concurrent misses may compile the same entry
+     * twice; the result is identical, so the last write wins. Names without an ID are compiled
+     * on every call.
+     */
+    private final class GrantTable {
+
+        private final Subject subject;
+        private volatile long[][] rulesBySymbol = new long[64][];
+
+        GrantTable(Subject subject) {
+            this.subject = subject;
+        }
+
+        long[] get(int symbolId, String name) {
+            if (symbolId == EntitlementSymbols.UNKNOWN) {
+                return compileRules(subject, name);
+            }
+            long[][] table = rulesBySymbol;
+            long[] matching = symbolId < table.length ? table[symbolId] : null;
+            if (matching == null) {
+                matching = compileRules(subject, symbols.name(symbolId));
+                store(symbolId, matching);
+            }
+            return matching;
+        }
+
+        private synchronized void store(int symbolId, long[] matching) {
+            long[][] table = rulesBySymbol;
+            if (symbolId >= table.length) {
+                table = Arrays.copyOf(table, Math.max(table.length * 2, symbolId + 1));
+            }
+            table[symbolId] = matching;
+            rulesBySymbol = table;
+        }
+    }
+
+    public enum Effect {
+        GRANT,
+        /** Wins over any grant of the same permission. */
+        DENY
+    }
+
+    public enum Subject {
+        /** Every user. */
+        ALL,
+        /** Matched against role names. */
+        ROLE,
+        /** Matched against AD group DNs. */
+        AD_GROUP
+    }
+
+    public enum MatchType {
+        EQUALS,
+        CONTAINS
+    }
+
+    /**
+     * One rule: {@code effect} on {@code permission} for users holding a role or AD group whose
+     * name matches (case-insensitive), limited to {@code market} and {@code function} when set.
+     */
+    public record PermissionRule(long id, String permission, Effect effect, Subject subject,
+                                 MatchType matchType, String matchValue, String market, String function) {
+
+        public PermissionRule {
+            if (permission == null || permission.isBlank()) {
+                throw new IllegalArgumentException("Rule " + id + ": permission key is required");
+            }
+            if (subject != Subject.ALL && (matchValue == null || matchValue.isBlank())) {
+                throw new IllegalArgumentException("Rule " + id + ": match value is required for " + subject);
+            }
+            matchValue = subject == Subject.ALL ? null : matchValue.toLowerCase(Locale.ROOT);
+            market = market == null || market.isBlank() ? null : market.toUpperCase(Locale.ROOT);
+            function = function == null || function.isBlank() ? null : function.toUpperCase(Locale.ROOT);
+        }
+
+        public boolean matches(String name) {
+            if (subject == Subject.ALL) {
+                return true;
+            }
+            String candidate = name.toLowerCase(Locale.ROOT);
+            return matchType == MatchType.EQUALS ? candidate.equals(matchValue) : candidate.contains(matchValue);
+        }
+    }
+
+    /**
+     * Placement of one permission decision in the structured layout.
+     */
+    public record LayoutElement(String permission, String path, String valueProperty, Map<String, Object> attributes) {
+
+        public LayoutElement {
+            if (permission == null || permission.isBlank() || path == null || path.isBlank()) {
+                throw new IllegalArgumentException("Layout element needs a permission key and a path");
+            }
+            if (Arrays.stream(path.split("\\.", -1)).anyMatch(String::isEmpty)) {
+                throw new IllegalArgumentException("Invalid layout path: " + path);
+            }
+            attributes = attributes == null ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+        }
+    }
+}
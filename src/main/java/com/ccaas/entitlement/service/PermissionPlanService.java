@@ -0,0 +1,212 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.LayoutPermissionElement;
+import com.ccaas.entitlement.entity.LayoutPermissionRule;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import com.ccaas.entitlement.repository.LayoutPermissionElementRepository;
+import com.ccaas.entitlement.repository.LayoutPermissionRuleRepository;
+import com.ccaas.entitlement.service.PermissionPlan.LayoutElement;
+import com.ccaas.entitlement.service.PermissionPlan.PermissionRule;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the current {@link PermissionPlan} compiled from layout_permission_rules and
+ * layout_permission_elements.
+ *
+ * Like the entitlement snapshot, the plan is recompiled immediately after local rule writes
+ * and the tables' version stamps are polled to pick up writes made by other instances.
+ * If the stored rules fail to compile, the previous plan stays in use.
+ */
+@Service
+public class PermissionPlanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionPlanService.class);
+
+    @Autowired
+    private LayoutPermissionRuleRepository ruleRepository;
+
+    @Autowired
+    private LayoutPermissionElementRepository elementRepository;
+
+    @Autowired
+    private EntitlementSymbols symbols;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Timer compileTimer;
+
+    private volatile PermissionPlan plan;
+
+    public PermissionPlanService(MeterRegistry meterRegistry) {
+        this.compileTimer = Timer.builder("entitlement.permissions.compile")
+            .description("Time to load and compile the permission rule plan")
+            .register(meterRegistry);
+        Gauge.builder("entitlement.permissions.rules", this, service -> {
+                PermissionPlan current = service.plan;
+                return current != null ? current.rules().size() : 0;
+            })
+            .description("Active permission rules in the compiled plan")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Current plan, compiling it on first use.
+     */
+    public PermissionPlan getPlan() {
+        PermissionPlan current = plan;
+        if (current == null) {
+            synchronized (this) {
+                current = plan;
+                if (current == null) {
+                    current = load(currentVersion());
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Recompile the plan from the stored rules.
+     *
+     * @throws IllegalArgumentException if the stored rules do not compile (the previous plan is kept)
+     */
+    public synchronized PermissionPlan reload() {
+        return load(currentVersion());
+    }
+
+    /**
+     * Recompile the plan if the stored rules have changed since it was compiled.
+     */
+    @Scheduled(fixedDelayString = "${entitlement.permissions.refresh-interval-ms:30000}")
+    public void refreshIfChanged() {
+        PermissionPlan current = plan;
+        if (current == null) {
+            return;
+        }
+        try {
+            String version = currentVersion();
+            if (!version.equals(current.getVersion())) {
+                synchronized (this) {
+                    load(version);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Permission plan refresh failed, keeping version {}: {}", current.getVersion(), e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onEntitlementChange(EntitlementChangeEvent event) {
+        if (event.getChangeType() != EntitlementChangeEvent.ChangeType.PERMISSION_RULE) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.warn("Permission plan reload failed, keeping version {}: {}",
+                       plan != null ? plan.getVersion() : "none", e.getMessage());
+        }
+    }
+
+    /**
+     * Convert a stored rule, validating it.
+     *
+     * @throws IllegalArgumentException if the rule is invalid
+     */
+    public PermissionRule toRule(LayoutPermissionRule rule) {
+        long id = rule.getId() != null ? rule.getId() : -1;
+        return new PermissionRule(id, rule.getPermissionKey(),
+            parse(PermissionPlan.Effect.class, rule.getEffect(), "effect", id),
+            parse(PermissionPlan.Subject.class, rule.getSubjectType(), "subject type", id),
+            parse(PermissionPlan.MatchType.class, rule.getMatchType(), "match type", id),
+            rule.getMatchValue(), rule.getMarket(), rule.getFunctionName());
+    }
+
+    /**
+     * Convert a stored layout element, validating it.
+     *
+     * @throws IllegalArgumentException if the element is invalid
+     */
+    public LayoutElement toElement(LayoutPermissionElement element) {
+        Map<String, Object> attributes = null;
+        if (element.getAttributes() != null && !element.getAttributes().isBlank()) {
+            try {
+                attributes = objectMapper.readValue(element.getAttributes(), new TypeReference<Map<String, Object>>() {});
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Layout element " + element.getId() + ": attributes must be a JSON object");
+            }
+        }
+        return new LayoutElement(element.getPermissionKey(), element.getLayoutPath(), element.getValueProperty(), attributes);
+    }
+
+    /**
+     * Check that the layout still compiles with {@code candidate} added (or replacing the stored
+     * element with the same ID).
+     *
+     * @throws IllegalArgumentException if it does not
+     */
+    public void validateElement(LayoutPermissionElement candidate) {
+        List<LayoutElement> elements = new ArrayList<>();
+        for (LayoutPermissionElement element : elementRepository.findByIsActiveTrueOrderByIdAsc()) {
+            if (!element.getId().equals(candidate.getId())) {
+                elements.add(toElement(element));
+            }
+        }
+        elements.add(toElement(candidate));
+        PermissionPlan.compile("candidate", getPlan().rules(), elements, symbols);
+    }
+
+    private PermissionPlan load(String version) {
+        long startTime = System.nanoTime();
+        List<PermissionRule> rules = new ArrayList<>();
+        for (LayoutPermissionRule rule : ruleRepository.findByIsActiveTrueOrderByIdAsc()) {
+            rules.add(toRule(rule));
+        }
+        List<LayoutElement> elements = new ArrayList<>();
+        for (LayoutPermissionElement element : elementRepository.findByIsActiveTrueOrderByIdAsc()) {
+            elements.add(toElement(element));
+        }
+
+        PermissionPlan loaded = PermissionPlan.compile(version, rules, elements, symbols);
+        plan = loaded;
+        long elapsed = System.nanoTime() - startTime;
+        compileTimer.record(elapsed, TimeUnit.NANOSECONDS);
+
+        logger.info("Compiled permission plan {} with {} rules, {} permissions and {} layout elements in {}ms",
+                   version, rules.size(), loaded.permissions().size(), elements.size(), elapsed / 1_000_000);
+        return loaded;
+    }
+
+    private String currentVersion() {
+        return ruleRepository.getVersionStamp() + "|" + elementRepository.getVersionStamp();
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String field, long id) {
+        if (value == null) {
+            throw new IllegalArgumentException("Rule " + id + ": " + field + " is required");
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Rule " + id + ": unknown " + field + " '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.repository.ReactiveEntitlementRepository;
+import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Stale-while-revalidate reads of cached user layouts (Layer 3).
+ *
+ * {@code cacheExpiry} is the soft expiry; the hard expiry is {@code cacheExpiry} plus the
+ * stale grace period. Between the two the stored layout is still returned, marked
+ * {@code computationSource=stale}, and a background refresh is queued. Past the hard
+ * expiry the entry is treated as missing and the caller recomputes.
+ */
+@Service
+public class UserLayoutCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserLayoutCacheService.class);
+
+    public static final String STALE_SOURCE = "stale";
+
+    @Autowired
+    private UserPreferenceCacheRepository userPreferenceRepository;
+
+    @Autowired
+    private UserPreferenceWriteBuffer writeBuffer;
+
+    @Autowired
+    private CompactUserLayoutCache layoutCache;
+
+    @Autowired
+    private LayoutRecomputationService layoutRecomputationService;
+
+    @Autowired(required = false)
+    private ReactiveEntitlementRepository reactiveRepository;
+
+    @Value("${entitlement.cache.user-preferences-stale-grace-minutes:60}")
+    private long staleGraceMinutes;
+
+    private final Counter staleServedCounter;
+    private final Counter refreshUnavailableCounter;
+
+    public UserLayoutCacheService(MeterRegistry meterRegistry) {
+        this.staleServedCounter = Counter.builder("entitlement.cache.stale.served")
+            .description("User layouts served after soft expiry while a refresh runs")
+            .register(meterRegistry);
+        this.refreshUnavailableCounter = Counter.builder("entitlement.cache.stale.refresh.unavailable")
+            .description("Stale serves that could not queue a refresh (AD groups neither indexed nor stored)")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Last computation time of an entry that can still be served, fresh or stale.
+     */
+    public Optional<LocalDateTime> findServableLastComputedAt(String userId) {
+        LocalDateTime cutoff = hardExpiryCutoff();
+        Optional<UserLayoutPreferences> pending = writeBuffer.getPending(userId);
+        if (pending.isPresent()) {
+            return pending.filter(p -> p.getCacheExpiry().isAfter(cutoff)).map(UserLayoutPreferences::getLastComputedAt);
+        }
+        Optional<LocalDateTime> cachedExpiry = layoutCache.getCacheExpiry(userId);
+        if (cachedExpiry.isPresent()) {
+            return cachedExpiry.get().isAfter(cutoff) ? layoutCache.getLastComputedAt(userId) : Optional.empty();
+        }
+        return userPreferenceRepository.findLastComputedAtByUserIdAndCacheExpiryAfter(userId, cutoff);
+    }
+
+    /**
+     * Cached layout if within its hard expiry. Stale entries are returned as a detached copy
+     * marked {@code stale}, and a background refresh is queued for them.
+     */
+    public Optional<UserLayoutPreferences> findServable(String userId) {
+        return writeBuffer.getPending(userId)
+            .or(() -> layoutCache.get(userId, userPreferenceRepository::findByUserId))
+            .flatMap(this::servable);
+    }
+
+    /**
+     * Non-blocking {@link #findServable}, reading the database through R2DBC on a cache miss.
+     * Requires {@code entitlement.reactive.enabled}.
+     */
+    public Mono<UserLayoutPreferences> findServableReactive(String userId) {
+        if (reactiveRepository == null) {
+            return Mono.error(new IllegalStateException("Reactive data access is disabled"));
+        }
+        return Mono.justOrEmpty(writeBuffer.getPending(userId).or(() -> layoutCache.getIfPresent(userId)))
+            .switchIfEmpty(Mono.defer(() -> reactiveRepository.findPreferences(userId).doOnNext(layoutCache::put)))
+            .flatMap(preferences -> Mono.justOrEmpty(servable(preferences)));
+    }
+
+    /**
+     * The entry itself before its soft expiry, a stale copy (with a refresh queued) before its
+     * hard expiry, nothing after.
+     */
+    private Optional<UserLayoutPreferences> servable(UserLayoutPreferences preferences) {
+        LocalDateTime now = LocalDateTime.now();
+        if (preferences.getCacheExpiry().isAfter(now)) {
+            return Optional.of(preferences);
+        }
+        if (!preferences.getCacheExpiry().plusMinutes(staleGraceMinutes).isAfter(now)) {
+            return Optional.empty();
+        }
+
+        staleServedCounter.increment();
+        if (!layoutRecomputationService.requestRefresh(preferences.getUserId(), preferences.getAdGroups())) {
+            refreshUnavailableCounter.increment();
+            logger.debug("Serving stale layout for user {} without refresh: AD groups not indexed or stored", preferences.getUserId());
+        }
+        return Optional.of(staleCopy(preferences));
+    }
+
+    /**
+     * Entries whose soft expiry is before this instant are past their hard expiry.
+     */
+    public LocalDateTime hardExpiryCutoff() {
+        return LocalDateTime.now().minusMinutes(staleGraceMinutes);
+    }
+
+    private static UserLayoutPreferences staleCopy(UserLayoutPreferences source) {
+        UserLayoutPreferences copy = new UserLayoutPreferences(source.getUserId(), source.getComputedLayout());
+        copy.setUserEmail(source.getUserEmail());
+        copy.setMarketTheme(source.getMarketTheme());
+        copy.setEffectivePermissions(source.getEffectivePermissions());
+        copy.setPrimaryMarket(source.getPrimaryMarket());
+        copy.setBaseRoles(source.getBaseRoles());
+        copy.setAdGroups(source.getAdGroups());
+        copy.setCacheExpiry(source.getCacheExpiry());
+        copy.setLastComputedAt(source.getLastComputedAt());
+        copy.setComputationSource(STALE_SOURCE);
+        return copy;
+    }
+}
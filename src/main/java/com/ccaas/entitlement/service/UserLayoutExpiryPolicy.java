@@ -0,0 +1,43 @@
+package com.ccaas.entitlement.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Expiry times for cached user layouts.
+ *
+ * Every write gets the configured TTL plus a random offset of up to
+ * {@code ±expiry-jitter-minutes}, so layouts written together (a shift logging in,
+ * a recomputed group set) do not all expire in the same minute.
+ */
+@Component
+public class UserLayoutExpiryPolicy {
+
+    @Value("${entitlement.cache.user-preferences-ttl-hours:4}")
+    private long ttlHours;
+
+    @Value("${entitlement.cache.user-preferences-expiry-jitter-minutes:30}")
+    private long jitterMinutes;
+
+    /**
+     * Expiry for a layout written now.
+     */
+    public LocalDateTime nextExpiry() {
+        LocalDateTime expiry = LocalDateTime.now().plusHours(ttlHours);
+        if (jitterMinutes <= 0) {
+            return expiry;
+        }
+        long jitterSeconds = jitterMinutes * 60;
+        return expiry.plusSeconds(ThreadLocalRandom.current().nextLong(-jitterSeconds, jitterSeconds + 1));
+    }
+
+    /**
+     * Longest time from now until a newly written layout expires.
+     */
+    public long maxTtlMinutes() {
+        return ttlHours * 60 + Math.max(jitterMinutes, 0);
+    }
+}
@@ -0,0 +1,481 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for user layout preference writes (Layer 3).
+ *
+ * Writes are held per user ID, so repeated writes for the same user collapse into the
+ * latest one, and are flushed as one batched {@code INSERT ... ON CONFLICT (user_id) DO UPDATE}
+ * when the buffer reaches {@code max-batch-size}, every {@code flush-interval-ms}, and on
+ * shutdown. This replaces the SELECT-then-INSERT/UPDATE pair JPA issues per saved entity.
+ *
+ * Readers of user preferences consult {@link #getPending} first so a write is visible
+ * before it has been flushed. Submitting a write evicts the user from {@link CompactUserLayoutCache};
+ * flushing it puts the written layout there.
+ *
+ * A batch that fails because the database is unavailable is re-queued as a whole. A batch the
+ * database rejects for its data is retried row by row: rows that still fail are logged, counted
+ * in {@code entitlement.write_behind.dropped} and dropped, so one bad row cannot block the rest.
+ *
+ * Rows also carry the AD groups the layout was computed from, so any instance can refresh it.
+ * A written row without them gets the groups this instance last computed the user from, and a
+ * computation from a different group set updates the stored row ({@link #submitAdGroups}).
+ */
+@Service
+public class UserPreferenceWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPreferenceWriteBuffer.class);
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO user_layout_preferences (user_id, user_email, computed_layout, market_theme, " +
+        "effective_permissions, primary_market, base_roles, ad_groups, cache_expiry, last_computed_at, computation_source) " +
+        "VALUES (?, ?, CAST(? AS jsonb), CAST(? AS jsonb), CAST(? AS jsonb), ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (user_id) DO UPDATE SET " +
+        "user_email = EXCLUDED.user_email, " +
+        "computed_layout = EXCLUDED.computed_layout, " +
+        "market_theme = EXCLUDED.market_theme, " +
+        "effective_permissions = EXCLUDED.effective_permissions, " +
+        "primary_market = EXCLUDED.primary_market, " +
+        "base_roles = EXCLUDED.base_roles, " +
+        // A writer that does not know the user's groups keeps the stored ones
+        "ad_groups = COALESCE(EXCLUDED.ad_groups, user_layout_preferences.ad_groups), " +
+        "cache_expiry = EXCLUDED.cache_expiry, " +
+        "last_computed_at = EXCLUDED.last_computed_at, " +
+        "computation_source = EXCLUDED.computation_source";
+
+    private static final String UPDATE_AD_GROUPS_SQL =
+        "UPDATE user_layout_preferences SET ad_groups = ? WHERE user_id = ? AND ad_groups IS DISTINCT FROM ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserLayoutExpiryPolicy expiryPolicy;
+
+    @Autowired
+    private CompactUserLayoutCache layoutCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LayoutDependencyIndex dependencyIndex;
+
+    @Value("${entitlement.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${entitlement.write-behind.max-batch-size:500}")
+    private int maxBatchSize;
+
+    private final Map<String, UserLayoutPreferences> pending = new LinkedHashMap<>();
+    private final Map<String, UserLayoutPreferences> inFlight = new HashMap<>();
+    private final Map<String, String[]> pendingAdGroups = new LinkedHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Counter submittedCounter;
+    private final Counter writtenCounter;
+    private final Counter batchCounter;
+    private final Counter failedCounter;
+    private final Counter droppedCounter;
+
+    public UserPreferenceWriteBuffer(MeterRegistry meterRegistry) {
+        this.submittedCounter = Counter.builder("entitlement.write_behind.submitted")
+            .description("User preference writes submitted")
+            .register(meterRegistry);
+        this.writtenCounter = Counter.builder("entitlement.write_behind.written")
+            .description("User preference rows upserted after collapsing repeated writes")
+            .register(meterRegistry);
+        this.batchCounter = Counter.builder("entitlement.write_behind.batches")
+            .description("Batched upsert statements executed")
+            .register(meterRegistry);
+        this.failedCounter = Counter.builder("entitlement.write_behind.failed")
+            .description("Flushes that failed and were re-queued")
+            .register(meterRegistry);
+        this.droppedCounter = Counter.builder("entitlement.write_behind.dropped")
+            .description("User preference writes rejected by the database and dropped")
+            .register(meterRegistry);
+        Gauge.builder("entitlement.write_behind.pending", this, UserPreferenceWriteBuffer::getPendingCount)
+            .description("User preference writes waiting to be flushed")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Reject a write the database would refuse at flush time, when it could only be dropped:
+     * a missing user ID, a missing {@code computedLayout}, JSON columns that are not valid JSON,
+     * or values longer than their columns.
+     */
+    public void validate(UserLayoutPreferences preferences) {
+        if (preferences.getUserId() == null || preferences.getUserId().isBlank()) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        if (preferences.getUserId().length() > 255) {
+            throw new IllegalArgumentException("userId longer than 255 characters");
+        }
+        if (preferences.getUserEmail() != null && preferences.getUserEmail().length() > 255) {
+            throw new IllegalArgumentException("userEmail longer than 255 characters");
+        }
+        if (preferences.getPrimaryMarket() != null && preferences.getPrimaryMarket().length() > 10) {
+            throw new IllegalArgumentException("primaryMarket longer than 10 characters");
+        }
+        if (preferences.getComputedLayout() == null) {
+            throw new IllegalArgumentException("computedLayout is required");
+        }
+        requireJson("computedLayout", preferences.getComputedLayout());
+        requireJson("marketTheme", preferences.getMarketTheme());
+        requireJson("effectivePermissions", preferences.getEffectivePermissions());
+    }
+
+    private void requireJson(String column, String value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            objectMapper.readTree(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(column + " is not valid JSON");
+        }
+    }
+
+    /**
+     * Queue a write, replacing any pending write for the same user.
+     * Sets {@code lastComputedAt} (and {@code cacheExpiry} if missing) as the entity callbacks would.
+     */
+    public UserLayoutPreferences submit(UserLayoutPreferences preferences) {
+        return submitAll(List.of(preferences)).get(0);
+    }
+
+    /**
+     * Queue several writes; flushes immediately if the buffer reaches {@code max-batch-size}
+     * or write-behind is disabled.
+     *
+     * @throws IllegalArgumentException if any write could not be stored (see {@link #validate});
+     *         nothing is queued then
+     */
+    public List<UserLayoutPreferences> submitAll(Collection<UserLayoutPreferences> preferences) {
+        preferences.forEach(this::validate);
+        LocalDateTime now = LocalDateTime.now();
+        int size;
+        synchronized (pending) {
+            for (UserLayoutPreferences entry : preferences) {
+                entry.setLastComputedAt(now);
+                if (entry.getCacheExpiry() == null) {
+                    entry.setCacheExpiry(expiryPolicy.nextExpiry());
+                }
+                if (entry.getAdGroups() == null) {
+                    dependencyIndex.findAdGroupsByUser(entry.getUserId())
+                        .ifPresent(adGroups -> entry.setAdGroups(adGroups.toArray(String[]::new)));
+                }
+                pending.put(entry.getUserId(), entry);
+                pendingAdGroups.remove(entry.getUserId());
+            }
+            size = pending.size();
+        }
+        // Pending writes are read before the cache; drop the old copy so it is not served after the flush
+        for (UserLayoutPreferences entry : preferences) {
+            layoutCache.evict(entry.getUserId());
+        }
+        submittedCounter.increment(preferences.size());
+
+        if (!enabled || size >= maxBatchSize) {
+            flush();
+        }
+        return List.copyOf(preferences);
+    }
+
+    /**
+     * Store the AD groups a user's layout was just computed from with the user's row, if the user
+     * has one. A pending write for the user takes them directly; otherwise they are written by the
+     * next flush, as an update that leaves rows already holding them untouched.
+     */
+    public void submitAdGroups(String userId, String[] adGroups) {
+        synchronized (pending) {
+            UserLayoutPreferences entry = pending.get(userId);
+            if (entry != null) {
+                entry.setAdGroups(adGroups);
+            } else {
+                pendingAdGroups.put(userId, adGroups);
+            }
+        }
+    }
+
+    /**
+     * The pending (not yet flushed, or being flushed) write for a user, if any.
+     */
+    public Optional<UserLayoutPreferences> getPending(String userId) {
+        synchronized (pending) {
+            UserLayoutPreferences entry = pending.get(userId);
+            return Optional.ofNullable(entry != null ? entry : inFlight.get(userId));
+        }
+    }
+
+    /**
+     * Drop a pending write, e.g. because the user's preferences are being deleted.
+     * Waits for an in-flight flush so it cannot write the row back afterwards.
+     */
+    public void discard(String userId) {
+        flushLock.lock();
+        try {
+            synchronized (pending) {
+                pending.remove(userId);
+                pendingAdGroups.remove(userId);
+            }
+            layoutCache.evict(userId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Upsert all pending writes in batches of at most {@code max-batch-size}.
+     */
+    @Scheduled(fixedDelayString = "${entitlement.write-behind.flush-interval-ms:500}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (true) {
+                List<UserLayoutPreferences> batch = drain();
+                if (batch.isEmpty()) {
+                    flushAdGroups();
+                    return;
+                }
+                try {
+                    upsert(batch);
+                } catch (DataAccessException e) {
+                    List<UserLayoutPreferences> unwritten = batch;
+                    if (!isTransient(e)) {
+                        logger.warn("Write-behind batch of {} user preferences rejected, writing rows one by one: {}",
+                                   batch.size(), e.getMessage());
+                        unwritten = upsertEach(batch);
+                    }
+                    if (!unwritten.isEmpty()) {
+                        failedCounter.increment();
+                        requeue(unwritten);
+                        logger.error("Write-behind flush of {} user preferences failed; re-queued", unwritten.size(), e);
+                        return;
+                    }
+                } finally {
+                    synchronized (pending) {
+                        inFlight.clear();
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        int remaining = getPendingCount();
+        if (remaining > 0) {
+            logger.warn("{} user preference writes could not be flushed on shutdown", remaining);
+        }
+    }
+
+    public WriteBehindStats getStats() {
+        long submitted = (long) submittedCounter.count();
+        long written = (long) writtenCounter.count();
+        long batches = (long) batchCounter.count();
+        return new WriteBehindStats(
+            submitted,
+            written,
+            batches,
+            (long) droppedCounter.count(),
+            getPendingCount(),
+            submitted > 0 ? 1.0 - (double) written / submitted : 0.0,
+            // A JPA save is a SELECT plus an INSERT or UPDATE per submitted write
+            submitted > 0 ? 1.0 - (double) batches / (2 * submitted) : 0.0);
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Write pending AD group updates in one batch. Rows the update changed are evicted from the
+     * layout cache, whose copies still hold the previous groups.
+     */
+    private void flushAdGroups() {
+        List<Map.Entry<String, String[]>> batch = new ArrayList<>();
+        synchronized (pending) {
+            pendingAdGroups.forEach((userId, adGroups) -> batch.add(Map.entry(userId, adGroups)));
+            pendingAdGroups.clear();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_AD_GROUPS_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Map.Entry<String, String[]> entry = batch.get(i);
+                    Array adGroups = ps.getConnection().createArrayOf("text", entry.getValue());
+                    ps.setArray(1, adGroups);
+                    ps.setString(2, entry.getKey());
+                    ps.setArray(3, adGroups);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] != 0) {
+                    layoutCache.evict(batch.get(i).getKey());
+                }
+            }
+        } catch (DataAccessException e) {
+            if (isTransient(e)) {
+                synchronized (pending) {
+                    batch.forEach(entry -> pendingAdGroups.putIfAbsent(entry.getKey(), entry.getValue()));
+                }
+            }
+            logger.warn("Storing AD groups for {} users failed{}: {}",
+                       batch.size(), isTransient(e) ? "; re-queued" : "", e.getMessage());
+        }
+    }
+
+    private List<UserLayoutPreferences> drain() {
+        synchronized (pending) {
+            List<UserLayoutPreferences> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+            var iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatchSize) {
+                UserLayoutPreferences entry = iterator.next();
+                batch.add(entry);
+                inFlight.put(entry.getUserId(), entry);
+                iterator.remove();
+            }
+            return batch;
+        }
+    }
+
+    private void requeue(List<UserLayoutPreferences> batch) {
+        synchronized (pending) {
+            for (UserLayoutPreferences entry : batch) {
+                // A newer write submitted during the failed flush wins
+                pending.putIfAbsent(entry.getUserId(), entry);
+            }
+        }
+    }
+
+    /**
+     * Write rows one at a time, dropping each row the database rejects.
+     *
+     * @return the rows not yet written because the database became unavailable, in order
+     */
+    private List<UserLayoutPreferences> upsertEach(List<UserLayoutPreferences> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            UserLayoutPreferences entry = batch.get(i);
+            try {
+                upsert(List.of(entry));
+            } catch (DataAccessException e) {
+                if (isTransient(e)) {
+                    return batch.subList(i, batch.size());
+                }
+                droppedCounter.increment();
+                logger.error("Dropped write-behind user preferences for user {}: {}", entry.getUserId(), e.getMessage());
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Failures worth retrying the same rows for: the database, not the data, is the problem.
+     */
+    private static boolean isTransient(DataAccessException e) {
+        return e instanceof TransientDataAccessException
+            || e instanceof RecoverableDataAccessException
+            || e instanceof DataAccessResourceFailureException;
+    }
+
+    private void upsert(List<UserLayoutPreferences> batch) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                UserLayoutPreferences entry = batch.get(i);
+                ps.setString(1, entry.getUserId());
+                ps.setString(2, entry.getUserEmail());
+                ps.setString(3, entry.getComputedLayout());
+                ps.setString(4, entry.getMarketTheme());
+                ps.setString(5, entry.getEffectivePermissions());
+                ps.setString(6, entry.getPrimaryMarket());
+                setTextArray(ps, 7, entry.getBaseRoles());
+                setTextArray(ps, 8, entry.getAdGroups());
+                ps.setObject(9, entry.getCacheExpiry());
+                ps.setObject(10, entry.getLastComputedAt());
+                ps.setString(11, entry.getComputationSource());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        // A read that loaded the previous row meanwhile cannot replace these: they are newer
+        for (UserLayoutPreferences entry : batch) {
+            layoutCache.put(entry);
+        }
+        batchCounter.increment();
+        writtenCounter.increment(batch.size());
+        logger.debug("Write-behind flushed {} user preferences", batch.size());
+    }
+
+    private static void setTextArray(PreparedStatement ps, int index, String[] values) throws SQLException {
+        if (values != null) {
+            ps.setArray(index, ps.getConnection().createArrayOf("text", values));
+        } else {
+            ps.setNull(index, Types.ARRAY);
+        }
+    }
+
+    /**
+     * Write-behind counters. {@code dropped} counts writes the database rejected.
+     * {@code collapsedRatio} is the share of submitted writes absorbed by a later write for the same user; {@code roundTripsSavedRatio} compares batches executed with
+     * the two round trips (SELECT, then INSERT or UPDATE) per write a JPA save would need.
+     */
+    public record WriteBehindStats(long submitted,
+                                   long written,
+                                   long batches,
+                                   long dropped,
+                                   int pending,
+                                   double collapsedRatio,
+                                   double roundTripsSavedRatio) {
+    }
+}
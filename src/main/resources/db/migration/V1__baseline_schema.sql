@@ -0,0 +1,65 @@
+-- Baseline entitlement schema (IND-205).
+-- Existing databases are baselined at version 1 (spring.flyway.baseline-on-migrate),
+-- so this script only runs against empty databases.
+
+CREATE TABLE IF NOT EXISTS role_layout_templates (
+    id                  UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    role_name           VARCHAR(100) NOT NULL UNIQUE,
+    role_display_name   VARCHAR(255) NOT NULL,
+    role_description    TEXT,
+    default_columns     JSONB NOT NULL,
+    available_widgets   JSONB NOT NULL,
+    default_actions     JSONB NOT NULL,
+    settings_access     JSONB NOT NULL,
+    default_theme       JSONB,
+    layout_priority     INTEGER DEFAULT 0,
+    market_applicable   TEXT[],
+    environment_types   TEXT[],
+    is_active           BOOLEAN DEFAULT TRUE,
+    created_at          TIMESTAMP,
+    updated_at          TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS ad_group_layout_overrides (
+    ad_group_hash         VARCHAR(64) PRIMARY KEY,
+    ad_group_dn           VARCHAR(500) NOT NULL,
+    parsed_market         VARCHAR(10) NOT NULL,
+    parsed_function       VARCHAR(50),
+    parsed_environment    VARCHAR(20),
+    layout_overrides      JSONB,
+    data_restrictions     JSONB,
+    visual_customizations JSONB,
+    priority              INTEGER NOT NULL DEFAULT 100,
+    is_active             BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at            TIMESTAMP NOT NULL DEFAULT NOW(),
+    updated_at            TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS user_layout_preferences (
+    user_id               VARCHAR(255) PRIMARY KEY,
+    user_email            VARCHAR(255),
+    computed_layout       JSONB NOT NULL,
+    market_theme          JSONB,
+    effective_permissions JSONB,
+    primary_market        VARCHAR(10),
+    base_roles            TEXT[],
+    cache_expiry          TIMESTAMP NOT NULL,
+    last_computed_at      TIMESTAMP NOT NULL,
+    computation_source    VARCHAR(50)
+);
+
+CREATE TABLE IF NOT EXISTS layout_computation_audit (
+    audit_id              BIGSERIAL PRIMARY KEY,
+    user_id               VARCHAR(255) NOT NULL,
+    user_email            VARCHAR(255),
+    ad_group_dns          TEXT[],
+    matched_overrides     JSONB NOT NULL,
+    base_roles            TEXT[] NOT NULL,
+    computation_steps     JSONB,
+    conflict_resolutions  JSONB,
+    final_layout          JSONB,
+    computation_time_ms   BIGINT NOT NULL,
+    cache_status          VARCHAR(20) NOT NULL,
+    computation_source    VARCHAR(50),
+    created_at            TIMESTAMP NOT NULL DEFAULT NOW()
+);
@@ -0,0 +1,53 @@
+-- Indexes aligned to the repository query shapes.
+-- Lookups on active rows use partial indexes (WHERE is_active) with priority as the
+-- trailing column so ORDER BY priority is served from the index.
+
+-- ad_group_layout_overrides (AdGroupOverrideRepository)
+CREATE INDEX IF NOT EXISTS idx_ago_active_priority
+    ON ad_group_layout_overrides (priority) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_ago_active_dn
+    ON ad_group_layout_overrides (ad_group_dn) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_ago_active_market_priority
+    ON ad_group_layout_overrides (parsed_market, priority) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_ago_active_function_priority
+    ON ad_group_layout_overrides (parsed_function, priority) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_ago_active_environment_priority
+    ON ad_group_layout_overrides (parsed_environment, priority) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_ago_active_market_function_priority
+    ON ad_group_layout_overrides (parsed_market, parsed_function, priority) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_ago_active_market_environment_priority
+    ON ad_group_layout_overrides (parsed_market, parsed_environment, priority) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_ago_updated_at
+    ON ad_group_layout_overrides (updated_at);
+
+-- role_layout_templates (RoleLayoutTemplateRepository)
+CREATE INDEX IF NOT EXISTS idx_rlt_active_lower_role_name
+    ON role_layout_templates (LOWER(role_name)) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_rlt_updated_at
+    ON role_layout_templates (updated_at);
+
+-- user_layout_preferences (UserPreferenceCacheRepository, CacheMaintenanceRepository)
+CREATE INDEX IF NOT EXISTS idx_ulp_cache_expiry
+    ON user_layout_preferences (cache_expiry);
+CREATE INDEX IF NOT EXISTS idx_ulp_last_computed_at
+    ON user_layout_preferences (last_computed_at);
+CREATE INDEX IF NOT EXISTS idx_ulp_user_email
+    ON user_layout_preferences (user_email);
+CREATE INDEX IF NOT EXISTS idx_ulp_primary_market
+    ON user_layout_preferences (primary_market);
+CREATE INDEX IF NOT EXISTS idx_ulp_computation_source
+    ON user_layout_preferences (computation_source);
+
+-- layout_computation_audit (LayoutComputationRepository)
+CREATE INDEX IF NOT EXISTS idx_lca_user_created_at
+    ON layout_computation_audit (user_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_lca_user_email_created_at
+    ON layout_computation_audit (user_email, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_lca_cache_status_created_at
+    ON layout_computation_audit (cache_status, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_lca_source_created_at
+    ON layout_computation_audit (computation_source, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_lca_created_at
+    ON layout_computation_audit (created_at);
+CREATE INDEX IF NOT EXISTS idx_lca_computation_time
+    ON layout_computation_audit (computation_time_ms DESC);
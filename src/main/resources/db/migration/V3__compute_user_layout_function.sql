@@ -0,0 +1,63 @@
+-- Server-side layout computation (IND-205).
+-- Mirrors LayoutComputationService.computeFinalLayout so a layout can be built in one round trip:
+--   * primary template: first role (in request order) with an active template
+--   * overrides: highest-priority active override per DN; for each override field the
+--     last DN in request order with a non-null value wins
+--   * user preference row, if present
+-- Layout values are returned as JSON text, matching the String-typed jsonb entity fields.
+
+CREATE OR REPLACE FUNCTION compute_user_layout(p_user_id TEXT, p_ad_groups TEXT[], p_roles TEXT[])
+RETURNS JSONB
+LANGUAGE sql
+STABLE
+AS $$
+    WITH requested_groups AS (
+        SELECT g.dn, g.ord
+        FROM unnest(p_ad_groups) WITH ORDINALITY AS g(dn, ord)
+    ),
+    matched_overrides AS (
+        SELECT g.ord, o.layout_overrides, o.data_restrictions, o.visual_customizations
+        FROM requested_groups g
+        CROSS JOIN LATERAL (
+            SELECT layout_overrides, data_restrictions, visual_customizations
+            FROM ad_group_layout_overrides
+            WHERE ad_group_dn = g.dn AND is_active
+            ORDER BY priority
+            LIMIT 1
+        ) o
+    ),
+    primary_template AS (
+        SELECT t.default_columns, t.available_widgets, t.default_actions, t.settings_access, t.default_theme
+        FROM unnest(p_roles) WITH ORDINALITY AS r(role_name, ord)
+        JOIN role_layout_templates t ON t.role_name = r.role_name AND t.is_active
+        ORDER BY r.ord
+        LIMIT 1
+    ),
+    user_preferences AS (
+        SELECT computed_layout, market_theme, effective_permissions
+        FROM user_layout_preferences
+        WHERE user_id = p_user_id
+    )
+    SELECT COALESCE(
+               (SELECT jsonb_build_object(
+                           'defaultColumns', default_columns::text,
+                           'availableWidgets', available_widgets::text,
+                           'defaultActions', default_actions::text,
+                           'settingsAccess', settings_access::text,
+                           'defaultTheme', default_theme::text)
+                FROM primary_template),
+               '{}'::jsonb)
+        || jsonb_strip_nulls(jsonb_build_object(
+               'adGroupLayoutOverride',
+               (SELECT layout_overrides::text FROM matched_overrides
+                WHERE layout_overrides IS NOT NULL ORDER BY ord DESC LIMIT 1),
+               'dataRestrictions',
+               (SELECT data_restrictions::text FROM matched_overrides
+                WHERE data_restrictions IS NOT NULL ORDER BY ord DESC LIMIT 1),
+               'visualCustomizations',
+               (SELECT visual_customizations::text FROM matched_overrides
+                WHERE visual_customizations IS NOT NULL ORDER BY ord DESC LIMIT 1),
+               'userComputedLayout', (SELECT computed_layout::text FROM user_preferences),
+               'userMarketTheme', (SELECT market_theme::text FROM user_preferences),
+               'userEffectivePermissions', (SELECT effective_permissions::text FROM user_preferences)))
+$$;
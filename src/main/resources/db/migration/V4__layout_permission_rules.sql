@@ -0,0 +1,67 @@
+-- Declarative permission rules for the structured layout (PermissionPlanService).
+--
+-- layout_permission_rules grants (or denies) a permission key to users whose roles or
+-- AD group DNs match, optionally only in one market and/or for one AD group function.
+-- DENY wins over GRANT. Matching is case-insensitive.
+--
+-- layout_permission_elements places permission decisions into the structured layout:
+-- layout_path is dot-separated; value_property names the boolean inside an object node
+-- (NULL = the node itself is the boolean); attributes are merged into the object node.
+
+CREATE TABLE IF NOT EXISTS layout_permission_rules (
+    id              BIGSERIAL PRIMARY KEY,
+    permission_key  VARCHAR(200) NOT NULL,
+    effect          VARCHAR(10)  NOT NULL DEFAULT 'GRANT',   -- GRANT | DENY
+    subject_type    VARCHAR(20)  NOT NULL,                   -- ALL | ROLE | AD_GROUP
+    match_type      VARCHAR(20)  NOT NULL DEFAULT 'EQUALS',  -- EQUALS | CONTAINS (ignored for ALL)
+    match_value     VARCHAR(500),
+    market          VARCHAR(10),                             -- NULL = any market
+    function_name   VARCHAR(50),                             -- NULL = any function
+    description     TEXT,
+    is_active       BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at      TIMESTAMP NOT NULL DEFAULT now(),
+    updated_at      TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS layout_permission_elements (
+    id              BIGSERIAL PRIMARY KEY,
+    permission_key  VARCHAR(200) NOT NULL,
+    layout_path     VARCHAR(200) NOT NULL,
+    value_property  VARCHAR(100),
+    attributes      JSONB,
+    is_active       BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at      TIMESTAMP NOT NULL DEFAULT now(),
+    updated_at      TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_lpr_updated_at ON layout_permission_rules (updated_at);
+CREATE INDEX IF NOT EXISTS idx_lpe_updated_at ON layout_permission_elements (updated_at);
+
+-- Seed: the rules and layout previously hardcoded in LayoutComputationService.buildStructuredLayout
+INSERT INTO layout_permission_rules (permission_key, subject_type, match_type, match_value, description) VALUES
+    ('data.customer.read',                 'ALL',  'EQUALS',   NULL,         'All users'),
+    ('data.customer.personal_info.read',   'ALL',  'EQUALS',   NULL,         'All users'),
+    ('data.customer.contact_details.read', 'ALL',  'EQUALS',   NULL,         'All users'),
+    ('ui.customer_column.view',            'ALL',  'EQUALS',   NULL,         'All users'),
+    ('ui.transcript_column.view',          'ALL',  'EQUALS',   NULL,         'All users'),
+    ('ui.sentiment_widget.view',           'ALL',  'EQUALS',   NULL,         'All users'),
+    ('ui.embedded_apps.view',              'ROLE', 'CONTAINS', 'senior',     'Senior roles'),
+    ('ui.embedded_apps.view',              'ROLE', 'CONTAINS', 'supervisor', 'Supervisors'),
+    ('ui.embedded_apps.view',              'ROLE', 'CONTAINS', 'manager',    'Managers'),
+    ('data.customer.account_info.read',    'ROLE', 'CONTAINS', 'senior',     'Senior roles'),
+    ('data.customer.account_info.read',    'ROLE', 'CONTAINS', 'supervisor', 'Supervisors'),
+    ('data.customer.account_info.read',    'ROLE', 'CONTAINS', 'manager',    'Managers'),
+    ('data.interaction_history.full',      'ROLE', 'CONTAINS', 'supervisor', 'Supervisors'),
+    ('data.interaction_history.full',      'ROLE', 'CONTAINS', 'manager',    'Managers'),
+    ('ui.priority_widget.view',            'ROLE', 'EQUALS',   'supervisor', 'Supervisors');
+
+INSERT INTO layout_permission_elements (permission_key, layout_path, value_property, attributes) VALUES
+    ('ui.customer_column.view',            'columns.customer',                        'visible', '{"size": 300}'),
+    ('ui.transcript_column.view',          'columns.transcript',                      'visible', '{"size": 400}'),
+    ('ui.embedded_apps.view',              'columns.embedded',                        'visible', '{"size": 300}'),
+    ('ui.sentiment_widget.view',           'widgets.sentiment_widget',                'visible', '{"editable": false}'),
+    ('ui.priority_widget.view',            'widgets.priority_widget',                 'visible', '{"editable": false}'),
+    ('data.customer.personal_info.read',   'dataAccess.customerData.personalInfo',    NULL,      NULL),
+    ('data.customer.contact_details.read', 'dataAccess.customerData.contactDetails',  NULL,      NULL),
+    ('data.customer.account_info.read',    'dataAccess.customerData.accountInfo',     NULL,      NULL),
+    ('data.interaction_history.full',      'dataAccess.interactionHistory',           'full',    NULL);
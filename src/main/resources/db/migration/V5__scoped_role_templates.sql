@@ -0,0 +1,85 @@
+-- Market- and environment-aware template selection for compute_user_layout.
+-- Mirrors EntitlementSnapshot.findTemplate: a role's template applies if its market_applicable
+-- is empty or contains the market the role is held in, and likewise for environment_types.
+-- A NULL market or environment (not encoded in the AD group) matches any template.
+-- Environments are compared in the canonical form used by AdGroupDns.normalizeEnvironment.
+
+CREATE OR REPLACE FUNCTION normalize_environment(p_environment TEXT)
+RETURNS TEXT
+LANGUAGE sql
+IMMUTABLE
+AS $$
+    SELECT CASE upper(btrim(p_environment))
+               WHEN '' THEN NULL
+               WHEN 'PROD' THEN 'PRODUCTION'
+               WHEN 'PRD' THEN 'PRODUCTION'
+               WHEN 'STG' THEN 'STAGING'
+               WHEN 'STAGE' THEN 'STAGING'
+               WHEN 'DEV' THEN 'DEVELOPMENT'
+               WHEN 'TST' THEN 'TEST'
+               ELSE upper(btrim(p_environment))
+           END
+$$;
+
+CREATE OR REPLACE FUNCTION compute_user_layout(p_user_id TEXT, p_ad_groups TEXT[], p_roles TEXT[],
+                                               p_role_markets TEXT[], p_role_environments TEXT[])
+RETURNS JSONB
+LANGUAGE sql
+STABLE
+AS $$
+    WITH requested_groups AS (
+        SELECT g.dn, g.ord
+        FROM unnest(p_ad_groups) WITH ORDINALITY AS g(dn, ord)
+    ),
+    matched_overrides AS (
+        SELECT g.ord, o.layout_overrides, o.data_restrictions, o.visual_customizations
+        FROM requested_groups g
+        CROSS JOIN LATERAL (
+            SELECT layout_overrides, data_restrictions, visual_customizations
+            FROM ad_group_layout_overrides
+            WHERE ad_group_dn = g.dn AND is_active
+            ORDER BY priority
+            LIMIT 1
+        ) o
+    ),
+    primary_template AS (
+        SELECT t.default_columns, t.available_widgets, t.default_actions, t.settings_access, t.default_theme
+        FROM unnest(p_roles, p_role_markets, p_role_environments) WITH ORDINALITY AS r(role_name, market, environment, ord)
+        JOIN role_layout_templates t ON t.role_name = r.role_name AND t.is_active
+        WHERE (r.market IS NULL
+               OR NOT EXISTS (SELECT 1 FROM unnest(t.market_applicable) m WHERE btrim(m) <> '')
+               OR upper(r.market) IN (SELECT upper(btrim(m)) FROM unnest(t.market_applicable) m))
+          AND (r.environment IS NULL
+               OR NOT EXISTS (SELECT 1 FROM unnest(t.environment_types) e WHERE btrim(e) <> '')
+               OR normalize_environment(r.environment) IN (SELECT normalize_environment(e) FROM unnest(t.environment_types) e))
+        ORDER BY r.ord
+        LIMIT 1
+    ),
+    user_preferences AS (
+        SELECT computed_layout, market_theme, effective_permissions
+        FROM user_layout_preferences
+        WHERE user_id = p_user_id
+    )
+    SELECT COALESCE(
+               (SELECT jsonb_build_object(
+                           'defaultColumns', default_columns::text,
+                           'availableWidgets', available_widgets::text,
+                           'defaultActions', default_actions::text,
+                           'settingsAccess', settings_access::text,
+                           'defaultTheme', default_theme::text)
+                FROM primary_template),
+               '{}'::jsonb)
+        || jsonb_strip_nulls(jsonb_build_object(
+               'adGroupLayoutOverride',
+               (SELECT layout_overrides::text FROM matched_overrides
+                WHERE layout_overrides IS NOT NULL ORDER BY ord DESC LIMIT 1),
+               'dataRestrictions',
+               (SELECT data_restrictions::text FROM matched_overrides
+                WHERE data_restrictions IS NOT NULL ORDER BY ord DESC LIMIT 1),
+               'visualCustomizations',
+               (SELECT visual_customizations::text FROM matched_overrides
+                WHERE visual_customizations IS NOT NULL ORDER BY ord DESC LIMIT 1),
+               'userComputedLayout', (SELECT computed_layout::text FROM user_preferences),
+               'userMarketTheme', (SELECT market_theme::text FROM user_preferences),
+               'userEffectivePermissions', (SELECT effective_permissions::text FROM user_preferences)))
+$$;
@@ -0,0 +1,9 @@
+-- AD groups a stored user layout was computed from.
+--
+-- The dependency index that maps users to group sets is built per instance from the layouts it
+-- computes, so an instance that never computed a user could not refresh the user's layout (stale
+-- serves, refresh-ahead). With the groups stored next to the layout, any instance can resolve the
+-- user's group set again. Roles are not stored: they are derived from the groups.
+-- NULL until the user's layout is computed or written after this migration.
+
+ALTER TABLE user_layout_preferences ADD COLUMN IF NOT EXISTS ad_groups TEXT[];
@@ -0,0 +1,111 @@
+package com.ccaas.entitlement;
+
+import com.github.dockerjava.api.model.ExposedPort;
+import com.github.dockerjava.api.model.PortBinding;
+import com.github.dockerjava.api.model.Ports;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts the native executable against Postgres and checks the time to the first computed layout
+ * and the resident memory after it.
+ *
+ * Runs only when native.image names the executable built by {@code mvn -Pnative native:compile}, as
+ * the native CI workflow does. The executable connects to the fixed URL in DatabaseConfig, so the
+ * container is published on host port 5434 with the same database and credentials.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "native.image", matches = ".+")
+class NativeImageSmokeTest {
+
+    private static final Duration MAX_STARTUP = Duration.ofSeconds(5);
+    private static final long MAX_RSS_MEGABYTES = 256;
+    private static final Duration GIVE_UP_AFTER = Duration.ofSeconds(60);
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+        .withDatabaseName("sterling_platform")
+        .withUsername("sterling_user")
+        .withPassword("sterling_password")
+        .withCreateContainerCmdModifier(cmd -> cmd.getHostConfig()
+            .withPortBindings(new PortBinding(Ports.Binding.bindPort(5434), new ExposedPort(5432))));
+
+    @Test
+    void firstLayoutWithinStartupAndMemoryBudget() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        HttpClient client = HttpClient.newHttpClient();
+        URI computeUri = URI.create("http://localhost:" + port + "/entitlement/api/v1/layout/compute-internal");
+        HttpRequest compute = HttpRequest.newBuilder(computeUri)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"userId\": \"smoke\", \"adGroups\": [\"CN=EMEA-Senior-Managers,OU=Groups,DC=company,DC=com\"]}"))
+            .build();
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(System.getProperty("native.image"),
+                "--spring.profiles.active=prod",
+                "--server.port=" + port,
+                "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword())
+            .redirectErrorStream(true)
+            .redirectOutput(new File("target/native-smoke.log"))
+            .start();
+        try {
+            int status = 0;
+            while (status != 200 && elapsed(started).compareTo(GIVE_UP_AFTER) < 0) {
+                try {
+                    status = client.send(compute, HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (IOException notListening) {
+                    status = 0;
+                }
+                if (status != 200) {
+                    Thread.sleep(20);
+                }
+            }
+            Duration startup = elapsed(started);
+            long rss = residentMegabytes(process.pid());
+
+            assertThat(status).as("compute-internal status, see target/native-smoke.log").isEqualTo(200);
+            assertThat(startup).as("start to first computed layout").isLessThan(MAX_STARTUP);
+            assertThat(rss).as("RSS in MB after the first computed layout").isLessThan(MAX_RSS_MEGABYTES);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static Duration elapsed(long startedNanos) {
+        return Duration.ofNanos(System.nanoTime() - startedNanos);
+    }
+
+    private static long residentMegabytes(long pid) throws IOException {
+        return Files.readAllLines(Path.of("/proc", Long.toString(pid), "status")).stream()
+            .filter(line -> line.startsWith("VmRSS:"))
+            .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")) / 1024)
+            .findFirst()
+            .orElseThrow();
+    }
+}
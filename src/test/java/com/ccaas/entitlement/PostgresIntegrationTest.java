@@ -0,0 +1,59 @@
+package com.ccaas.entitlement;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+
+/**
+ * Base for tests that run the application against the Flyway schema on a Postgres container.
+ *
+ * All subclasses share one application context and one container, started when the context is
+ * first created. Without Docker the tests are skipped.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(classes = {EntitlementComputationServiceApplication.class, PostgresIntegrationTest.ContainerDataSource.class},
+    webEnvironment = SpringBootTest.WebEnvironment.NONE,
+    properties = "spring.main.allow-bean-definition-overriding=true")
+public abstract class PostgresIntegrationTest {
+
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    /**
+     * Empty the entitlement tables, so a test class can seed exactly the rows it asserts on.
+     */
+    protected void clearEntitlementData() {
+        jdbcTemplate.execute("TRUNCATE role_layout_templates, ad_group_layout_overrides, user_layout_preferences");
+    }
+
+    /**
+     * DatabaseConfig points at a fixed URL, so its DataSource is replaced by one on the container.
+     * Listed after the application class so that this definition is the one kept.
+     */
+    @TestConfiguration
+    static class ContainerDataSource {
+
+        @Bean
+        @Primary
+        DataSource dataSource() {
+            postgres.start();
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(postgres.getJdbcUrl());
+            config.setUsername(postgres.getUsername());
+            config.setPassword(postgres.getPassword());
+            config.setMaximumPoolSize(4);
+            return new HikariDataSource(config);
+        }
+    }
+}
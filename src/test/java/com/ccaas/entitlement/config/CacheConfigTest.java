@@ -0,0 +1,106 @@
+package com.ccaas.entitlement.config;
+
+import com.ccaas.entitlement.dto.LayoutComputationResponse;
+import com.ccaas.entitlement.service.CompactUserLayoutCache;
+import com.ccaas.entitlement.service.EncodedLayoutCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The byte bound holds when entry sizes are heavily skewed: a few layouts hundreds of times
+ * larger than the typical one must not push the cache past {@code max-megabytes}.
+ */
+class CacheConfigTest {
+
+    private static final int MAX_MEGABYTES = 1;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CacheWeigher weigher = new CacheWeigher(objectMapper);
+
+    private Cache<Object, Object> layouts;
+
+    @BeforeEach
+    void setUp() {
+        CacheProperties.CacheSpec spec = new CacheProperties.CacheSpec();
+        spec.setMaxMegabytes(MAX_MEGABYTES);
+        CacheProperties properties = new CacheProperties();
+        properties.setSpecs(Map.of(CompactUserLayoutCache.CACHE_NAME, spec));
+
+        CacheManager cacheManager = new CacheConfig().cacheManager(properties, objectMapper, meterRegistry);
+        layouts = ((CaffeineCache) cacheManager.getCache(CompactUserLayoutCache.CACHE_NAME)).getNativeCache();
+    }
+
+    @Test
+    void skewedPayloadsStayWithinTheByteBound() {
+        long maxWeight = MAX_MEGABYTES * 1024L * 1024L;
+        Random random = new Random(42);
+        long insertedBytes = 0;
+
+        for (int i = 0; i < 20_000; i++) {
+            CompactUserLayoutCache.CompactLayout layout = compactLayout(skewedSize(random));
+            insertedBytes += layout.payload().length;
+            layouts.put("user-" + i, layout);
+            if (i % 500 == 0) {
+                layouts.cleanUp();
+                assertThat(CacheConfig.weightedSize(layouts)).isLessThanOrEqualTo(maxWeight);
+            }
+        }
+        layouts.cleanUp();
+
+        long weightedSize = CacheConfig.weightedSize(layouts);
+        assertThat(insertedBytes).isGreaterThan(10 * maxWeight);
+        assertThat(weightedSize).isLessThanOrEqualTo(maxWeight);
+        // The weight kept is what the weigher says the remaining entries weigh
+        long remaining = layouts.asMap().entrySet().stream()
+            .mapToLong(entry -> weigher.weigh(entry.getKey(), entry.getValue()))
+            .sum();
+        assertThat(weightedSize).isEqualTo(remaining);
+        assertThat(meterRegistry.get("entitlement.cache.weighted_size").tag("cache", CompactUserLayoutCache.CACHE_NAME)
+            .gauge().value()).isEqualTo((double) weightedSize);
+        assertThat(meterRegistry.get("entitlement.cache.max_weight").tag("cache", CompactUserLayoutCache.CACHE_NAME)
+            .gauge().value()).isEqualTo((double) maxWeight);
+    }
+
+    @Test
+    void entryLargerThanTheBoundIsNotKept() {
+        layouts.put("small", compactLayout(1_000));
+        layouts.put("huge", compactLayout(2 * MAX_MEGABYTES * 1024 * 1024));
+        layouts.cleanUp();
+
+        assertThat(layouts.getIfPresent("huge")).isNull();
+        assertThat(CacheConfig.weightedSize(layouts)).isLessThanOrEqualTo(MAX_MEGABYTES * 1024L * 1024L);
+    }
+
+    @Test
+    void weigherCountsEveryEncodingHeld() {
+        EncodedLayoutCache.EncodedLayout encoded =
+            new EncodedLayoutCache.EncodedLayout(new LayoutComputationResponse(), new byte[3_000], new byte[500]);
+
+        assertThat(weigher.weigh("key", encoded)).isEqualTo(CacheWeigher.ENTRY_OVERHEAD_BYTES + 3 + 2 * 3_000 + 500);
+        assertThat(weigher.weigh("key", compactLayout(700))).isEqualTo(CacheWeigher.ENTRY_OVERHEAD_BYTES + 3 + 700);
+        assertThat(weigher.weigh("key", Map.of("a", "b"))).isEqualTo(CacheWeigher.ENTRY_OVERHEAD_BYTES + 3 + "{\"a\":\"b\"}".length());
+    }
+
+    /**
+     * Pareto-distributed sizes: mostly a few hundred bytes, occasionally hundreds of kilobytes.
+     */
+    private static int skewedSize(Random random) {
+        double size = 200 / Math.pow(1 - random.nextDouble(), 1 / 1.1);
+        return (int) Math.min(size, 512 * 1024);
+    }
+
+    private static CompactUserLayoutCache.CompactLayout compactLayout(int payloadBytes) {
+        return new CompactUserLayoutCache.CompactLayout(0L, 0L, payloadBytes, new byte[payloadBytes]);
+    }
+}
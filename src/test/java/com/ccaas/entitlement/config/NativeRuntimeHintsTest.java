@@ -0,0 +1,77 @@
+package com.ccaas.entitlement.config;
+
+import com.ccaas.entitlement.controller.AuditController;
+import com.ccaas.entitlement.dto.LayoutComputationResponse;
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.service.LayoutComputationService;
+import com.ccaas.entitlement.service.PermissionPlan;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.ReflectionHintsPredicates;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeRuntimeHintsTest {
+
+    private final ReflectionHintsPredicates reflection = RuntimeHintsPredicates.reflection();
+
+    private RuntimeHints hints;
+
+    @BeforeEach
+    void setUp() {
+        hints = new RuntimeHints();
+        new NativeRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void entitiesAndDtosAreBound() throws Exception {
+        assertThat(reflection.onType(UserLayoutPreferences.class)).accepts(hints);
+        assertThat(reflection.onField(UserLayoutPreferences.class.getDeclaredField("computedLayout"))).accepts(hints);
+        assertThat(reflection.onMethod(UserLayoutPreferences.class.getMethod("getCacheExpiry"))).accepts(hints);
+        assertThat(reflection.onType(LayoutComputationResponse.class)).accepts(hints);
+    }
+
+    @Test
+    void recordsAreBound() throws Exception {
+        assertThat(reflection.onType(PermissionPlan.LayoutElement.class)).accepts(hints);
+        assertThat(reflection.onMethod(PermissionPlan.LayoutElement.class.getMethod("permission"))).accepts(hints);
+    }
+
+    @Test
+    void anonymousClassesExposeTheirFields() {
+        TypeReference anonymous = TypeReference.of(AuditController.class.getName() + "$1");
+
+        assertThat(reflection.onType(anonymous)
+            .withMemberCategories(MemberCategory.DECLARED_FIELDS, MemberCategory.INTROSPECT_PUBLIC_METHODS)).accepts(hints);
+    }
+
+    @Test
+    void generatedCaffeineCacheForTheConfiguredSettingsIsInstantiable() {
+        // Same feature set as CacheConfig: weighted, expire-after-write, stats
+        Cache<String, String> cache = Caffeine.newBuilder()
+            .maximumWeight(1024)
+            .weigher((String key, String value) -> value.length())
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .recordStats()
+            .build();
+        Class<?> generated = ReflectionTestUtils.getField(cache, "cache").getClass();
+
+        assertThat(generated.getName()).startsWith("com.github.benmanes.caffeine.cache.");
+        assertThat(reflection.onType(generated)
+            .withMemberCategories(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS)).accepts(hints);
+    }
+
+    @Test
+    void beansAreLeftToSpringAot() {
+        assertThat(reflection.onType(LayoutComputationService.class)).rejects(hints);
+    }
+}
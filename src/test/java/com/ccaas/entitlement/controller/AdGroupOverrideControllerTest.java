@@ -0,0 +1,100 @@
+package com.ccaas.entitlement.controller;
+
+import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.repository.AdGroupOverrideRepository;
+import com.ccaas.entitlement.service.AdGroupOverrideLookupService;
+import com.ccaas.entitlement.service.EntitlementSnapshot;
+import com.ccaas.entitlement.service.EntitlementSnapshotService;
+import com.ccaas.entitlement.service.EntitlementSymbols;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * A bulk lookup whose database part fails must not have committed a 200 first.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AdGroupOverrideControllerTest {
+
+    private static final String EMEA_MANAGERS = "CN=EMEA-Managers,OU=Groups,DC=company,DC=com";
+    private static final String US_AGENTS = "CN=Voice-Agent-US-PROD,OU=Voice,OU=ContactCenter,OU=HSBC,DC=hsbc,DC=com";
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @Mock
+    private EntitlementSnapshotService snapshotService;
+
+    @Mock
+    private AdGroupOverrideRepository repository;
+
+    private AdGroupOverrideController controller;
+
+    @BeforeEach
+    void setUp() {
+        AdGroupLayoutOverride cached = new AdGroupLayoutOverride();
+        cached.setAdGroupHash("sha256_emea_managers");
+        cached.setAdGroupDn(EMEA_MANAGERS);
+        cached.setPriority(100);
+        cached.setIsActive(true);
+        when(snapshotService.getSnapshot()).thenReturn(new EntitlementSnapshot("v1", List.of(), List.of(cached),
+            new EntitlementSymbols(new SimpleMeterRegistry())));
+
+        AdGroupOverrideLookupService lookupService = new AdGroupOverrideLookupService();
+        ReflectionTestUtils.setField(lookupService, "snapshotService", snapshotService);
+        ReflectionTestUtils.setField(lookupService, "repository", repository);
+        ReflectionTestUtils.setField(lookupService, "chunkSize", 500);
+
+        controller = new AdGroupOverrideController();
+        ReflectionTestUtils.setField(controller, "lookupService", lookupService);
+        ReflectionTestUtils.setField(controller, "objectMapper", objectMapper);
+    }
+
+    @Test
+    void databaseFailureIsRaisedBeforeTheResponseIsCommitted() {
+        when(repository.findByAdGroupHashInAndIsActiveTrue(anyList()))
+            .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        assertThatThrownBy(() -> controller.bulkLookup(List.of(EMEA_MANAGERS, US_AGENTS)))
+            .isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    @Test
+    void foundAndMissingAreStreamedAfterTheLookup() throws Exception {
+        when(repository.findByAdGroupHashInAndIsActiveTrue(anyList())).thenReturn(List.of());
+        when(repository.findByAdGroupDnInAndIsActiveTrue(anyList())).thenReturn(List.of());
+
+        ResponseEntity<StreamingResponseBody> response = controller.bulkLookup(List.of(EMEA_MANAGERS, US_AGENTS));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        JsonNode body = objectMapper.readTree(out.toByteArray());
+        assertThat(body.path("overridesList")).hasSize(1);
+        assertThat(body.at("/overridesList/0/adGroupDn").asText()).isEqualTo(EMEA_MANAGERS);
+        assertThat(body.path("foundCount").asInt()).isEqualTo(1);
+        assertThat(body.path("cacheHitCount").asInt()).isEqualTo(1);
+        assertThat(body.path("missingDns").get(0).asText()).isEqualTo(US_AGENTS);
+    }
+}
@@ -0,0 +1,143 @@
+package com.ccaas.entitlement.controller;
+
+import com.ccaas.entitlement.dto.LayoutComputationRequest;
+import com.ccaas.entitlement.dto.LayoutComputationResponse;
+import com.ccaas.entitlement.service.EncodedLayoutCache;
+import com.ccaas.entitlement.service.LayoutComputationService;
+import com.ccaas.entitlement.service.LayoutDeltaService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@code compute-internal} must never serve one user's cached layout to another, even when
+ * both send the same AD groups and the service reports the same content version.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LayoutControllerTest {
+
+    private static final List<String> AD_GROUPS = List.of("CN=EMEA-Agents,OU=Groups,DC=company,DC=com");
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @Mock
+    private LayoutComputationService layoutComputationService;
+
+    private LayoutController controller;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrentMapCacheManager cacheManager =
+            new ConcurrentMapCacheManager(EncodedLayoutCache.CACHE_NAME, LayoutDeltaService.CACHE_NAME);
+
+        EncodedLayoutCache encodedLayoutCache = new EncodedLayoutCache();
+        ReflectionTestUtils.setField(encodedLayoutCache, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(encodedLayoutCache, "objectMapper", objectMapper);
+
+        LayoutDeltaService layoutDeltaService = new LayoutDeltaService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(layoutDeltaService, "encodedLayoutCache", encodedLayoutCache);
+        ReflectionTestUtils.setField(layoutDeltaService, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(layoutDeltaService, "objectMapper", objectMapper);
+
+        controller = new LayoutController();
+        ReflectionTestUtils.setField(controller, "layoutComputationService", layoutComputationService);
+        ReflectionTestUtils.setField(controller, "conditionalResponses", new ConditionalResponseSupport(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(controller, "encodedLayoutCache", encodedLayoutCache);
+        ReflectionTestUtils.setField(controller, "layoutDeltaService", layoutDeltaService);
+
+        // Worst case: identical groups and a version that does not tell the users apart
+        when(layoutComputationService.computationMode(any())).thenReturn(LayoutComputationService.MODE_SERVICE_LOGIC);
+        when(layoutComputationService.contentVersion(any())).thenReturn("shared-version");
+        when(layoutComputationService.computeLayout(any())).thenAnswer(invocation -> {
+            LayoutComputationRequest request = invocation.getArgument(0);
+            LayoutComputationResponse response = new LayoutComputationResponse();
+            response.setUserId(request.getUserId());
+            // Mostly shared content, so a patch between two users' layouts would be worth sending
+            response.setLayout(Map.of("owner", request.getUserId(), "widgets", Collections.nCopies(50, "queue-dashboard")));
+            response.setComputationSource("sapi");
+            return response;
+        });
+    }
+
+    @Test
+    void usersWithIdenticalGroupsGetTheirOwnBodies() throws Exception {
+        JsonNode alice = body(compute("alice", null));
+        JsonNode bob = body(compute("bob", null));
+        JsonNode aliceAgain = body(compute("alice", null));
+
+        assertThat(alice.path("userId").asText()).isEqualTo("alice");
+        assertThat(alice.at("/layout/owner").asText()).isEqualTo("alice");
+        assertThat(bob.path("userId").asText()).isEqualTo("bob");
+        assertThat(bob.at("/layout/owner").asText()).isEqualTo("bob");
+        assertThat(aliceAgain).isEqualTo(alice);
+        // alice's second request is a cache hit; bob's was not served from it
+        verify(layoutComputationService, times(2)).computeLayout(any());
+    }
+
+    @Test
+    void anotherUsersVersionIsNotUsedAsDeltaBase() throws Exception {
+        when(layoutComputationService.contentVersion(any())).thenAnswer(invocation ->
+            "version-of-" + invocation.<LayoutComputationRequest>getArgument(0).getUserId());
+        String aliceEtag = compute("alice", null).getHeaders().getETag();
+
+        ResponseEntity<?> bob = compute("bob", aliceEtag);
+
+        // alice's cached layout is not a base bob can be diffed against: full body, not 226
+        assertThat(bob.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(body(bob).path("userId").asText()).isEqualTo("bob");
+    }
+
+    @Test
+    void ownPreviousVersionIsUsedAsDeltaBase() {
+        when(layoutComputationService.contentVersion(any())).thenReturn("before", "after");
+        String etag = compute("alice", null).getHeaders().getETag();
+
+        ResponseEntity<?> alice = compute("alice", etag);
+
+        assertThat(alice.getStatusCode()).isEqualTo(HttpStatus.IM_USED);
+    }
+
+    @Test
+    void acceptIsOrderedByQualityThenSpecificity() {
+        assertThat(LayoutController.prefersJson(null)).isTrue();
+        assertThat(LayoutController.prefersJson("application/x-jackson-smile")).isFalse();
+        assertThat(LayoutController.prefersJson("application/cbor;q=0.9, application/json")).isTrue();
+        assertThat(LayoutController.prefersJson("application/json;q=0.5, application/x-jackson-smile")).isFalse();
+        assertThat(LayoutController.prefersJson("*/*, application/cbor")).isFalse();
+        assertThat(LayoutController.prefersJson("application/json;q=0, application/cbor;q=0.1")).isFalse();
+    }
+
+    private ResponseEntity<?> compute(String userId, String baseVersion) {
+        LayoutComputationRequest request = new LayoutComputationRequest(userId, AD_GROUPS);
+        request.setBaseVersion(baseVersion);
+        return controller.computeLayoutInternal(request, null, null, null);
+    }
+
+    private JsonNode body(ResponseEntity<?> response) throws Exception {
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return objectMapper.readTree((byte[]) response.getBody());
+    }
+}
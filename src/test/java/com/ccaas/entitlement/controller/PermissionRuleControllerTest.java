@@ -0,0 +1,108 @@
+package com.ccaas.entitlement.controller;
+
+import com.ccaas.entitlement.entity.LayoutPermissionElement;
+import com.ccaas.entitlement.entity.LayoutPermissionRule;
+import com.ccaas.entitlement.repository.LayoutPermissionElementRepository;
+import com.ccaas.entitlement.repository.LayoutPermissionRuleRepository;
+import com.ccaas.entitlement.service.EntitlementSymbols;
+import com.ccaas.entitlement.service.PermissionPlanService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rules and layout elements that would not compile are refused with 400 and never stored.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PermissionRuleControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private LayoutPermissionRuleRepository ruleRepository;
+
+    @Mock
+    private LayoutPermissionElementRepository elementRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private PermissionRuleController controller;
+
+    @BeforeEach
+    void setUp() {
+        PermissionPlanService planService = new PermissionPlanService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(planService, "ruleRepository", ruleRepository);
+        ReflectionTestUtils.setField(planService, "elementRepository", elementRepository);
+        ReflectionTestUtils.setField(planService, "symbols", new EntitlementSymbols(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(planService, "objectMapper", objectMapper);
+
+        controller = new PermissionRuleController();
+        ReflectionTestUtils.setField(controller, "ruleRepository", ruleRepository);
+        ReflectionTestUtils.setField(controller, "elementRepository", elementRepository);
+        ReflectionTestUtils.setField(controller, "planService", planService);
+        ReflectionTestUtils.setField(controller, "eventPublisher", eventPublisher);
+
+        LayoutPermissionElement stored = new LayoutPermissionElement("export", "toolbar.export", null);
+        stored.setId(1L);
+        when(ruleRepository.getVersionStamp()).thenReturn("0:");
+        when(ruleRepository.findByIsActiveTrueOrderByIdAsc()).thenReturn(List.of());
+        when(elementRepository.getVersionStamp()).thenReturn("1:a");
+        when(elementRepository.findByIsActiveTrueOrderByIdAsc()).thenReturn(List.of(stored));
+    }
+
+    @Test
+    void invalidRuleIsRejected() throws Exception {
+        LayoutPermissionRule rule = new LayoutPermissionRule("export", "DEPARTMENT", "EQUALS", "sales");
+
+        ResponseEntity<?> response = controller.createRule(rule);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(error(response)).isEqualTo("Rule -1: unknown subject type 'DEPARTMENT'");
+        verify(ruleRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void conflictingLayoutElementIsRejected() throws Exception {
+        LayoutPermissionElement element = new LayoutPermissionElement("print", "toolbar.export", null);
+
+        ResponseEntity<?> response = controller.createElement(element);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(error(response)).contains("toolbar.export");
+        verify(elementRepository, never()).save(any());
+    }
+
+    @Test
+    void validRuleIsStored() {
+        LayoutPermissionRule rule = new LayoutPermissionRule("export", "ROLE", "EQUALS", "MANAGER");
+        when(ruleRepository.save(rule)).thenReturn(rule);
+
+        assertThat(controller.createRule(rule).getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(ruleRepository).save(rule);
+    }
+
+    private String error(ResponseEntity<?> response) throws Exception {
+        return objectMapper.readTree(objectMapper.writeValueAsString(response.getBody())).path("error").asText();
+    }
+}
@@ -0,0 +1,160 @@
+package com.ccaas.entitlement.controller;
+
+import com.ccaas.entitlement.dto.LayoutComputationRequest;
+import com.ccaas.entitlement.dto.LayoutComputationResponse;
+import com.ccaas.entitlement.service.EncodedLayoutCache;
+import com.ccaas.entitlement.service.LayoutComputationService;
+import com.ccaas.entitlement.service.LayoutDeltaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * The reactive {@code compute-internal} must answer exactly like the blocking one: same status,
+ * body bytes, ETag, 304 and JSON Patch delta. Each controller gets its own caches, so neither
+ * answer is served from the other's work.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReactiveLayoutControllerTest {
+
+    private static final List<String> AD_GROUPS = List.of("CN=EMEA-Agents,OU=Groups,DC=company,DC=com");
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @Mock
+    private LayoutComputationService layoutComputationService;
+
+    private final AtomicReference<String> version = new AtomicReference<>("v1");
+    private final AtomicReference<String> theme = new AtomicReference<>("light");
+
+    private LayoutController blocking;
+    private ReactiveLayoutController reactive;
+
+    @BeforeEach
+    void setUp() {
+        blocking = new LayoutController();
+        ReflectionTestUtils.setField(blocking, "layoutComputationService", layoutComputationService);
+        ReflectionTestUtils.setField(blocking, "conditionalResponses", new ConditionalResponseSupport(new SimpleMeterRegistry()));
+        wireCaches(blocking);
+
+        reactive = new ReactiveLayoutController();
+        ReflectionTestUtils.setField(reactive, "layoutComputationService", layoutComputationService);
+        ReflectionTestUtils.setField(reactive, "conditionalResponses", new ConditionalResponseSupport(new SimpleMeterRegistry()));
+        wireCaches(reactive);
+
+        when(layoutComputationService.computationMode(any())).thenReturn(LayoutComputationService.MODE_SERVICE_LOGIC);
+        when(layoutComputationService.contentVersion(any())).thenAnswer(invocation -> version.get());
+        when(layoutComputationService.contentVersionReactive(any())).thenAnswer(invocation -> Mono.just(version.get()));
+        when(layoutComputationService.computeLayout(any())).thenAnswer(invocation -> layout(invocation.getArgument(0)));
+        when(layoutComputationService.computeLayoutReactive(any()))
+            .thenAnswer(invocation -> Mono.just(layout(invocation.getArgument(0))));
+    }
+
+    @Test
+    void fullBodyAndEtagMatch() {
+        assertSameResponse(null, null, null);
+        assertSameResponse(null, null, "gzip, deflate");
+    }
+
+    @Test
+    void notModifiedMatches() {
+        String etag = compute(blocking, null, null, null).getHeaders().getETag();
+
+        ResponseEntity<?> blockingResponse = compute(blocking, null, etag, null);
+        ResponseEntity<?> reactiveResponse = compute(reactive, null, etag, null);
+
+        assertThat(blockingResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertSame(blockingResponse, reactiveResponse);
+        // baseVersion equal to the current version is answered the same way
+        assertSame(compute(blocking, etag, null, null), compute(reactive, etag, null, null));
+    }
+
+    @Test
+    void deltaMatches() {
+        String etag = compute(blocking, null, null, null).getHeaders().getETag();
+        assertThat(compute(reactive, null, null, null).getHeaders().getETag()).isEqualTo(etag);
+        version.set("v2");
+        theme.set("dark");
+
+        ResponseEntity<?> blockingResponse = compute(blocking, etag, null, null);
+        ResponseEntity<?> reactiveResponse = compute(reactive, etag, null, null);
+
+        assertThat(blockingResponse.getStatusCode()).isEqualTo(HttpStatus.IM_USED);
+        assertSame(blockingResponse, reactiveResponse);
+    }
+
+    private void assertSameResponse(String baseVersion, String ifNoneMatch, String acceptEncoding) {
+        ResponseEntity<?> blockingResponse = compute(blocking, baseVersion, ifNoneMatch, acceptEncoding);
+        ResponseEntity<?> reactiveResponse = compute(reactive, baseVersion, ifNoneMatch, acceptEncoding);
+
+        assertThat(blockingResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertSame(blockingResponse, reactiveResponse);
+    }
+
+    private static void assertSame(ResponseEntity<?> blockingResponse, ResponseEntity<?> reactiveResponse) {
+        assertThat(reactiveResponse.getStatusCode()).isEqualTo(blockingResponse.getStatusCode());
+        assertThat(reactiveResponse.getHeaders().getETag()).isEqualTo(blockingResponse.getHeaders().getETag());
+        assertThat(reactiveResponse.getHeaders().getContentType()).isEqualTo(blockingResponse.getHeaders().getContentType());
+        assertThat(reactiveResponse.getHeaders().get(HttpHeaders.CONTENT_ENCODING))
+            .isEqualTo(blockingResponse.getHeaders().get(HttpHeaders.CONTENT_ENCODING));
+        assertThat(reactiveResponse.getBody()).isEqualTo(blockingResponse.getBody());
+    }
+
+    private ResponseEntity<?> compute(Object controller, String baseVersion, String ifNoneMatch, String acceptEncoding) {
+        LayoutComputationRequest request = new LayoutComputationRequest("alice", AD_GROUPS);
+        request.setBaseVersion(baseVersion);
+        if (controller instanceof ReactiveLayoutController reactiveController) {
+            return reactiveController.computeLayoutInternal(request, ifNoneMatch, null, acceptEncoding).block();
+        }
+        return ((LayoutController) controller).computeLayoutInternal(request, ifNoneMatch, null, acceptEncoding);
+    }
+
+    private LayoutComputationResponse layout(LayoutComputationRequest request) {
+        LayoutComputationResponse response = new LayoutComputationResponse();
+        response.setUserId(request.getUserId());
+        response.setLayout(Map.of("owner", request.getUserId(), "theme", theme.get(),
+                                  "widgets", Collections.nCopies(50, "queue-dashboard")));
+        response.setComputationSource("sapi");
+        return response;
+    }
+
+    private void wireCaches(Object controller) {
+        ConcurrentMapCacheManager cacheManager =
+            new ConcurrentMapCacheManager(EncodedLayoutCache.CACHE_NAME, LayoutDeltaService.CACHE_NAME);
+
+        EncodedLayoutCache encodedLayoutCache = new EncodedLayoutCache();
+        ReflectionTestUtils.setField(encodedLayoutCache, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(encodedLayoutCache, "objectMapper", objectMapper);
+
+        LayoutDeltaService layoutDeltaService = new LayoutDeltaService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(layoutDeltaService, "encodedLayoutCache", encodedLayoutCache);
+        ReflectionTestUtils.setField(layoutDeltaService, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(layoutDeltaService, "objectMapper", objectMapper);
+
+        ReflectionTestUtils.setField(controller, "encodedLayoutCache", encodedLayoutCache);
+        ReflectionTestUtils.setField(controller, "layoutDeltaService", layoutDeltaService);
+    }
+}
@@ -0,0 +1,123 @@
+package com.ccaas.entitlement.controller;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import com.ccaas.entitlement.service.CompactUserLayoutCache;
+import com.ccaas.entitlement.service.LayoutDependencyIndex;
+import com.ccaas.entitlement.service.UserLayoutExpiryPolicy;
+import com.ccaas.entitlement.service.UserPreferenceWriteBuffer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@code POST /user-preferences} is written behind, so a row the database would reject must be
+ * refused with 400 up front instead of being accepted and dropped at flush time.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UserPreferenceControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private CompactUserLayoutCache compactLayoutCache;
+
+    @Mock
+    private UserLayoutExpiryPolicy expiryPolicy;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private LayoutDependencyIndex dependencyIndex;
+
+    private UserPreferenceWriteBuffer writeBuffer;
+    private UserPreferenceController controller;
+
+    @BeforeEach
+    void setUp() {
+        writeBuffer = new UserPreferenceWriteBuffer(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writeBuffer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(writeBuffer, "layoutCache", compactLayoutCache);
+        ReflectionTestUtils.setField(writeBuffer, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(writeBuffer, "dependencyIndex", dependencyIndex);
+        ReflectionTestUtils.setField(writeBuffer, "enabled", true);
+        ReflectionTestUtils.setField(writeBuffer, "maxBatchSize", 500);
+
+        controller = new UserPreferenceController();
+        ReflectionTestUtils.setField(controller, "writeBuffer", writeBuffer);
+        ReflectionTestUtils.setField(controller, "expiryPolicy", expiryPolicy);
+        ReflectionTestUtils.setField(controller, "eventPublisher", eventPublisher);
+
+        when(expiryPolicy.nextExpiry()).thenReturn(LocalDateTime.now().plusHours(4));
+    }
+
+    @Test
+    void validPreferencesAreQueued() {
+        ResponseEntity<?> response = controller.createUserPreferences(preferences("alice", "{\"pinned\": [\"queue\"]}"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(writeBuffer.getPending("alice")).isPresent();
+        verify(eventPublisher).publishEvent(EntitlementChangeEvent.preferencesChanged("alice"));
+    }
+
+    @Test
+    void missingUserIdIsRejected() throws Exception {
+        assertRejected(preferences(null, "{}"), "userId is required");
+        assertRejected(preferences(" ", "{}"), "userId is required");
+    }
+
+    @Test
+    void missingComputedLayoutIsRejected() throws Exception {
+        assertRejected(preferences("alice", null), "computedLayout is required");
+    }
+
+    @Test
+    void invalidJsonColumnsAreRejected() throws Exception {
+        assertRejected(preferences("alice", "{\"pinned\": [\"queue\""), "computedLayout is not valid JSON");
+
+        UserLayoutPreferences badPermissions = preferences("alice", "{}");
+        badPermissions.setEffectivePermissions("not json");
+        assertRejected(badPermissions, "effectivePermissions is not valid JSON");
+    }
+
+    private void assertRejected(UserLayoutPreferences preferences, String error) throws Exception {
+        ResponseEntity<?> response = controller.createUserPreferences(preferences);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(response.getBody())).path("error").asText())
+            .isEqualTo(error);
+        assertThat(writeBuffer.getPendingCount()).isZero();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    private static UserLayoutPreferences preferences(String userId, String computedLayout) {
+        UserLayoutPreferences preferences = new UserLayoutPreferences();
+        preferences.setUserId(userId);
+        preferences.setComputedLayout(computedLayout);
+        return preferences;
+    }
+}
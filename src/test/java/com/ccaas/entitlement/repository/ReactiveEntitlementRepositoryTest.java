@@ -0,0 +1,17 @@
+package com.ccaas.entitlement.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactiveEntitlementRepositoryTest {
+
+    @Test
+    void r2dbcUrlFollowsTheDatasource() {
+        assertThat(ReactiveEntitlementRepository.r2dbcUrl("jdbc:postgresql://db.internal:5432/ccaas_platform?sslmode=require"))
+            .isEqualTo("r2dbc:postgresql://db.internal:5432/ccaas_platform?sslmode=require");
+        assertThatThrownBy(() -> ReactiveEntitlementRepository.r2dbcUrl("postgresql://db.internal/ccaas_platform"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
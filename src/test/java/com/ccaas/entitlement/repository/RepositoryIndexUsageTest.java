@@ -0,0 +1,221 @@
+package com.ccaas.entitlement.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EXPLAIN of every selective repository query against the Flyway schema on a seeded Postgres:
+ * none may sequentially scan the large tables (overrides, preferences, audit).
+ *
+ * Each entry is the SQL the repository method issues, with parameters inlined so Postgres plans
+ * it as it would for a custom plan. Queries that read most of a table by design are left out:
+ * the version stamps, {@code findByIsActiveTrueOrderByPriorityAsc}/{@code findActiveSummaries},
+ * {@code countValidCache}/{@code countValidPreferences}, {@code getActiveUserCount} and
+ * {@code countByExpiryBucket}. Role templates are a small table and are not checked.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RepositoryIndexUsageTest {
+
+    private static final Pattern LARGE_TABLE_SEQ_SCAN =
+        Pattern.compile("Seq Scan on (ad_group_layout_overrides|user_layout_preferences|layout_computation_audit)\\b");
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+            .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+            .locations("classpath:db/migration")
+            .load()
+            .migrate();
+
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            // 50k overrides over 4 markets, 50 functions and 3 environments; 10% inactive
+            statement.execute("INSERT INTO ad_group_layout_overrides (ad_group_hash, ad_group_dn, parsed_market, "
+                + "parsed_function, parsed_environment, layout_overrides, priority, is_active, created_at, updated_at) "
+                + "SELECT md5(g::text), 'CN=G' || g || ',DC=x', (ARRAY['EMEA','UK','US','APAC'])[g % 4 + 1], 'F' || (g % 50), "
+                + "(ARRAY['PRODUCTION','UAT','DEVELOPMENT'])[g % 3 + 1], '{}'::jsonb, g % 200, g % 10 <> 0, now(), "
+                + "now() - (g || ' seconds')::interval FROM generate_series(1, 50000) g");
+            // 100k preferences; about 5% past cacheExpiry, as between maintenance runs
+            statement.execute("INSERT INTO user_layout_preferences (user_id, user_email, computed_layout, primary_market, "
+                + "cache_expiry, last_computed_at, computation_source) "
+                + "SELECT 'u' || g, 'u' || g || '@x', '{}', (ARRAY['EMEA','UK','US','APAC'])[g % 4 + 1], "
+                + "now() + ((g % 600) - 30 || ' minutes')::interval, now() - (g || ' seconds')::interval, "
+                + "CASE g % 50 WHEN 0 THEN 'api' WHEN 1 THEN 'fallback' ELSE 'recomputation' END "
+                + "FROM generate_series(1, 100000) g");
+            // 200k audit rows over about 2.3 days, mostly cache hits
+            statement.execute("INSERT INTO layout_computation_audit (user_id, user_email, matched_overrides, base_roles, "
+                + "computation_time_ms, cache_status, computation_source, created_at) "
+                + "SELECT 'u' || (g % 20000), 'u' || (g % 20000) || '@x', '{}', ARRAY['R'], g % 5000, "
+                + "CASE g % 20 WHEN 0 THEN 'miss' WHEN 1 THEN 'expired' ELSE 'hit' END, "
+                + "CASE g % 20 WHEN 0 THEN 'fallback' WHEN 1 THEN 'database_function' ELSE 'service_logic' END, "
+                + "now() - (g || ' seconds')::interval FROM generate_series(1, 200000) g");
+            statement.execute("ANALYZE");
+        }
+    }
+
+    static Stream<Arguments> repositoryQueries() {
+        return Stream.of(
+            // AdGroupOverrideRepository
+            query("findByAdGroupHashAndIsActiveTrue",
+                "SELECT * FROM ad_group_layout_overrides WHERE ad_group_hash = md5('5') AND is_active"),
+            query("findByAdGroupHashInAndIsActiveTrue",
+                "SELECT * FROM ad_group_layout_overrides WHERE ad_group_hash IN (md5('5'), md5('6'), md5('7')) AND is_active ORDER BY priority"),
+            query("findByAdGroupDnAndIsActiveTrue",
+                "SELECT * FROM ad_group_layout_overrides WHERE ad_group_dn = 'CN=G5,DC=x' AND is_active"),
+            query("findByAdGroupDnInAndIsActiveTrue",
+                "SELECT * FROM ad_group_layout_overrides WHERE ad_group_dn IN ('CN=G5,DC=x', 'CN=G6,DC=x') AND is_active ORDER BY priority"),
+            query("findByParsedMarketAndIsActiveTrueOrderByPriorityAsc",
+                "SELECT * FROM ad_group_layout_overrides WHERE parsed_market = 'EMEA' AND is_active ORDER BY priority"),
+            query("findByParsedFunctionAndIsActiveTrueOrderByPriorityAsc",
+                "SELECT * FROM ad_group_layout_overrides WHERE parsed_function = 'F7' AND is_active ORDER BY priority"),
+            query("findByParsedEnvironmentAndIsActiveTrueOrderByPriorityAsc",
+                "SELECT * FROM ad_group_layout_overrides WHERE parsed_environment = 'UAT' AND is_active ORDER BY priority"),
+            query("findByMarketAndFunctionAndActive",
+                "SELECT * FROM ad_group_layout_overrides WHERE parsed_market = 'EMEA' AND parsed_function = 'F7' AND is_active ORDER BY priority"),
+            query("findByMarketAndEnvironmentAndActive",
+                "SELECT * FROM ad_group_layout_overrides WHERE parsed_market = 'EMEA' AND parsed_environment = 'UAT' AND is_active ORDER BY priority"),
+            query("findActiveSummariesByMarket",
+                "SELECT ad_group_hash, ad_group_dn, parsed_market, parsed_function, parsed_environment, priority, is_active, updated_at "
+                    + "FROM ad_group_layout_overrides WHERE parsed_market = 'EMEA' AND is_active ORDER BY priority"),
+            query("findActiveSummariesByFunction",
+                "SELECT ad_group_hash, ad_group_dn, parsed_market, parsed_function, parsed_environment, priority, is_active, updated_at "
+                    + "FROM ad_group_layout_overrides WHERE parsed_function = 'F7' AND is_active ORDER BY priority"),
+            query("findActiveSummariesByEnvironment",
+                "SELECT ad_group_hash, ad_group_dn, parsed_market, parsed_function, parsed_environment, priority, is_active, updated_at "
+                    + "FROM ad_group_layout_overrides WHERE parsed_environment = 'UAT' AND is_active ORDER BY priority"),
+            query("countByParsedMarketAndIsActiveTrue",
+                "SELECT count(*) FROM ad_group_layout_overrides WHERE parsed_market = 'EMEA' AND is_active"),
+            query("findByPriorityLessThanAndIsActiveTrueOrderByPriorityAsc",
+                "SELECT * FROM ad_group_layout_overrides WHERE priority < 3 AND is_active ORDER BY priority"),
+
+            // UserPreferenceCacheRepository
+            query("findValidCacheByUserId",
+                "SELECT * FROM user_layout_preferences WHERE user_id = 'u5' AND cache_expiry > now() ORDER BY last_computed_at DESC"),
+            query("findValidLastComputedAtByUserId",
+                "SELECT last_computed_at FROM user_layout_preferences WHERE user_id = 'u5' AND cache_expiry > now()"),
+            query("findLastComputedAtByUserId",
+                "SELECT last_computed_at FROM user_layout_preferences WHERE user_id = 'u5'"),
+            query("findLastComputedAtByUserIdAndCacheExpiryAfter",
+                "SELECT last_computed_at FROM user_layout_preferences WHERE user_id = 'u5' AND cache_expiry > now() - interval '60 minutes'"),
+            query("findByUserId",
+                "SELECT * FROM user_layout_preferences WHERE user_id = 'u5'"),
+            query("findExpiredCache",
+                "SELECT * FROM user_layout_preferences WHERE cache_expiry < now()"),
+            query("deleteExpiredPreferences",
+                "DELETE FROM user_layout_preferences WHERE cache_expiry < now()"),
+            query("deleteByCacheExpiryBefore",
+                "DELETE FROM user_layout_preferences WHERE cache_expiry < now() - interval '60 minutes'"),
+            query("findByComputationSource",
+                "SELECT * FROM user_layout_preferences WHERE computation_source = 'api'"),
+            query("findByLastComputedAtAfter",
+                "SELECT * FROM user_layout_preferences WHERE last_computed_at > now() - interval '5 minutes'"),
+            query("findByCacheExpiryBefore",
+                "SELECT * FROM user_layout_preferences WHERE cache_expiry < now() - interval '10 minutes'"),
+            query("countExpiredCache",
+                "SELECT count(*) FROM user_layout_preferences WHERE cache_expiry < now()"),
+            query("findByUserEmail",
+                "SELECT * FROM user_layout_preferences WHERE user_email = 'u5@x'"),
+            query("findRecentlyComputed",
+                "SELECT * FROM user_layout_preferences WHERE cache_expiry > now() ORDER BY last_computed_at DESC, user_id LIMIT 500"),
+            query("findValidCacheByUserIds",
+                "SELECT * FROM user_layout_preferences WHERE user_id IN ('u5', 'u6', 'u7') AND cache_expiry > now()"),
+            query("updateCacheExpiry",
+                "UPDATE user_layout_preferences SET cache_expiry = now() WHERE user_id = 'u5'"),
+            query("findCacheExpiringWithin",
+                "SELECT * FROM user_layout_preferences WHERE cache_expiry BETWEEN now() AND now() + interval '5 minutes'"),
+            query("findUsersExpiringWithin",
+                "SELECT user_id, ad_groups FROM user_layout_preferences WHERE cache_expiry BETWEEN now() AND now() + interval '5 minutes' "
+                    + "ORDER BY cache_expiry, user_id LIMIT 101"),
+
+            // CacheMaintenanceRepository (deleteExpiredPreferences is the same statement as above)
+            query("countExpiredPreferences",
+                "SELECT count(*) FROM user_layout_preferences WHERE cache_expiry < now()"),
+
+            // LayoutComputationRepository
+            query("findByUserIdOrderByCreatedAtDesc",
+                "SELECT * FROM layout_computation_audit WHERE user_id = 'u5' ORDER BY created_at DESC"),
+            query("findByUserIdAndDateRange",
+                "SELECT * FROM layout_computation_audit WHERE user_id = 'u5' "
+                    + "AND created_at BETWEEN now() - interval '1 day' AND now() ORDER BY created_at DESC"),
+            query("findByCacheStatusOrderByCreatedAtDesc",
+                "SELECT * FROM layout_computation_audit WHERE cache_status = 'expired' ORDER BY created_at DESC"),
+            query("findByComputationSourceOrderByCreatedAtDesc",
+                "SELECT * FROM layout_computation_audit WHERE computation_source = 'fallback' ORDER BY created_at DESC"),
+            query("findByCreatedAtAfterOrderByCreatedAtDesc",
+                "SELECT * FROM layout_computation_audit WHERE created_at > now() - interval '10 minutes' ORDER BY created_at DESC"),
+            query("findByComputationTimeMsGreaterThanOrderByComputationTimeMsDesc",
+                "SELECT * FROM layout_computation_audit WHERE computation_time_ms > 4990 ORDER BY computation_time_ms DESC"),
+            query("getPerformanceStats",
+                "SELECT count(*), avg(computation_time_ms), max(computation_time_ms), min(computation_time_ms), "
+                    + "sum(CASE WHEN cache_status = 'hit' THEN 1 ELSE 0 END), sum(CASE WHEN cache_status = 'miss' THEN 1 ELSE 0 END) "
+                    + "FROM layout_computation_audit WHERE created_at > now() - interval '1 hour'"),
+            query("getCacheHitRatio",
+                "SELECT CAST(sum(CASE WHEN cache_status = 'hit' THEN 1 ELSE 0 END) AS float8) / count(*) * 100 "
+                    + "FROM layout_computation_audit WHERE created_at > now() - interval '1 hour'"),
+            query("findSlowestComputations",
+                "SELECT * FROM layout_computation_audit ORDER BY computation_time_ms DESC LIMIT 10"),
+            query("countByUserId",
+                "SELECT count(*) FROM layout_computation_audit WHERE user_id = 'u5'"),
+            query("countByCacheStatus",
+                "SELECT count(*) FROM layout_computation_audit WHERE cache_status = 'expired'"),
+            query("deleteAuditEntriesOlderThan",
+                "DELETE FROM layout_computation_audit WHERE created_at < now() - interval '2 days'"),
+            query("findByUserEmailOrderByCreatedAtDesc",
+                "SELECT * FROM layout_computation_audit WHERE user_email = 'u5@x' ORDER BY created_at DESC"),
+            query("getComputationTimePercentiles",
+                "SELECT percentile_cont(0.5) WITHIN GROUP (ORDER BY computation_time_ms), "
+                    + "percentile_cont(0.95) WITHIN GROUP (ORDER BY computation_time_ms), "
+                    + "percentile_cont(0.99) WITHIN GROUP (ORDER BY computation_time_ms) "
+                    + "FROM layout_computation_audit WHERE created_at > now() - interval '1 hour'"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryQueries")
+    void doesNotScanALargeTable(String repositoryMethod, String sql) throws SQLException {
+        String plan = explain(sql);
+
+        assertThat(LARGE_TABLE_SEQ_SCAN.matcher(plan).find())
+            .as("%s uses a sequential scan:%n%s", repositoryMethod, plan)
+            .isFalse();
+    }
+
+    private static Arguments query(String repositoryMethod, String sql) {
+        return Arguments.of(repositoryMethod, sql);
+    }
+
+    private static String explain(String sql) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery("EXPLAIN " + sql)) {
+            while (plan.next()) {
+                lines.add(plan.getString(1));
+            }
+        }
+        return String.join(System.lineSeparator(), lines);
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+}
@@ -0,0 +1,51 @@
+package com.ccaas.entitlement.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdGroupDnsTest {
+
+    @Test
+    void everyScenarioUserIsInTheMarketOfTheirFirstGroup() {
+        List<SapiTestScenarios.Scenario> scenarios = SapiTestScenarios.load();
+
+        assertThat(scenarios).isNotEmpty();
+        for (SapiTestScenarios.Scenario scenario : scenarios) {
+            assertThat(AdGroupDns.market(scenario.adGroups().get(0))).as(scenario.userId()).isEqualTo(scenario.market());
+        }
+    }
+
+    @Test
+    void multiMarketUserHasAScopePerGroup() {
+        List<String> adGroups = SapiTestScenarios.user("alex.morgan").adGroups();
+
+        assertThat(adGroups).extracting(AdGroupDns::market).containsExactly("US", "EMEA", "APAC");
+        assertThat(adGroups).extracting(AdGroupDns::function).containsOnly("VOICE");
+        assertThat(adGroups).extracting(AdGroupDns::environment).containsExactly("PRODUCTION", "UAT", "PRODUCTION");
+        assertThat(adGroups).extracting(dn -> AdGroupDns.scopeDn(AdGroupDns.market(dn), AdGroupDns.function(dn), AdGroupDns.environment(dn)))
+            .containsExactly("SCOPE=US/VOICE/PRODUCTION", "SCOPE=EMEA/VOICE/UAT", "SCOPE=APAC/VOICE/PRODUCTION");
+    }
+
+    @Test
+    void groupsWithoutAnEnvironmentOrMarketToken() {
+        SapiTestScenarios.Scenario sarah = SapiTestScenarios.user("sarah.thompson");
+        String qualityAssurance = sarah.adGroups().get(2);
+
+        assertThat(AdGroupDns.market(qualityAssurance)).isEqualTo("EMEA");
+        assertThat(AdGroupDns.function(qualityAssurance)).isEqualTo("QUALITY");
+        assertThat(AdGroupDns.environment(qualityAssurance)).isNull();
+        assertThat(AdGroupDns.scopeDn(null, "VOICE", null)).isNull();
+        assertThat(AdGroupDns.scopeDn("EMEA", null, "PROD")).isNull();
+    }
+
+    @Test
+    void environmentAliasesAreNormalised() {
+        assertThat(AdGroupDns.environment("CN=Voice-Agent-UK-PRD,OU=Voice")).isEqualTo("PRODUCTION");
+        assertThat(AdGroupDns.environment("CN=Voice-Agent-UK-STG,OU=Voice")).isEqualTo("STAGING");
+        assertThat(AdGroupDns.normalizeEnvironment(" dev ")).isEqualTo("DEVELOPMENT");
+        assertThat(AdGroupDns.canonicalScopeDn("scope=emea/voice/prod")).isEqualTo("SCOPE=EMEA/VOICE/PRODUCTION");
+    }
+}
@@ -0,0 +1,78 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.repository.AdGroupOverrideRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AdGroupOverrideLookupServiceTest {
+
+    private static final String EMEA_SENIOR_MANAGERS = "CN=EMEA-Senior-Managers,OU=Groups,DC=company,DC=com";
+    private static final String US_AGENTS = "CN=Voice-Agent-US-PROD,OU=Voice,OU=ContactCenter,OU=HSBC,DC=hsbc,DC=com";
+    private static final String UNKNOWN = "CN=Nobody,OU=Groups,DC=company,DC=com";
+
+    @Mock
+    private EntitlementSnapshotService snapshotService;
+
+    @Mock
+    private AdGroupOverrideRepository repository;
+
+    private AdGroupOverrideLookupService lookupService;
+
+    @BeforeEach
+    void setUp() {
+        // An empty snapshot, as just after a change that has not been reloaded yet
+        EntitlementSnapshot snapshot = new EntitlementSnapshot("v1", List.of(), List.of(),
+            new EntitlementSymbols(new SimpleMeterRegistry()));
+        when(snapshotService.getSnapshot()).thenReturn(snapshot);
+
+        lookupService = new AdGroupOverrideLookupService();
+        ReflectionTestUtils.setField(lookupService, "snapshotService", snapshotService);
+        ReflectionTestUtils.setField(lookupService, "repository", repository);
+        ReflectionTestUtils.setField(lookupService, "chunkSize", 500);
+    }
+
+    @Test
+    void rowWithAClientChosenHashIsFoundByDn() {
+        // Seed data keys this row by a readable name, not sha256(dn)
+        AdGroupLayoutOverride seeded = override("sha256_emea_senior_managers", EMEA_SENIOR_MANAGERS);
+        AdGroupLayoutOverride hashed = override(AdGroupHashes.hash(US_AGENTS), US_AGENTS);
+        when(repository.findByAdGroupHashInAndIsActiveTrue(anyList())).thenAnswer(invocation ->
+            invocation.<List<String>>getArgument(0).contains(hashed.getAdGroupHash()) ? List.of(hashed) : List.of());
+        when(repository.findByAdGroupDnInAndIsActiveTrue(anyList())).thenAnswer(invocation ->
+            invocation.<List<String>>getArgument(0).contains(EMEA_SENIOR_MANAGERS) ? List.of(seeded) : List.of());
+
+        List<AdGroupLayoutOverride> found = new ArrayList<>();
+        AdGroupOverrideLookupService.BulkLookupSummary summary =
+            lookupService.lookup(List.of(US_AGENTS, EMEA_SENIOR_MANAGERS, UNKNOWN), found::add);
+
+        assertThat(found).containsExactly(hashed, seeded);
+        assertThat(summary.databaseHitCount()).isEqualTo(2);
+        assertThat(summary.missingDns()).containsExactly(UNKNOWN);
+    }
+
+    private static AdGroupLayoutOverride override(String adGroupHash, String adGroupDn) {
+        AdGroupLayoutOverride override = new AdGroupLayoutOverride();
+        override.setAdGroupHash(adGroupHash);
+        override.setAdGroupDn(adGroupDn);
+        override.setPriority(100);
+        override.setIsActive(true);
+        return override;
+    }
+}
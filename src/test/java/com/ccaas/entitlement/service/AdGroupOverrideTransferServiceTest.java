@@ -0,0 +1,158 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.PostgresIntegrationTest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Import and export through the batched-statement path, the one taken when the connection is not
+ * a Postgres connection: the connection is wrapped so that it no longer unwraps to
+ * {@link PGConnection}, against the Flyway schema on Postgres.
+ */
+class AdGroupOverrideTransferServiceTest extends PostgresIntegrationTest {
+
+    private static final String NDJSON =
+        "{\"adGroupHash\":\"h1\",\"adGroupDn\":\"CN=EMEA-Managers,OU=Groups\",\"parsedMarket\":\"EMEA\","
+            + "\"layoutOverrides\":{\"columns\":[\"queue\",\"sla\"]},\"priority\":5}\n"
+            + "{\"adGroupHash\":\"h2\",\"adGroupDn\":\"CN=US-Analysts,OU=Groups\",\"parsedMarket\":\"US\","
+            + "\"parsedFunction\":\"SALES\",\"dataRestrictions\":\"{\\\"region\\\": \\\"US\\\"}\",\"isActive\":false}\n"
+            + "{\"adGroupDn\":\"CN=UK-Agents, with \\\"quotes\\\",OU=Groups\",\"parsedMarket\":\"UK\","
+            + "\"visualCustomizations\":{\"note\":\"a,b\\nc\"}}\n";
+
+    private AdGroupOverrideTransferService transferService;
+
+    @BeforeEach
+    void setUp() {
+        clearEntitlementData();
+        DataSource withoutCopy = new WithoutCopyDataSource(jdbcTemplate.getDataSource());
+        transferService = new AdGroupOverrideTransferService();
+        ReflectionTestUtils.setField(transferService, "jdbcTemplate", new JdbcTemplate(withoutCopy));
+        ReflectionTestUtils.setField(transferService, "transactionManager", new DataSourceTransactionManager(withoutCopy));
+        ReflectionTestUtils.setField(transferService, "objectMapper", new ObjectMapper());
+        // Smaller than the input, so rows are staged over several batches
+        ReflectionTestUtils.setField(transferService, "batchSize", 2);
+        ReflectionTestUtils.setField(transferService, "maxReportedErrors", 10);
+    }
+
+    @Test
+    void ndjsonRoundTrip() {
+        AdGroupOverrideTransferService.ImportSummary summary = importOverrides(AdGroupOverrideTransferService.FORMAT_NDJSON, NDJSON);
+        assertThat(summary.applied()).isTrue();
+        assertThat(summary.inserted()).isEqualTo(3);
+
+        String exported = export(AdGroupOverrideTransferService.FORMAT_NDJSON);
+        assertThat(exported.lines()).hasSize(3);
+
+        clearEntitlementData();
+        assertThat(importOverrides(AdGroupOverrideTransferService.FORMAT_NDJSON, exported).inserted()).isEqualTo(3);
+        assertThat(export(AdGroupOverrideTransferService.FORMAT_NDJSON)).isEqualTo(exported);
+    }
+
+    @Test
+    void csvRoundTrip() {
+        importOverrides(AdGroupOverrideTransferService.FORMAT_NDJSON, NDJSON);
+        String exported = export(AdGroupOverrideTransferService.FORMAT_CSV);
+        assertThat(exported.lines().findFirst()).contains(
+            AdGroupOverrideTransferService.csvLine(AdGroupOverrideTransferService.COLUMNS.toArray()).strip());
+
+        clearEntitlementData();
+        AdGroupOverrideTransferService.ImportSummary summary = importOverrides(AdGroupOverrideTransferService.FORMAT_CSV, exported);
+        assertThat(summary.errors()).isEmpty();
+        assertThat(summary.inserted()).isEqualTo(3);
+        assertThat(export(AdGroupOverrideTransferService.FORMAT_CSV)).isEqualTo(exported);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT visual_customizations ->> 'note' FROM ad_group_layout_overrides WHERE parsed_market = 'UK'", String.class))
+            .isEqualTo("a,b\nc");
+    }
+
+    @Test
+    void invalidRowRollsBackTheWholeImport() {
+        importOverrides(AdGroupOverrideTransferService.FORMAT_NDJSON, NDJSON);
+        String before = export(AdGroupOverrideTransferService.FORMAT_NDJSON);
+
+        String valid = "{\"adGroupHash\":\"h1\",\"adGroupDn\":\"CN=EMEA-Managers,OU=Groups\",\"parsedMarket\":\"EMEA\",\"priority\":1}\n"
+            + "{\"adGroupHash\":\"h4\",\"adGroupDn\":\"CN=APAC-Agents,OU=Groups\",\"parsedMarket\":\"APAC\"}\n"
+            + "{\"adGroupHash\":\"h5\",\"adGroupDn\":\"CN=APAC-Leads,OU=Groups\",\"parsedMarket\":\"APAC\"}\n";
+        String invalid = "{\"adGroupHash\":\"h6\",\"adGroupDn\":\"CN=APAC-Bad,OU=Groups\",\"parsedMarket\":\"APAC\","
+            + "\"layoutOverrides\":\"{not json\"}\n";
+        AdGroupOverrideTransferService.ImportSummary summary = importOverrides(AdGroupOverrideTransferService.FORMAT_NDJSON, valid + invalid);
+
+        assertThat(summary.applied()).isFalse();
+        assertThat(summary.rejected()).isEqualTo(1);
+        assertThat(summary.errors()).containsExactly("line 4: layoutOverrides is not valid JSON");
+        assertThat(export(AdGroupOverrideTransferService.FORMAT_NDJSON)).isEqualTo(before);
+
+        // The staging table went with the rolled-back transaction
+        assertThat(importOverrides(AdGroupOverrideTransferService.FORMAT_NDJSON, valid).applied()).isTrue();
+    }
+
+    @Test
+    void lastRowForAHashWins() {
+        String input = "{\"adGroupHash\":\"h1\",\"adGroupDn\":\"CN=EMEA-Managers,OU=Groups\",\"parsedMarket\":\"EMEA\",\"priority\":1}\n"
+            + "{\"adGroupHash\":\"h2\",\"adGroupDn\":\"CN=US-Analysts,OU=Groups\",\"parsedMarket\":\"US\"}\n"
+            + "{\"adGroupHash\":\"h1\",\"adGroupDn\":\"CN=EMEA-Managers,OU=Groups\",\"parsedMarket\":\"EMEA\",\"priority\":2}\n"
+            + "{\"adGroupHash\":\"h1\",\"adGroupDn\":\"CN=EMEA-Leads,OU=Groups\",\"parsedMarket\":\"EMEA\",\"priority\":3}\n";
+
+        AdGroupOverrideTransferService.ImportSummary summary = importOverrides(AdGroupOverrideTransferService.FORMAT_NDJSON, input);
+
+        assertThat(summary.inserted()).isEqualTo(2);
+        assertThat(summary.duplicatesCollapsed()).isEqualTo(2);
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+            "SELECT ad_group_dn, priority FROM ad_group_layout_overrides WHERE ad_group_hash = 'h1'");
+        assertThat(row).containsEntry("ad_group_dn", "CN=EMEA-Leads,OU=Groups").containsEntry("priority", 3);
+    }
+
+    private AdGroupOverrideTransferService.ImportSummary importOverrides(String format, String input) {
+        return transferService.importOverrides(format, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String export(String format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transferService.export(format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hands out connections that do not unwrap to {@link PGConnection}, as a non-Postgres driver's would.
+     */
+    private static final class WithoutCopyDataSource extends DelegatingDataSource {
+
+        WithoutCopyDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection target = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("isWrapperFor") && args[0] == PGConnection.class) {
+                        return false;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        }
+    }
+}
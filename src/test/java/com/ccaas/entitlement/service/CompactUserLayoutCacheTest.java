@@ -0,0 +1,78 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactUserLayoutCacheTest {
+
+    private static final LocalDateTime STORED_AT = LocalDateTime.of(2024, 1, 1, 9, 0);
+    private static final LocalDateTime WRITTEN_AT = STORED_AT.plusMinutes(5);
+
+    private CompactUserLayoutCache layoutCache;
+
+    @BeforeEach
+    void setUp() {
+        layoutCache = new CompactUserLayoutCache();
+        ReflectionTestUtils.setField(layoutCache, "cacheManager", new CaffeineCacheManager(CompactUserLayoutCache.CACHE_NAME));
+    }
+
+    @Test
+    void loadFinishingAfterAWriteDoesNotPutTheOlderRowBack() {
+        Optional<UserLayoutPreferences> loaded = layoutCache.get("alice", userId -> {
+            // The write is submitted and flushed while the database read is in flight
+            layoutCache.evict(userId);
+            layoutCache.put(preferences(userId, "written", WRITTEN_AT));
+            return Optional.of(preferences(userId, "stored", STORED_AT));
+        });
+
+        assertThat(loaded).map(UserLayoutPreferences::getComputedLayout).contains("stored");
+        assertThat(layoutCache.getIfPresent("alice")).map(UserLayoutPreferences::getComputedLayout).contains("written");
+        assertThat(layoutCache.getLastComputedAt("alice")).contains(WRITTEN_AT);
+    }
+
+    @Test
+    void newerLayoutReplacesTheCachedOne() {
+        layoutCache.put(preferences("alice", "stored", STORED_AT));
+        layoutCache.put(preferences("alice", "written", WRITTEN_AT));
+
+        assertThat(layoutCache.getIfPresent("alice")).map(UserLayoutPreferences::getComputedLayout).contains("written");
+    }
+
+    @Test
+    void olderLayoutDoesNotReplaceTheCachedOne() {
+        layoutCache.put(preferences("alice", "written", WRITTEN_AT));
+        layoutCache.put(preferences("alice", "stored", STORED_AT));
+
+        assertThat(layoutCache.getIfPresent("alice")).map(UserLayoutPreferences::getComputedLayout).contains("written");
+    }
+
+    @Test
+    void baseRolesAndAdGroupsSurviveTheEncoding() {
+        UserLayoutPreferences preferences = preferences("alice", "stored", STORED_AT);
+        preferences.setBaseRoles(new String[] {"MANAGER", "ANALYST"});
+        preferences.setAdGroups(new String[] {"CN=EMEA-Managers,OU=Groups,DC=company,DC=com"});
+        layoutCache.put(preferences);
+
+        UserLayoutPreferences cached = layoutCache.getIfPresent("alice").orElseThrow();
+        assertThat(cached.getBaseRoles()).containsExactly("MANAGER", "ANALYST");
+        assertThat(cached.getAdGroups()).containsExactly("CN=EMEA-Managers,OU=Groups,DC=company,DC=com");
+
+        layoutCache.put(preferences("alice", "written", WRITTEN_AT));
+        assertThat(layoutCache.getIfPresent("alice").orElseThrow().getAdGroups()).isNull();
+    }
+
+    static UserLayoutPreferences preferences(String userId, String computedLayout, LocalDateTime lastComputedAt) {
+        UserLayoutPreferences preferences = new UserLayoutPreferences(userId, computedLayout);
+        preferences.setLastComputedAt(lastComputedAt);
+        preferences.setCacheExpiry(lastComputedAt.plusHours(24));
+        return preferences;
+    }
+}
@@ -0,0 +1,138 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.PostgresIntegrationTest;
+import com.ccaas.entitlement.dto.LayoutComputationRequest;
+import com.ccaas.entitlement.dto.LayoutComputationResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The database_function mode against the Flyway schema on Postgres: for the same request it must
+ * return exactly the layout the Java engine computes, and fall back to it when the function is gone.
+ */
+class ComputationModeEquivalenceTest extends PostgresIntegrationTest {
+
+    private static final String[] MARKETS = {"EMEA", "UK", "US", "APAC"};
+    private static final int OVERRIDES = 2000;
+
+    @Autowired
+    private LayoutComputationService layoutComputationService;
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    private static boolean seeded;
+
+    @Test
+    void bothModesReturnIdenticalLayouts() {
+        int compared = 0;
+        for (LayoutComputationRequest request : requests(200)) {
+            request.setComputationMode(LayoutComputationService.MODE_SERVICE_LOGIC);
+            LayoutComputationResponse inService = layoutComputationService.computeLayout(request);
+            request.setComputationMode(LayoutComputationService.MODE_DATABASE_FUNCTION);
+            LayoutComputationResponse inDatabase = layoutComputationService.computeLayout(request);
+
+            assertThat(inDatabase.getComputationSource()).isEqualTo(LayoutComputationService.MODE_DATABASE_FUNCTION);
+            assertThat(inDatabase.getLayout()).as(request.getUserId()).isEqualTo(inService.getLayout());
+            compared++;
+        }
+        assertThat(compared).isEqualTo(200);
+    }
+
+    @Test
+    void missingFunctionFallsBackToServiceLogic() {
+        LayoutComputationRequest request = requests(1).get(0);
+        request.setComputationMode(LayoutComputationService.MODE_SERVICE_LOGIC);
+        LayoutComputationResponse inService = layoutComputationService.computeLayout(request);
+
+        renameFunctions("compute_user_layout", "compute_user_layout_hidden");
+        try {
+            request.setComputationMode(LayoutComputationService.MODE_DATABASE_FUNCTION);
+            LayoutComputationResponse fallback = layoutComputationService.computeLayout(request);
+
+            assertThat(fallback.getComputationSource()).isEqualTo("fallback");
+            assertThat(fallback.getLayout()).isEqualTo(inService.getLayout());
+        } finally {
+            renameFunctions("compute_user_layout_hidden", "compute_user_layout");
+        }
+    }
+
+    /**
+     * Rename every overload of a function.
+     */
+    private void renameFunctions(String from, String to) {
+        jdbcTemplate.execute("DO $$ DECLARE f regprocedure; BEGIN "
+            + "FOR f IN SELECT oid::regprocedure FROM pg_proc WHERE proname = '" + from + "' LOOP "
+            + "EXECUTE 'ALTER FUNCTION ' || f || ' RENAME TO " + to + "'; END LOOP; END $$");
+    }
+
+    /**
+     * Templates for two roles, overrides that set each JSON column on a different subset of rows,
+     * a second override on one DN at a higher priority, and preferences for every other user.
+     */
+    @BeforeEach
+    void seed() {
+        if (seeded) {
+            return;
+        }
+        clearEntitlementData();
+        String blob = "{\"widgets\": [{\"id\": \"queue\", \"visible\": true}, {\"id\": \"stats\", \"visible\": false}]}";
+        jdbcTemplate.update("INSERT INTO role_layout_templates (role_name, role_display_name, default_columns, "
+            + "available_widgets, default_actions, settings_access, default_theme, is_active, updated_at) VALUES "
+            + "('MANAGER', 'Manager', ?::jsonb, ?::jsonb, '[\"approve\"]', '{}', NULL, true, now()), "
+            + "('ANALYST', 'Analyst', ?::jsonb, '{}', '[]', '{}', '{\"contrast\": 1}', true, now())", blob, blob, blob);
+
+        List<Object[]> overrides = new ArrayList<>();
+        for (int i = 0; i < OVERRIDES; i++) {
+            overrides.add(new Object[]{"h" + i, dn(i), MARKETS[i % 4], i % 5 == 0 ? null : blob,
+                i % 2 == 0 ? blob : null, i % 7 == 0 ? blob : null, 1 + i % 13});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO ad_group_layout_overrides (ad_group_hash, ad_group_dn, parsed_market, "
+            + "layout_overrides, data_restrictions, visual_customizations, priority, is_active, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?::jsonb, ?::jsonb, ?::jsonb, ?, true, now(), now())", overrides);
+        jdbcTemplate.update("INSERT INTO ad_group_layout_overrides (ad_group_hash, ad_group_dn, parsed_market, "
+            + "layout_overrides, priority, is_active, created_at, updated_at) "
+            + "VALUES ('duplicate', ?, 'EMEA', '{\"duplicate\": true}', 0, true, now(), now())", dn(0));
+
+        List<Object[]> preferences = new ArrayList<>();
+        for (int u = 0; u < 200; u += 2) {
+            preferences.add(new Object[]{"user" + u, blob});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user_layout_preferences (user_id, computed_layout, market_theme, "
+            + "cache_expiry, last_computed_at) VALUES (?, ?::jsonb, '{\"theme\": 1}', now() + interval '4 hours', now())",
+            preferences);
+        snapshotService.refreshIfChanged();
+        seeded = true;
+    }
+
+    /**
+     * Requests of ten known DNs and one unknown DN each; the first also names the duplicated DN.
+     */
+    private static List<LayoutComputationRequest> requests(int count) {
+        Random random = new Random(7);
+        List<LayoutComputationRequest> requests = new ArrayList<>();
+        for (int u = 0; u < count; u++) {
+            List<String> adGroups = new ArrayList<>();
+            if (u == 0) {
+                adGroups.add(dn(0));
+            }
+            for (int k = 0; k < 10; k++) {
+                adGroups.add(dn(random.nextInt(OVERRIDES)));
+            }
+            adGroups.add("CN=Unknown-" + u + ",DC=company,DC=com");
+            requests.add(new LayoutComputationRequest("user" + u, adGroups));
+        }
+        return requests;
+    }
+
+    private static String dn(int i) {
+        return "CN=" + MARKETS[i % 4] + "-" + (i % 3 == 0 ? "Managers" : "Analysts") + "-" + i + ",DC=company,DC=com";
+    }
+}
@@ -0,0 +1,86 @@
+package com.ccaas.entitlement.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntitlementBitsTest {
+
+    /** One ID in the first word, two in the third. */
+    private static final long[] LONG = EntitlementBits.of(3, 130, 191);
+
+    /** One word only. */
+    private static final long[] SHORT = EntitlementBits.of(3, 63);
+
+    @Test
+    void ofSizesToTheHighestId() {
+        assertThat(EntitlementBits.of()).isEmpty();
+        assertThat(EntitlementBits.of(0)).hasSize(1);
+        assertThat(EntitlementBits.of(63)).hasSize(1);
+        assertThat(EntitlementBits.of(64)).hasSize(2);
+        assertThat(LONG).hasSize(3);
+        assertThat(EntitlementBits.words(0)).isZero();
+        assertThat(EntitlementBits.words(65)).isEqualTo(2);
+    }
+
+    @Test
+    void containsBeyondTheArrayIsFalse() {
+        assertThat(EntitlementBits.contains(SHORT, 63)).isTrue();
+        assertThat(EntitlementBits.contains(SHORT, 64)).isFalse();
+        assertThat(EntitlementBits.contains(SHORT, 1_000)).isFalse();
+        assertThat(EntitlementBits.contains(SHORT, EntitlementSymbols.UNKNOWN)).isFalse();
+    }
+
+    @Test
+    void withGrowsTheArrayAndLeavesTheOriginal() {
+        long[] grown = EntitlementBits.with(SHORT, 200);
+
+        assertThat(EntitlementBits.ids(grown)).containsExactly(3, 63, 200);
+        assertThat(EntitlementBits.ids(SHORT)).containsExactly(3, 63);
+    }
+
+    @Test
+    void orAndAndAcrossDifferentLengths() {
+        assertThat(EntitlementBits.ids(EntitlementBits.or(SHORT, LONG))).containsExactly(3, 63, 130, 191);
+        assertThat(EntitlementBits.ids(EntitlementBits.or(LONG, SHORT))).containsExactly(3, 63, 130, 191);
+        assertThat(EntitlementBits.ids(EntitlementBits.and(SHORT, LONG))).containsExactly(3);
+        assertThat(EntitlementBits.ids(EntitlementBits.and(LONG, SHORT))).containsExactly(3);
+        assertThat(EntitlementBits.or(SHORT, LONG)).isNotSameAs(LONG);
+    }
+
+    @Test
+    void orIntoALongerTarget() {
+        long[] target = LONG.clone();
+        EntitlementBits.orInto(target, SHORT);
+
+        assertThat(EntitlementBits.ids(target)).containsExactly(3, 63, 130, 191);
+    }
+
+    @Test
+    void intersectsAcrossDifferentLengths() {
+        assertThat(EntitlementBits.intersects(SHORT, LONG)).isTrue();
+        assertThat(EntitlementBits.intersects(EntitlementBits.of(63), LONG)).isFalse();
+        assertThat(EntitlementBits.intersects(EntitlementBits.of(191), EntitlementBits.of(3))).isFalse();
+    }
+
+    @Test
+    void containsAllTreatsMissingWordsAsZero() {
+        assertThat(EntitlementBits.containsAll(LONG, EntitlementBits.of(3, 191))).isTrue();
+        assertThat(EntitlementBits.containsAll(LONG, EntitlementBits.of(3, 63))).isFalse();
+        // Required IDs past the end of the bitset are missing
+        assertThat(EntitlementBits.containsAll(SHORT, EntitlementBits.of(3, 130))).isFalse();
+        // Zero words past the end of the bitset require nothing
+        assertThat(EntitlementBits.containsAll(SHORT, new long[] {1L << 3, 0, 0})).isTrue();
+        assertThat(EntitlementBits.containsAll(SHORT, new long[0])).isTrue();
+    }
+
+    @Test
+    void idsAndCardinality() {
+        long[] all = new long[] {-1L, 0, 1L << 63};
+
+        assertThat(EntitlementBits.cardinality(all)).isEqualTo(65);
+        assertThat(EntitlementBits.ids(all)).hasSize(65).startsWith(0, 1, 2).endsWith(62, 63, 191);
+        assertThat(EntitlementBits.cardinality(LONG)).isEqualTo(3);
+        assertThat(EntitlementBits.ids(new long[2])).isEmpty();
+    }
+}
@@ -0,0 +1,101 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.AdGroupLayoutOverride;
+import com.ccaas.entitlement.entity.RoleLayoutTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntitlementSnapshotTest {
+
+    private static final String US_VOICE_MANAGERS = "CN=Voice-Manager-US-PROD,OU=Voice,OU=ContactCenter,OU=HSBC,DC=hsbc,DC=com";
+
+    @Test
+    void requestDnWithoutSymbolIdIsResolvedFromTheDn() {
+        EntitlementSymbols symbols = new EntitlementSymbols(new SimpleMeterRegistry());
+        EntitlementSnapshot snapshot = new EntitlementSnapshot("v1", List.of(), List.of(override("SCOPE=US/VOICE")), symbols);
+        // Full: nothing from requests is interned any more
+        ReflectionTestUtils.setField(symbols, "maxSize", symbols.size());
+        int tableSize = symbols.size();
+
+        int adGroupId = symbols.tryIntern(US_VOICE_MANAGERS);
+        EntitlementSnapshot.GroupScope scope = snapshot.scopeOf(adGroupId, US_VOICE_MANAGERS);
+        int[] scopeIds = snapshot.inheritedScopeIds(new int[] {adGroupId}, List.of(US_VOICE_MANAGERS));
+
+        assertThat(adGroupId).isEqualTo(EntitlementSymbols.UNKNOWN);
+        assertThat(scope.market()).isEqualTo("US");
+        assertThat(scope.function()).isEqualTo("VOICE");
+        assertThat(scope.environment()).isEqualTo("PRODUCTION");
+        // The scope with an override is still inherited; scopes without one are not interned
+        assertThat(scopeIds).containsExactly(symbols.find("SCOPE=US/VOICE"));
+        assertThat(symbols.size()).isEqualTo(tableSize);
+    }
+
+    @Test
+    void multiMarketUserGetsTheTemplateThatAppliesForEachGroup() {
+        RoleLayoutTemplate manager = template("manager", new String[] {"US", "UK"}, new String[] {"PRODUCTION"});
+        RoleLayoutTemplate voiceAgent = template("voice_agent", new String[] {"EMEA", "APAC"}, new String[0]);
+        EntitlementSymbols symbols = new EntitlementSymbols(new SimpleMeterRegistry());
+        EntitlementSnapshot snapshot = new EntitlementSnapshot("v1", List.of(manager, voiceAgent), List.of(), symbols);
+
+        List<String> adGroups = SapiTestScenarios.user("alex.morgan").adGroups();
+        List<RoleLayoutTemplate> templates = new ArrayList<>();
+        for (String adGroup : adGroups) {
+            EntitlementSnapshot.GroupScope scope = snapshot.scopeOf(symbols.tryIntern(adGroup), adGroup);
+            int roleId = symbols.find(adGroup.contains("-Manager-") ? "manager" : "voice_agent");
+            templates.add(snapshot.findTemplate(roleId, scope.market(), scope.environment()));
+        }
+
+        // US production manager, no manager template in EMEA, voice agent in APAC
+        assertThat(templates).containsExactly(manager, null, voiceAgent);
+    }
+
+    @Test
+    void templateScopeMatchingForEveryScenarioGroup() {
+        RoleLayoutTemplate seniorAgent = template("senior_agent", new String[0], new String[0]);
+        RoleLayoutTemplate fraudSpecialist = template("fraud_specialist", new String[] {"APAC"}, new String[] {"PROD"});
+        EntitlementSymbols symbols = new EntitlementSymbols(new SimpleMeterRegistry());
+        EntitlementSnapshot snapshot = new EntitlementSnapshot("v1", List.of(seniorAgent, fraudSpecialist), List.of(), symbols);
+        int seniorAgentId = symbols.find("senior_agent");
+        int fraudSpecialistId = symbols.find("fraud_specialist");
+
+        for (SapiTestScenarios.Scenario scenario : SapiTestScenarios.load()) {
+            for (String adGroup : scenario.adGroups()) {
+                EntitlementSnapshot.GroupScope scope = snapshot.scopeOf(symbols.tryIntern(adGroup), adGroup);
+                boolean apacProduction = "APAC".equals(scope.market()) && "PRODUCTION".equals(scope.environment());
+
+                // An unrestricted template applies everywhere; a scoped one only in its markets and environments
+                assertThat(snapshot.findTemplate(seniorAgentId, scope.market(), scope.environment())).as(adGroup).isSameAs(seniorAgent);
+                assertThat(snapshot.findTemplate(fraudSpecialistId, scope.market(), scope.environment()))
+                    .as(adGroup).isSameAs(apacProduction ? fraudSpecialist : null);
+            }
+        }
+        // A market or environment the AD group does not encode matches any
+        assertThat(snapshot.findTemplate(fraudSpecialistId, null, null)).isSameAs(fraudSpecialist);
+        assertThat(snapshot.findTemplate(fraudSpecialistId, "APAC", null)).isSameAs(fraudSpecialist);
+        assertThat(snapshot.findTemplate(fraudSpecialistId, "EMEA", null)).isNull();
+    }
+
+    private static RoleLayoutTemplate template(String roleName, String[] marketApplicable, String[] environmentTypes) {
+        RoleLayoutTemplate template = new RoleLayoutTemplate();
+        template.setRoleName(roleName);
+        template.setMarketApplicable(marketApplicable);
+        template.setEnvironmentTypes(environmentTypes);
+        template.setIsActive(true);
+        return template;
+    }
+
+    private static AdGroupLayoutOverride override(String adGroupDn) {
+        AdGroupLayoutOverride override = new AdGroupLayoutOverride();
+        override.setAdGroupDn(adGroupDn);
+        override.setAdGroupHash(AdGroupHashes.hash(adGroupDn));
+        override.setPriority(100);
+        override.setIsActive(true);
+        return override;
+    }
+}
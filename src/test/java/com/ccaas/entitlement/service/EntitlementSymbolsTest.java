@@ -0,0 +1,63 @@
+package com.ccaas.entitlement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntitlementSymbolsTest {
+
+    private static final String EMEA_AGENTS = "CN=Voice-Agent-EMEA-PROD,OU=Voice,OU=ContactCenter,OU=HSBC,DC=hsbc,DC=com";
+    private static final String JUNK = "CN=made-up-by-a-client,DC=example,DC=com";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EntitlementSymbols symbols;
+
+    @BeforeEach
+    void setUp() {
+        symbols = new EntitlementSymbols(meterRegistry);
+        ReflectionTestUtils.setField(symbols, "maxSize", 2);
+    }
+
+    @Test
+    void findNeverGrowsTheTable() {
+        assertThat(symbols.find(JUNK)).isEqualTo(EntitlementSymbols.UNKNOWN);
+        assertThat(symbols.findAll(List.of(JUNK, EMEA_AGENTS))).containsExactly(EntitlementSymbols.UNKNOWN, EntitlementSymbols.UNKNOWN);
+        assertThat(symbols.size()).isZero();
+    }
+
+    @Test
+    void requestNamesStopBeingInternedAtMaxSize() {
+        int first = symbols.tryIntern("CN=a");
+        int second = symbols.tryIntern("CN=b");
+
+        assertThat(symbols.tryIntern(JUNK)).isEqualTo(EntitlementSymbols.UNKNOWN);
+        assertThat(symbols.size()).isEqualTo(2);
+        assertThat(meterRegistry.get("entitlement.symbols.rejected").counter().count()).isEqualTo(1.0);
+        // Names already interned keep resolving
+        assertThat(symbols.tryInternAll(List.of("CN=b", "CN=a", JUNK)))
+            .containsExactly(second, first, EntitlementSymbols.UNKNOWN);
+    }
+
+    @Test
+    void entitlementTableNamesAreInternedPastMaxSize() {
+        symbols.tryIntern("CN=a");
+        symbols.tryIntern("CN=b");
+
+        int id = symbols.intern(EMEA_AGENTS);
+
+        assertThat(id).isNotEqualTo(EntitlementSymbols.UNKNOWN);
+        assertThat(symbols.tryIntern(EMEA_AGENTS)).isEqualTo(id);
+        assertThat(symbols.name(id)).isEqualTo(EMEA_AGENTS);
+    }
+
+    @Test
+    void allKnown() {
+        assertThat(EntitlementSymbols.allKnown(new int[] {0, 3})).isTrue();
+        assertThat(EntitlementSymbols.allKnown(new int[] {0, EntitlementSymbols.UNKNOWN})).isFalse();
+    }
+}
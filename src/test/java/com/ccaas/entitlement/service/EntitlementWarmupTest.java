@@ -0,0 +1,79 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.ccaas.entitlement.service.CompactUserLayoutCacheTest.preferences;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EntitlementWarmupTest {
+
+    private static final LocalDateTime STORED_AT = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+    @Mock
+    private EntitlementSnapshotService snapshotService;
+
+    @Mock
+    private PermissionPlanService permissionPlanService;
+
+    @Mock
+    private UserPreferenceCacheRepository userPreferenceRepository;
+
+    @Mock
+    private UserLayoutCacheService userLayoutCacheService;
+
+    private CompactUserLayoutCache layoutCache;
+    private EntitlementWarmup warmup;
+
+    @BeforeEach
+    void setUp() {
+        layoutCache = new CompactUserLayoutCache();
+        ReflectionTestUtils.setField(layoutCache, "cacheManager", new CaffeineCacheManager(CompactUserLayoutCache.CACHE_NAME));
+
+        warmup = new EntitlementWarmup(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(warmup, "snapshotService", snapshotService);
+        ReflectionTestUtils.setField(warmup, "permissionPlanService", permissionPlanService);
+        ReflectionTestUtils.setField(warmup, "userPreferenceRepository", userPreferenceRepository);
+        ReflectionTestUtils.setField(warmup, "layoutCache", layoutCache);
+        ReflectionTestUtils.setField(warmup, "userLayoutCacheService", userLayoutCacheService);
+        ReflectionTestUtils.setField(warmup, "enabled", true);
+        ReflectionTestUtils.setField(warmup, "snapshotBudgetMs", 5000L);
+        ReflectionTestUtils.setField(warmup, "userLayoutLimit", 100);
+        ReflectionTestUtils.setField(warmup, "userLayoutsBudgetMs", 5000L);
+        ReflectionTestUtils.setField(warmup, "pageSize", 10);
+
+        when(userLayoutCacheService.hardExpiryCutoff()).thenReturn(STORED_AT.minusDays(1));
+    }
+
+    @Test
+    void layoutWrittenDuringWarmupIsNotReplacedByTheRowReadBeforeIt() {
+        when(userPreferenceRepository.findRecentlyComputed(any(), any())).thenAnswer(invocation -> {
+            // alice's write is submitted and flushed after her row was read for this page
+            layoutCache.evict("alice");
+            layoutCache.put(preferences("alice", "written", STORED_AT.plusMinutes(5)));
+            return new SliceImpl<>(List.of(preferences("alice", "stored", STORED_AT), preferences("bob", "stored", STORED_AT)),
+                                   invocation.<Pageable>getArgument(1), false);
+        });
+
+        warmup.run(null);
+
+        assertThat(layoutCache.getIfPresent("alice")).map(UserLayoutPreferences::getComputedLayout).contains("written");
+        assertThat(layoutCache.getIfPresent("bob")).map(UserLayoutPreferences::getComputedLayout).contains("stored");
+    }
+}
@@ -0,0 +1,214 @@
+package com.ccaas.entitlement.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@code apply(diff(a, b)) == b}, with {@code apply} an RFC 6902 implementation of the
+ * {@code add}, {@code remove} and {@code replace} operations {@link JsonPatches#diff} emits.
+ */
+class JsonPatchesTest {
+
+    /** Member names for random documents, including ones that need pointer escaping. */
+    private static final String[] NAMES = {"columns", "widgets", "a/b", "m~n", "~1", "", "theme"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void equalDocumentsHaveAnEmptyPatch() throws Exception {
+        JsonNode layout = json("{'columns':['customer','transcript'],'settings':{'access':'basic'}}");
+
+        assertThat(JsonPatches.diff(layout, layout.deepCopy())).isEmpty();
+    }
+
+    @Test
+    void nestedRemovalsAndAdditions() throws Exception {
+        assertRoundTrip(
+            "{'layout':{'widgets':{'sentiment':{'enabled':true,'position':1},'priority':{}},'theme':'emea'},'market':'EMEA'}",
+            "{'layout':{'widgets':{'sentiment':{'enabled':false}},'density':'compact'},'market':'EMEA'}");
+    }
+
+    @Test
+    void arraysOfTheSameLengthArePatchedElementByElement() throws Exception {
+        ArrayNode patch = assertRoundTrip(
+            "{'columns':[{'id':'customer','width':120},{'id':'transcript','pinned':true}]}",
+            "{'columns':[{'id':'customer','width':160},{'id':'transcript'}]}");
+
+        assertThat(patch.toString()).isEqualTo(
+            "[{\"op\":\"replace\",\"path\":\"/columns/0/width\",\"value\":160},{\"op\":\"remove\",\"path\":\"/columns/1/pinned\"}]");
+    }
+
+    @Test
+    void arraysChangingLengthAreReplaced() throws Exception {
+        ArrayNode patch = assertRoundTrip("{'actions':['transfer','note']}", "{'actions':['transfer','note','escalate']}");
+
+        assertThat(patch).hasSize(1);
+        assertThat(patch.get(0).path("op").asText()).isEqualTo("replace");
+        assertThat(patch.get(0).path("path").asText()).isEqualTo("/actions");
+        assertRoundTrip("{'actions':['transfer','note']}", "{'actions':[]}");
+        assertRoundTrip("[[1,2],[3]]", "[[1,2],[3,4]]");
+    }
+
+    @Test
+    void pointerTokensAreEscaped() throws Exception {
+        ArrayNode patch = assertRoundTrip(
+            "{'a/b':1,'m~n':{'x':1},'~1':'literal','keep':0}",
+            "{'a/b':2,'m~n':{'y':1},'~01':'added','keep':0}");
+
+        assertThat(patch.findValuesAsText("path"))
+            .containsExactlyInAnyOrder("/~01", "/a~1b", "/m~0n/x", "/m~0n/y", "/~001");
+    }
+
+    @Test
+    void changeOfTypeReplacesTheValue() throws Exception {
+        assertRoundTrip("{'restrictions':{'pii':true}}", "{'restrictions':['pii']}");
+        assertRoundTrip("{'restrictions':null}", "{'restrictions':{'pii':true}}");
+        assertRoundTrip("{'a':1}", "[1]");
+    }
+
+    @Test
+    void randomLayoutsRoundTrip() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            JsonNode source = randomValue(random, 4);
+            JsonNode target = mutate(random, source.deepCopy(), 4);
+
+            assertThat(apply(source, JsonPatches.diff(source, target))).as("%s -> %s", source, target).isEqualTo(target);
+        }
+    }
+
+    private ArrayNode assertRoundTrip(String source, String target) throws Exception {
+        JsonNode sourceJson = json(source);
+        JsonNode targetJson = json(target);
+        ArrayNode patch = JsonPatches.diff(sourceJson, targetJson);
+
+        assertThat(apply(sourceJson, patch)).isEqualTo(targetJson);
+        // diff leaves its inputs alone
+        assertThat(sourceJson).isEqualTo(json(source));
+        return patch;
+    }
+
+    private JsonNode json(String singleQuoted) throws Exception {
+        return objectMapper.readTree(singleQuoted.replace('\'', '"'));
+    }
+
+    /**
+     * RFC 6902 {@code add}, {@code remove} and {@code replace} on a copy of {@code document}.
+     */
+    private static JsonNode apply(JsonNode document, ArrayNode patch) {
+        JsonNode result = document.deepCopy();
+        for (JsonNode operation : patch) {
+            String op = operation.path("op").asText();
+            List<String> tokens = tokens(operation.path("path").asText());
+            if (tokens.isEmpty()) {
+                assertThat(op).isEqualTo("replace");
+                result = operation.get("value").deepCopy();
+                continue;
+            }
+            JsonNode parent = result;
+            for (String token : tokens.subList(0, tokens.size() - 1)) {
+                parent = parent.isArray() ? parent.get(Integer.parseInt(token)) : parent.get(token);
+            }
+            String last = tokens.get(tokens.size() - 1);
+            JsonNode value = operation.path("value").deepCopy();
+            if (parent instanceof ObjectNode object) {
+                switch (op) {
+                    case "add", "replace" -> object.set(last, value);
+                    case "remove" -> object.remove(last);
+                    default -> throw new IllegalArgumentException(op);
+                }
+            } else {
+                ArrayNode array = (ArrayNode) parent;
+                int index = Integer.parseInt(last);
+                switch (op) {
+                    case "add" -> array.insert(index, value);
+                    case "replace" -> array.set(index, value);
+                    case "remove" -> array.remove(index);
+                    default -> throw new IllegalArgumentException(op);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * RFC 6901 reference tokens, unescaped ({@code ~1} before {@code ~0}).
+     */
+    private static List<String> tokens(String pointer) {
+        List<String> tokens = new ArrayList<>();
+        if (pointer.isEmpty()) {
+            return tokens;
+        }
+        for (String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+
+    private static JsonNode randomValue(Random random, int depth) {
+        JsonNodeFactory nodes = JsonNodeFactory.instance;
+        int kind = depth == 0 ? random.nextInt(4) : random.nextInt(6);
+        return switch (kind) {
+            case 0 -> nodes.numberNode(random.nextInt(3));
+            case 1 -> nodes.textNode(NAMES[random.nextInt(NAMES.length)]);
+            case 2 -> nodes.booleanNode(random.nextBoolean());
+            case 3 -> nodes.nullNode();
+            case 4 -> {
+                ArrayNode array = nodes.arrayNode();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    array.add(randomValue(random, depth - 1));
+                }
+                yield array;
+            }
+            default -> {
+                ObjectNode object = nodes.objectNode();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    object.set(NAMES[random.nextInt(NAMES.length)], randomValue(random, depth - 1));
+                }
+                yield object;
+            }
+        };
+    }
+
+    /**
+     * A few random edits at random depths: member removals and additions, element changes,
+     * array growth and shrinkage, type changes.
+     */
+    private static JsonNode mutate(Random random, JsonNode node, int depth) {
+        if (depth == 0 || random.nextInt(5) == 0) {
+            return random.nextBoolean() ? node : randomValue(random, depth);
+        }
+        if (node instanceof ObjectNode object) {
+            for (String name : NAMES) {
+                int edit = random.nextInt(6);
+                if (edit == 0) {
+                    object.remove(name);
+                } else if (edit == 1) {
+                    object.set(name, randomValue(random, depth - 1));
+                } else if (object.has(name)) {
+                    object.set(name, mutate(random, object.get(name), depth - 1));
+                }
+            }
+        } else if (node instanceof ArrayNode array) {
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, mutate(random, array.get(i), depth - 1));
+            }
+            if (random.nextInt(4) == 0) {
+                array.add(randomValue(random, depth - 1));
+            } else if (random.nextInt(4) == 0 && !array.isEmpty()) {
+                array.remove(array.size() - 1);
+            }
+        }
+        return node;
+    }
+}
@@ -0,0 +1,196 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.dto.LayoutComputationRequest;
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LayoutComputationServiceTest {
+
+    private static final List<String> AD_GROUPS = List.of(
+        "CN=EMEA-Agents,OU=Groups,DC=company,DC=com",
+        "CN=EMEA-Senior-Managers,OU=Groups,DC=company,DC=com");
+
+    private static final LocalDateTime RENEWED_EXPIRY = LocalDateTime.of(2024, 1, 1, 13, 0);
+
+    @Mock
+    private EntitlementSnapshotService snapshotService;
+
+    @Mock
+    private EntitlementSnapshot snapshot;
+
+    @Mock
+    private UserPreferenceCacheRepository userPreferenceRepository;
+
+    @Mock
+    private UserPreferenceWriteBuffer writeBuffer;
+
+    @Mock
+    private CompactUserLayoutCache layoutCache;
+
+    @Mock
+    private EncodedLayoutCache encodedLayoutCache;
+
+    @Mock
+    private UserLayoutExpiryPolicy expiryPolicy;
+
+    @Captor
+    private ArgumentCaptor<Collection<UserLayoutPreferences>> written;
+
+    private LayoutComputationService service;
+
+    @BeforeEach
+    void setUp() {
+        EntitlementSymbols symbols = new EntitlementSymbols(new SimpleMeterRegistry());
+        LayoutDependencyIndex dependencyIndex = new LayoutDependencyIndex();
+        ReflectionTestUtils.setField(dependencyIndex, "symbols", symbols);
+
+        service = new LayoutComputationService();
+        ReflectionTestUtils.setField(service, "snapshotService", snapshotService);
+        ReflectionTestUtils.setField(service, "userPreferenceRepository", userPreferenceRepository);
+        ReflectionTestUtils.setField(service, "dependencyIndex", dependencyIndex);
+        ReflectionTestUtils.setField(service, "symbols", symbols);
+        ReflectionTestUtils.setField(service, "writeBuffer", writeBuffer);
+        ReflectionTestUtils.setField(service, "layoutCache", layoutCache);
+        ReflectionTestUtils.setField(service, "encodedLayoutCache", encodedLayoutCache);
+        ReflectionTestUtils.setField(service, "expiryPolicy", expiryPolicy);
+        ReflectionTestUtils.setField(service, "defaultComputationMode", LayoutComputationService.MODE_SERVICE_LOGIC);
+
+        when(snapshotService.getSnapshot()).thenReturn(snapshot);
+        when(snapshot.getVersion()).thenReturn("42:2024-01-01T00:00");
+        when(writeBuffer.getPending(anyString())).thenReturn(Optional.empty());
+        when(layoutCache.getLastComputedAt(anyString())).thenReturn(Optional.empty());
+        // Same lastComputedAt for everyone, so only the user and mode can tell the versions apart
+        when(userPreferenceRepository.findLastComputedAtByUserId(anyString()))
+            .thenReturn(Optional.of(LocalDateTime.of(2024, 1, 1, 9, 0)));
+        when(expiryPolicy.nextExpiry()).thenReturn(RENEWED_EXPIRY);
+    }
+
+    @Test
+    void usersWithIdenticalGroupsGetDifferentVersions() {
+        String alice = service.contentVersion(new LayoutComputationRequest("alice", AD_GROUPS));
+        String bob = service.contentVersion(new LayoutComputationRequest("bob", AD_GROUPS));
+
+        assertThat(alice).isNotEqualTo(bob);
+        assertThat(service.contentVersion(new LayoutComputationRequest("alice", AD_GROUPS))).isEqualTo(alice);
+    }
+
+    @Test
+    void computationModesGetDifferentVersions() {
+        LayoutComputationRequest serviceLogic = new LayoutComputationRequest("alice", AD_GROUPS);
+        LayoutComputationRequest databaseFunction = new LayoutComputationRequest("alice", AD_GROUPS);
+        databaseFunction.setComputationMode(LayoutComputationService.MODE_DATABASE_FUNCTION);
+        LayoutComputationRequest explicitDefault = new LayoutComputationRequest("alice", AD_GROUPS);
+        explicitDefault.setComputationMode(LayoutComputationService.MODE_SERVICE_LOGIC);
+
+        assertThat(service.contentVersion(serviceLogic)).isNotEqualTo(service.contentVersion(databaseFunction));
+        assertThat(service.contentVersion(serviceLogic)).isEqualTo(service.contentVersion(explicitDefault));
+    }
+
+    @Test
+    void unknownComputationModeIsRejected() {
+        LayoutComputationRequest request = new LayoutComputationRequest("alice", AD_GROUPS);
+        request.setComputationMode("guess");
+
+        assertThatIllegalArgumentException().isThrownBy(() -> service.contentVersion(request));
+    }
+
+    @Test
+    void invalidatingAGroupSetEvictsItsUsersWithoutWritingRows() {
+        LayoutDependencyIndex.GroupSet groupSet = groupSet("alice", "bob");
+
+        assertThat(service.invalidateGroupSet(groupSet)).isEqualTo(2);
+
+        verify(encodedLayoutCache).evictUsers(argThat(users -> Set.copyOf(users).equals(Set.of("alice", "bob"))));
+        verifyNoInteractions(userPreferenceRepository);
+        verify(writeBuffer, never()).submitAll(anyCollection());
+    }
+
+    @Test
+    void refreshingAGroupSetRenewsStoredRowsOnly() {
+        UserLayoutPreferences stored = preferences("alice", "{\"pinned\": [\"queue\"]}");
+        UserLayoutPreferences pending = preferences("bob", "{\"pinned\": [\"stats\"]}");
+        when(userPreferenceRepository.findAllById(any())).thenReturn(List.of(stored));
+        when(writeBuffer.getPending("bob")).thenReturn(Optional.of(pending));
+        LayoutDependencyIndex.GroupSet groupSet = groupSet("alice", "bob", "carol");
+
+        assertThat(service.refreshGroupSet(groupSet)).isEqualTo(3);
+
+        verify(writeBuffer).submitAll(written.capture());
+        // carol never stored a layout and gets no row
+        assertThat(written.getValue()).extracting(UserLayoutPreferences::getUserId).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(written.getValue()).allSatisfy(row -> assertThat(row.getCacheExpiry()).isEqualTo(RENEWED_EXPIRY));
+        assertThat(stored.getComputedLayout()).isEqualTo("{\"pinned\": [\"queue\"]}");
+        assertThat(pending.getComputedLayout()).isEqualTo("{\"pinned\": [\"stats\"]}");
+        assertThat(stored.getComputationSource()).isEqualTo("api");
+        verify(encodedLayoutCache).evictUsers(any());
+    }
+
+    @Test
+    void refreshingAGroupSetWithoutStoredRowsWritesNothing() {
+        when(userPreferenceRepository.findAllById(any())).thenReturn(List.of());
+
+        service.refreshGroupSet(groupSet("carol"));
+
+        verify(writeBuffer, never()).submitAll(anyCollection());
+    }
+
+    @Test
+    void indexingAUserFromStoredGroupsLoadsAndWritesNothing() {
+        when(snapshot.inheritedScopeIds(any(), any())).thenReturn(new int[0]);
+        when(snapshot.scopeOf(anyInt(), anyString())).thenReturn(new EntitlementSnapshot.GroupScope("EMEA", null, null, new int[0]));
+
+        assertThat(service.indexUser("alice", AD_GROUPS)).hasValueSatisfying(groupSet -> {
+            assertThat(groupSet.users()).containsExactly("alice");
+            assertThat(groupSet.roles()).containsExactly("SENIOR_MANAGER");
+        });
+        verifyNoInteractions(userPreferenceRepository, layoutCache);
+        verify(writeBuffer, never()).submitAdGroups(anyString(), any());
+    }
+
+    private static UserLayoutPreferences preferences(String userId, String computedLayout) {
+        UserLayoutPreferences preferences = new UserLayoutPreferences();
+        preferences.setUserId(userId);
+        preferences.setComputedLayout(computedLayout);
+        preferences.setComputationSource("api");
+        preferences.setCacheExpiry(LocalDateTime.of(2024, 1, 1, 8, 0));
+        return preferences;
+    }
+
+    private static LayoutDependencyIndex.GroupSet groupSet(String... userIds) {
+        Set<String> users = new HashSet<>(Set.of(userIds));
+        return new LayoutDependencyIndex.GroupSet("groups", LayoutDependencyIndex.GroupSetKey.of(new int[0]),
+            new int[0], AD_GROUPS, List.of("SENIOR_MANAGER"), users);
+    }
+}
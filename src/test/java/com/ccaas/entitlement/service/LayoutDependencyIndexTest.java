@@ -0,0 +1,88 @@
+package com.ccaas.entitlement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LayoutDependencyIndexTest {
+
+    private static final String EMEA_MANAGERS = "CN=EMEA-Managers,OU=Groups,DC=company,DC=com";
+    private static final String EMEA_AGENTS = "CN=EMEA-Agents,OU=Groups,DC=company,DC=com";
+    private static final String US_ANALYSTS = "CN=US-Analysts,OU=Groups,DC=company,DC=com";
+    private static final String EMEA_SCOPE = "SCOPE=EMEA";
+
+    private EntitlementSymbols symbols;
+    private LayoutDependencyIndex index;
+
+    @BeforeEach
+    void setUp() {
+        symbols = new EntitlementSymbols(new SimpleMeterRegistry());
+        index = new LayoutDependencyIndex();
+        ReflectionTestUtils.setField(index, "symbols", symbols);
+    }
+
+    @Test
+    void usersWithTheSameGroupsInAnyOrderShareAGroupSet() {
+        record("alice", List.of(EMEA_MANAGERS, EMEA_AGENTS), List.of("MANAGER"), List.of(EMEA_SCOPE));
+        record("bob", List.of(EMEA_AGENTS, EMEA_MANAGERS), List.of("MANAGER"), List.of(EMEA_SCOPE));
+
+        String hash = index.findGroupSetHashByUser("alice").orElseThrow();
+        assertThat(index.findGroupSetHashByUser("bob")).contains(hash);
+        assertThat(hash).isEqualTo(LayoutDependencyIndex.groupSetHash(List.of(EMEA_MANAGERS, EMEA_AGENTS)));
+        assertThat(index.getGroupSet(hash).orElseThrow().users()).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(index.getGroupSetCount()).isEqualTo(1);
+    }
+
+    @Test
+    void changesFindOnlyTheGroupSetsDependingOnThem() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of(EMEA_SCOPE));
+        record("bob", List.of(EMEA_AGENTS), List.of(), List.of(EMEA_SCOPE));
+        record("carol", List.of(US_ANALYSTS), List.of("ANALYST"), List.of());
+        String alice = index.findGroupSetHashByUser("alice").orElseThrow();
+        String bob = index.findGroupSetHashByUser("bob").orElseThrow();
+        String carol = index.findGroupSetHashByUser("carol").orElseThrow();
+
+        assertThat(index.findGroupSetsByAdGroup(EMEA_MANAGERS)).containsExactly(alice);
+        assertThat(index.findGroupSetsByAdGroup(EMEA_SCOPE)).containsExactlyInAnyOrder(alice, bob);
+        assertThat(index.findGroupSetsByRole("ANALYST")).containsExactly(carol);
+        assertThat(index.findGroupSetsByRole("MANAGER")).containsExactly(alice);
+        assertThat(index.findGroupSetsByAdGroup("CN=Unseen,OU=Groups")).isEmpty();
+        assertThat(index.findGroupSetsByRole("SENIOR_MANAGER")).isEmpty();
+    }
+
+    @Test
+    void userMovesToTheirNewGroupSet() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of());
+        String before = index.findGroupSetHashByUser("alice").orElseThrow();
+
+        record("alice", List.of(US_ANALYSTS), List.of("ANALYST"), List.of());
+
+        String after = index.findGroupSetHashByUser("alice").orElseThrow();
+        assertThat(after).isNotEqualTo(before);
+        assertThat(index.getGroupSet(before).orElseThrow().users()).isEmpty();
+        assertThat(index.getGroupSet(after).orElseThrow().users()).containsExactly("alice");
+        assertThat(index.findAdGroupsByUser("alice")).contains(List.of(US_ANALYSTS));
+        assertThat(index.getIndexedUserCount()).isEqualTo(1);
+    }
+
+    @Test
+    void groupsWithoutASymbolAreNotIndexed() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of());
+        String before = index.findGroupSetHashByUser("alice").orElseThrow();
+
+        index.record("alice", new int[] {symbols.intern(EMEA_MANAGERS), EntitlementSymbols.UNKNOWN},
+                     new int[0], new int[0]);
+
+        assertThat(index.findGroupSetHashByUser("alice")).isEmpty();
+        assertThat(index.getGroupSet(before).orElseThrow().users()).isEmpty();
+    }
+
+    private void record(String userId, List<String> adGroups, List<String> roles, List<String> scopes) {
+        index.record(userId, symbols.tryInternAll(adGroups), symbols.tryInternAll(roles), symbols.tryInternAll(scopes));
+    }
+}
@@ -0,0 +1,185 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.controller.LayoutEventController;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Delivery runs on a queueing executor driven by the test, so the single pending slot can be
+ * observed between an offer and the drain that sends it.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LayoutEventBroadcasterTest {
+
+    @Mock
+    private LayoutDependencyIndex dependencyIndex;
+
+    @Mock
+    private EntitlementSnapshotService snapshotService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ManualExecutor executor = new ManualExecutor();
+    private LayoutEventBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new LayoutEventBroadcaster(meterRegistry);
+        ReflectionTestUtils.setField(broadcaster, "dependencyIndex", dependencyIndex);
+        ReflectionTestUtils.setField(broadcaster, "snapshotService", snapshotService);
+        ReflectionTestUtils.setField(broadcaster, "executor", executor);
+        ReflectionTestUtils.setField(broadcaster, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(broadcaster, "maxSubscriptions", 2);
+    }
+
+    @Test
+    void queuedChangesCoalesceIntoOneEvent() {
+        broadcaster.subscribe("alice", null);
+
+        broadcaster.onEntitlementChange(EntitlementChangeEvent.preferencesChanged("alice"));
+        broadcaster.onEntitlementChange(EntitlementChangeEvent.preferencesChanged("alice"));
+        broadcaster.onEntitlementChange(EntitlementChangeEvent.preferencesChanged("alice"));
+        executor.runAll();
+
+        assertThat(delivered("sent")).isEqualTo(1);
+        assertThat(delivered("coalesced")).isEqualTo(2);
+    }
+
+    @Test
+    void heartbeatIsSentOnlyWhenNothingIsQueued() {
+        broadcaster.subscribe("alice", null);
+
+        broadcaster.heartbeat();
+        assertThat(executor.tasks).hasSize(1);
+        executor.runAll();
+        assertThat(delivered("sent")).isZero();
+
+        broadcaster.onEntitlementChange(EntitlementChangeEvent.preferencesChanged("alice"));
+        executor.runNext();
+        // A change is queued: the heartbeat neither replaces it nor schedules another drain
+        broadcaster.heartbeat();
+        assertThat(executor.tasks).hasSize(1);
+        executor.runAll();
+
+        assertThat(delivered("sent")).isEqualTo(1);
+        assertThat(delivered("coalesced")).isZero();
+    }
+
+    @Test
+    void failedSendRemovesTheSubscription() {
+        SseEmitter emitter = broadcaster.subscribe("alice", null).orElseThrow();
+        broadcaster.subscribe(null, "emea");
+        emitter.complete();
+
+        broadcaster.onEntitlementChange(EntitlementChangeEvent.permissionRulesChanged("export"));
+        executor.runAll();
+
+        assertThat(delivered("failed")).isEqualTo(1);
+        assertThat(delivered("sent")).isEqualTo(1);
+        assertThat(broadcaster.getSubscriptionCount()).isEqualTo(1);
+
+        broadcaster.onEntitlementChange(EntitlementChangeEvent.permissionRulesChanged("export"));
+        executor.runAll();
+        assertThat(delivered("failed")).isEqualTo(1);
+    }
+
+    @Test
+    void overrideChangeNotifiesUsersOfTheAffectedGroupSet() {
+        String dn = "CN=EMEA-Managers,OU=Groups,DC=company,DC=com";
+        broadcaster.subscribe("alice", null);
+        broadcaster.subscribe("bob", null);
+        when(dependencyIndex.findGroupSetsByAdGroup(dn)).thenReturn(Set.of("gs1"));
+        when(dependencyIndex.findGroupSetHashByUser("alice")).thenReturn(Optional.of("gs1"));
+        when(dependencyIndex.findGroupSetHashByUser("bob")).thenReturn(Optional.of("gs2"));
+        when(snapshotService.getSnapshot()).thenReturn(
+            new EntitlementSnapshot("v1", List.of(), List.of(), new EntitlementSymbols(new SimpleMeterRegistry())));
+
+        broadcaster.onEntitlementChange(EntitlementChangeEvent.overridesChanged(dn));
+        executor.runAll();
+
+        assertThat(delivered("sent")).isEqualTo(1);
+    }
+
+    @Test
+    void subscriptionLimitIsRejectedWith503() {
+        LayoutEventController controller = new LayoutEventController();
+        ReflectionTestUtils.setField(controller, "broadcaster", broadcaster);
+
+        assertThat(controller.subscribe("alice", null).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(controller.subscribe(null, "EMEA").getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(controller.subscribe("bob", null).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(broadcaster.getSubscriptionCount()).isEqualTo(2);
+    }
+
+    private double delivered(String result) {
+        return meterRegistry.get("entitlement.events.delivered").tag("result", result).counter().count();
+    }
+
+    /**
+     * Queues tasks until the test runs them.
+     */
+    private static final class ManualExecutor extends AbstractExecutorService {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runNext() {
+            tasks.remove().run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
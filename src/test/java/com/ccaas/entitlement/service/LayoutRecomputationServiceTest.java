@@ -0,0 +1,216 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LayoutRecomputationServiceTest {
+
+    private static final String EMEA_MANAGERS = "CN=EMEA-Managers,OU=Groups,DC=company,DC=com";
+    private static final String EMEA_AGENTS = "CN=EMEA-Agents,OU=Groups,DC=company,DC=com";
+    private static final String US_ANALYSTS = "CN=US-Analysts,OU=Groups,DC=company,DC=com";
+    private static final String EMEA_SCOPE = "SCOPE=EMEA";
+    private static final int MAX_USERS_PER_SECOND = 5;
+
+    @Mock
+    private LayoutComputationService layoutComputationService;
+
+    private EntitlementSymbols symbols;
+    private LayoutDependencyIndex index;
+    private LayoutRecomputationService recomputation;
+
+    /** Group-set hashes handed to the computation service, in call order. */
+    private final List<String> invalidated = new ArrayList<>();
+    private final List<String> refreshed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        symbols = new EntitlementSymbols(new SimpleMeterRegistry());
+        index = new LayoutDependencyIndex();
+        ReflectionTestUtils.setField(index, "symbols", symbols);
+
+        recomputation = new LayoutRecomputationService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(recomputation, "dependencyIndex", index);
+        ReflectionTestUtils.setField(recomputation, "layoutComputationService", layoutComputationService);
+        ReflectionTestUtils.setField(recomputation, "enabled", true);
+        ReflectionTestUtils.setField(recomputation, "maxUsersPerSecond", MAX_USERS_PER_SECOND);
+
+        when(layoutComputationService.invalidateGroupSet(any())).thenAnswer(invocation -> {
+            LayoutDependencyIndex.GroupSet groupSet = invocation.getArgument(0);
+            invalidated.add(groupSet.hash());
+            return groupSet.users().size();
+        });
+        when(layoutComputationService.refreshGroupSet(any())).thenAnswer(invocation -> {
+            LayoutDependencyIndex.GroupSet groupSet = invocation.getArgument(0);
+            refreshed.add(groupSet.hash());
+            return groupSet.users().size();
+        });
+    }
+
+    @Test
+    void overrideChangeQueuesExactlyTheGroupSetsHoldingTheGroup() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of(EMEA_SCOPE));
+        record("bob", List.of(EMEA_MANAGERS, EMEA_AGENTS), List.of("MANAGER"), List.of(EMEA_SCOPE));
+        record("carol", List.of(US_ANALYSTS), List.of("ANALYST"), List.of());
+
+        recomputation.onEntitlementChange(EntitlementChangeEvent.overridesChanged(EMEA_AGENTS));
+        recomputation.processPending();
+
+        assertThat(invalidated).containsExactly(hashOf("bob"));
+        assertThat(refreshed).isEmpty();
+    }
+
+    @Test
+    void scopeOverrideChangeQueuesEveryGroupSetInheritingIt() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of(EMEA_SCOPE));
+        record("bob", List.of(EMEA_AGENTS), List.of(), List.of(EMEA_SCOPE));
+        record("carol", List.of(US_ANALYSTS), List.of("ANALYST"), List.of());
+
+        recomputation.onEntitlementChange(EntitlementChangeEvent.overridesChanged(EMEA_SCOPE));
+        recomputation.processPending();
+
+        assertThat(invalidated).containsExactlyInAnyOrder(hashOf("alice"), hashOf("bob"));
+    }
+
+    @Test
+    void templateChangeQueuesExactlyTheGroupSetsHoldingTheRole() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of());
+        record("bob", List.of(EMEA_AGENTS), List.of(), List.of());
+        record("carol", List.of(US_ANALYSTS), List.of("ANALYST"), List.of());
+
+        recomputation.onEntitlementChange(EntitlementChangeEvent.templatesChanged("ANALYST"));
+        recomputation.processPending();
+
+        assertThat(invalidated).containsExactly(hashOf("carol"));
+    }
+
+    @Test
+    void unrelatedChangesQueueNothing() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of());
+
+        recomputation.onEntitlementChange(EntitlementChangeEvent.overridesChanged(US_ANALYSTS));
+        recomputation.onEntitlementChange(EntitlementChangeEvent.templatesChanged("SENIOR_MANAGER"));
+        recomputation.onEntitlementChange(EntitlementChangeEvent.preferencesChanged("alice"));
+        recomputation.processPending();
+
+        assertThat(recomputation.getProgress().queuedGroupSets()).isZero();
+        verify(layoutComputationService, never()).invalidateGroupSet(any());
+    }
+
+    @Test
+    void eachRunStaysWithinTheUserBudget() {
+        // Group sets of 3, 2, 4 and 1 users all holding the changed group
+        List<Integer> sizes = List.of(3, 2, 4, 1);
+        for (int set = 0; set < sizes.size(); set++) {
+            for (int user = 0; user < sizes.get(set); user++) {
+                record("set" + set + "-user" + user, List.of(EMEA_MANAGERS, "CN=EMEA-Team-" + set + ",OU=Groups"),
+                       List.of("MANAGER"), List.of());
+            }
+        }
+        recomputation.onEntitlementChange(EntitlementChangeEvent.templatesChanged("MANAGER"));
+
+        List<Integer> usersPerRun = new ArrayList<>();
+        while (recomputation.getProgress().pendingGroupSets() > 0) {
+            int before = usersHandled();
+            recomputation.processPending();
+            usersPerRun.add(usersHandled() - before);
+        }
+
+        assertThat(usersPerRun).allSatisfy(users -> assertThat(users).isBetween(1, MAX_USERS_PER_SECOND));
+        assertThat(invalidated).hasSize(4).doesNotHaveDuplicates();
+        assertThat(usersPerRun.stream().mapToInt(Integer::intValue).sum()).isEqualTo(10);
+    }
+
+    @Test
+    void groupSetLargerThanTheBudgetRunsOnItsOwn() {
+        IntStream.range(0, MAX_USERS_PER_SECOND + 2).forEach(user ->
+            record("big-" + user, List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of()));
+        record("small", List.of(EMEA_AGENTS, EMEA_MANAGERS), List.of("MANAGER"), List.of());
+        recomputation.onEntitlementChange(EntitlementChangeEvent.overridesChanged(EMEA_MANAGERS));
+
+        recomputation.processPending();
+        assertThat(invalidated).hasSize(1);
+
+        recomputation.processPending();
+        assertThat(invalidated).containsExactlyInAnyOrder(hashOf("big-0"), hashOf("small"));
+    }
+
+    @Test
+    void staleRefreshRefreshesTheUsersGroupSetInsteadOfInvalidatingIt() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of());
+        record("bob", List.of(US_ANALYSTS), List.of("ANALYST"), List.of());
+
+        assertThat(recomputation.requestRefresh("alice", null)).isTrue();
+        assertThat(recomputation.requestRefreshAhead("bob", null)).map(LayoutDependencyIndex.GroupSet::hash).contains(hashOf("bob"));
+        assertThat(recomputation.requestRefresh("unknown", null)).isFalse();
+        recomputation.processPending();
+
+        assertThat(refreshed).containsExactly(hashOf("alice"), hashOf("bob"));
+        assertThat(invalidated).isEmpty();
+    }
+
+    @Test
+    void userNotIndexedHereIsIndexedFromItsStoredGroups() {
+        when(layoutComputationService.indexUser("alice", List.of(EMEA_MANAGERS))).thenAnswer(invocation -> {
+            record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of());
+            return index.getGroupSet(hashOf("alice"));
+        });
+        when(layoutComputationService.indexUser("bob", List.of(US_ANALYSTS))).thenAnswer(invocation -> {
+            record("bob", List.of(US_ANALYSTS), List.of("ANALYST"), List.of());
+            return index.getGroupSet(hashOf("bob"));
+        });
+
+        assertThat(recomputation.requestRefresh("alice", new String[] {EMEA_MANAGERS})).isTrue();
+        assertThat(recomputation.requestRefreshAhead("bob", new String[] {US_ANALYSTS})).isPresent();
+        recomputation.processPending();
+
+        assertThat(refreshed).containsExactly(hashOf("alice"), hashOf("bob"));
+        assertThat(recomputation.requestRefresh("carol", null)).isFalse();
+        verify(layoutComputationService, never()).indexUser(eq("carol"), any());
+    }
+
+    @Test
+    void laterChangeToARefreshedGroupSetInvalidatesIt() {
+        record("alice", List.of(EMEA_MANAGERS), List.of("MANAGER"), List.of());
+        recomputation.requestRefresh("alice", null);
+        recomputation.processPending();
+
+        recomputation.onEntitlementChange(EntitlementChangeEvent.templatesChanged("MANAGER"));
+        recomputation.processPending();
+
+        assertThat(refreshed).containsExactly(hashOf("alice"));
+        assertThat(invalidated).containsExactly(hashOf("alice"));
+    }
+
+    private int usersHandled() {
+        return invalidated.stream().mapToInt(hash -> index.getGroupSet(hash).orElseThrow().users().size()).sum();
+    }
+
+    private String hashOf(String userId) {
+        return index.findGroupSetHashByUser(userId).orElseThrow();
+    }
+
+    private void record(String userId, List<String> adGroups, List<String> roles, List<String> scopes) {
+        index.record(userId, symbols.tryInternAll(adGroups), symbols.tryInternAll(roles), symbols.tryInternAll(scopes));
+    }
+}
@@ -0,0 +1,113 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.dto.ExpiringUserLayout;
+import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LayoutRefreshAheadServiceTest {
+
+    private static final int MAX_USERS_PER_RUN = 3;
+
+    @Mock
+    private UserPreferenceCacheRepository userPreferenceRepository;
+
+    @Mock
+    private LayoutRecomputationService layoutRecomputationService;
+
+    /** Users expiring within the window, soonest first. */
+    private final List<String> expiring = IntStream.range(0, 10).mapToObj(i -> "user-" + i).toList();
+
+    private LayoutRefreshAheadService refreshAhead;
+
+    @BeforeEach
+    void setUp() {
+        refreshAhead = new LayoutRefreshAheadService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(refreshAhead, "userPreferenceRepository", userPreferenceRepository);
+        ReflectionTestUtils.setField(refreshAhead, "layoutRecomputationService", layoutRecomputationService);
+        ReflectionTestUtils.setField(refreshAhead, "enabled", true);
+        ReflectionTestUtils.setField(refreshAhead, "windowMinutes", 15L);
+        ReflectionTestUtils.setField(refreshAhead, "maxUsersPerRun", MAX_USERS_PER_RUN);
+
+        when(userPreferenceRepository.findUsersExpiringWithin(any(LocalDateTime.class), any(Pageable.class)))
+            .thenAnswer(invocation -> page(invocation.getArgument(1)));
+        when(layoutRecomputationService.requestRefreshAhead(anyString(), any()))
+            .thenAnswer(invocation -> Optional.of(groupSet(invocation.getArgument(0))));
+    }
+
+    @Test
+    void capIsTheQueryLimit() {
+        refreshAhead.refreshExpiring();
+
+        ArgumentCaptor<Pageable> pages = ArgumentCaptor.forClass(Pageable.class);
+        verify(userPreferenceRepository).findUsersExpiringWithin(any(LocalDateTime.class), pages.capture());
+        assertThat(pages.getValue()).isEqualTo(PageRequest.of(0, MAX_USERS_PER_RUN));
+        verify(layoutRecomputationService, times(MAX_USERS_PER_RUN)).requestRefreshAhead(anyString(), any());
+        verify(layoutRecomputationService, never()).requestRefreshAhead(eq("user-3"), any());
+    }
+
+    @Test
+    void skippedUsersDoNotHoldUpTheRest() {
+        // The soonest-expiring users have no stored AD groups and are not indexed here
+        when(layoutRecomputationService.requestRefreshAhead(eq("user-0"), any())).thenReturn(Optional.empty());
+        when(layoutRecomputationService.requestRefreshAhead(eq("user-1"), any())).thenReturn(Optional.empty());
+
+        refreshAhead.refreshExpiring();
+
+        verify(userPreferenceRepository, times(2)).findUsersExpiringWithin(any(LocalDateTime.class), any(Pageable.class));
+        verify(layoutRecomputationService).requestRefreshAhead("user-4", new String[] {"CN=user-4"});
+        verify(layoutRecomputationService, never()).requestRefreshAhead(eq("user-5"), any());
+    }
+
+    @Test
+    void nothingExpiring() {
+        when(userPreferenceRepository.findUsersExpiringWithin(any(LocalDateTime.class), any(Pageable.class)))
+            .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, MAX_USERS_PER_RUN), false));
+
+        refreshAhead.refreshExpiring();
+
+        verify(layoutRecomputationService, never()).requestRefreshAhead(anyString(), any());
+    }
+
+    private SliceImpl<ExpiringUserLayout> page(Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), expiring.size());
+        int to = Math.min(from + pageable.getPageSize(), expiring.size());
+        List<ExpiringUserLayout> users = expiring.subList(from, to).stream()
+            .map(userId -> new ExpiringUserLayout(userId, new String[] {"CN=" + userId}))
+            .toList();
+        return new SliceImpl<>(users, pageable, to < expiring.size());
+    }
+
+    private static LayoutDependencyIndex.GroupSet groupSet(String userId) {
+        return new LayoutDependencyIndex.GroupSet("groups-of-" + userId, LayoutDependencyIndex.GroupSetKey.of(new int[0]),
+            new int[0], List.of(), List.of(), Set.of(userId));
+    }
+}
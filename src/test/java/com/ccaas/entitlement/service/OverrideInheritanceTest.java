@@ -0,0 +1,93 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.PostgresIntegrationTest;
+import com.ccaas.entitlement.dto.LayoutComputationRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Scope overrides inherited down market, function and environment, in both computation modes.
+ * Every override tags its JSON with the scope it came from, so each column of the layout names
+ * the override that won it.
+ */
+class OverrideInheritanceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private LayoutComputationService layoutComputationService;
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    private static boolean seeded;
+
+    @BeforeEach
+    void seed() {
+        if (seeded) {
+            return;
+        }
+        clearEntitlementData();
+        override("x1", "CN=EMEA-Sales-Agents-PROD,OU=G", "EMEA", "SALES", "PROD", "{\"l\": \"dn\"}", null, null);
+        override("s1", "SCOPE=EMEA", "EMEA", null, null,
+            "{\"l\": \"market\"}", "{\"d\": \"market\"}", "{\"v\": \"market\"}");
+        override("s2", "SCOPE=EMEA/SALES", "EMEA", "SALES", null, null, "{\"d\": \"function\"}", null);
+        override("s3", "SCOPE=EMEA/SALES/PRODUCTION", "EMEA", "SALES", "PRODUCTION",
+            null, null, "{\"v\": \"environment\"}");
+        override("s4", "SCOPE=US", "US", null, null, null, "{\"d\": \"us\"}", null);
+        snapshotService.refreshIfChanged();
+        seeded = true;
+    }
+
+    static Stream<Arguments> cases() {
+        return Stream.of(
+            Arguments.of("exact", List.of("CN=EMEA-Sales-Agents-PROD,OU=G"), "l:dn d:function v:environment"),
+            Arguments.of("inherit-uat", List.of("CN=EMEA-Sales-Agents-UAT,OU=G"), "l:market d:function v:market"),
+            Arguments.of("inherit-prd", List.of("CN=EMEA-Sales-Team-PRD,OU=G"), "l:market d:function v:environment"),
+            Arguments.of("market-only", List.of("CN=EMEA-Support-Agents,OU=G"), "l:market d:market v:market"),
+            Arguments.of("other-market", List.of("CN=APAC-Sales-Agents-PROD,OU=G"), "null null null"),
+            Arguments.of("multi", List.of("CN=US-Sales-Team-PROD,OU=G", "CN=EMEA-Support-Team,OU=G"),
+                "l:market d:market v:market"),
+            Arguments.of("multi-reversed", List.of("CN=EMEA-Support-Team,OU=G", "CN=US-Sales-Team-PROD,OU=G"),
+                "l:market d:us v:market"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void serviceLogicInheritsScopeOverrides(String name, List<String> adGroups, String expected) {
+        assertThat(winners(LayoutComputationService.MODE_SERVICE_LOGIC, name, adGroups)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void databaseFunctionInheritsScopeOverrides(String name, List<String> adGroups, String expected) {
+        assertThat(winners(LayoutComputationService.MODE_DATABASE_FUNCTION, name, adGroups)).isEqualTo(expected);
+    }
+
+    /**
+     * The tags of the layout, data and visual overrides in the computed layout.
+     */
+    private String winners(String mode, String name, List<String> adGroups) {
+        LayoutComputationRequest request = new LayoutComputationRequest(mode + "-" + name, adGroups);
+        request.setComputationMode(mode);
+        Map<String, Object> layout = layoutComputationService.computeLayout(request).getLayout();
+        return String.join(" ", Stream.of("adGroupLayoutOverride", "dataRestrictions", "visualCustomizations")
+            .map(key -> layout.get(key) == null ? "null" : layout.get(key).toString().replaceAll("[\\s\"{}]", ""))
+            .toList());
+    }
+
+    private void override(String hash, String dn, String market, String function, String environment,
+                          String layout, String data, String visual) {
+        jdbcTemplate.update("INSERT INTO ad_group_layout_overrides (ad_group_hash, ad_group_dn, parsed_market, "
+            + "parsed_function, parsed_environment, layout_overrides, data_restrictions, visual_customizations, "
+            + "priority, is_active) VALUES (?, ?, ?, ?, ?, ?::jsonb, ?::jsonb, ?::jsonb, 1, true)",
+            hash, dn, market, function, environment, layout, data, visual);
+    }
+}
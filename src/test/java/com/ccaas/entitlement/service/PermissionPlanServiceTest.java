@@ -0,0 +1,105 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.LayoutPermissionElement;
+import com.ccaas.entitlement.entity.LayoutPermissionRule;
+import com.ccaas.entitlement.event.EntitlementChangeEvent;
+import com.ccaas.entitlement.repository.LayoutPermissionElementRepository;
+import com.ccaas.entitlement.repository.LayoutPermissionRuleRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.Mockito.when;
+
+/**
+ * A stored rule set that does not compile must never replace the plan in use.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PermissionPlanServiceTest {
+
+    @Mock
+    private LayoutPermissionRuleRepository ruleRepository;
+
+    @Mock
+    private LayoutPermissionElementRepository elementRepository;
+
+    private PermissionPlanService planService;
+
+    @BeforeEach
+    void setUp() {
+        planService = new PermissionPlanService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(planService, "ruleRepository", ruleRepository);
+        ReflectionTestUtils.setField(planService, "elementRepository", elementRepository);
+        ReflectionTestUtils.setField(planService, "symbols", new EntitlementSymbols(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(planService, "objectMapper", new ObjectMapper());
+
+        stored("1:a", List.of(rule("export", "ROLE", "MANAGER")), "0:", List.of(element("export", "toolbar.export")));
+    }
+
+    @Test
+    void invalidRuleKeepsThePreviousPlan() {
+        PermissionPlan previous = planService.getPlan();
+        LayoutPermissionRule invalid = rule("print", "ROLE", "MANAGER");
+        invalid.setEffect("ALLOW");
+        stored("2:b", List.of(rule("export", "ROLE", "MANAGER"), invalid), "0:", List.of(element("export", "toolbar.export")));
+
+        assertThatIllegalArgumentException().isThrownBy(planService::reload).withMessageContaining("ALLOW");
+        planService.refreshIfChanged();
+        planService.onEntitlementChange(EntitlementChangeEvent.permissionRulesChanged("print"));
+
+        assertThat(planService.getPlan()).isSameAs(previous);
+        assertThat(planService.getPlan().permissions()).containsExactly("export");
+    }
+
+    @Test
+    void conflictingElementsKeepThePreviousPlan() {
+        PermissionPlan previous = planService.getPlan();
+        stored("1:a", List.of(rule("export", "ROLE", "MANAGER")), "1:c",
+               List.of(element("export", "toolbar.export"), element("print", "toolbar.export")));
+
+        planService.refreshIfChanged();
+
+        assertThat(planService.getPlan()).isSameAs(previous);
+    }
+
+    @Test
+    void validChangeReplacesThePlan() {
+        PermissionPlan previous = planService.getPlan();
+        stored("2:b", List.of(rule("export", "ROLE", "MANAGER"), rule("print", "ALL", null)), "0:",
+               List.of(element("export", "toolbar.export")));
+
+        planService.refreshIfChanged();
+
+        assertThat(planService.getPlan()).isNotSameAs(previous);
+        assertThat(planService.getPlan().getVersion()).isEqualTo("2:b|0:");
+        assertThat(planService.getPlan().permissions()).containsExactly("export", "print");
+    }
+
+    private void stored(String ruleVersion, List<LayoutPermissionRule> rules,
+                        String elementVersion, List<LayoutPermissionElement> elements) {
+        when(ruleRepository.getVersionStamp()).thenReturn(ruleVersion);
+        when(ruleRepository.findByIsActiveTrueOrderByIdAsc()).thenReturn(rules);
+        when(elementRepository.getVersionStamp()).thenReturn(elementVersion);
+        when(elementRepository.findByIsActiveTrueOrderByIdAsc()).thenReturn(elements);
+    }
+
+    private static LayoutPermissionRule rule(String permission, String subjectType, String matchValue) {
+        return new LayoutPermissionRule(permission, subjectType, "EQUALS", matchValue);
+    }
+
+    private static LayoutPermissionElement element(String permission, String path) {
+        return new LayoutPermissionElement(permission, path, null);
+    }
+}
@@ -0,0 +1,153 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.service.PermissionPlan.Effect;
+import com.ccaas.entitlement.service.PermissionPlan.LayoutElement;
+import com.ccaas.entitlement.service.PermissionPlan.MatchType;
+import com.ccaas.entitlement.service.PermissionPlan.PermissionRule;
+import com.ccaas.entitlement.service.PermissionPlan.Subject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class PermissionPlanTest {
+
+    private static final String EMEA_MANAGERS = "CN=EMEA-Managers,OU=Groups,DC=company,DC=com";
+    private static final String EMEA_CONTRACTORS = "CN=EMEA-Contractors,OU=Groups,DC=company,DC=com";
+
+    private EntitlementSymbols symbols;
+
+    @BeforeEach
+    void setUp() {
+        symbols = new EntitlementSymbols(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void denyMasksGrantOfTheSamePermission() {
+        PermissionPlan plan = compile(
+            rule(1, "export", Effect.GRANT, Subject.ROLE, MatchType.EQUALS, "manager", null, null),
+            rule(2, "export", Effect.DENY, Subject.AD_GROUP, MatchType.CONTAINS, "contractors", null, null),
+            rule(3, "view", Effect.GRANT, Subject.ALL, null, null, null, null));
+
+        long[] manager = evaluate(plan, List.of("MANAGER"), List.of(EMEA_MANAGERS), "EMEA", Set.of());
+        long[] contractingManager = evaluate(plan, List.of("MANAGER"), List.of(EMEA_MANAGERS, EMEA_CONTRACTORS), "EMEA", Set.of());
+
+        assertThat(plan.isGranted(manager, "export")).isTrue();
+        assertThat(plan.isGranted(contractingManager, "export")).isFalse();
+        // A deny only masks its own permission
+        assertThat(plan.isGranted(contractingManager, "view")).isTrue();
+    }
+
+    @Test
+    void marketScopedRulesApplyOnlyInTheirMarket() {
+        PermissionPlan plan = compile(
+            rule(1, "refund", Effect.GRANT, Subject.ROLE, MatchType.EQUALS, "MANAGER", "emea", null),
+            rule(2, "view", Effect.GRANT, Subject.ROLE, MatchType.EQUALS, "MANAGER", null, null),
+            rule(3, "view", Effect.DENY, Subject.ALL, null, null, "US", null));
+
+        long[] emea = evaluate(plan, List.of("MANAGER"), List.of(), "emea", Set.of());
+        long[] us = evaluate(plan, List.of("MANAGER"), List.of(), "US", Set.of());
+        long[] noMarket = evaluate(plan, List.of("MANAGER"), List.of(), null, Set.of());
+
+        assertThat(plan.isGranted(emea, "refund")).isTrue();
+        assertThat(plan.isGranted(emea, "view")).isTrue();
+        assertThat(plan.isGranted(us, "refund")).isFalse();
+        assertThat(plan.isGranted(us, "view")).isFalse();
+        assertThat(plan.isGranted(noMarket, "refund")).isFalse();
+        assertThat(plan.isGranted(noMarket, "view")).isTrue();
+    }
+
+    @Test
+    void functionScopedRulesApplyWhenAnyOfTheUsersFunctionsMatches() {
+        PermissionPlan plan = compile(
+            rule(1, "quote", Effect.GRANT, Subject.ALL, null, null, null, "sales"),
+            rule(2, "ticket", Effect.GRANT, Subject.ALL, null, null, null, "SUPPORT"));
+
+        long[] sales = evaluate(plan, List.of(), List.of(), "EMEA", Set.of("Sales"));
+        long[] both = evaluate(plan, List.of(), List.of(), "EMEA", Set.of("SALES", "SUPPORT"));
+        long[] none = evaluate(plan, List.of(), List.of(), "EMEA", Set.of());
+
+        assertThat(plan.isGranted(sales, "quote")).isTrue();
+        assertThat(plan.isGranted(sales, "ticket")).isFalse();
+        assertThat(EntitlementBits.containsAll(both, plan.mask("quote", "ticket"))).isTrue();
+        assertThat(plan.isGranted(none, "quote")).isFalse();
+    }
+
+    @Test
+    void unknownNamesAreMatchedByName() {
+        PermissionPlan plan = compile(rule(1, "export", Effect.GRANT, Subject.AD_GROUP, MatchType.CONTAINS, "managers", null, null));
+        String unseen = "CN=APAC-Managers,OU=Groups,DC=company,DC=com";
+
+        long[] granted = plan.evaluate(new int[0], List.of(), new int[] {EntitlementSymbols.UNKNOWN}, List.of(unseen),
+                                       "APAC", Set.of());
+
+        assertThat(plan.isGranted(granted, "export")).isTrue();
+    }
+
+    @Test
+    void rendersElementsAndEffectivePermissions() {
+        PermissionPlan plan = PermissionPlan.compile("v1",
+            List.of(rule(1, "export", Effect.GRANT, Subject.ALL, null, null, null, null)),
+            List.of(new LayoutElement("export", "toolbar.export", "enabled", Map.of("label", "Export")),
+                    new LayoutElement("audit", "dataAccess.audit", null, null)),
+            symbols);
+
+        Map<String, Object> layout = plan.render(evaluate(plan, List.of(), List.of(), "EMEA", Set.of()));
+
+        assertThat(layout).containsEntry("toolbar", Map.of("export", Map.of("label", "Export", "enabled", true)));
+        assertThat(layout).containsEntry("dataAccess", Map.of("audit", false));
+        assertThat(layout).containsEntry("effectivePermissions", Map.of("export", "granted", "audit", "denied"));
+    }
+
+    @Test
+    void conflictingLayoutPathsAreRejectedAtCompile() {
+        List<PermissionRule> rules = List.of();
+
+        assertThatIllegalArgumentException().isThrownBy(() -> PermissionPlan.compile("v1", rules, List.of(
+                new LayoutElement("export", "toolbar.export", null, null),
+                new LayoutElement("print", "toolbar.export", null, null)), symbols))
+            .withMessageContaining("toolbar.export");
+        assertThatIllegalArgumentException().isThrownBy(() -> PermissionPlan.compile("v1", rules, List.of(
+                new LayoutElement("export", "toolbar", null, null),
+                new LayoutElement("print", "toolbar.print", null, null)), symbols))
+            .withMessageContaining("conflicts");
+        assertThatIllegalArgumentException().isThrownBy(() -> new LayoutElement("export", "toolbar..export", null, null));
+    }
+
+    @Test
+    void moreThanSixtyFourRulesAndPermissions() {
+        List<PermissionRule> rules = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            rules.add(rule(i, "p" + i, Effect.GRANT, Subject.ROLE, MatchType.EQUALS, "role" + (i % 3), null, null));
+        }
+        rules.add(rule(150, "p148", Effect.DENY, Subject.ALL, null, null, null, null));
+        PermissionPlan plan = PermissionPlan.compile("v1", rules, List.of(), symbols);
+
+        long[] granted = evaluate(plan, List.of("ROLE1"), List.of(), "EMEA", Set.of());
+
+        assertThat(EntitlementBits.cardinality(granted)).isEqualTo(49);
+        assertThat(plan.isGranted(granted, "p130")).isTrue();
+        assertThat(plan.isGranted(granted, "p129")).isFalse();
+        assertThat(plan.isGranted(granted, "p148")).isFalse();
+    }
+
+    private PermissionPlan compile(PermissionRule... rules) {
+        return PermissionPlan.compile("v1", List.of(rules), List.of(), symbols);
+    }
+
+    private long[] evaluate(PermissionPlan plan, List<String> roles, List<String> adGroups, String market, Set<String> functions) {
+        return plan.evaluate(symbols.tryInternAll(roles), roles, symbols.tryInternAll(adGroups), adGroups, market, functions);
+    }
+
+    private static PermissionRule rule(long id, String permission, Effect effect, Subject subject,
+                                       MatchType matchType, String matchValue, String market, String function) {
+        return new PermissionRule(id, permission, effect, subject, matchType, matchValue, market, function);
+    }
+}
@@ -0,0 +1,86 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.PostgresIntegrationTest;
+import com.ccaas.entitlement.dto.LayoutComputationRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Template selection by market and environment scope, in both computation modes. Each template
+ * carries its own default theme, so the theme in the layout names the template that was chosen.
+ */
+class RoleTemplateScopeTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private LayoutComputationService layoutComputationService;
+
+    @Autowired
+    private EntitlementSnapshotService snapshotService;
+
+    private static boolean seeded;
+
+    @BeforeEach
+    void seed() {
+        if (seeded) {
+            return;
+        }
+        clearEntitlementData();
+        template("MANAGER", "{EMEA}", null, "mgr_emea");
+        template("SENIOR_MANAGER", null, "{PROD}", "sm_prod");
+        template("ANALYST", "{US,UK}", "{UAT,PRODUCTION}", "analyst_us_uk");
+        jdbcTemplate.update("INSERT INTO ad_group_layout_overrides (ad_group_hash, ad_group_dn, parsed_market, "
+            + "parsed_environment, priority, is_active) VALUES "
+            + "('o1', 'CN=Team-Managers,OU=A', 'EMEA', 'prod', 1, true), "
+            + "('o2', 'CN=Desk-Managers,OU=B', 'US', 'PROD', 1, true)");
+        snapshotService.refreshIfChanged();
+        seeded = true;
+    }
+
+    static Stream<Arguments> cases() {
+        return Stream.of(
+            Arguments.of("multi-a", List.of("CN=US-Managers-PROD,OU=G", "CN=EMEA-Senior-Managers-UAT,OU=G",
+                "CN=UK-Analysts-UAT,OU=G"), "analyst_us_uk"),
+            Arguments.of("multi-b", List.of("CN=EMEA-Managers-DEV,OU=G", "CN=US-Analysts-PROD,OU=G"), "mgr_emea"),
+            Arguments.of("multi-c", List.of("CN=APAC-Senior-Managers-PRD,OU=G", "CN=EMEA-Managers,OU=G"), "sm_prod"),
+            Arguments.of("no-market", List.of("CN=Global-Managers,OU=G"), "mgr_emea"),
+            Arguments.of("none", List.of("CN=APAC-Analysts-PROD,OU=G", "CN=US-Managers-STG,OU=G"), null),
+            Arguments.of("override-emea", List.of("CN=Team-Managers,OU=A"), "mgr_emea"),
+            Arguments.of("override-us", List.of("CN=Desk-Managers,OU=B", "CN=UK-Analysts-SIT,OU=G",
+                "CN=US-Analysts-PRD,OU=G"), "analyst_us_uk"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void serviceLogicPicksScopedTemplate(String name, List<String> adGroups, String expectedTheme) {
+        assertThat(theme(LayoutComputationService.MODE_SERVICE_LOGIC, name, adGroups)).isEqualTo(expectedTheme);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void databaseFunctionPicksScopedTemplate(String name, List<String> adGroups, String expectedTheme) {
+        assertThat(theme(LayoutComputationService.MODE_DATABASE_FUNCTION, name, adGroups)).isEqualTo(expectedTheme);
+    }
+
+    private String theme(String mode, String name, List<String> adGroups) {
+        LayoutComputationRequest request = new LayoutComputationRequest(mode + "-" + name, adGroups);
+        request.setComputationMode(mode);
+        Object theme = layoutComputationService.computeLayout(request).getLayout().get("defaultTheme");
+        return theme == null ? null : theme.toString().replace("\"", "");
+    }
+
+    private void template(String role, String markets, String environments, String theme) {
+        jdbcTemplate.update("INSERT INTO role_layout_templates (role_name, role_display_name, default_columns, "
+            + "available_widgets, default_actions, settings_access, default_theme, market_applicable, "
+            + "environment_types, is_active, updated_at) "
+            + "VALUES (?, ?, '[]', '[]', '[]', '{}', ?::jsonb, ?::text[], ?::text[], true, now())",
+            role, role, "\"" + theme + "\"", markets, environments);
+    }
+}
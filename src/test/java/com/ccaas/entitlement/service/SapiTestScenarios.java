@@ -0,0 +1,44 @@
+package com.ccaas.entitlement.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Users and AD groups from {@code test-data/sapi-test-scenarios.json}.
+ */
+final class SapiTestScenarios {
+
+    private SapiTestScenarios() {
+    }
+
+    record Scenario(String userId, List<String> adGroups, String market) {
+    }
+
+    static List<Scenario> load() {
+        try (InputStream in = SapiTestScenarios.class.getResourceAsStream("/test-data/sapi-test-scenarios.json")) {
+            List<Scenario> scenarios = new ArrayList<>();
+            for (JsonNode scenario : new ObjectMapper().readTree(in).path("layoutComputationScenarios")) {
+                List<String> adGroups = new ArrayList<>();
+                scenario.at("/request/adGroups").forEach(adGroup -> adGroups.add(adGroup.asText()));
+                scenarios.add(new Scenario(scenario.at("/request/userId").asText(), List.copyOf(adGroups),
+                    scenario.at("/expectedResponse/market").asText()));
+            }
+            return scenarios;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Scenario user(String userId) {
+        return load().stream()
+            .filter(scenario -> scenario.userId().equals(userId))
+            .findFirst()
+            .orElseThrow();
+    }
+}
@@ -0,0 +1,113 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.ccaas.entitlement.repository.ReactiveEntitlementRepository;
+import com.ccaas.entitlement.repository.UserPreferenceCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The blocking and reactive reads apply the same soft and hard expiry to a stored layout.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UserLayoutCacheServiceTest {
+
+    private static final String EMEA_MANAGERS = "CN=EMEA-Managers,OU=Groups,DC=company,DC=com";
+
+    @Mock
+    private UserPreferenceCacheRepository userPreferenceRepository;
+
+    @Mock
+    private ReactiveEntitlementRepository reactiveRepository;
+
+    @Mock
+    private LayoutRecomputationService layoutRecomputationService;
+
+    private UserLayoutCacheService userLayoutCache;
+
+    @BeforeEach
+    void setUp() {
+        CompactUserLayoutCache layoutCache = new CompactUserLayoutCache();
+        ReflectionTestUtils.setField(layoutCache, "cacheManager", new CaffeineCacheManager(CompactUserLayoutCache.CACHE_NAME));
+
+        userLayoutCache = new UserLayoutCacheService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userLayoutCache, "userPreferenceRepository", userPreferenceRepository);
+        ReflectionTestUtils.setField(userLayoutCache, "reactiveRepository", reactiveRepository);
+        ReflectionTestUtils.setField(userLayoutCache, "writeBuffer", new UserPreferenceWriteBuffer(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(userLayoutCache, "layoutCache", layoutCache);
+        ReflectionTestUtils.setField(userLayoutCache, "layoutRecomputationService", layoutRecomputationService);
+        ReflectionTestUtils.setField(userLayoutCache, "staleGraceMinutes", 60L);
+        when(layoutRecomputationService.requestRefresh(eq("alice"), any())).thenReturn(true);
+    }
+
+    @Test
+    void freshLayoutIsServedAsStored() {
+        stored(expiringIn(30));
+
+        assertThat(userLayoutCache.findServable("alice")).map(UserLayoutPreferences::getComputationSource).contains("sapi");
+        assertThat(userLayoutCache.findServableReactive("alice").blockOptional())
+            .map(UserLayoutPreferences::getComputationSource).contains("sapi");
+        verify(layoutRecomputationService, never()).requestRefresh(eq("alice"), any());
+    }
+
+    @Test
+    void layoutPastSoftExpiryIsServedStaleAndRefreshed() {
+        stored(expiringIn(-30));
+
+        assertThat(userLayoutCache.findServable("alice"))
+            .map(UserLayoutPreferences::getComputationSource).contains(UserLayoutCacheService.STALE_SOURCE);
+        assertThat(userLayoutCache.findServableReactive("alice").blockOptional())
+            .map(UserLayoutPreferences::getComputationSource).contains(UserLayoutCacheService.STALE_SOURCE);
+    }
+
+    @Test
+    void reactiveReadRefreshesAStaleLayout() {
+        stored(expiringIn(-30));
+
+        userLayoutCache.findServableReactive("alice").block();
+
+        verify(layoutRecomputationService).requestRefresh("alice", new String[] {EMEA_MANAGERS});
+    }
+
+    @Test
+    void layoutPastHardExpiryIsNotServed() {
+        stored(expiringIn(-90));
+
+        assertThat(userLayoutCache.findServable("alice")).isEmpty();
+        assertThat(userLayoutCache.findServableReactive("alice").blockOptional()).isEmpty();
+    }
+
+    private void stored(UserLayoutPreferences preferences) {
+        when(userPreferenceRepository.findByUserId("alice")).thenReturn(Optional.of(preferences));
+        when(reactiveRepository.findPreferences("alice")).thenReturn(Mono.just(preferences));
+    }
+
+    private static UserLayoutPreferences expiringIn(long minutes) {
+        UserLayoutPreferences preferences = new UserLayoutPreferences("alice", "{}");
+        preferences.setComputationSource("sapi");
+        preferences.setLastComputedAt(LocalDateTime.now().minusHours(4));
+        preferences.setCacheExpiry(LocalDateTime.now().plusMinutes(minutes));
+        preferences.setAdGroups(new String[] {EMEA_MANAGERS});
+        return preferences;
+    }
+}
@@ -0,0 +1,224 @@
+package com.ccaas.entitlement.service;
+
+import com.ccaas.entitlement.entity.UserLayoutPreferences;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserPreferenceWriteBufferTest {
+
+    private static final String EMEA_MANAGERS = "CN=EMEA-Managers,OU=Groups,DC=company,DC=com";
+    private static final String US_ANALYSTS = "CN=US-Analysts,OU=Groups,DC=company,DC=com";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private CompactUserLayoutCache layoutCache;
+
+    private LayoutDependencyIndex dependencyIndex;
+    private EntitlementSymbols symbols;
+    private UserPreferenceWriteBuffer writeBuffer;
+
+    /** Users whose rows were upserted, in statement order. */
+    private final List<String> written = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        symbols = new EntitlementSymbols(new SimpleMeterRegistry());
+        dependencyIndex = new LayoutDependencyIndex();
+        ReflectionTestUtils.setField(dependencyIndex, "symbols", symbols);
+
+        writeBuffer = new UserPreferenceWriteBuffer(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writeBuffer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(writeBuffer, "layoutCache", layoutCache);
+        ReflectionTestUtils.setField(writeBuffer, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(writeBuffer, "dependencyIndex", dependencyIndex);
+        ReflectionTestUtils.setField(writeBuffer, "enabled", true);
+        ReflectionTestUtils.setField(writeBuffer, "maxBatchSize", 500);
+    }
+
+    @Test
+    void rejectedRowIsDroppedAndTheRestAreWritten() {
+        rejecting(Set.of("bad"), new DataIntegrityViolationException("invalid input syntax for type json"));
+
+        writeBuffer.submitAll(List.of(preferences("alice"), preferences("bad"), preferences("bob")));
+        writeBuffer.flush();
+
+        assertThat(written).containsExactly("alice", "bob");
+        assertThat(writeBuffer.getPendingCount()).isZero();
+        assertThat(writeBuffer.getPending("bad")).isEmpty();
+        assertThat(writeBuffer.getStats().dropped()).isEqualTo(1);
+        verify(layoutCache).put(argThat(entry -> entry.getUserId().equals("alice")));
+        verify(layoutCache).put(argThat(entry -> entry.getUserId().equals("bob")));
+        verify(layoutCache, never()).put(argThat(entry -> entry.getUserId().equals("bad")));
+
+        // The bad row is gone for good: the next flush has nothing to do
+        writeBuffer.flush();
+        assertThat(written).containsExactly("alice", "bob");
+    }
+
+    @Test
+    void unavailableDatabaseRequeuesTheWholeBatch() {
+        rejecting(Set.of("alice", "bob"), new CannotGetJdbcConnectionException("Connection refused"));
+
+        writeBuffer.submitAll(List.of(preferences("alice"), preferences("bob")));
+        writeBuffer.flush();
+
+        assertThat(written).isEmpty();
+        assertThat(writeBuffer.getPendingCount()).isEqualTo(2);
+        assertThat(writeBuffer.getStats().dropped()).isZero();
+    }
+
+    @Test
+    void databaseLostDuringRowFallbackRequeuesTheRemainingRows() throws Exception {
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenAnswer(invocation -> {
+            List<String> userIds = userIds(invocation.getArgument(1));
+            if (userIds.size() > 1 || userIds.contains("bad")) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            if (userIds.contains("carol")) {
+                throw new CannotGetJdbcConnectionException("Connection refused");
+            }
+            written.addAll(userIds);
+            return new int[userIds.size()];
+        });
+
+        writeBuffer.submitAll(List.of(preferences("alice"), preferences("bad"), preferences("carol"), preferences("dave")));
+        writeBuffer.flush();
+
+        assertThat(written).containsExactly("alice");
+        assertThat(writeBuffer.getPending("carol")).isPresent();
+        assertThat(writeBuffer.getPending("dave")).isPresent();
+        assertThat(writeBuffer.getPending("bad")).isEmpty();
+        assertThat(writeBuffer.getStats().dropped()).isEqualTo(1);
+    }
+
+    @Test
+    void writeTheDatabaseWouldRejectIsRefusedAndNothingIsQueued() {
+        UserLayoutPreferences noLayout = preferences("carol");
+        noLayout.setComputedLayout(null);
+        UserLayoutPreferences badTheme = preferences("dave");
+        badTheme.setMarketTheme("{\"accent\":");
+
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> writeBuffer.submitAll(List.of(preferences("alice"), preferences(null))))
+            .withMessage("userId is required");
+        assertThatIllegalArgumentException().isThrownBy(() -> writeBuffer.submit(noLayout))
+            .withMessage("computedLayout is required");
+        assertThatIllegalArgumentException().isThrownBy(() -> writeBuffer.submit(badTheme))
+            .withMessage("marketTheme is not valid JSON");
+
+        assertThat(writeBuffer.getPendingCount()).isZero();
+        assertThat(writeBuffer.getStats().submitted()).isZero();
+        verify(layoutCache, never()).evict(anyString());
+    }
+
+    @Test
+    void writeWithoutAdGroupsTakesTheGroupsTheUserWasComputedFrom() {
+        dependencyIndex.record("alice", symbols.tryInternAll(List.of(EMEA_MANAGERS)), new int[0], new int[0]);
+        UserLayoutPreferences own = preferences("bob");
+        own.setAdGroups(new String[] {US_ANALYSTS});
+
+        writeBuffer.submitAll(List.of(preferences("alice"), own, preferences("carol")));
+
+        assertThat(writeBuffer.getPending("alice").orElseThrow().getAdGroups()).containsExactly(EMEA_MANAGERS);
+        assertThat(writeBuffer.getPending("bob").orElseThrow().getAdGroups()).containsExactly(US_ANALYSTS);
+        assertThat(writeBuffer.getPending("carol").orElseThrow().getAdGroups()).isNull();
+    }
+
+    @Test
+    void adGroupsGoToThePendingRowOrAreUpdatedOnFlush() throws Exception {
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class)))
+            .thenAnswer(invocation -> new int[invocation.<BatchPreparedStatementSetter>getArgument(1).getBatchSize()]);
+        when(jdbcTemplate.batchUpdate(contains("SET ad_groups"), any(BatchPreparedStatementSetter.class)))
+            .thenReturn(new int[] {1, 0});
+        writeBuffer.submit(preferences("alice"));
+
+        writeBuffer.submitAdGroups("alice", new String[] {EMEA_MANAGERS});
+        writeBuffer.submitAdGroups("bob", new String[] {US_ANALYSTS});
+        writeBuffer.submitAdGroups("carol", new String[] {US_ANALYSTS});
+
+        assertThat(writeBuffer.getPending("alice").orElseThrow().getAdGroups()).containsExactly(EMEA_MANAGERS);
+        ArgumentCaptor<BatchPreparedStatementSetter> update = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+        writeBuffer.flush();
+        verify(jdbcTemplate).batchUpdate(contains("SET ad_groups"), update.capture());
+
+        PreparedStatement statement = mock(PreparedStatement.class, RETURNS_DEEP_STUBS);
+        for (int i = 0; i < update.getValue().getBatchSize(); i++) {
+            update.getValue().setValues(statement, i);
+        }
+        verify(statement).setString(2, "bob");
+        verify(statement).setString(2, "carol");
+        verify(statement, never()).setString(2, "alice");
+        // Only the row the update changed holds outdated groups in the layout cache
+        verify(layoutCache).evict("bob");
+        verify(layoutCache, never()).evict("carol");
+
+        writeBuffer.flush();
+        verify(jdbcTemplate).batchUpdate(contains("SET ad_groups"), any(BatchPreparedStatementSetter.class));
+    }
+
+    /**
+     * Fail every statement that includes one of {@code userIds}; record the others as written.
+     */
+    private void rejecting(Set<String> userIds, DataAccessException failure) {
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenAnswer(invocation -> {
+            List<String> batch = userIds(invocation.getArgument(1));
+            if (batch.stream().anyMatch(userIds::contains)) {
+                throw failure;
+            }
+            written.addAll(batch);
+            return new int[batch.size()];
+        });
+    }
+
+    private static List<String> userIds(BatchPreparedStatementSetter setter) throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        for (int i = 0; i < setter.getBatchSize(); i++) {
+            setter.setValues(statement, i);
+        }
+        ArgumentCaptor<String> userIds = ArgumentCaptor.forClass(String.class);
+        verify(statement, atLeastOnce()).setString(eq(1), userIds.capture());
+        return userIds.getAllValues();
+    }
+
+    private static UserLayoutPreferences preferences(String userId) {
+        UserLayoutPreferences preferences = new UserLayoutPreferences(userId, "{}");
+        preferences.setCacheExpiry(LocalDateTime.now().plusHours(1));
+        return preferences;
+    }
+}